@@ -1,13 +1,23 @@
 import java.io.*;
 import java.net.*;
+import java.util.concurrent.Executors;
 
 import com.sun.net.httpserver.*;
 
 import handlers.*;
+import utils.AuthTokenSweeper;
+import utils.ChangeLogCompactor;
+import utils.FamilyTreePool;
+import utils.PasswordHasher;
 
 public class Server {
     /** The maximum number of waiting incoming connections to queue */
     private static final int MAX_WAITING_CONNECTIONS = 12;
+    /**
+     * The number of threads handling requests (so a slow request, like a login, doesn't hold up the rest);
+     * logins can only hold so many of them (see PasswordHasher), and the rest are always left for other requests
+     */
+    private static final int NUM_HANDLER_THREADS = Math.max(4, Runtime.getRuntime().availableProcessors() * 2) + PasswordHasher.getMaxThreads();
     /** The embedded HTTPServer to use */
     private HttpServer server;
 
@@ -27,19 +37,31 @@ public class Server {
             System.out.println("Server failed to initialize:");
             err.printStackTrace();
         }
-        // necessary line of code, but no clue what it does...
-        server.setExecutor(null);
+        // requests are handled on a pool of threads, instead of all on the one that accepts them
+        server.setExecutor(Executors.newFixedThreadPool(Server.NUM_HANDLER_THREADS));
 
         System.out.println("Creating contexts");
         server.createContext("/user/register", new RegisterHandler());
         server.createContext("/user/login", new LoginHandler());
+        server.createContext("/user/stats", new StatsHandler());
         server.createContext("/clear", new ClearHandler());
         server.createContext("/fill", new FillHandler());
         server.createContext("/load", new LoadHandler());
         server.createContext("/person", new PersonHandler());
         server.createContext("/event", new EventHandler());
+        server.createContext("/tree", new TreeHandler());
+        server.createContext("/snapshot", new SnapshotHandler());
         server.createContext("/", new FileHandler());
 
+        System.out.println("Starting family tree pool");
+        FamilyTreePool.start();
+
+        System.out.println("Starting auth token sweeper");
+        AuthTokenSweeper.start();
+
+        System.out.println("Starting changelog compactor");
+        ChangeLogCompactor.start();
+
         System.out.println("Starting server");
         server.start();
         System.out.println("Server initialized successfully!");
@@ -1,7 +1,9 @@
 package dataAccess;
 
+import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
+import java.util.ArrayList;
 
 /**
  * A generic Accessor class that defines the base for all Accessors. It guarantees
@@ -9,6 +11,9 @@ import java.sql.SQLException;
  * should implement more functions as needed (ex. database query functions)
  */
 public abstract class Accessor<ModelType> {
+    /** The most IDs looked up by one "in (...)" query (longer lists are split up) */
+    static final int MAX_IDS_PER_QUERY = 500;
+
     /** The database wrapper, allowing Accessors to make calls to the Database */
     protected Database database;
 
@@ -63,12 +68,84 @@ public abstract class Accessor<ModelType> {
     public abstract boolean[] exists(ModelType[] models) throws DatabaseException;
 
     /**
-     * Clears the associated table in the database
+     * Clears the associated table in the database (as part of the current
+     * transaction, which the caller commits)
      * 
      * @throws DatabaseException when a database error occurs
      */
     public abstract void clear() throws DatabaseException;
 
+    /**
+     * Builds the select list for a query that only needs some columns. Only
+     * names from allColumns make it into the list (so it's safe to build SQL
+     * with), and the first column (the primary key) is always included.
+     * 
+     * @param allColumns is every column of the table, primary key first
+     * @param columns is the columns that are needed, or null for all of them
+     * @return the columns to select, in table order
+     */
+    protected String[] selectColumns(String[] allColumns, String[] columns) {
+        if (columns == null) {
+            return allColumns;
+        }
+        ArrayList<String> selectedColumns = new ArrayList<>();
+        selectedColumns.add(allColumns[0]);
+        for (int columnIdx = 1; columnIdx < allColumns.length; ++columnIdx) {
+            String column = allColumns[columnIdx];
+            for (String neededColumn : columns) {
+                if (column.equals(neededColumn)) {
+                    selectedColumns.add(column);
+                    break;
+                }
+            }
+        }
+        return selectedColumns.toArray(new String[selectedColumns.size()]);
+    }
+
+    /**
+     * Creates the "?, ?, ..." list of parameters for an "in (...)" clause
+     * (shared with the other classes in this package that build such clauses)
+     * 
+     * @param numParams is the number of parameters
+     * @return the list of parameters
+     */
+    static String createPlaceholders(int numParams) {
+        StringBuilder placeholders = new StringBuilder();
+        for (int paramIdx = 0; paramIdx < numParams; ++paramIdx) {
+            if (paramIdx != 0) {
+                placeholders.append(", ");
+            }
+            placeholders.append("?");
+        }
+        return placeholders.toString();
+    }
+
+    /**
+     * Returns the users that some rows currently belong to
+     * 
+     * @param table is the table the rows are in (which must have an associatedUsername column)
+     * @param idColumn is the primary key column of the table
+     * @param ids is the primary keys of the rows
+     * @return the usernames of the users (each only once)
+     * @throws DatabaseException when a database error occurs
+     */
+    protected String[] getAssociatedUsernames(String table, String idColumn, String[] ids) throws DatabaseException {
+        if (ids.length == 0) {
+            return new String[0];
+        }
+        String sqlStr = "select distinct associatedUsername from " + table + " where " + idColumn + " in (" + Accessor.createPlaceholders(ids.length) + ")";
+        PreparedStatement statement = this.database.prepareStatement(sqlStr);
+        try {
+            for (int idIdx = 0; idIdx < ids.length; ++idIdx) {
+                statement.setString(idIdx + 1, ids[idIdx]);
+            }
+        } catch (SQLException err) {
+            throw new DatabaseException(err);
+        }
+        ArrayList<String> usernames = this.database.query(statement, (result) -> result.getString(1));
+        return usernames.toArray(new String[usernames.size()]);
+    }
+
     /**
      * Mapping function to use for Database.query() calls
      * 
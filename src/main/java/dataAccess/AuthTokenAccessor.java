@@ -4,6 +4,7 @@ import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.util.ArrayList;
+import java.util.Map;
 
 import models.AuthToken;
 
@@ -66,6 +67,124 @@ public class AuthTokenAccessor extends Accessor<AuthToken> {
         return authTokens.toArray(new AuthToken[authTokens.size()]);
     }
     
+    /**
+     * Returns all AuthTokens in the database
+     * 
+     * @return an array of all AuthTokens in the database
+     * @throws DatabaseException when a database error occurs
+     */
+    public AuthToken[] getAll() throws DatabaseException {
+        String sqlStr = "select * from authtoken";
+        ArrayList<AuthToken> authTokens = this.database.query(sqlStr, (result) -> this.mapQueryResult(result));
+        return authTokens.toArray(new AuthToken[authTokens.size()]);
+    }
+
+    /**
+     * Returns (some of) the AuthTokens that were either created or last used
+     * before the given times, oldest first
+     * 
+     * @param createdBefore is the time (in epoch milliseconds) tokens must be created after to be kept
+     * @param lastUsedBefore is the time (in epoch milliseconds) tokens must be used after to be kept
+     * @param limit is the maximum number of AuthTokens to return
+     * @return the array of expired AuthTokens
+     * @throws DatabaseException when a database error occurs
+     */
+    public AuthToken[] getExpired(long createdBefore, long lastUsedBefore, int limit) throws DatabaseException {
+        String sqlStr = "select * from authtoken where createdAt < ? or lastUsed < ? order by createdAt limit ?";
+        PreparedStatement statement = this.database.prepareStatement(sqlStr);
+        try {
+            statement.setLong(1, createdBefore);
+            statement.setLong(2, lastUsedBefore);
+            statement.setInt(3, limit);
+        } catch (SQLException err) {
+            throw new DatabaseException(err);
+        }
+        ArrayList<AuthToken> authTokens = this.database.query(statement, (result) -> this.mapQueryResult(result));
+        return authTokens.toArray(new AuthToken[authTokens.size()]);
+    }
+
+    /**
+     * Updates when some auth tokens were last used, all in one statement. Auth
+     * tokens that don't exist (anymore) are ignored, as are times older than
+     * the ones already stored.
+     * 
+     * @param lastUsedByAuthToken maps each auth token to when it was last used (in epoch milliseconds)
+     * @throws DatabaseException when a database error occurs
+     */
+    public void touch(Map<String, Long> lastUsedByAuthToken) throws DatabaseException {
+        if (lastUsedByAuthToken.size() == 0) {
+            return;
+        }
+
+        StringBuilder lastUsedStr = new StringBuilder();
+        lastUsedStr.append("lastUsed = max(lastUsed, case\n");
+        StringBuilder whereClauseStr = new StringBuilder();
+        whereClauseStr.append("where authtoken in (");
+        boolean firstAuthToken = true;
+        for (int i = 0; i < lastUsedByAuthToken.size(); ++i) {
+            if (!firstAuthToken) {
+                lastUsedStr.append("\n");
+                whereClauseStr.append(", ");
+            }
+            lastUsedStr.append("when authtoken == ? then ?");
+            whereClauseStr.append("?");
+            firstAuthToken = false;
+        }
+        lastUsedStr.append("\nelse lastUsed end)\n");
+        whereClauseStr.append(")\n");
+
+        StringBuilder sqlStr = new StringBuilder();
+        sqlStr.append("update authtoken set\n");
+        sqlStr.append(lastUsedStr.toString());
+        sqlStr.append(whereClauseStr.toString());
+
+        PreparedStatement statement = this.database.prepareStatement(sqlStr.toString());
+        int numTokens = lastUsedByAuthToken.size();
+        int tokenIdx = 0;
+        for (Map.Entry<String, Long> entry : lastUsedByAuthToken.entrySet()) {
+            int numFieldsPerWhen = 2; // when authtoken == ? then ?
+            int whenLastUsedIdx = tokenIdx * numFieldsPerWhen + 1;
+            int whereClauseIdx  = numTokens * numFieldsPerWhen + tokenIdx + 1;
+
+            try {
+                statement.setString(whenLastUsedIdx,    entry.getKey());
+                statement.setLong(whenLastUsedIdx + 1,  entry.getValue());
+                statement.setString(whereClauseIdx,     entry.getKey());
+            } catch (SQLException err) {
+                throw new DatabaseException(err);
+            }
+            ++tokenIdx;
+        }
+
+        this.database.update(statement);
+    }
+
+    /**
+     * Stores a single AuthToken, unless its auth token is already taken. Unlike
+     * create(), this is one statement (no exists() check first), which makes it
+     * the cheap way to store freshly generated tokens.
+     * Changes must be committed or rolled back after calling this function.
+     *
+     * @param authToken is the AuthToken to store
+     * @return whether the AuthToken was stored (false if the auth token was already taken)
+     * @throws DatabaseException when a database error occurs
+     */
+    public boolean tryCreate(AuthToken authToken) throws DatabaseException {
+        String sqlStr = "insert into authtoken (username, authtoken, createdAt, lastUsed) values (?, ?, ?, ?)\n" +
+            "on conflict (authtoken) do nothing";
+        PreparedStatement statement = this.database.prepareStatement(sqlStr);
+        try {
+            statement.setString(1, authToken.getUsername());
+            statement.setString(2, authToken.getAuthtoken());
+            statement.setLong(3, authToken.getCreatedAt());
+            statement.setLong(4, authToken.getLastUsed());
+        } catch (SQLException err) {
+            throw new DatabaseException(err);
+        }
+        int numInserted = this.database.update(statement);
+        return numInserted == 1;
+    }
+
     @Override
      public void create(AuthToken[] models) throws BadAccessException, DatabaseException {
         if (models.length == 0) {
@@ -93,14 +212,14 @@ public class AuthTokenAccessor extends Accessor<AuthToken> {
 
         StringBuilder sqlStr = new StringBuilder();
         sqlStr.append("insert into authtoken\n");
-        sqlStr.append("   (username, authtoken)\n");
+        sqlStr.append("   (username, authtoken, createdAt, lastUsed)\n");
         sqlStr.append("values\n");
         boolean firstAuthToken = true;
         for (int i = 0; i < models.length; ++i) {
             if (!firstAuthToken) {
                 sqlStr.append(", ");
             }
-            sqlStr.append("(?, ?)");
+            sqlStr.append("(?, ?, ?, ?)");
             firstAuthToken = false;
         }
 
@@ -108,13 +227,17 @@ public class AuthTokenAccessor extends Accessor<AuthToken> {
         for (int tokenIdx = 0; tokenIdx < models.length; ++tokenIdx) {
             AuthToken authToken = models[tokenIdx];
             
-            int numFields = 2;
+            int numFields = 4;
             int usernameIdx     = tokenIdx * numFields + 1;
             int authtokenIdx    = tokenIdx * numFields + 2;
+            int createdAtIdx    = tokenIdx * numFields + 3;
+            int lastUsedIdx     = tokenIdx * numFields + 4;
 
             try {
                 statement.setString(usernameIdx,    authToken.getUsername());
                 statement.setString(authtokenIdx,   authToken.getAuthtoken());
+                statement.setLong(createdAtIdx,     authToken.getCreatedAt());
+                statement.setLong(lastUsedIdx,      authToken.getLastUsed());
             } catch (SQLException err) {
                 throw new DatabaseException(err);
             }
@@ -148,16 +271,23 @@ public class AuthTokenAccessor extends Accessor<AuthToken> {
             throw new BadAccessException(errMsg);
         }
 
+        String[] authTokenStrs = new String[models.length];
+        for (int tokenIdx = 0; tokenIdx < models.length; ++tokenIdx) {
+            authTokenStrs[tokenIdx] = models[tokenIdx].getAuthtoken();
+        }
+        AuthTokenCache.invalidateAuthTokens(this.database, authTokenStrs);
+
         StringBuilder sqlStr = new StringBuilder();
-        sqlStr.append("delete from authtoken where\n");
+        sqlStr.append("delete from authtoken where authtoken in (");
         boolean firstAuthToken = true;
         for (int i = 0; i < models.length; ++i) {
             if (!firstAuthToken) {
-                sqlStr.append(" or ");
+                sqlStr.append(", ");
             }
-            sqlStr.append("authtoken == ?");
+            sqlStr.append("?");
             firstAuthToken = false;
         }
+        sqlStr.append(")");
 
         PreparedStatement statement = this.database.prepareStatement(sqlStr.toString());
         for (int tokenIdx = 0; tokenIdx < models.length; ++tokenIdx) {
@@ -200,6 +330,12 @@ public class AuthTokenAccessor extends Accessor<AuthToken> {
             }
             throw new BadAccessException(errMsg);
         }
+
+        String[] authTokenStrs = new String[models.length];
+        for (int tokenIdx = 0; tokenIdx < models.length; ++tokenIdx) {
+            authTokenStrs[tokenIdx] = models[tokenIdx].getAuthtoken();
+        }
+        AuthTokenCache.invalidateAuthTokens(this.database, authTokenStrs);
         
         StringBuilder usernameStr = new StringBuilder();
         usernameStr.append("username = case\n");
@@ -247,15 +383,16 @@ public class AuthTokenAccessor extends Accessor<AuthToken> {
     @Override
     public boolean[] exists(AuthToken[] models) throws DatabaseException {
         StringBuilder sqlStr = new StringBuilder();
-        sqlStr.append("select authtoken from authtoken where\n");
+        sqlStr.append("select authtoken from authtoken where authtoken in (");
         boolean firstAuthToken = true;
         for (int i = 0; i < models.length; ++i) {
             if (!firstAuthToken) {
-                sqlStr.append(" or ");
+                sqlStr.append(", ");
             }
-            sqlStr.append("authtoken == ?");
+            sqlStr.append("?");
             firstAuthToken = false;
         }
+        sqlStr.append(")");
 
         PreparedStatement statement = this.database.prepareStatement(sqlStr.toString());
         for (int tokenIdx = 0; tokenIdx < models.length; ++tokenIdx) {
@@ -294,6 +431,8 @@ public class AuthTokenAccessor extends Accessor<AuthToken> {
 
     @Override
     public void clear() throws DatabaseException {
+        AuthTokenCache.invalidateAll(this.database);
+        SignedAuthTokens.revokeAll();
         String sqlStr = "delete from authtoken";
         this.database.update(sqlStr);
     }
@@ -302,7 +441,9 @@ public class AuthTokenAccessor extends Accessor<AuthToken> {
     protected AuthToken mapQueryResult(ResultSet result) throws SQLException {
         String authtoken = result.getString(1);
         String username = result.getString(2);
-        AuthToken authToken = new AuthToken(authtoken, username);
+        long createdAt = result.getLong(3);
+        long lastUsed = result.getLong(4);
+        AuthToken authToken = new AuthToken(authtoken, username, createdAt, lastUsed);
         return authToken;
     }
 }
@@ -7,6 +7,7 @@ import models.AuthToken;
 
 import java.sql.PreparedStatement;
 import java.util.ArrayList;
+import java.util.HashMap;
 
 /**
  * Contains the test cases that ensure the PersonAccessor class runs correctly
@@ -95,7 +96,9 @@ public class AuthTokenAccessorTest {
         ArrayList<AuthToken> authTokens = database.query(sqlStr, (result) -> {
             String authtoken = result.getString(1);
             String username = result.getString(2);
-            AuthToken authToken = new AuthToken(authtoken, username);
+            long createdAt = result.getLong(3);
+            long lastUsed = result.getLong(4);
+            AuthToken authToken = new AuthToken(authtoken, username, createdAt, lastUsed);
             return authToken;
         });
         return authTokens.toArray(new AuthToken[authTokens.size()]);
@@ -281,6 +284,31 @@ public class AuthTokenAccessorTest {
         }
     }
 
+    /**
+     * Ensures single auth tokens can be created without erroring on collisions
+     */
+    @Test
+    @DisplayName("Try create auth token test")
+    public void testTryCreateAuthToken() {
+        try (Database database = new Database()) {
+            AuthTokenAccessor accessor = new AuthTokenAccessor(database);
+            assertTrue(accessor.tryCreate(new AuthToken("token1", "baseUser", 1000, 2000)));
+
+            AuthToken[] results = this.getAllAuthTokens(database);
+            assertEquals(1, results.length);
+            assertEquals(1000, results[0].getCreatedAt());
+            assertEquals(2000, results[0].getLastUsed());
+
+            // the original token should be left alone
+            assertFalse(accessor.tryCreate(new AuthToken("token1", "baseUser", 3000, 3000)));
+            results = this.getAllAuthTokens(database);
+            assertEquals(1, results.length);
+            assertEquals(1000, results[0].getCreatedAt());
+        } catch (DatabaseException err) {
+            this.failNoTraceback(err);
+        }
+    }
+
     /**
      * Ensures that auth tokens can be deleted
      */
@@ -428,4 +456,60 @@ public class AuthTokenAccessorTest {
             this.failNoTraceback(err);
         }
     }
+
+    /**
+     * Ensures expired auth tokens (by either time) can be found
+     */
+    @Test
+    @DisplayName("Get expired auth tokens test")
+    public void testGetExpiredAuthTokens() {
+        try (Database database = new Database()) {
+            AuthTokenAccessor accessor = new AuthTokenAccessor(database);
+            AuthToken[] authTokens = {
+                new AuthToken("fresh", "baseUser", 1000, 1000),
+                new AuthToken("tooOld", "baseUser", 10, 1000),
+                new AuthToken("unused", "baseUser", 1000, 10),
+            };
+            accessor.create(authTokens);
+
+            AuthToken[] expiredTokens = accessor.getExpired(100, 100, 10);
+            assertEquals(2, expiredTokens.length);
+            assertEquals("tooOld", expiredTokens[0].getAuthtoken());
+            assertEquals("unused", expiredTokens[1].getAuthtoken());
+            assertEquals(10, expiredTokens[1].getLastUsed());
+
+            assertEquals(1, accessor.getExpired(100, 100, 1).length);
+            assertEquals(0, accessor.getExpired(5, 5, 10).length);
+        } catch (DatabaseException | BadAccessException err) {
+            this.failNoTraceback(err);
+        }
+    }
+
+    /**
+     * Ensures last-used times can be updated in one go (but never moved backwards)
+     */
+    @Test
+    @DisplayName("Touch auth tokens test")
+    public void testTouchAuthTokens() {
+        try (Database database = new Database()) {
+            AuthTokenAccessor accessor = new AuthTokenAccessor(database);
+            AuthToken[] authTokens = {
+                new AuthToken("token1", "baseUser", 1000, 1000),
+                new AuthToken("token2", "baseUser", 1000, 1000),
+            };
+            accessor.create(authTokens);
+
+            HashMap<String, Long> lastUsedByAuthToken = new HashMap<>();
+            lastUsedByAuthToken.put("token1", 5000L);
+            lastUsedByAuthToken.put("token2", 500L);
+            lastUsedByAuthToken.put("token that does not exist", 5000L);
+            accessor.touch(lastUsedByAuthToken);
+
+            assertEquals(5000, accessor.getByAuthToken("token1").getLastUsed());
+            assertEquals(1000, accessor.getByAuthToken("token2").getLastUsed());
+            assertEquals(1000, accessor.getByAuthToken("token1").getCreatedAt());
+        } catch (DatabaseException | BadAccessException err) {
+            this.failNoTraceback(err);
+        }
+    }
 }
@@ -0,0 +1,282 @@
+package dataAccess;
+
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+import models.User;
+
+/**
+ * A bounded, in-memory cache of which User each auth token belongs to, so
+ * authenticating a request doesn't have to cost two queries every time.
+ * Entries expire after TTL_NANOS (or when their auth token does, if that's
+ * sooner), and when the cache grows past MAX_ENTRIES, expired (and then
+ * arbitrary) entries are evicted.
+ *
+ * The accessors invalidate entries whenever a user or auth token changes, both
+ * right away and again once the transaction is over (see invalidateUsernames()).
+ * To keep a slow lookup from caching data that was invalidated while it ran,
+ * lookups read getGeneration() first, and put() refuses entries that are
+ * older than the last invalidation.
+ */
+public class AuthTokenCache {
+    /** The number of auth tokens the cache can hold before evicting some */
+    static final int MAX_ENTRIES = 10000;
+    /** The number of entries left after evicting (so evictions happen in bulk) */
+    static final int ENTRIES_AFTER_EVICTION = AuthTokenCache.MAX_ENTRIES * 9 / 10;
+    /** How long a cached entry can be used for */
+    static final long TTL_NANOS = TimeUnit.MINUTES.toNanos(5);
+
+    /** The cached entries, by auth token */
+    static private final ConcurrentHashMap<String, CachedUser> usersByAuthToken = new ConcurrentHashMap<>();
+    /** Increased on every invalidation (see put()) */
+    static private final AtomicLong generation = new AtomicLong();
+    /** Makes sure only one thread evicts at a time */
+    static private final AtomicBoolean isEvicting = new AtomicBoolean(false);
+    /** The number of lookups that found a (live) cached entry */
+    static private final AtomicLong numHits = new AtomicLong();
+    /** The number of lookups that didn't */
+    static private final AtomicLong numMisses = new AtomicLong();
+    /** The number of entries removed to keep the cache bounded (or because they expired) */
+    static private final AtomicLong numEvictions = new AtomicLong();
+
+    /**
+     * Returns the (cached) User an auth token belongs to
+     *
+     * @param authToken is the auth token to look up
+     * @return a copy of the cached User, or null if the auth token isn't cached
+     */
+    static public User get(String authToken) {
+        CachedUser cachedUser = AuthTokenCache.usersByAuthToken.get(authToken);
+        if (cachedUser != null && cachedUser.isExpired()) {
+            if (AuthTokenCache.usersByAuthToken.remove(authToken, cachedUser)) {
+                AuthTokenCache.numEvictions.incrementAndGet();
+            }
+            cachedUser = null;
+        }
+
+        if (cachedUser == null) {
+            AuthTokenCache.numMisses.incrementAndGet();
+            return null;
+        }
+        AuthTokenCache.numHits.incrementAndGet();
+        // callers are allowed to change the User they get...
+        return AuthTokenCache.copyUser(cachedUser.user);
+    }
+
+    /**
+     * Returns the current generation of the cache. This should be read before
+     * looking up the User that gets passed to put().
+     *
+     * @return the current generation
+     */
+    static public long getGeneration() {
+        return AuthTokenCache.generation.get();
+    }
+
+    /**
+     * Caches the User an auth token belongs to, unless something was invalidated
+     * since the User was looked up
+     *
+     * @param authToken is the auth token to cache
+     * @param user is the User the auth token belongs to
+     * @param generation is the value of getGeneration() from before the User was looked up
+     * @param tokenExpiresAt is when the auth token expires (in epoch milliseconds)
+     */
+    static public void put(String authToken, User user, long generation, long tokenExpiresAt) {
+        if (AuthTokenCache.generation.get() != generation) {
+            return;
+        }
+        long tokenLifetimeNanos = TimeUnit.MILLISECONDS.toNanos(tokenExpiresAt - System.currentTimeMillis());
+        long lifetimeNanos = Math.min(AuthTokenCache.TTL_NANOS, tokenLifetimeNanos);
+        CachedUser cachedUser = new CachedUser(AuthTokenCache.copyUser(user), lifetimeNanos);
+        AuthTokenCache.usersByAuthToken.put(authToken, cachedUser);
+        // an invalidation might have happened between the check and the put
+        if (AuthTokenCache.generation.get() != generation) {
+            AuthTokenCache.usersByAuthToken.remove(authToken, cachedUser);
+            return;
+        }
+
+        if (AuthTokenCache.usersByAuthToken.size() > AuthTokenCache.MAX_ENTRIES) {
+            AuthTokenCache.evict();
+        }
+    }
+
+    /**
+     * Removes the entries for some users, right away and again once the
+     * database's current transaction is over (so nothing that was read
+     * before the change was committed sticks around)
+     *
+     * @param database is the database the users are being changed in
+     * @param usernames are the usernames of the users being changed
+     */
+    static void invalidateUsernames(Database database, String[] usernames) {
+        AuthTokenCache.invalidateUsernames(usernames);
+        database.onTransactionEnd(() -> AuthTokenCache.invalidateUsernames(usernames));
+    }
+
+    /**
+     * Removes the entries for some auth tokens, right away and again once the
+     * database's current transaction is over
+     *
+     * @param database is the database the auth tokens are being changed in
+     * @param authTokens are the auth tokens being changed
+     */
+    static void invalidateAuthTokens(Database database, String[] authTokens) {
+        AuthTokenCache.invalidateAuthTokens(authTokens);
+        database.onTransactionEnd(() -> AuthTokenCache.invalidateAuthTokens(authTokens));
+    }
+
+    /**
+     * Removes every entry, right away and again once the database's current
+     * transaction is over
+     *
+     * @param database is the database everything is being changed in
+     */
+    static void invalidateAll(Database database) {
+        AuthTokenCache.invalidateAll();
+        database.onTransactionEnd(AuthTokenCache::invalidateAll);
+    }
+
+    /**
+     * Removes every entry from the cache
+     */
+    static public void invalidateAll() {
+        AuthTokenCache.generation.incrementAndGet();
+        AuthTokenCache.usersByAuthToken.clear();
+    }
+
+    static public long getNumHits() {
+        return AuthTokenCache.numHits.get();
+    }
+
+    static public long getNumMisses() {
+        return AuthTokenCache.numMisses.get();
+    }
+
+    static public long getNumEvictions() {
+        return AuthTokenCache.numEvictions.get();
+    }
+
+    static public int getSize() {
+        return AuthTokenCache.usersByAuthToken.size();
+    }
+
+    /**
+     * Returns the fraction of lookups that were served from the cache
+     *
+     * @return the hit rate, from 0 to 1 (0 when nothing has been looked up)
+     */
+    static public double getHitRate() {
+        long hits = AuthTokenCache.numHits.get();
+        long total = hits + AuthTokenCache.numMisses.get();
+        if (total == 0) {
+            return 0;
+        }
+        return (double) hits / total;
+    }
+
+    /**
+     * Removes the entries belonging to some users
+     *
+     * @param usernames are the usernames of the users to remove
+     */
+    static private void invalidateUsernames(String[] usernames) {
+        AuthTokenCache.generation.incrementAndGet();
+        AuthTokenCache.usersByAuthToken.values().removeIf((cachedUser) -> {
+            for (String username : usernames) {
+                if (cachedUser.user.getUsername().equals(username)) {
+                    return true;
+                }
+            }
+            return false;
+        });
+    }
+
+    /**
+     * Removes the entries for some auth tokens
+     *
+     * @param authTokens are the auth tokens to remove
+     */
+    static private void invalidateAuthTokens(String[] authTokens) {
+        AuthTokenCache.generation.incrementAndGet();
+        for (String authToken : authTokens) {
+            AuthTokenCache.usersByAuthToken.remove(authToken);
+        }
+    }
+
+    /**
+     * Shrinks the cache back down to ENTRIES_AFTER_EVICTION, removing expired
+     * entries first. (Hash order is as good as random for the rest.)
+     */
+    static private void evict() {
+        if (!AuthTokenCache.isEvicting.compareAndSet(false, true)) {
+            // somebody else is already on it
+            return;
+        }
+        try {
+            Iterator<Map.Entry<String, CachedUser>> entries = AuthTokenCache.usersByAuthToken.entrySet().iterator();
+            while (entries.hasNext()) {
+                if (entries.next().getValue().isExpired()) {
+                    entries.remove();
+                    AuthTokenCache.numEvictions.incrementAndGet();
+                }
+            }
+
+            entries = AuthTokenCache.usersByAuthToken.entrySet().iterator();
+            while (entries.hasNext() && AuthTokenCache.usersByAuthToken.size() > AuthTokenCache.ENTRIES_AFTER_EVICTION) {
+                entries.next();
+                entries.remove();
+                AuthTokenCache.numEvictions.incrementAndGet();
+            }
+        } finally {
+            AuthTokenCache.isEvicting.set(false);
+        }
+    }
+
+    /**
+     * Copies a User, so the cached one can't be changed from outside
+     *
+     * @param user is the User to copy
+     * @return the copy
+     */
+    static private User copyUser(User user) {
+        return new User(
+            user.getUsername(), user.getPassword(), user.getEmail(),
+            user.getFirstName(), user.getLastName(), user.getGender(), user.getPersonID()
+        );
+    }
+
+    /**
+     * A cached User, along with when it expires
+     */
+    static private class CachedUser {
+        /** The User the auth token belongs to */
+        private final User user;
+        /** The System.nanoTime() after which this entry can't be used */
+        private final long expiresAt;
+
+        /**
+         * Creates a new CachedUser
+         *
+         * @param user is the User to cache
+         * @param lifetimeNanos is how long from now the entry can be used for
+         */
+        public CachedUser(User user, long lifetimeNanos) {
+            this.user = user;
+            this.expiresAt = System.nanoTime() + lifetimeNanos;
+        }
+
+        /**
+         * Indicates if the entry is too old to use
+         *
+         * @return whether the entry has expired
+         */
+        public boolean isExpired() {
+            return System.nanoTime() - this.expiresAt > 0;
+        }
+    }
+}
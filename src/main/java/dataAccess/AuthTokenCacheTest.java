@@ -0,0 +1,150 @@
+package dataAccess;
+
+import org.junit.jupiter.api.*;
+import static org.junit.jupiter.api.Assertions.*;
+
+import models.AuthToken;
+import models.User;
+
+import utils.AuthUtils;
+
+/**
+ * Contains the test cases that ensure the AuthTokenCache class runs correctly
+ */
+@TestMethodOrder(MethodOrderer.OrderAnnotation.class)
+public class AuthTokenCacheTest {
+    /**
+     * Runs fail(), but shows a traceback to the call of this method, instead
+     * of where the error was thrown
+     * 
+     * @param err is the error that was thrown
+     */
+    private void failNoTraceback(Exception err) {
+        fail(err.getMessage());
+    }
+
+    /**
+     * Signals the Database class to use the testing database for testing
+     */
+    @BeforeAll
+    static public void useTestDB() {
+        Database.useTestDB();
+    }
+
+    /**
+     * Ensures a fresh database (with a logged in user) before each test
+     * 
+     * @throws DatabaseException whenever reset() does
+     * @throws BadAccessException whenever the accessors do
+     */
+    @BeforeEach
+    public void resetDatabase() throws DatabaseException, BadAccessException {
+        try (Database database = new Database()) {
+            database.reset();
+            User[] users = {new User("baseUser", "password", "base@email.test", "Base", "User", "m", null)};
+            new UserAccessor(database).create(users);
+            AuthToken[] authTokens = {new AuthToken("baseauth", "baseUser")};
+            new AuthTokenAccessor(database).create(authTokens);
+            database.commit();
+        }
+    }
+
+    /**
+     * Authenticates a user through AuthUtils (which uses the cache)
+     * 
+     * @param authToken is the auth token to authenticate with
+     * @return the authenticated User, or null
+     */
+    private User authenticate(String authToken) {
+        try (Database database = new Database()) {
+            return new AuthUtils(database).getAuthenticatedUser(authToken);
+        } catch (DatabaseException err) {
+            this.failNoTraceback(err);
+            return null;
+        }
+    }
+
+    /**
+     * Ensures the second lookup of an auth token is served from the cache
+     */
+    @Test
+    @DisplayName("Cache hit test")
+    public void testCacheHit() {
+        User firstUser = this.authenticate("baseauth");
+        assertNotNull(firstUser);
+        assertNotNull(AuthTokenCache.get("baseauth"));
+
+        long numHits = AuthTokenCache.getNumHits();
+        User secondUser = this.authenticate("baseauth");
+        assertEquals(numHits + 1, AuthTokenCache.getNumHits());
+        assertEquals(firstUser.getUsername(), secondUser.getUsername());
+        assertTrue(AuthTokenCache.getHitRate() > 0);
+
+        // changing what the cache returns doesn't change the cache
+        secondUser.setFirstName("Changed");
+        assertEquals("Base", this.authenticate("baseauth").getFirstName());
+    }
+
+    /**
+     * Ensures updating a user invalidates their cached entries
+     */
+    @Test
+    @DisplayName("Cache invalidation test -- user update")
+    public void testInvalidateOnUserUpdate() {
+        assertEquals("Base", this.authenticate("baseauth").getFirstName());
+
+        try (Database database = new Database()) {
+            User[] users = {new User("baseUser", "password", "base@email.test", "Renamed", "User", "m", null)};
+            new UserAccessor(database).update(users);
+            database.commit();
+        } catch (DatabaseException | BadAccessException err) {
+            this.failNoTraceback(err);
+        }
+
+        assertNull(AuthTokenCache.get("baseauth"));
+        assertEquals("Renamed", this.authenticate("baseauth").getFirstName());
+    }
+
+    /**
+     * Ensures deleting auth tokens and resetting the database invalidate cached entries
+     */
+    @Test
+    @DisplayName("Cache invalidation test -- auth token delete and reset")
+    public void testInvalidateOnDeleteAndReset() {
+        assertNotNull(this.authenticate("baseauth"));
+
+        try (Database database = new Database()) {
+            AuthToken[] authTokens = {new AuthToken("baseauth", "baseUser")};
+            new AuthTokenAccessor(database).delete(authTokens);
+            database.commit();
+        } catch (DatabaseException | BadAccessException err) {
+            this.failNoTraceback(err);
+        }
+        assertNull(this.authenticate("baseauth"));
+
+        assertDoesNotThrow(() -> this.resetDatabase());
+        assertNotNull(this.authenticate("baseauth"));
+        assertDoesNotThrow(() -> {
+            try (Database database = new Database()) {
+                database.reset();
+            }
+        });
+        assertNull(this.authenticate("baseauth"));
+    }
+
+    /**
+     * Ensures a lookup that started before an invalidation isn't cached
+     */
+    @Test
+    @DisplayName("Cache generation test")
+    public void testStalePutIsRejected() {
+        User user = new User("baseUser", "password", "base@email.test", "Base", "User", "m", null);
+        long generation = AuthTokenCache.getGeneration();
+        AuthTokenCache.invalidateAll();
+        AuthTokenCache.put("baseauth", user, generation, Long.MAX_VALUE / 2);
+        assertNull(AuthTokenCache.get("baseauth"));
+
+        AuthTokenCache.put("baseauth", user, AuthTokenCache.getGeneration(), Long.MAX_VALUE / 2);
+        assertNotNull(AuthTokenCache.get("baseauth"));
+    }
+}
@@ -0,0 +1,239 @@
+package dataAccess;
+
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.ArrayList;
+
+/**
+ * Gives access to the changelog table, which records every Person and Event
+ * that is created, updated, or deleted (by PersonAccessor and EventAccessor),
+ * so clients can sync just what changed since they last looked.
+ *
+ * Each change gets a version from an autoincrementing sequence, so versions
+ * only ever go up, for every user. Clients keep the latest version they've
+ * seen and ask for everything after it (see getChangedIDs()). A changed ID
+ * whose row is gone (or belongs to someone else now) is a deletion.
+ *
+ * The log is compacted in the background (see utils.ChangeLogCompactor):
+ * changes that were superseded by newer ones are dropped, and so are old
+ * deletions. Dropping a deletion moves its user's horizon up; clients that
+ * last synced before their horizon can't tell what was deleted, and have to
+ * sync everything again. Resets (for /clear and /load) keep the versions
+ * going, and move every user's horizon past the old ones (see Database.reset()).
+ */
+public class ChangeLog {
+    /** The modelType of changes to Persons */
+    static public final String PERSON_TYPE = "person";
+    /** The modelType of changes to Events */
+    static public final String EVENT_TYPE = "event";
+
+    /** The database the changelog is in */
+    private Database database;
+
+    /**
+     * Creates a ChangeLog with a given database
+     *
+     * @param database is the database to use
+     */
+    public ChangeLog(Database database) {
+        this.database = database;
+    }
+
+    /**
+     * Returns the latest version of any change for a user
+     *
+     * @param username is the username of the user
+     * @return the latest version, or the user's horizon if there are no changes
+     * @throws DatabaseException when a database error occurs
+     */
+    public long getVersion(String username) throws DatabaseException {
+        String sqlStr = "select max(version) from changelog where associatedUsername == ?";
+        PreparedStatement statement = this.database.prepareStatement(sqlStr);
+        try {
+            statement.setString(1, username);
+        } catch (SQLException err) {
+            throw new DatabaseException(err);
+        }
+        ArrayList<Long> versions = this.database.query(statement, (result) -> result.getLong(1));
+        long version = versions.size() == 0 ? 0 : versions.get(0);
+        return Math.max(version, this.getHorizon(username));
+    }
+
+    /**
+     * Returns the oldest version clients can sync from for a user (older
+     * deletions may have been compacted away)
+     *
+     * @param username is the username of the user
+     * @return the horizon, which is 0 if nothing was compacted
+     * @throws DatabaseException when a database error occurs
+     */
+    public long getHorizon(String username) throws DatabaseException {
+        String sqlStr = "select version from changelog_horizon where associatedUsername == ?";
+        PreparedStatement statement = this.database.prepareStatement(sqlStr);
+        try {
+            statement.setString(1, username);
+        } catch (SQLException err) {
+            throw new DatabaseException(err);
+        }
+        ArrayList<Long> horizons = this.database.query(statement, (result) -> result.getLong(1));
+        return horizons.size() == 0 ? 0 : horizons.get(0);
+    }
+
+    /**
+     * Returns the IDs of every model of one type that changed for a user after a version
+     *
+     * @param username is the username of the user
+     * @param modelType is the type of model (PERSON_TYPE or EVENT_TYPE)
+     * @param sinceVersion is the version to look after
+     * @return the IDs of the changed models (each only once)
+     * @throws DatabaseException when a database error occurs
+     */
+    public String[] getChangedIDs(String username, String modelType, long sinceVersion) throws DatabaseException {
+        String sqlStr = "select distinct modelID from changelog where associatedUsername == ? and version > ? and modelType == ?";
+        PreparedStatement statement = this.database.prepareStatement(sqlStr);
+        try {
+            statement.setString(1, username);
+            statement.setLong(2, sinceVersion);
+            statement.setString(3, modelType);
+        } catch (SQLException err) {
+            throw new DatabaseException(err);
+        }
+        ArrayList<String> modelIDs = this.database.query(statement, (result) -> result.getString(1));
+        return modelIDs.toArray(new String[modelIDs.size()]);
+    }
+
+    /**
+     * Deletes (some) changes that have a newer change for the same model and user
+     *
+     * @param limit is the maximum number of changes to delete
+     * @return the number of changes deleted
+     * @throws DatabaseException when a database error occurs
+     */
+    public int deleteSuperseded(int limit) throws DatabaseException {
+        String sqlStr =
+            "delete from changelog where version in (\n" +
+            "    select version from changelog as old\n" +
+            "    where exists (\n" +
+            "        select 1 from changelog as new\n" +
+            "        where new.modelType == old.modelType and new.modelID == old.modelID\n" +
+            "            and new.associatedUsername == old.associatedUsername and new.version > old.version\n" +
+            "    )\n" +
+            "    limit ?\n" +
+            ")";
+        PreparedStatement statement = this.database.prepareStatement(sqlStr);
+        try {
+            statement.setInt(1, limit);
+        } catch (SQLException err) {
+            throw new DatabaseException(err);
+        }
+        return this.database.update(statement);
+    }
+
+    /**
+     * Deletes (some) deletions that are older than a given time, moving each
+     * affected user's horizon up past them
+     *
+     * @param changedBefore is the time (in epoch milliseconds) deletions must be older than
+     * @param limit is the maximum number of deletions to delete
+     * @return the number of deletions deleted
+     * @throws DatabaseException when a database error occurs
+     */
+    public int deleteOldDeletions(long changedBefore, int limit) throws DatabaseException {
+        String oldDeletionsSqlStr =
+            "select version, associatedUsername from changelog where isDeleted == 1 and changedAt < ? order by version limit ?";
+
+        // horizons first, while the deletions are still there to find
+        String horizonSqlStr =
+            "insert into changelog_horizon (associatedUsername, version)\n" +
+            "select associatedUsername, max(version) from (" + oldDeletionsSqlStr + ") where true group by associatedUsername\n" +
+            "on conflict (associatedUsername) do update set version = max(version, excluded.version)";
+        PreparedStatement horizonStatement = this.database.prepareStatement(horizonSqlStr);
+        String deleteSqlStr = "delete from changelog where version in (select version from (" + oldDeletionsSqlStr + "))";
+        PreparedStatement deleteStatement = this.database.prepareStatement(deleteSqlStr);
+        try {
+            horizonStatement.setLong(1, changedBefore);
+            horizonStatement.setInt(2, limit);
+            deleteStatement.setLong(1, changedBefore);
+            deleteStatement.setInt(2, limit);
+        } catch (SQLException err) {
+            throw new DatabaseException(err);
+        }
+        this.database.update(horizonStatement);
+        return this.database.update(deleteStatement);
+    }
+
+    /**
+     * Records changes to some models, reading who they belong to from their
+     * table. Changes must be committed or rolled back after calling this function.
+     *
+     * @param modelType is the type of model (PERSON_TYPE or EVENT_TYPE, which are also table names)
+     * @param idColumn is the primary key column of the model's table
+     * @param modelIDs is the IDs of the models that changed
+     * @param isDeleted indicates if the models are being deleted (or might no longer belong to their user)
+     * @throws DatabaseException when a database error occurs
+     */
+    void record(String modelType, String idColumn, String[] modelIDs, boolean isDeleted) throws DatabaseException {
+        if (modelIDs.length == 0) {
+            return;
+        }
+
+        StringBuilder sqlStr = new StringBuilder();
+        sqlStr.append("insert into changelog (associatedUsername, modelType, modelID, isDeleted)\n");
+        sqlStr.append("select associatedUsername, ?, " + idColumn + ", ? from " + modelType + " where " + idColumn + " in (");
+        for (int idIdx = 0; idIdx < modelIDs.length; ++idIdx) {
+            if (idIdx != 0) {
+                sqlStr.append(", ");
+            }
+            sqlStr.append("?");
+        }
+        sqlStr.append(")");
+
+        PreparedStatement statement = this.database.prepareStatement(sqlStr.toString());
+        try {
+            statement.setString(1, modelType);
+            statement.setInt(2, isDeleted ? 1 : 0);
+            for (int idIdx = 0; idIdx < modelIDs.length; ++idIdx) {
+                statement.setString(idIdx + 3, modelIDs[idIdx]);
+            }
+        } catch (SQLException err) {
+            throw new DatabaseException(err);
+        }
+        this.database.update(statement);
+    }
+
+    /**
+     * Forgets every change to one type of model (ex. when its table is
+     * cleared). Every user that had changes gets a horizon past them, so their
+     * clients know to sync everything again. Like Database.reset(), the clear
+     * takes up a version itself, so clients that saw the last change before
+     * it are behind the horizon too.
+     *
+     * @param modelType is the type of model (PERSON_TYPE or EVENT_TYPE)
+     * @throws DatabaseException when a database error occurs
+     */
+    void clear(String modelType) throws DatabaseException {
+        String horizonSqlStr =
+            "insert into changelog_horizon (associatedUsername, version)\n" +
+            "select associatedUsername, (select coalesce(max(seq), 0) + 1 from sqlite_sequence where name == 'changelog')\n" +
+            "from changelog where modelType == ? group by associatedUsername\n" +
+            "on conflict (associatedUsername) do update set version = max(version, excluded.version)";
+        PreparedStatement horizonStatement = this.database.prepareStatement(horizonSqlStr);
+        try {
+            horizonStatement.setString(1, modelType);
+        } catch (SQLException err) {
+            throw new DatabaseException(err);
+        }
+        this.database.update(horizonStatement);
+        // (so the next change comes after the horizon)
+        this.database.update("update sqlite_sequence set seq = seq + 1 where name == 'changelog'");
+
+        String deleteSqlStr = "delete from changelog where modelType == ?";
+        PreparedStatement deleteStatement = this.database.prepareStatement(deleteSqlStr);
+        try {
+            deleteStatement.setString(1, modelType);
+        } catch (SQLException err) {
+            throw new DatabaseException(err);
+        }
+        this.database.update(deleteStatement);
+    }
+}
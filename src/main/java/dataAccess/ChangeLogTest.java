@@ -0,0 +1,223 @@
+package dataAccess;
+
+import org.junit.jupiter.api.*;
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.Arrays;
+
+import models.Person;
+import models.User;
+
+/**
+ * Contains the test cases that ensure the ChangeLog class runs correctly
+ */
+@TestMethodOrder(MethodOrderer.OrderAnnotation.class)
+public class ChangeLogTest {
+    /**
+     * Runs fail(), but shows a traceback to the call of this method, instead
+     * of where the error was thrown
+     *
+     * @param err is the error that was thrown
+     */
+    private void failNoTraceback(Exception err) {
+        fail(err.getMessage());
+    }
+
+    /**
+     * Signals the Database class to use the testing database for testing
+     */
+    @BeforeAll
+    static public void useTestDB() {
+        Database.useTestDB();
+    }
+
+    /**
+     * Ensures a fresh database (with a base user and two persons) before each test
+     *
+     * @throws DatabaseException whenever reset() does
+     * @throws BadAccessException whenever the accessors do
+     */
+    @BeforeEach
+    public void resetDatabase() throws DatabaseException, BadAccessException {
+        try (Database database = new Database()) {
+            database.reset();
+            User[] users = {
+                new User("baseUser", "password", "base@email.test", "Base", "User", "m", null),
+                new User("otherUser", "password", "other@email.test", "Other", "User", "f", null),
+            };
+            new UserAccessor(database).create(users);
+            Person[] persons = {
+                new Person("person1", "baseUser", "Person", "One", "m"),
+                new Person("person2", "baseUser", "Person", "Two", "f"),
+            };
+            new PersonAccessor(database).create(persons);
+            database.commit();
+        }
+    }
+
+    /**
+     * Returns the personIDs that changed for a user since a version, sorted
+     *
+     * @param changeLog is the ChangeLog to check
+     * @param username is the username of the user
+     * @param sinceVersion is the version to look after
+     * @return the sorted personIDs
+     * @throws DatabaseException whenever getChangedIDs() does
+     */
+    private String[] getChangedPersonIDs(ChangeLog changeLog, String username, long sinceVersion) throws DatabaseException {
+        String[] changedIDs = changeLog.getChangedIDs(username, ChangeLog.PERSON_TYPE, sinceVersion);
+        Arrays.sort(changedIDs);
+        return changedIDs;
+    }
+
+    /**
+     * Ensures creates, updates, and deletes are all recorded, with increasing versions
+     */
+    @Test
+    @DisplayName("Record changes test")
+    public void testRecordChanges() {
+        try (Database database = new Database()) {
+            ChangeLog changeLog = new ChangeLog(database);
+            PersonAccessor personAcc = new PersonAccessor(database);
+            long createdVersion = changeLog.getVersion("baseUser");
+            assertTrue(createdVersion > 0);
+            assertArrayEquals(new String[]{"person1", "person2"}, this.getChangedPersonIDs(changeLog, "baseUser", 0));
+            assertEquals(0, changeLog.getChangedIDs("baseUser", ChangeLog.EVENT_TYPE, 0).length);
+            // (resets leave a horizon behind, which users without changes are at)
+            assertEquals(changeLog.getHorizon("otherUser"), changeLog.getVersion("otherUser"));
+
+            Person[] updatedPersons = {new Person("person1", "baseUser", "Person", "Uno", "m")};
+            personAcc.update(updatedPersons);
+            long updatedVersion = changeLog.getVersion("baseUser");
+            assertTrue(updatedVersion > createdVersion);
+            assertArrayEquals(new String[]{"person1"}, this.getChangedPersonIDs(changeLog, "baseUser", createdVersion));
+
+            Person[] deletedPersons = {new Person("person2", "baseUser", "Person", "Two", "f")};
+            personAcc.delete(deletedPersons);
+            assertTrue(changeLog.getVersion("baseUser") > updatedVersion);
+            assertArrayEquals(new String[]{"person2"}, this.getChangedPersonIDs(changeLog, "baseUser", updatedVersion));
+            assertEquals(0, changeLog.getChangedIDs("baseUser", ChangeLog.PERSON_TYPE, changeLog.getVersion("baseUser")).length);
+        } catch (DatabaseException | BadAccessException err) {
+            this.failNoTraceback(err);
+        }
+    }
+
+    /**
+     * Ensures moving a Person to another user counts as a change for both users
+     */
+    @Test
+    @DisplayName("Record changes test -- moved between users")
+    public void testRecordMovedChanges() {
+        try (Database database = new Database()) {
+            ChangeLog changeLog = new ChangeLog(database);
+            long baseVersion = changeLog.getVersion("baseUser");
+
+            Person[] movedPersons = {new Person("person1", "otherUser", "Person", "One", "m")};
+            new PersonAccessor(database).update(movedPersons);
+            assertArrayEquals(new String[]{"person1"}, this.getChangedPersonIDs(changeLog, "baseUser", baseVersion));
+            assertArrayEquals(new String[]{"person1"}, this.getChangedPersonIDs(changeLog, "otherUser", 0));
+        } catch (DatabaseException | BadAccessException err) {
+            this.failNoTraceback(err);
+        }
+    }
+
+    /**
+     * Ensures compaction keeps the latest change for each model, and moves the
+     * horizon past deletions it drops
+     */
+    @Test
+    @DisplayName("Compact changes test")
+    public void testCompactChanges() {
+        try (Database database = new Database()) {
+            ChangeLog changeLog = new ChangeLog(database);
+            long baseHorizon = changeLog.getHorizon("baseUser");
+            long otherHorizon = changeLog.getHorizon("otherUser");
+            PersonAccessor personAcc = new PersonAccessor(database);
+            for (int updateNum = 0; updateNum < 3; ++updateNum) {
+                Person[] updatedPersons = {new Person("person1", "baseUser", "Person", "Update " + updateNum, "m")};
+                personAcc.update(updatedPersons);
+            }
+            long version = changeLog.getVersion("baseUser");
+
+            // 2 creates + 3 * 2 for the updates, but only the latest for each person is needed
+            assertEquals(2 + 3 * 2 - 2, changeLog.deleteSuperseded(100));
+            assertEquals(0, changeLog.deleteSuperseded(100));
+            assertEquals(version, changeLog.getVersion("baseUser"));
+            assertArrayEquals(new String[]{"person1", "person2"}, this.getChangedPersonIDs(changeLog, "baseUser", 0));
+
+            // nothing has been deleted (yet)
+            assertEquals(0, changeLog.deleteOldDeletions(System.currentTimeMillis() + 1000, 100));
+            assertEquals(baseHorizon, changeLog.getHorizon("baseUser"));
+
+            Person[] deletedPersons = {new Person("person2", "baseUser", "Person", "Two", "f")};
+            personAcc.delete(deletedPersons);
+            long deletedVersion = changeLog.getVersion("baseUser");
+            // too new to compact
+            assertEquals(0, changeLog.deleteOldDeletions(System.currentTimeMillis() - 60000, 100));
+            assertEquals(1, changeLog.deleteSuperseded(100));
+            assertEquals(1, changeLog.deleteOldDeletions(System.currentTimeMillis() + 1000, 100));
+            assertEquals(deletedVersion, changeLog.getHorizon("baseUser"));
+            assertEquals(deletedVersion, changeLog.getVersion("baseUser"));
+            assertEquals(otherHorizon, changeLog.getHorizon("otherUser"));
+        } catch (DatabaseException | BadAccessException err) {
+            this.failNoTraceback(err);
+        }
+    }
+
+    /**
+     * Ensures clearing a table forgets its changes, but leaves a horizon so
+     * clients know to sync everything again
+     */
+    @Test
+    @DisplayName("Clear changes test")
+    public void testClearChanges() {
+        try (Database database = new Database()) {
+            ChangeLog changeLog = new ChangeLog(database);
+            long version = changeLog.getVersion("baseUser");
+            long baseHorizon = changeLog.getHorizon("baseUser");
+            long otherHorizon = changeLog.getHorizon("otherUser");
+
+            new EventAccessor(database).clear();
+            assertEquals(baseHorizon, changeLog.getHorizon("baseUser"));
+            new PersonAccessor(database).clear();
+            assertEquals(0, changeLog.getChangedIDs("baseUser", ChangeLog.PERSON_TYPE, 0).length);
+            assertTrue(changeLog.getHorizon("baseUser") > version);
+            assertEquals(otherHorizon, changeLog.getHorizon("otherUser"));
+
+            // versions never go backwards, even with the log empty
+            Person[] persons = {new Person("person3", "baseUser", "Person", "Three", "m")};
+            new PersonAccessor(database).create(persons);
+            assertTrue(changeLog.getVersion("baseUser") > version);
+            assertArrayEquals(new String[]{"person3"}, this.getChangedPersonIDs(changeLog, "baseUser", changeLog.getHorizon("baseUser")));
+        } catch (DatabaseException | BadAccessException err) {
+            this.failNoTraceback(err);
+        }
+    }
+
+    /**
+     * Ensures versions keep going up after a reset, with every user that had
+     * changes (or existed) getting a horizon past the old versions
+     */
+    @Test
+    @DisplayName("Reset changes test")
+    public void testResetChanges() {
+        try (Database database = new Database()) {
+            ChangeLog changeLog = new ChangeLog(database);
+            long version = changeLog.getVersion("baseUser");
+
+            database.reset();
+            assertEquals(0, changeLog.getChangedIDs("baseUser", ChangeLog.PERSON_TYPE, 0).length);
+            assertTrue(changeLog.getHorizon("baseUser") > version);
+            assertTrue(changeLog.getHorizon("otherUser") > version);
+            assertEquals(0, changeLog.getHorizon("newUser"));
+
+            User[] users = {new User("baseUser", "password", "base@email.test", "Base", "User", "m", null)};
+            new UserAccessor(database).create(users);
+            Person[] persons = {new Person("person1", "baseUser", "Person", "One", "m")};
+            new PersonAccessor(database).create(persons);
+            assertTrue(changeLog.getVersion("baseUser") > changeLog.getHorizon("baseUser"));
+        } catch (DatabaseException | BadAccessException err) {
+            this.failNoTraceback(err);
+        }
+    }
+}
@@ -11,6 +11,8 @@ import org.sqlite.SQLiteConfig;
  * as possible) about directly handling JDBC data types
  */
 public class Database implements AutoCloseable {
+    /** How long (in milliseconds) to wait for another connection's lock before giving up */
+    static private final int BUSY_TIMEOUT_MS = 10000;
     /** Indicates if the testing database should be used or not */
     static private boolean shouldUseTestDB;
 
@@ -22,6 +24,8 @@ public class Database implements AutoCloseable {
     private Connection connection;
     /** A list of PreparedStatements that need to be closed */
     private ArrayList<PreparedStatement> openStatements;
+    /** Callbacks to run once the current transaction is committed or rolled back */
+    private ArrayList<Runnable> transactionEndCallbacks;
 
     /** 
      * Creates a database with no connection at first. The connection will be
@@ -30,6 +34,7 @@ public class Database implements AutoCloseable {
     public Database() {
         this.connection = null;
         this.openStatements = new ArrayList<>();
+        this.transactionEndCallbacks = new ArrayList<>();
     }
 
     /**
@@ -63,12 +68,17 @@ public class Database implements AutoCloseable {
                 this.connection = null;
             } catch (SQLException err) {
                 throw new DatabaseException(err);
+            } finally {
+                this.runTransactionEndCallbacks();
             }
         }
     }
 
     /**
-     * Clears and resets all tables in the database, rolling back any current changes
+     * Clears and resets all tables in the database, rolling back any current changes.
+     * Changelog versions keep counting up from where they were (clients remember
+     * them), and every user that had changes gets a horizon past the old ones,
+     * so their clients know to sync everything again.
      * 
      * @throws DatabaseException when a SQLException occurs
      */
@@ -80,12 +90,31 @@ public class Database implements AutoCloseable {
 
         // generate statements
         // a little ugly, but each Statement can only execute one sql statement
+        String[] changeLogStatements = {
+            // every user that could have synced gets a horizon past the last version
+            // (the reset itself takes up a version, so clients that saw the last one sync everything too)
+            "insert into changelog_horizon (associatedUsername, version)\n" +
+            "select username, 0 from (select associatedUsername as username from changelog union select username from user) where true\n" +
+            "on conflict (associatedUsername) do nothing",
+
+            "update changelog_horizon set version = max(version, (\n" +
+            "    select coalesce(max(seq), 0) + 1 from sqlite_sequence where name == 'changelog'\n" +
+            "))",
+        };
         String[] statements = {
-            // clear tables
+            // clear tables (except changelog_horizon, which outlives resets)
             "drop table if exists user",
             "drop table if exists person",
             "drop table if exists event",
+            "drop table if exists event_location",
+            "drop table if exists person_name",
             "drop table if exists authtoken",
+            "drop table if exists changelog",
+            "drop table if exists user_stats",
+            "drop table if exists user_stats_fresh",
+            "drop table if exists event_cluster",
+            "drop table if exists person_side",
+            "drop table if exists person_side_fresh",
             "drop table if exists enum_gender",
 
             // create tables
@@ -143,8 +172,92 @@ public class Database implements AutoCloseable {
             "create table authtoken(\n" + 
             "    authtoken 	text	not null	primary key,        \n" + 
             "    username	text	not null,                       \n" + 
+            "    createdAt	integer	not null    default (strftime('%s', 'now') * 1000),  \n" + 
+            "    lastUsed	integer	not null    default (strftime('%s', 'now') * 1000),  \n" + 
             "    foreign key(username)	references user(username)   \n" + 
             ")\n",
+
+            // the sweeper looks for expired tokens by these
+            "create index authtoken_createdAt on authtoken(createdAt)",
+            "create index authtoken_lastUsed on authtoken(lastUsed)",
+
+            // pages of a user's persons/events are found by these
+            "create index person_associatedUsername_personID on person(associatedUsername, personID)",
+            "create index event_associatedUsername_eventID on event(associatedUsername, eventID)",
+
+            // timelines read a user's events by year (and type) from this
+            // (types match in any case, so the index compares them that way too)
+            "create index event_associatedUsername_year_eventType on event(associatedUsername, year, eventType collate nocase)",
+
+            // name searches go through this (keyed by the person's rowid)
+            "create virtual table person_name using fts5(\n" + 
+            "    associatedUsername, firstName, lastName,                    \n" + 
+            "    prefix='2 3', tokenize='unicode61 remove_diacritics 2'      \n" + 
+            ")\n",
+
+            // events in a map viewport are found by this (keyed by the event's rowid)
+            "create virtual table event_location using rtree(id, minLatitude, maxLatitude, minLongitude, maxLongitude)",
+
+            "create table changelog(\n" + 
+            "    version             integer not null    primary key autoincrement,  \n" + 
+            "    associatedUsername  text    not null,                               \n" + 
+            "    modelType           text    not null,                               \n" + 
+            "    modelID             text    not null,                               \n" + 
+            "    isDeleted           integer not null,                               \n" + 
+            "    changedAt           integer not null    default (strftime('%s', 'now') * 1000)  \n" + 
+            ")\n",
+
+            // syncs look up changes by user and version, and compaction by model
+            "create index changelog_associatedUsername_version on changelog(associatedUsername, version)",
+            "create index changelog_modelID on changelog(modelID, modelType, associatedUsername, version)",
+            "create index changelog_deletion_changedAt on changelog(changedAt) where isDeleted == 1",
+
+            "create table if not exists changelog_horizon(\n" + 
+            "    associatedUsername  text    not null    primary key,    \n" + 
+            "    version             integer not null                    \n" + 
+            ")\n",
+
+            // versions carry on after the horizons (sqlite_sequence is made with the changelog table)
+            "insert into sqlite_sequence (name, seq) select 'changelog', coalesce(max(version), 0) from changelog_horizon",
+
+            "create table user_stats(\n" + 
+            "    associatedUsername  text    not null,   \n" + 
+            "    statType            text    not null,   \n" + 
+            "    statKey             text    not null,   \n" + 
+            "    count               integer not null,   \n" + 
+            "    primary key(associatedUsername, statType, statKey)  \n" + 
+            ") without rowid\n",
+
+            // users whose generation counts in user_stats are up to date
+            "create table user_stats_fresh(\n" + 
+            "    associatedUsername  text    not null    primary key \n" + 
+            ")\n",
+
+            // each user's Events, counted in the cells of a quadtree over the map (see EventClusters)
+            "create table event_cluster(\n" + 
+            "    associatedUsername  text    not null,   \n" + 
+            "    level               integer not null,   \n" + 
+            "    cellX               integer not null,   \n" + 
+            "    cellY               integer not null,   \n" + 
+            "    eventType           text    not null,   \n" + 
+            "    count               integer not null,   \n" + 
+            "    sumLatitude         real    not null,   \n" + 
+            "    sumLongitude        real    not null,   \n" + 
+            "    primary key(associatedUsername, level, cellX, cellY, eventType) \n" + 
+            ") without rowid\n",
+
+            // each user's ancestors, tagged with their side of the family (see PersonSides)
+            "create table person_side(\n" + 
+            "    associatedUsername  text    not null,   \n" + 
+            "    sides               integer not null,   \n" + 
+            "    personID            text    not null,   \n" + 
+            "    primary key(associatedUsername, sides, personID)    \n" + 
+            ") without rowid\n",
+
+            // users whose tags in person_side are up to date
+            "create table person_side_fresh(\n" + 
+            "    associatedUsername  text    not null    primary key \n" + 
+            ")\n",
         };
 
         // execute sql code
@@ -152,6 +265,13 @@ public class Database implements AutoCloseable {
         // ignore foreign keys to allow dropping tables
         try (Connection connection = this.createConnection(false)) {
             this.connection = connection;
+            // (older databases don't have a changelog yet)
+            if (this.query("select 1 from sqlite_master where type == 'table' and name == 'changelog_horizon'", (result) -> null).size() > 0) {
+                for (String statementStr : changeLogStatements) {
+                    PreparedStatement statement = this.prepareStatement(statementStr);
+                    this.execute(statement);
+                }
+            }
             for (String statementStr : statements) {
                 PreparedStatement statement = this.prepareStatement(statementStr);
                 this.execute(statement);
@@ -161,6 +281,12 @@ public class Database implements AutoCloseable {
             throw new DatabaseException(err);
         } finally {
             this.connection = oldConnection;
+            // every user and auth token is gone now
+            AuthTokenCache.invalidateAll();
+            FamilyTreeCache.invalidateAll();
+            SignedAuthTokens.revokeAll();
+            // (and values from the old data shouldn't keep taking up the dictionary)
+            StringDictionary.clear();
         }
     }
 
@@ -336,6 +462,8 @@ public class Database implements AutoCloseable {
                 this.connection.commit();
             } catch (SQLException err) {
                 throw new DatabaseException(err);
+            } finally {
+                this.runTransactionEndCallbacks();
             }
         } else {
             throw new DatabaseException("Cannot commit(); No connection was opened");
@@ -353,12 +481,35 @@ public class Database implements AutoCloseable {
                 this.connection.rollback();
             } catch (SQLException err) {
                 throw new DatabaseException(err);
+            } finally {
+                this.runTransactionEndCallbacks();
             }
         } else {
             throw new DatabaseException("Cannot rollback(); No connection was opened");
         }
     }
 
+    /**
+     * Registers a callback to run once the current transaction is over, whether
+     * it was committed or rolled back (ex. to invalidate cached data)
+     * 
+     * @param callback is the callback to run
+     */
+    public void onTransactionEnd(Runnable callback) {
+        this.transactionEndCallbacks.add(callback);
+    }
+
+    /**
+     * Runs (and forgets) the callbacks registered with onTransactionEnd()
+     */
+    private void runTransactionEndCallbacks() {
+        ArrayList<Runnable> callbacks = this.transactionEndCallbacks;
+        this.transactionEndCallbacks = new ArrayList<>();
+        for (Runnable callback : callbacks) {
+            callback.run();
+        }
+    }
+
     /**
      * Creates a new connection object and stores it as this.connection.
      * Creating the connection lazily (as opposed to in the constructor)
@@ -388,6 +539,9 @@ public class Database implements AutoCloseable {
         }
         SQLiteConfig config = new SQLiteConfig();
         config.enforceForeignKeys(enforceForeignKeys);
+        // background jobs (like async fills) write on their own connections,
+        // so wait for their locks instead of failing immediately
+        config.setBusyTimeout(Database.BUSY_TIMEOUT_MS);
         Connection connection = DriverManager.getConnection(DATABASE_PATH, config.toProperties());
         // allows greater control of the transaction
         // (specifically, commit() and rollback())
@@ -2,7 +2,15 @@ pragma foreign_keys = off;
 drop table if exists user;
 drop table if exists person;
 drop table if exists event;
+drop table if exists event_location;
+drop table if exists person_name;
 drop table if exists authtoken;
+drop table if exists changelog;
+drop table if exists user_stats;
+drop table if exists user_stats_fresh;
+drop table if exists event_cluster;
+drop table if exists person_side;
+drop table if exists person_side_fresh;
 drop table if exists enum_gender;
 pragma foreign_keys = on;
 
@@ -59,5 +67,90 @@ create table event(
 create table authtoken(
 	authtoken 	text	not null	primary key,
 	username	text	not null,
+	createdAt	integer	not null	default (strftime('%s', 'now') * 1000),
+	lastUsed	integer	not null	default (strftime('%s', 'now') * 1000),
 	foreign key(username)	references user(username)
 );
+
+-- the sweeper looks for expired tokens by these
+create index authtoken_createdAt on authtoken(createdAt);
+create index authtoken_lastUsed on authtoken(lastUsed);
+
+-- pages of a user's persons/events are found by these
+create index person_associatedUsername_personID on person(associatedUsername, personID);
+create index event_associatedUsername_eventID on event(associatedUsername, eventID);
+
+-- timelines read a user's events by year (and type) from this
+-- (types match in any case, so the index compares them that way too)
+create index event_associatedUsername_year_eventType on event(associatedUsername, year, eventType collate nocase);
+
+-- name searches go through this (keyed by the person's rowid)
+create virtual table person_name using fts5(
+	associatedUsername, firstName, lastName,
+	prefix='2 3', tokenize='unicode61 remove_diacritics 2'
+);
+
+-- events in a map viewport are found by this (keyed by the event's rowid)
+create virtual table event_location using rtree(id, minLatitude, maxLatitude, minLongitude, maxLongitude);
+
+create table changelog(
+	version				integer	not null	primary key autoincrement,
+	associatedUsername	text	not null,
+	modelType			text	not null,
+	modelID				text	not null,
+	isDeleted			integer	not null,
+	changedAt			integer	not null	default (strftime('%s', 'now') * 1000)
+);
+
+-- syncs look up changes by user and version, and compaction by model
+create index changelog_associatedUsername_version on changelog(associatedUsername, version);
+create index changelog_modelID on changelog(modelID, modelType, associatedUsername, version);
+create index changelog_deletion_changedAt on changelog(changedAt) where isDeleted == 1;
+
+-- changelog_horizon outlives resets; Database.reset() first moves every
+-- user's horizon up to the last version, and versions carry on after it
+create table if not exists changelog_horizon(
+	associatedUsername	text	not null	primary key,
+	version				integer	not null
+);
+
+insert into sqlite_sequence (name, seq) select 'changelog', coalesce(max(version), 0) from changelog_horizon;
+
+create table user_stats(
+	associatedUsername	text	not null,
+	statType			text	not null,
+	statKey				text	not null,
+	count				integer	not null,
+	primary key(associatedUsername, statType, statKey)
+) without rowid;
+
+-- users whose generation counts in user_stats are up to date
+create table user_stats_fresh(
+	associatedUsername	text	not null	primary key
+);
+
+-- each user's Events, counted in the cells of a quadtree over the map (see EventClusters)
+create table event_cluster(
+	associatedUsername	text	not null,
+	level				integer	not null,
+	cellX				integer	not null,
+	cellY				integer	not null,
+	eventType			text	not null,
+	count				integer	not null,
+	sumLatitude			real	not null,
+	sumLongitude		real	not null,
+	primary key(associatedUsername, level, cellX, cellY, eventType)
+) without rowid;
+
+-- each user's ancestors, tagged with their side of the family (see PersonSides)
+create table person_side(
+	associatedUsername	text	not null,
+	sides				integer	not null,
+	personID			text	not null,
+	primary key(associatedUsername, sides, personID)
+) without rowid;
+
+-- users whose tags in person_side are up to date
+create table person_side_fresh(
+	associatedUsername	text	not null	primary key
+);
@@ -4,6 +4,8 @@ import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
 
 import models.Event;
 
@@ -12,6 +14,16 @@ import models.Event;
  * It can create, delete, update, and find Events using a variety of methods.
  */
 public class EventAccessor extends Accessor<Event> {
+    /** The columns of the event table, in order (they match the names of Event's fields) */
+    static public final String[] COLUMNS = {"eventID", "associatedUsername", "personID", "latitude", "longitude", "country", "city", "eventType", "year"};
+
+    /** Where changes to Events are recorded */
+    private ChangeLog changeLog;
+    /** Where the users' Event counts are kept */
+    private UserStats userStats;
+    /** Where the users' Events are clustered by map cell */
+    private EventClusters eventClusters;
+
     /**
      * Creates an EventAccessor with a given database
      * 
@@ -19,6 +31,9 @@ public class EventAccessor extends Accessor<Event> {
      */
     public EventAccessor(Database database) {
         super(database);
+        this.changeLog = new ChangeLog(database);
+        this.userStats = new UserStats(database);
+        this.eventClusters = new EventClusters(database);
     }
 
     /**
@@ -47,6 +62,44 @@ public class EventAccessor extends Accessor<Event> {
         }
     }
 
+    /**
+     * Returns the Events matching some Event IDs that belong to a user, only
+     * reading some of their columns. The IDs are looked up in chunks, so any
+     * number of them can be given.
+     * 
+     * @param username is the username of the user the Events must belong to
+     * @param eventIDs is the Event IDs to query by
+     * @param columns is the columns (from COLUMNS) to read, or null for all of them (eventID is always read)
+     * @return the matching (partial) Events, in the same order as eventIDs, with null for IDs that weren't found for the user
+     * @throws DatabaseException when a database error occurs
+     */
+    public Event[] getByIDsForUser(String username, String[] eventIDs, String[] columns) throws DatabaseException {
+        String[] selectedColumns = this.selectColumns(EventAccessor.COLUMNS, columns);
+        HashMap<String, Event> foundEvents = new HashMap<>();
+        for (int chunkStart = 0; chunkStart < eventIDs.length; chunkStart += Accessor.MAX_IDS_PER_QUERY) {
+            int chunkSize = Math.min(Accessor.MAX_IDS_PER_QUERY, eventIDs.length - chunkStart);
+            String sqlStr = "select " + String.join(", ", selectedColumns) + " from event where associatedUsername == ? and eventID in (" + Accessor.createPlaceholders(chunkSize) + ")";
+            PreparedStatement statement = this.database.prepareStatement(sqlStr);
+            try {
+                statement.setString(1, username);
+                for (int idIdx = 0; idIdx < chunkSize; ++idIdx) {
+                    statement.setString(idIdx + 2, eventIDs[chunkStart + idIdx]);
+                }
+            } catch (SQLException err) {
+                throw new DatabaseException(err);
+            }
+            for (Event event : this.database.query(statement, (result) -> this.mapProjectedQueryResult(result, selectedColumns))) {
+                foundEvents.put(event.getEventID(), event);
+            }
+        }
+
+        Event[] events = new Event[eventIDs.length];
+        for (int idIdx = 0; idIdx < eventIDs.length; ++idIdx) {
+            events[idIdx] = foundEvents.get(eventIDs[idIdx]);
+        }
+        return events;
+    }
+
     /**
      * Returns all Events in the database
      * 
@@ -63,14 +116,115 @@ public class EventAccessor extends Accessor<Event> {
      * Returns all Events in the database that belong to a user
      * 
      * @param username is the username of the user whose events should be returned
-     * @return an array of events belonging to the user
+     * @return an array of Events belonging to the user
      * @throws DatabaseException when a database error occurs
      */
     public Event[] getAllForUser(String username) throws DatabaseException {
-        String sqlStr = "select * from event where associatedUsername == ?";
+        return this.getAllForUser(username, null);
+    }
+
+    /**
+     * Returns all Events in the database that belong to a user, only reading
+     * some of their columns. The other properties are left null (or 0).
+     * 
+     * @param username is the username of the user whose events should be returned
+     * @param columns is the columns (from COLUMNS) to read, or null for all of them (eventID is always read)
+     * @return an array of (partial) Events belonging to the user
+     * @throws DatabaseException when a database error occurs
+     */
+    public Event[] getAllForUser(String username, String[] columns) throws DatabaseException {
+        String[] selectedColumns = this.selectColumns(EventAccessor.COLUMNS, columns);
+        String sqlStr = "select " + String.join(", ", selectedColumns) + " from event where associatedUsername == ?";
+        PreparedStatement statement = this.database.prepareStatement(sqlStr);
+        try {
+            statement.setString(1, username);
+        } catch (SQLException err) {
+            throw new DatabaseException(err);
+        }
+        ArrayList<Event> events = this.database.query(statement, (result) -> this.mapProjectedQueryResult(result, selectedColumns));
+        return events.toArray(new Event[events.size()]);
+    }
+
+    /**
+     * Returns a page of the Events that belong to a user, in eventID order.
+     * Pages are found by eventID (keyset pagination), so every page costs
+     * the same no matter how deep into the list it is.
+     * 
+     * @param username is the username of the user whose events should be returned
+     * @param afterEventID is the eventID of the last Event on the previous page, or null for the first page
+     * @param limit is the maximum number of Events to return, or a negative number for no limit
+     * @param columns is the columns (from COLUMNS) to read, or null for all of them (eventID is always read)
+     * @return an array of (at most limit) events belonging to the user
+     * @throws DatabaseException when a database error occurs
+     */
+    public Event[] getPageForUser(String username, String afterEventID, int limit, String[] columns) throws DatabaseException {
+        String[] selectedColumns = this.selectColumns(EventAccessor.COLUMNS, columns);
+        String sqlStr = "select " + String.join(", ", selectedColumns) + " from event where associatedUsername == ? and eventID > ? order by eventID limit ?";
+        PreparedStatement statement = this.database.prepareStatement(sqlStr);
+        try {
+            statement.setString(1, username);
+            // every ID is greater than the empty string
+            statement.setString(2, afterEventID == null ? "" : afterEventID);
+            statement.setInt(3, limit);
+        } catch (SQLException err) {
+            throw new DatabaseException(err);
+        }
+        ArrayList<Event> events = this.database.query(statement, (result) -> this.mapProjectedQueryResult(result, selectedColumns));
+        return events.toArray(new Event[events.size()]);
+    }
+
+    /**
+     * Returns the Events belonging to a user that changed after a version of
+     * the ChangeLog (deleted events obviously aren't returned)
+     * 
+     * @param username is the username of the user whose events should be returned
+     * @param sinceVersion is the ChangeLog version to look after
+     * @param columns is the columns (from COLUMNS) to read, or null for all of them (eventID is always read)
+     * @return an array of the changed (partial) Events
+     * @throws DatabaseException when a database error occurs
+     */
+    public Event[] getChangedForUser(String username, long sinceVersion, String[] columns) throws DatabaseException {
+        String[] selectedColumns = this.selectColumns(EventAccessor.COLUMNS, columns);
+        String sqlStr =
+            "select " + String.join(", ", selectedColumns) + " from event\n" +
+            "where associatedUsername == ? and eventID in (\n" +
+            "    select modelID from changelog where associatedUsername == ? and version > ? and modelType == ?\n" +
+            ")";
         PreparedStatement statement = this.database.prepareStatement(sqlStr);
         try {
             statement.setString(1, username);
+            statement.setString(2, username);
+            statement.setLong(3, sinceVersion);
+            statement.setString(4, ChangeLog.EVENT_TYPE);
+        } catch (SQLException err) {
+            throw new DatabaseException(err);
+        }
+        ArrayList<Event> events = this.database.query(statement, (result) -> this.mapProjectedQueryResult(result, selectedColumns));
+        return events.toArray(new Event[events.size()]);
+    }
+
+    /**
+     * Returns the Events of every ancestor of a Person (see
+     * PersonAccessor.getAncestorsForUser()), grouped by person
+     * 
+     * @param username is the username of the user the Events must belong to
+     * @param personID is the personID of the Person whose ancestors' events should be returned
+     * @param maxDepth is the number of generations to go up (1 for just parents)
+     * @return an array of the ancestors' events
+     * @throws DatabaseException when a database error occurs
+     */
+    public Event[] getAncestorEventsForUser(String username, String personID, int maxDepth) throws DatabaseException {
+        String sqlStr =
+            PersonAccessor.ANCESTORS_CTE +
+            "select * from event\n" +
+            "where associatedUsername == ? and personID in (select personID from ancestor where generation > 0)\n" +
+            "order by personID, year";
+        PreparedStatement statement = this.database.prepareStatement(sqlStr);
+        try {
+            statement.setString(1, personID);
+            statement.setString(2, username);
+            statement.setInt(3, maxDepth);
+            statement.setString(4, username);
         } catch (SQLException err) {
             throw new DatabaseException(err);
         }
@@ -78,6 +232,169 @@ public class EventAccessor extends Accessor<Event> {
         return events.toArray(new Event[events.size()]);
     }
 
+    /**
+     * Returns the Events belonging to a user in a range of years, in year
+     * order (for timelines). The range is read straight from the
+     * (associatedUsername, year, eventType) index, so a decade of a large tree
+     * only touches that decade's events.
+     * 
+     * @param username is the username of the user whose events should be returned
+     * @param fromYear is the earliest year to return, or null for no limit
+     * @param toYear is the latest year to return, or null for no limit
+     * @param eventTypes is the types of events to return (ignoring case), or null for every type
+     * @param columns is the columns (from COLUMNS) to read, or null for all of them (eventID is always read)
+     * @return an array of the (partial) Events in the range
+     * @throws DatabaseException when a database error occurs
+     */
+    public Event[] getTimelineForUser(String username, Integer fromYear, Integer toYear, String[] eventTypes, String[] columns) throws DatabaseException {
+        String[] selectedColumns = this.selectColumns(EventAccessor.COLUMNS, columns);
+        StringBuilder sqlStr = new StringBuilder();
+        sqlStr.append("select " + String.join(", ", selectedColumns) + " from event\n");
+        sqlStr.append("where associatedUsername == ? and year between ? and ?");
+        if (eventTypes != null) {
+            sqlStr.append(" and eventType collate nocase in (" + Accessor.createPlaceholders(eventTypes.length) + ")");
+        }
+        sqlStr.append("\norder by year, eventID");
+
+        PreparedStatement statement = this.database.prepareStatement(sqlStr.toString());
+        try {
+            statement.setString(1, username);
+            statement.setInt(2, fromYear == null ? Integer.MIN_VALUE : fromYear);
+            statement.setInt(3, toYear == null ? Integer.MAX_VALUE : toYear);
+            if (eventTypes != null) {
+                for (int typeIdx = 0; typeIdx < eventTypes.length; ++typeIdx) {
+                    statement.setString(typeIdx + 4, eventTypes[typeIdx]);
+                }
+            }
+        } catch (SQLException err) {
+            throw new DatabaseException(err);
+        }
+        ArrayList<Event> events = this.database.query(statement, (result) -> this.mapProjectedQueryResult(result, selectedColumns));
+        return events.toArray(new Event[events.size()]);
+    }
+
+    /**
+     * Returns the Events belonging to a user's ancestors on some sides of the
+     * family, and/or to Persons of a gender. The sides are read from the
+     * person_side tags (see PersonSides), so the tree doesn't have to be
+     * walked to find them.
+     *
+     * @param username is the username of the user whose events should be returned
+     * @param sides is the side bits (PersonSides.FATHER_SIDE, MOTHER_SIDE, or both) to return, or 0 for any Person
+     * @param gender is the gender ("m" or "f") of the Persons to return events for, or null for either
+     * @param columns is the columns (from COLUMNS) to read, or null for all of them (eventID is always read)
+     * @return an array of the (partial) Events that match
+     * @throws DatabaseException when a database error occurs
+     */
+    public Event[] getFilteredForUser(String username, int sides, String gender, String[] columns) throws DatabaseException {
+        int[] sideTags = PersonSides.findMatchingTags(sides);
+        if (sides != 0) {
+            new PersonSides(this.database).tagIfStale(username);
+        }
+
+        String[] selectedColumns = this.selectColumns(EventAccessor.COLUMNS, columns);
+        StringBuilder sqlStr = new StringBuilder();
+        sqlStr.append("select " + String.join(", ", selectedColumns) + " from event\n");
+        sqlStr.append("where associatedUsername == ?");
+        if (sides != 0) {
+            sqlStr.append(" and personID in (select personID from person_side where associatedUsername == ? and sides in (" + Accessor.createPlaceholders(sideTags.length) + "))");
+        }
+        if (gender != null) {
+            sqlStr.append(" and personID in (select personID from person where associatedUsername == ? and gender == ?)");
+        }
+        sqlStr.append("\norder by eventID");
+
+        PreparedStatement statement = this.database.prepareStatement(sqlStr.toString());
+        try {
+            int paramIdx = 1;
+            statement.setString(paramIdx++, username);
+            if (sides != 0) {
+                statement.setString(paramIdx++, username);
+                for (int sideTag : sideTags) {
+                    statement.setInt(paramIdx++, sideTag);
+                }
+            }
+            if (gender != null) {
+                statement.setString(paramIdx++, username);
+                statement.setString(paramIdx++, gender);
+            }
+        } catch (SQLException err) {
+            throw new DatabaseException(err);
+        }
+        ArrayList<Event> events = this.database.query(statement, (result) -> this.mapProjectedQueryResult(result, selectedColumns));
+        return events.toArray(new Event[events.size()]);
+    }
+
+    /**
+     * Returns the Events belonging to a user inside a box of latitudes and
+     * longitudes (inclusive). The box is found in the event_location R*Tree,
+     * so only the Events inside it are read, not every Event of the user.
+     * 
+     * @param username is the username of the user whose events should be returned
+     * @param minLatitude is the southern edge of the box
+     * @param minLongitude is the western edge of the box
+     * @param maxLatitude is the northern edge of the box
+     * @param maxLongitude is the eastern edge of the box (less than minLongitude for boxes that cross the antimeridian)
+     * @param columns is the columns (from COLUMNS) to read, or null for all of them (eventID is always read)
+     * @return an array of the (partial) Events inside the box
+     * @throws DatabaseException when a database error occurs
+     */
+    public Event[] getInBoxForUser(String username, double minLatitude, double minLongitude,
+                                   double maxLatitude, double maxLongitude, String[] columns) throws DatabaseException {
+        // a box crossing the antimeridian is really two boxes, one on each side
+        double[][] longitudeRanges;
+        if (minLongitude <= maxLongitude) {
+            longitudeRanges = new double[][]{{minLongitude, maxLongitude}};
+        } else {
+            longitudeRanges = new double[][]{{minLongitude, 180}, {-180, maxLongitude}};
+        }
+
+        String[] selectedColumns = this.selectColumns(EventAccessor.COLUMNS, columns);
+        StringBuilder sqlStr = new StringBuilder();
+        sqlStr.append("select " + String.join(", ", selectedColumns) + " from event\n");
+        sqlStr.append("where rowid in (\n");
+        for (int rangeIdx = 0; rangeIdx < longitudeRanges.length; ++rangeIdx) {
+            if (rangeIdx != 0) {
+                sqlStr.append("    union all\n");
+            }
+            sqlStr.append("    select id from event_location where maxLatitude >= ? and minLatitude <= ? and maxLongitude >= ? and minLongitude <= ?\n");
+        }
+        // the "+" keeps sqlite from scanning the user's index instead of using the R*Tree;
+        // the R*Tree rounds each location out to a tiny box of 32-bit floats, so it finds
+        // the boxes that touch the box (a location on an edge may stick out of it), and
+        // the exact locations are checked after
+        sqlStr.append(") and +associatedUsername == ? and latitude between ? and ? and (");
+        for (int rangeIdx = 0; rangeIdx < longitudeRanges.length; ++rangeIdx) {
+            if (rangeIdx != 0) {
+                sqlStr.append(" or ");
+            }
+            sqlStr.append("longitude between ? and ?");
+        }
+        sqlStr.append(")");
+
+        PreparedStatement statement = this.database.prepareStatement(sqlStr.toString());
+        try {
+            int paramIdx = 1;
+            for (double[] longitudeRange : longitudeRanges) {
+                statement.setDouble(paramIdx++, minLatitude);
+                statement.setDouble(paramIdx++, maxLatitude);
+                statement.setDouble(paramIdx++, longitudeRange[0]);
+                statement.setDouble(paramIdx++, longitudeRange[1]);
+            }
+            statement.setString(paramIdx++, username);
+            statement.setDouble(paramIdx++, minLatitude);
+            statement.setDouble(paramIdx++, maxLatitude);
+            for (double[] longitudeRange : longitudeRanges) {
+                statement.setDouble(paramIdx++, longitudeRange[0]);
+                statement.setDouble(paramIdx++, longitudeRange[1]);
+            }
+        } catch (SQLException err) {
+            throw new DatabaseException(err);
+        }
+        ArrayList<Event> events = this.database.query(statement, (result) -> this.mapProjectedQueryResult(result, selectedColumns));
+        return events.toArray(new Event[events.size()]);
+    }
+
     @Override
     public void create(Event[] models) throws BadAccessException, DatabaseException {
         if (models.length == 0) {
@@ -145,6 +462,12 @@ public class EventAccessor extends Accessor<Event> {
         }
 
         this.database.update(statement);
+        String[] eventIDs = this.getEventIDs(models);
+        this.indexLocations(eventIDs);
+        this.changeLog.record(ChangeLog.EVENT_TYPE, "eventID", eventIDs, false);
+        this.userStats.recordEvents(eventIDs, false);
+        this.eventClusters.recordEvents(eventIDs, false);
+        FamilyTreeCache.invalidateUsernames(this.database, this.getUsernames(models));
     }
 
     @Override
@@ -170,16 +493,25 @@ public class EventAccessor extends Accessor<Event> {
             throw new BadAccessException(errMsg);
         }
 
+        // recorded first, while the rows are still there to say who they belonged to
+        String[] eventIDs = this.getEventIDs(models);
+        this.changeLog.record(ChangeLog.EVENT_TYPE, "eventID", eventIDs, true);
+        this.unindexLocations(eventIDs);
+        this.userStats.recordEvents(eventIDs, true);
+        this.eventClusters.recordEvents(eventIDs, true);
+        FamilyTreeCache.invalidateUsernames(this.database, this.getAssociatedUsernames("event", "eventID", eventIDs));
+
         StringBuilder sqlStr = new StringBuilder();
-        sqlStr.append("delete from event where\n");
+        sqlStr.append("delete from event where eventID in (");
         boolean firstEvent = true;
         for (int i = 0; i < models.length; ++i) {
             if (!firstEvent) {
-                sqlStr.append(" or ");
+                sqlStr.append(", ");
             }
-            sqlStr.append("eventID == ?");
+            sqlStr.append("?");
             firstEvent = false;
         }
+        sqlStr.append(")");
 
         PreparedStatement statement = this.database.prepareStatement(sqlStr.toString());
         for (int eventIdx = 0; eventIdx < models.length; ++eventIdx) {
@@ -220,6 +552,17 @@ public class EventAccessor extends Accessor<Event> {
             }
             throw new BadAccessException(errMsg);
         }
+
+        // if a row is moved to another user, its old user needs to see it deleted
+        // (the second record() supersedes this for rows that stay put)
+        String[] eventIDs = this.getEventIDs(models);
+        this.changeLog.record(ChangeLog.EVENT_TYPE, "eventID", eventIDs, true);
+        // the old values come out of the counts here, and the new ones go back in below
+        this.userStats.recordEvents(eventIDs, true);
+        this.eventClusters.recordEvents(eventIDs, true);
+        // both the old and new owners' trees change
+        FamilyTreeCache.invalidateUsernames(this.database, this.getAssociatedUsernames("event", "eventID", eventIDs));
+        FamilyTreeCache.invalidateUsernames(this.database, this.getUsernames(models));
         
         StringBuilder associatedUsernameStr = new StringBuilder();
         associatedUsernameStr.append("associatedUsername = case\n");
@@ -325,20 +668,27 @@ public class EventAccessor extends Accessor<Event> {
         }
 
         this.database.update(statement);
+        // the rows (and their rowids) stay put, but their locations may have moved
+        this.unindexLocations(eventIDs);
+        this.indexLocations(eventIDs);
+        this.changeLog.record(ChangeLog.EVENT_TYPE, "eventID", eventIDs, false);
+        this.userStats.recordEvents(eventIDs, false);
+        this.eventClusters.recordEvents(eventIDs, false);
     }
 
     @Override
     public boolean[] exists(Event[] models) throws DatabaseException {
         StringBuilder sqlStr = new StringBuilder();
-        sqlStr.append("select eventID from event where\n");
+        sqlStr.append("select eventID from event where eventID in (");
         boolean firstEvent = true;
         for (int i = 0; i < models.length; ++i) {
             if (!firstEvent) {
-                sqlStr.append(" or ");
+                sqlStr.append(", ");
             }
-            sqlStr.append("eventID == ?");
+            sqlStr.append("?");
             firstEvent = false;
         }
+        sqlStr.append(")");
 
         PreparedStatement statement = this.database.prepareStatement(sqlStr.toString());
         for (int eventIdx = 0; eventIdx < models.length; ++eventIdx) {
@@ -377,22 +727,162 @@ public class EventAccessor extends Accessor<Event> {
 
     @Override
     public void clear() throws DatabaseException {
+        this.changeLog.clear(ChangeLog.EVENT_TYPE);
+        this.userStats.clearEvents();
+        this.eventClusters.clear();
+        FamilyTreeCache.invalidateAll(this.database);
+        this.database.update("delete from event_location");
         String sqlStr = "delete from event";
         this.database.update(sqlStr);
     }
 
     @Override
     protected Event mapQueryResult(ResultSet result) throws SQLException {
+        // repeated values share one String (see StringDictionary)
         String eventID = result.getString(1);
         String associatedUsername = result.getString(2);
         String personID = result.getString(3);
         float latitude = result.getFloat(4);
         float longitude = result.getFloat(5);
-        String country = result.getString(6);
-        String city = result.getString(7);
-        String eventType = result.getString(8);
+        String country = StringDictionary.canonicalize(result.getString(6));
+        String city = StringDictionary.canonicalize(result.getString(7));
+        String eventType = StringDictionary.canonicalize(result.getString(8));
         int year = result.getInt(9);
         Event event = new Event(eventID, associatedUsername, personID, latitude, longitude, country, city, eventType, year);
         return event;
     }
+
+    /**
+     * Collects the IDs of some Events
+     * 
+     * @param models is the Events to get the IDs of
+     * @return the eventIDs, in the same order
+     */
+    private String[] getEventIDs(Event[] models) {
+        String[] eventIDs = new String[models.length];
+        for (int modelIdx = 0; modelIdx < models.length; ++modelIdx) {
+            eventIDs[modelIdx] = models[modelIdx].getEventID();
+        }
+        return eventIDs;
+    }
+
+    /**
+     * Collects the usernames some Events belong to
+     * 
+     * @param models is the Events to get the usernames of
+     * @return the usernames (each only once)
+     */
+    private String[] getUsernames(Event[] models) {
+        HashSet<String> usernames = new HashSet<>();
+        for (Event model : models) {
+            usernames.add(model.getAssociatedUsername());
+        }
+        return usernames.toArray(new String[usernames.size()]);
+    }
+
+    /**
+     * Adds some Events to the event_location R*Tree, reading their locations
+     * from their rows. Changes must be committed or rolled back after calling this function.
+     * 
+     * @param eventIDs is the IDs of the Events to add
+     * @throws DatabaseException when a database error occurs
+     */
+    private void indexLocations(String[] eventIDs) throws DatabaseException {
+        String sqlStr =
+            "insert into event_location (id, minLatitude, maxLatitude, minLongitude, maxLongitude)\n" +
+            "select rowid, latitude, latitude, longitude, longitude from event where eventID in (" + Accessor.createPlaceholders(eventIDs.length) + ")";
+        this.updateForEventIDs(sqlStr, eventIDs);
+    }
+
+    /**
+     * Removes some Events from the event_location R*Tree (while their rows
+     * are still there). Changes must be committed or rolled back after calling this function.
+     * 
+     * @param eventIDs is the IDs of the Events to remove
+     * @throws DatabaseException when a database error occurs
+     */
+    private void unindexLocations(String[] eventIDs) throws DatabaseException {
+        String sqlStr =
+            "delete from event_location where id in (\n" +
+            "    select rowid from event where eventID in (" + Accessor.createPlaceholders(eventIDs.length) + ")\n" +
+            ")";
+        this.updateForEventIDs(sqlStr, eventIDs);
+    }
+
+    /**
+     * Runs an update whose only parameters are some eventIDs
+     * 
+     * @param sqlStr is the SQL to run, with one "?" per eventID
+     * @param eventIDs is the eventIDs to fill in
+     * @throws DatabaseException when a database error occurs
+     */
+    private void updateForEventIDs(String sqlStr, String[] eventIDs) throws DatabaseException {
+        if (eventIDs.length == 0) {
+            return;
+        }
+        PreparedStatement statement = this.database.prepareStatement(sqlStr);
+        try {
+            for (int idIdx = 0; idIdx < eventIDs.length; ++idIdx) {
+                statement.setString(idIdx + 1, eventIDs[idIdx]);
+            }
+        } catch (SQLException err) {
+            throw new DatabaseException(err);
+        }
+        this.database.update(statement);
+    }
+
+    /**
+     * Mapping function for queries that only select some columns (see selectColumns())
+     * 
+     * @param result is the ResultSet passed by query()
+     * @param selectedColumns is the columns that were selected, in order
+     * @return the (partial) Event given by the result
+     * @throws SQLException when the result fails to get data
+     */
+    private Event mapProjectedQueryResult(ResultSet result, String[] selectedColumns) throws SQLException {
+        if (selectedColumns == EventAccessor.COLUMNS) {
+            return this.mapQueryResult(result);
+        }
+        String eventID = null;
+        String associatedUsername = null;
+        String personID = null;
+        float latitude = 0;
+        float longitude = 0;
+        String country = null;
+        String city = null;
+        String eventType = null;
+        int year = 0;
+        for (int columnIdx = 0; columnIdx < selectedColumns.length; ++columnIdx) {
+            switch (selectedColumns[columnIdx]) {
+                case "eventID":
+                    eventID = result.getString(columnIdx + 1);
+                    break;
+                case "associatedUsername":
+                    associatedUsername = result.getString(columnIdx + 1);
+                    break;
+                case "personID":
+                    personID = result.getString(columnIdx + 1);
+                    break;
+                case "latitude":
+                    latitude = result.getFloat(columnIdx + 1);
+                    break;
+                case "longitude":
+                    longitude = result.getFloat(columnIdx + 1);
+                    break;
+                case "country":
+                    country = StringDictionary.canonicalize(result.getString(columnIdx + 1));
+                    break;
+                case "city":
+                    city = StringDictionary.canonicalize(result.getString(columnIdx + 1));
+                    break;
+                case "eventType":
+                    eventType = StringDictionary.canonicalize(result.getString(columnIdx + 1));
+                    break;
+                case "year":
+                    year = result.getInt(columnIdx + 1);
+                    break;
+            }
+        }
+        return new Event(eventID, associatedUsername, personID, latitude, longitude, country, city, eventType, year);
+    }
 }
@@ -514,6 +514,71 @@ public class EventAccessorTest {
         }
     }
 
+    /**
+     * Ensures events inside a box are found, and that the box stays in sync
+     * with created, updated, and deleted events
+     */
+    @Test
+    @DisplayName("Get events in box test")
+    public void testGetEventsInBox() {
+        try (Database database = new Database()) {
+            EventAccessor accessor = new EventAccessor(database);
+            Event provoEvent = new Event("provoEvent", "baseUser", "basePerson", 40.2338, -111.6585, "USA", "Provo", "Birth", 2000);
+            Event orem2Event = new Event("orem2Event", "baseUser2", "basePerson2", 40.2969, -111.6946, "USA", "Orem", "Birth", 2000);
+            Event tokyoEvent = new Event("tokyoEvent", "baseUser", "basePerson", 35.6762, 139.6503, "Japan", "Tokyo", "Death", 2050);
+            Event fijiEvent = new Event("fijiEvent", "baseUser", "basePerson", -17.7134, 178.0650, "Fiji", "Suva", "Marriage", 2025);
+            Event[] events = {provoEvent, orem2Event, tokyoEvent, fijiEvent};
+            accessor.create(events);
+
+            // utah valley (only baseUser's events)
+            Event[] results = accessor.getInBoxForUser("baseUser", 40.0, -112.0, 40.5, -111.5, null);
+            assertEquals(1, results.length);
+            assertEquals("provoEvent", results[0].getEventID());
+            assertEquals("Provo", results[0].getCity());
+
+            // across the antimeridian
+            results = accessor.getInBoxForUser("baseUser", -20.0, 170.0, 0.0, -170.0, null);
+            assertEquals(1, results.length);
+            assertEquals("fijiEvent", results[0].getEventID());
+
+            // moving and deleting events moves them in (and out of) the box
+            tokyoEvent.setLatitude(40.25);
+            tokyoEvent.setLongitude(-111.65);
+            Event[] updatedEvents = {tokyoEvent};
+            accessor.update(updatedEvents);
+            Event[] deletedEvents = {provoEvent};
+            accessor.delete(deletedEvents);
+            results = accessor.getInBoxForUser("baseUser", 40.0, -112.0, 40.5, -111.5, new String[]{"city"});
+            assertEquals(1, results.length);
+            assertEquals("tokyoEvent", results[0].getEventID());
+            assertEquals("Tokyo", results[0].getCity());
+            assertNull(results[0].getCountry());
+            assertEquals(0, accessor.getInBoxForUser("baseUser", 30.0, 130.0, 40.0, 140.0, null).length);
+
+            // the edges are inclusive, even though the R*Tree rounds locations
+            // (which it does for locations that aren't 32-bit floats, like ones written as doubles)
+            database.commit();
+            this.insertEvent("edgeEvent", 40.1, -111.7, "USA", "Orem", "Birth", 2001);
+            database.update("insert into event_location select rowid, latitude, latitude, longitude, longitude from event where eventID == 'edgeEvent'");
+            results = accessor.getInBoxForUser("baseUser", 40.1, -111.7, 40.1, -111.7, null);
+            assertEquals(1, results.length);
+            assertEquals("edgeEvent", results[0].getEventID());
+            results = accessor.getInBoxForUser("baseUser", 40.1, -112.0, 40.5, -111.5, null);
+            assertEquals(2, results.length);
+            // (but not just past them)
+            results = accessor.getInBoxForUser("baseUser", 40.1000001, -112.0, 40.5, -111.5, null);
+            assertEquals(1, results.length);
+            assertEquals("tokyoEvent", results[0].getEventID());
+
+            accessor.clear();
+            assertEquals(0, accessor.getInBoxForUser("baseUser", -90.0, -180.0, 90.0, 180.0, null).length);
+        } catch (BadAccessException err) {
+            this.failNoTraceback(err);
+        } catch (DatabaseException err) {
+            this.failNoTraceback(err);
+        }
+    }
+
     /**
      * Ensures that the user table can be cleared from the database
      */
@@ -0,0 +1,221 @@
+package dataAccess;
+
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.ArrayList;
+
+/**
+ * Gives access to the event_cluster table, which groups each user's Events
+ * into the cells of a quadtree over the map, so a map can show a few
+ * clusters instead of thousands of pins.
+ *
+ * At level L, longitudes and latitudes are each split into 2^L equal parts,
+ * so every cell splits into four at the next level. Each cell keeps the
+ * number of Events in it (by eventType) and the sums of their coordinates
+ * (for the centroid), at every level from 0 to MAX_LEVEL. The counts are
+ * kept up to date by EventAccessor, which adds and subtracts the Events it
+ * creates, updates, and deletes, so reading the clusters never has to look
+ * at the Events themselves.
+ */
+public class EventClusters {
+    /** The deepest level of cells kept (level 12 cells are about 10km wide at the equator) */
+    static public final int MAX_LEVEL = 12;
+
+    /** The database the clusters are in */
+    private Database database;
+
+    /**
+     * Creates an EventClusters with a given database
+     *
+     * @param database is the database to use
+     */
+    public EventClusters(Database database) {
+        this.database = database;
+    }
+
+    /**
+     * Returns the clusters of a user's Events in the cells that touch a box.
+     * A box with a minLongitude greater than its maxLongitude crosses the
+     * antimeridian.
+     *
+     * @param username is the username of the user
+     * @param level is the level of the cells (from 0 to MAX_LEVEL)
+     * @param minLatitude is the southern edge of the box
+     * @param minLongitude is the western edge of the box
+     * @param maxLatitude is the northern edge of the box
+     * @param maxLongitude is the eastern edge of the box
+     * @return the clusters, one for each cell with Events in it
+     * @throws DatabaseException when a database error occurs
+     */
+    public Cluster[] getInBoxForUser(String username, int level, double minLatitude, double minLongitude, double maxLatitude, double maxLongitude) throws DatabaseException {
+        int minCellX = EventClusters.findCell(minLongitude, 180, level);
+        int maxCellX = EventClusters.findCell(maxLongitude, 180, level);
+        int minCellY = EventClusters.findCell(minLatitude, 90, level);
+        int maxCellY = EventClusters.findCell(maxLatitude, 90, level);
+        int[][] cellXRanges;
+        if (minLongitude > maxLongitude) {
+            int lastCellX = (1 << level) - 1;
+            cellXRanges = new int[][]{{minCellX, lastCellX}, {0, maxCellX}};
+        } else {
+            cellXRanges = new int[][]{{minCellX, maxCellX}};
+        }
+
+        ArrayList<Cluster> clusters = new ArrayList<>();
+        for (int[] cellXRange : cellXRanges) {
+            // the bare eventType comes from the row with the max(count)
+            String sqlStr =
+                "select eventType, max(count), sum(count), sum(sumLatitude), sum(sumLongitude) from event_cluster\n" +
+                "where associatedUsername == ? and level == ? and cellX between ? and ? and cellY between ? and ?\n" +
+                "group by cellX, cellY";
+            PreparedStatement statement = this.database.prepareStatement(sqlStr);
+            try {
+                statement.setString(1, username);
+                statement.setInt(2, level);
+                statement.setInt(3, cellXRange[0]);
+                statement.setInt(4, cellXRange[1]);
+                statement.setInt(5, minCellY);
+                statement.setInt(6, maxCellY);
+            } catch (SQLException err) {
+                throw new DatabaseException(err);
+            }
+            clusters.addAll(this.database.query(statement, (result) -> {
+                long count = result.getLong(3);
+                return new Cluster(count, result.getDouble(4) / count, result.getDouble(5) / count, result.getString(1));
+            }));
+        }
+        return clusters.toArray(new Cluster[clusters.size()]);
+    }
+
+    /**
+     * Adds (or subtracts) some Events to their users' clusters, at every
+     * level, reading them from the event table. Changes must be committed or
+     * rolled back after calling this function.
+     *
+     * @param eventIDs is the IDs of the Events
+     * @param isRemoved indicates if the Events are being subtracted (ex. because they are about to be deleted)
+     * @throws DatabaseException when a database error occurs
+     */
+    void recordEvents(String[] eventIDs, boolean isRemoved) throws DatabaseException {
+        if (eventIDs.length == 0) {
+            return;
+        }
+
+        String placeholders = Accessor.createPlaceholders(eventIDs.length);
+        // cells are clamped, so the edges (like latitude 90) land in the last cell
+        String sqlStr =
+            "with recursive cell_level(level) as (\n" +
+            "    select 0 union all select level + 1 from cell_level where level < ?\n" +
+            "), changed as (\n" +
+            "    select associatedUsername, latitude, longitude, eventType from event where eventID in (" + placeholders + ")\n" +
+            ")\n" +
+            "insert into event_cluster (associatedUsername, level, cellX, cellY, eventType, count, sumLatitude, sumLongitude)\n" +
+            "select associatedUsername, level, cellX, cellY, eventType, count(*) * ?, sum(latitude) * ?, sum(longitude) * ? from (\n" +
+            "    select associatedUsername, level, eventType, latitude, longitude,\n" +
+            "        max(0, min(cast((longitude + 180.0) / 360.0 * (1 << level) as integer), (1 << level) - 1)) as cellX,\n" +
+            "        max(0, min(cast((latitude + 90.0) / 180.0 * (1 << level) as integer), (1 << level) - 1)) as cellY\n" +
+            "    from changed cross join cell_level\n" +
+            ") where true group by associatedUsername, level, cellX, cellY, eventType\n" +
+            "on conflict (associatedUsername, level, cellX, cellY, eventType) do update set\n" +
+            "    count = count + excluded.count,\n" +
+            "    sumLatitude = sumLatitude + excluded.sumLatitude,\n" +
+            "    sumLongitude = sumLongitude + excluded.sumLongitude";
+        PreparedStatement statement = this.database.prepareStatement(sqlStr);
+        int sign = isRemoved ? -1 : 1;
+        try {
+            statement.setInt(1, EventClusters.MAX_LEVEL);
+            for (int idIdx = 0; idIdx < eventIDs.length; ++idIdx) {
+                statement.setString(idIdx + 2, eventIDs[idIdx]);
+            }
+            statement.setInt(eventIDs.length + 2, sign);
+            statement.setInt(eventIDs.length + 3, sign);
+            statement.setInt(eventIDs.length + 4, sign);
+        } catch (SQLException err) {
+            throw new DatabaseException(err);
+        }
+        this.database.update(statement);
+
+        if (isRemoved) {
+            // empty cells are dropped (the Events are still there to say who they belonged to)
+            String emptySqlStr =
+                "delete from event_cluster where count <= 0\n" +
+                "and associatedUsername in (select associatedUsername from event where eventID in (" + placeholders + "))";
+            PreparedStatement emptyStatement = this.database.prepareStatement(emptySqlStr);
+            try {
+                for (int idIdx = 0; idIdx < eventIDs.length; ++idIdx) {
+                    emptyStatement.setString(idIdx + 1, eventIDs[idIdx]);
+                }
+            } catch (SQLException err) {
+                throw new DatabaseException(err);
+            }
+            this.database.update(emptyStatement);
+        }
+    }
+
+    /**
+     * Forgets every cluster (ex. when the event table is cleared)
+     *
+     * @throws DatabaseException when a database error occurs
+     */
+    void clear() throws DatabaseException {
+        this.database.update("delete from event_cluster");
+    }
+
+    /**
+     * Finds which cell a coordinate is in, the same way recordEvents() does
+     *
+     * @param coordinate is the latitude or longitude
+     * @param maxCoordinate is the largest the coordinate can be (90 for latitudes, 180 for longitudes)
+     * @param level is the level of the cells
+     * @return the index of the cell, from 0 to 2^level - 1
+     */
+    static private int findCell(double coordinate, double maxCoordinate, int level) {
+        int numCells = 1 << level;
+        int cell = (int) ((coordinate + maxCoordinate) / (maxCoordinate * 2) * numCells);
+        return Math.max(0, Math.min(cell, numCells - 1));
+    }
+
+    /**
+     * A group of Events in one cell
+     */
+    static public class Cluster {
+        /** The number of Events in the cell */
+        private long count;
+        /** The mean latitude of the Events */
+        private double latitude;
+        /** The mean longitude of the Events */
+        private double longitude;
+        /** The most common eventType of the Events */
+        private String eventType;
+
+        /**
+         * Creates a Cluster
+         *
+         * @param count is the number of Events in the cell
+         * @param latitude is the mean latitude of the Events
+         * @param longitude is the mean longitude of the Events
+         * @param eventType is the most common eventType of the Events
+         */
+        Cluster(long count, double latitude, double longitude, String eventType) {
+            this.count = count;
+            this.latitude = latitude;
+            this.longitude = longitude;
+            this.eventType = eventType;
+        }
+
+        public long getCount() {
+            return this.count;
+        }
+
+        public double getLatitude() {
+            return this.latitude;
+        }
+
+        public double getLongitude() {
+            return this.longitude;
+        }
+
+        public String getEventType() {
+            return this.eventType;
+        }
+    }
+}
@@ -0,0 +1,188 @@
+package dataAccess;
+
+import org.junit.jupiter.api.*;
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.Arrays;
+import java.util.Comparator;
+
+import models.Event;
+import models.Person;
+import models.User;
+
+/**
+ * Contains the test cases that ensure the EventClusters class runs correctly
+ */
+@TestMethodOrder(MethodOrderer.OrderAnnotation.class)
+public class EventClustersTest {
+    /**
+     * Runs fail(), but shows a traceback to the call of this method, instead
+     * of where the error was thrown
+     *
+     * @param err is the error that was thrown
+     */
+    private void failNoTraceback(Exception err) {
+        fail(err.getMessage());
+    }
+
+    /**
+     * Signals the Database class to use the testing database for testing
+     */
+    @BeforeAll
+    static public void useTestDB() {
+        Database.useTestDB();
+    }
+
+    /**
+     * Ensures a fresh database (with events spread around the world) before each test
+     *
+     * @throws DatabaseException whenever reset() does
+     * @throws BadAccessException whenever the accessors do
+     */
+    @BeforeEach
+    public void resetDatabase() throws DatabaseException, BadAccessException {
+        try (Database database = new Database()) {
+            database.reset();
+            User[] users = {
+                new User("baseUser", "password", "base@email.test", "Base", "User", "m", null),
+                new User("otherUser", "password", "other@email.test", "Other", "User", "f", null),
+            };
+            new UserAccessor(database).create(users);
+            Person[] persons = {
+                new Person("base", "baseUser", "Base", "User", "m"),
+                new Person("other", "otherUser", "Other", "User", "f"),
+            };
+            new PersonAccessor(database).create(persons);
+            Event[] events = {
+                new Event("provoBirth", "baseUser", "base", 40.0f, -111.0f, "USA", "Provo", "Birth", 2000),
+                new Event("saltLakeBirth", "baseUser", "base", 41.0f, -112.0f, "USA", "Salt Lake City", "Birth", 2001),
+                new Event("provoDeath", "baseUser", "base", 40.0f, -111.0f, "USA", "Provo", "Death", 2070),
+                new Event("torontoBirth", "baseUser", "base", 43.0f, -79.0f, "Canada", "Toronto", "Birth", 2002),
+                new Event("tokyoBirth", "baseUser", "base", 35.0f, 139.0f, "Japan", "Tokyo", "Birth", 2003),
+                new Event("otherBirth", "otherUser", "other", 40.0f, -111.0f, "USA", "Provo", "Birth", 1990),
+            };
+            new EventAccessor(database).create(events);
+            database.commit();
+        }
+    }
+
+    /**
+     * Returns a user's clusters over the whole world, from west to east
+     *
+     * @param eventClusters is the EventClusters to read from
+     * @param username is the username of the user
+     * @param level is the level of the cells
+     * @return the clusters, ordered by longitude
+     * @throws DatabaseException whenever getInBoxForUser() does
+     */
+    private EventClusters.Cluster[] getWorldClusters(EventClusters eventClusters, String username, int level) throws DatabaseException {
+        EventClusters.Cluster[] clusters = eventClusters.getInBoxForUser(username, level, -90, -180, 90, 180);
+        Arrays.sort(clusters, Comparator.comparingDouble(EventClusters.Cluster::getLongitude));
+        return clusters;
+    }
+
+    /**
+     * Ensures events are counted into the right cells at every level, with
+     * their centroids and most common event types
+     */
+    @Test
+    @DisplayName("Cluster levels test")
+    public void testClusterLevels() {
+        try (Database database = new Database()) {
+            EventClusters eventClusters = new EventClusters(database);
+
+            EventClusters.Cluster[] worldClusters = this.getWorldClusters(eventClusters, "baseUser", 0);
+            assertEquals(1, worldClusters.length);
+            assertEquals(5, worldClusters[0].getCount());
+            assertEquals((40 + 41 + 40 + 43 + 35) / 5.0, worldClusters[0].getLatitude(), 0.0001);
+            assertEquals((-111 - 112 - 111 - 79 + 139) / 5.0, worldClusters[0].getLongitude(), 0.0001);
+            assertEquals("Birth", worldClusters[0].getEventType());
+
+            // utah, toronto, and tokyo are each in their own cell
+            EventClusters.Cluster[] regionClusters = this.getWorldClusters(eventClusters, "baseUser", 4);
+            assertEquals(3, regionClusters.length);
+            assertEquals(3, regionClusters[0].getCount());
+            assertEquals(1, regionClusters[1].getCount());
+            assertEquals(1, regionClusters[2].getCount());
+            assertEquals(43.0, regionClusters[1].getLatitude(), 0.0001);
+
+            // provo and salt lake only split apart at the finest levels
+            EventClusters.Cluster[] cityClusters = this.getWorldClusters(eventClusters, "baseUser", EventClusters.MAX_LEVEL);
+            assertEquals(4, cityClusters.length);
+            assertEquals(1, cityClusters[0].getCount());
+            assertEquals(2, cityClusters[1].getCount());
+            assertEquals(-111.0, cityClusters[1].getLongitude(), 0.0001);
+
+            EventClusters.Cluster[] otherClusters = this.getWorldClusters(eventClusters, "otherUser", 0);
+            assertEquals(1, otherClusters.length);
+            assertEquals(1, otherClusters[0].getCount());
+        } catch (DatabaseException err) {
+            this.failNoTraceback(err);
+        }
+    }
+
+    /**
+     * Ensures only the cells touching a box are returned, including boxes
+     * that cross the antimeridian
+     */
+    @Test
+    @DisplayName("Cluster box test")
+    public void testClusterBox() {
+        try (Database database = new Database()) {
+            EventClusters eventClusters = new EventClusters(database);
+
+            EventClusters.Cluster[] utahClusters = eventClusters.getInBoxForUser("baseUser", 8, 39.5, -112.5, 41.5, -110.5);
+            int numEvents = 0;
+            for (EventClusters.Cluster cluster : utahClusters) {
+                numEvents += cluster.getCount();
+            }
+            assertEquals(3, numEvents);
+
+            // from japan, east across the pacific, to utah
+            EventClusters.Cluster[] pacificClusters = eventClusters.getInBoxForUser("baseUser", 4, 0, 120, 60, -100);
+            assertEquals(2, pacificClusters.length);
+            for (EventClusters.Cluster cluster : pacificClusters) {
+                assertNotEquals(-79.0, cluster.getLongitude(), 0.0001);
+            }
+
+            assertEquals(0, eventClusters.getInBoxForUser("baseUser", 4, -60, -10, -10, 10).length);
+        } catch (DatabaseException err) {
+            this.failNoTraceback(err);
+        }
+    }
+
+    /**
+     * Ensures updating, deleting, and clearing events changes their clusters
+     */
+    @Test
+    @DisplayName("Cluster changes test")
+    public void testClusterChanges() {
+        try (Database database = new Database()) {
+            EventClusters eventClusters = new EventClusters(database);
+            EventAccessor eventAcc = new EventAccessor(database);
+
+            // moving tokyo to toronto joins their cells
+            Event[] movedEvents = {new Event("tokyoBirth", "baseUser", "base", 43.0f, -79.0f, "Canada", "Toronto", "Death", 2003)};
+            eventAcc.update(movedEvents);
+            EventClusters.Cluster[] clusters = this.getWorldClusters(eventClusters, "baseUser", EventClusters.MAX_LEVEL);
+            assertEquals(3, clusters.length);
+            assertEquals(2, clusters[2].getCount());
+            assertEquals(-79.0, clusters[2].getLongitude(), 0.0001);
+
+            Event[] deletedEvents = {eventAcc.getByID("provoBirth"), eventAcc.getByID("provoDeath")};
+            eventAcc.delete(deletedEvents);
+            clusters = this.getWorldClusters(eventClusters, "baseUser", EventClusters.MAX_LEVEL);
+            assertEquals(2, clusters.length);
+            assertEquals(-112.0, clusters[0].getLongitude(), 0.0001);
+            // empty cells aren't kept around
+            String emptySqlStr = "select * from event_cluster where count <= 0";
+            assertEquals(0, database.query(emptySqlStr, (result) -> null).size());
+
+            eventAcc.clear();
+            assertEquals(0, this.getWorldClusters(eventClusters, "baseUser", 0).length);
+            assertEquals(0, this.getWorldClusters(eventClusters, "otherUser", 0).length);
+        } catch (DatabaseException | BadAccessException err) {
+            this.failNoTraceback(err);
+        }
+    }
+}
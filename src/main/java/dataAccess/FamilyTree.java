@@ -0,0 +1,258 @@
+package dataAccess;
+
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+
+import models.Event;
+import models.Person;
+
+/**
+ * A read-only, in-memory copy of one user's Persons and Events (see
+ * FamilyTreeCache), laid out for quick lookups and walks through the tree.
+ * Each Person gets an index (in personID order), and their father, mother,
+ * spouse, and children are stored as indexes in plain int arrays (children
+ * are packed into one array, sliced per parent). Events are grouped by
+ * Person the same way, in year order.
+ *
+ * The Persons and Events handed out are shared by everyone using the tree,
+ * so they must not be changed.
+ */
+public class FamilyTree {
+    /** The index that means "no Person" */
+    static public final int NONE = -1;
+
+    /** Every Person, in personID order */
+    private Person[] persons;
+    /** The index of each Person, by personID */
+    private HashMap<String, Integer> personIndexes;
+    /** The index of each Person's father (or NONE), by index */
+    private int[] fathers;
+    /** The index of each Person's mother (or NONE), by index */
+    private int[] mothers;
+    /** The index of each Person's spouse (or NONE), by index */
+    private int[] spouses;
+    /** Where each Person's children start in the children array (the next Person's start is where they end) */
+    private int[] childStarts;
+    /** The indexes of every Person's children, grouped by parent */
+    private int[] children;
+    /** Every Event, grouped by Person (in index order) and then in year order; Events of Persons not in the tree come last */
+    private Event[] events;
+    /** The index of each Event, by eventID */
+    private HashMap<String, Integer> eventIndexes;
+    /** Where each Person's Events start in the events array (the next Person's start is where they end) */
+    private int[] eventStarts;
+
+    /**
+     * Lays out a user's Persons and Events. References to Persons that aren't
+     * in the tree are ignored.
+     *
+     * @param persons is every Person belonging to the user
+     * @param events is every Event belonging to the user
+     */
+    public FamilyTree(Person[] persons, Event[] events) {
+        int numPersons = persons.length;
+        this.persons = Arrays.copyOf(persons, numPersons);
+        Arrays.sort(this.persons, Comparator.comparing(Person::getPersonID));
+        this.personIndexes = new HashMap<>(numPersons * 2);
+        for (int personIdx = 0; personIdx < numPersons; ++personIdx) {
+            this.personIndexes.put(this.persons[personIdx].getPersonID(), personIdx);
+        }
+
+        this.fathers = new int[numPersons];
+        this.mothers = new int[numPersons];
+        this.spouses = new int[numPersons];
+        for (int personIdx = 0; personIdx < numPersons; ++personIdx) {
+            Person person = this.persons[personIdx];
+            this.fathers[personIdx] = this.getPersonIndex(person.getFatherID());
+            this.mothers[personIdx] = this.getPersonIndex(person.getMotherID());
+            this.spouses[personIdx] = this.getPersonIndex(person.getSpouseID());
+        }
+
+        // each child is listed once under each parent
+        int[] childParents = new int[numPersons * 2];
+        for (int personIdx = 0; personIdx < numPersons; ++personIdx) {
+            childParents[personIdx * 2] = this.fathers[personIdx];
+            childParents[personIdx * 2 + 1] = this.mothers[personIdx];
+        }
+        this.childStarts = FamilyTree.findGroupStarts(childParents, numPersons);
+        this.children = new int[this.childStarts[numPersons]];
+        int[] nextChildIdxs = Arrays.copyOf(this.childStarts, numPersons);
+        for (int childParentIdx = 0; childParentIdx < childParents.length; ++childParentIdx) {
+            int parentIdx = childParents[childParentIdx];
+            if (parentIdx != FamilyTree.NONE) {
+                this.children[nextChildIdxs[parentIdx]] = childParentIdx / 2;
+                ++nextChildIdxs[parentIdx];
+            }
+        }
+
+        // the sort is stable, so sorting by year and then by person keeps each person's events in year order
+        Event[] sortedEvents = Arrays.copyOf(events, events.length);
+        Arrays.sort(sortedEvents, Comparator.comparingInt(Event::getYear));
+        int[] eventPersons = new int[sortedEvents.length];
+        for (int eventIdx = 0; eventIdx < sortedEvents.length; ++eventIdx) {
+            eventPersons[eventIdx] = this.getPersonIndex(sortedEvents[eventIdx].getPersonID());
+        }
+        this.eventStarts = FamilyTree.findGroupStarts(eventPersons, numPersons);
+        this.events = new Event[sortedEvents.length];
+        int[] nextEventIdxs = Arrays.copyOf(this.eventStarts, numPersons);
+        int nextOrphanIdx = this.eventStarts[numPersons];
+        for (int eventIdx = 0; eventIdx < sortedEvents.length; ++eventIdx) {
+            int personIdx = eventPersons[eventIdx];
+            if (personIdx == FamilyTree.NONE) {
+                this.events[nextOrphanIdx] = sortedEvents[eventIdx];
+                ++nextOrphanIdx;
+            } else {
+                this.events[nextEventIdxs[personIdx]] = sortedEvents[eventIdx];
+                ++nextEventIdxs[personIdx];
+            }
+        }
+        this.eventIndexes = new HashMap<>(this.events.length * 2);
+        for (int eventIdx = 0; eventIdx < this.events.length; ++eventIdx) {
+            this.eventIndexes.put(this.events[eventIdx].getEventID(), eventIdx);
+        }
+    }
+
+    public int getNumPersons() {
+        return this.persons.length;
+    }
+
+    public int getNumEvents() {
+        return this.events.length;
+    }
+
+    /**
+     * Returns how much room the tree takes up in the cache
+     *
+     * @return the number of Persons and Events in the tree
+     */
+    public int getWeight() {
+        return this.persons.length + this.events.length;
+    }
+
+    /**
+     * Returns every Person in the tree, in personID order
+     *
+     * @return a new array of the (shared) Persons
+     */
+    public Person[] getPersons() {
+        return Arrays.copyOf(this.persons, this.persons.length);
+    }
+
+    /**
+     * Returns every Event in the tree, grouped by Person
+     *
+     * @return a new array of the (shared) Events
+     */
+    public Event[] getEvents() {
+        return Arrays.copyOf(this.events, this.events.length);
+    }
+
+    /**
+     * Returns a Person in the tree
+     *
+     * @param personID is the personID of the Person
+     * @return the (shared) Person, or null if it isn't in the tree
+     */
+    public Person getPerson(String personID) {
+        int personIdx = this.getPersonIndex(personID);
+        return personIdx == FamilyTree.NONE ? null : this.persons[personIdx];
+    }
+
+    /**
+     * Returns an Event in the tree
+     *
+     * @param eventID is the eventID of the Event
+     * @return the (shared) Event, or null if it isn't in the tree
+     */
+    public Event getEvent(String eventID) {
+        Integer eventIdx = eventID == null ? null : this.eventIndexes.get(eventID);
+        return eventIdx == null ? null : this.events[eventIdx];
+    }
+
+    /**
+     * Returns the Events of a Person in the tree, in year order
+     *
+     * @param personID is the personID of the Person
+     * @return a new array of the (shared) Events, which is empty if the Person isn't in the tree
+     */
+    public Event[] getEventsOf(String personID) {
+        int personIdx = this.getPersonIndex(personID);
+        if (personIdx == FamilyTree.NONE) {
+            return new Event[0];
+        }
+        return Arrays.copyOfRange(this.events, this.eventStarts[personIdx], this.eventStarts[personIdx + 1]);
+    }
+
+    /**
+     * Returns the index of a Person
+     *
+     * @param personID is the personID of the Person, or null
+     * @return the index, or NONE if the Person isn't in the tree
+     */
+    public int getPersonIndex(String personID) {
+        if (personID == null) {
+            return FamilyTree.NONE;
+        }
+        Integer personIdx = this.personIndexes.get(personID);
+        return personIdx == null ? FamilyTree.NONE : personIdx;
+    }
+
+    /**
+     * Returns the Person at an index
+     *
+     * @param personIdx is the index of the Person
+     * @return the (shared) Person
+     */
+    public Person getPersonAt(int personIdx) {
+        return this.persons[personIdx];
+    }
+
+    public int getFatherIndex(int personIdx) {
+        return this.fathers[personIdx];
+    }
+
+    public int getMotherIndex(int personIdx) {
+        return this.mothers[personIdx];
+    }
+
+    public int getSpouseIndex(int personIdx) {
+        return this.spouses[personIdx];
+    }
+
+    public int getNumChildren(int personIdx) {
+        return this.childStarts[personIdx + 1] - this.childStarts[personIdx];
+    }
+
+    /**
+     * Returns the index of one of a Person's children
+     *
+     * @param personIdx is the index of the Person
+     * @param childNum is which child to return (from 0 to getNumChildren() - 1)
+     * @return the index of the child
+     */
+    public int getChildIndex(int personIdx, int childNum) {
+        return this.children[this.childStarts[personIdx] + childNum];
+    }
+
+    /**
+     * Finds where each group starts in an array packed by group (groups are
+     * in index order, and members of NONE go after the last group)
+     *
+     * @param memberGroups is the group of each member (or NONE)
+     * @param numGroups is the number of groups
+     * @return the start of each group, plus where the last group ends
+     */
+    static private int[] findGroupStarts(int[] memberGroups, int numGroups) {
+        int[] groupStarts = new int[numGroups + 1];
+        for (int groupIdx : memberGroups) {
+            if (groupIdx != FamilyTree.NONE) {
+                ++groupStarts[groupIdx + 1];
+            }
+        }
+        for (int groupIdx = 0; groupIdx < numGroups; ++groupIdx) {
+            groupStarts[groupIdx + 1] += groupStarts[groupIdx];
+        }
+        return groupStarts;
+    }
+}
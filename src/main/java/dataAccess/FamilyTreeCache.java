@@ -0,0 +1,213 @@
+package dataAccess;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+import models.Event;
+import models.Person;
+
+/**
+ * A bounded, in-memory cache of each active user's FamilyTree, so reading a
+ * user's Persons and Events doesn't have to go back to the database every
+ * time (they only change on things like /fill, /load, and /clear).
+ *
+ * The cache is bounded by weight (the number of Persons and Events it
+ * holds) rather than by number of users, since trees vary wildly in size.
+ * When it grows past MAX_WEIGHT, the least recently used trees are evicted;
+ * a tree heavier than MAX_WEIGHT by itself is never cached.
+ *
+ * Like the AuthTokenCache, the accessors invalidate a user's tree whenever
+ * their Persons or Events change, both right away and again once the
+ * transaction is over, and a slow load refuses to cache a tree if anything
+ * was invalidated while it ran (see getGeneration()).
+ */
+public class FamilyTreeCache {
+    /** The number of Persons and Events the cache can hold before evicting some */
+    static final int MAX_WEIGHT = 500000;
+    /** The weight left after evicting (so evictions happen in bulk) */
+    static final int WEIGHT_AFTER_EVICTION = FamilyTreeCache.MAX_WEIGHT * 9 / 10;
+
+    /** The cached trees, by username, in least recently used order */
+    static private final LinkedHashMap<String, FamilyTree> treesByUsername = new LinkedHashMap<>(16, 0.75f, true);
+    /** The total weight of the cached trees */
+    static private long weight = 0;
+    /** Increased on every invalidation (see put()) */
+    static private final AtomicLong generation = new AtomicLong();
+    /** The number of lookups that found a cached tree */
+    static private final AtomicLong numHits = new AtomicLong();
+    /** The number of lookups that didn't */
+    static private final AtomicLong numMisses = new AtomicLong();
+    /** The number of trees removed to keep the cache bounded */
+    static private final AtomicLong numEvictions = new AtomicLong();
+
+    /**
+     * Returns the FamilyTree of a user, loading (and caching) it from the
+     * database if it isn't cached
+     *
+     * @param database is the database to load the tree from
+     * @param username is the username of the user
+     * @return the user's tree
+     * @throws DatabaseException when a database error occurs
+     */
+    static public FamilyTree getTree(Database database, String username) throws DatabaseException {
+        FamilyTree tree = FamilyTreeCache.get(username);
+        if (tree != null) {
+            return tree;
+        }
+
+        long generation = FamilyTreeCache.getGeneration();
+        Person[] persons = new PersonAccessor(database).getAllForUser(username);
+        Event[] events = new EventAccessor(database).getAllForUser(username);
+        tree = new FamilyTree(persons, events);
+        FamilyTreeCache.put(username, tree, generation);
+        return tree;
+    }
+
+    /**
+     * Returns the (cached) FamilyTree of a user
+     *
+     * @param username is the username of the user
+     * @return the cached tree, or null if it isn't cached
+     */
+    static public FamilyTree get(String username) {
+        FamilyTree tree;
+        synchronized (FamilyTreeCache.treesByUsername) {
+            tree = FamilyTreeCache.treesByUsername.get(username);
+        }
+        if (tree == null) {
+            FamilyTreeCache.numMisses.incrementAndGet();
+        } else {
+            FamilyTreeCache.numHits.incrementAndGet();
+        }
+        return tree;
+    }
+
+    /**
+     * Returns the current generation of the cache. This should be read before
+     * loading the tree that gets passed to put().
+     *
+     * @return the current generation
+     */
+    static public long getGeneration() {
+        return FamilyTreeCache.generation.get();
+    }
+
+    /**
+     * Caches the FamilyTree of a user, unless something was invalidated since
+     * the tree was loaded (or the tree is too big to cache)
+     *
+     * @param username is the username of the user
+     * @param tree is the user's tree
+     * @param generation is the value of getGeneration() from before the tree was loaded
+     */
+    static public void put(String username, FamilyTree tree, long generation) {
+        if (tree.getWeight() > FamilyTreeCache.MAX_WEIGHT) {
+            return;
+        }
+        synchronized (FamilyTreeCache.treesByUsername) {
+            // invalidations bump the generation inside this lock, so checking here is enough
+            if (FamilyTreeCache.generation.get() != generation) {
+                return;
+            }
+            FamilyTree oldTree = FamilyTreeCache.treesByUsername.put(username, tree);
+            if (oldTree != null) {
+                FamilyTreeCache.weight -= oldTree.getWeight();
+            }
+            FamilyTreeCache.weight += tree.getWeight();
+            if (FamilyTreeCache.weight > FamilyTreeCache.MAX_WEIGHT) {
+                FamilyTreeCache.evict();
+            }
+        }
+    }
+
+    /**
+     * Removes the trees of some users, right away and again once the
+     * database's current transaction is over (so nothing that was read
+     * before the change was committed sticks around)
+     *
+     * @param database is the database the users' Persons or Events are being changed in
+     * @param usernames are the usernames of the users whose trees are changing
+     */
+    static void invalidateUsernames(Database database, String[] usernames) {
+        FamilyTreeCache.invalidateUsernames(usernames);
+        database.onTransactionEnd(() -> FamilyTreeCache.invalidateUsernames(usernames));
+    }
+
+    /**
+     * Removes every tree, right away and again once the database's current
+     * transaction is over
+     *
+     * @param database is the database everything is being changed in
+     */
+    static void invalidateAll(Database database) {
+        FamilyTreeCache.invalidateAll();
+        database.onTransactionEnd(FamilyTreeCache::invalidateAll);
+    }
+
+    /**
+     * Removes every tree from the cache
+     */
+    static public void invalidateAll() {
+        synchronized (FamilyTreeCache.treesByUsername) {
+            FamilyTreeCache.generation.incrementAndGet();
+            FamilyTreeCache.treesByUsername.clear();
+            FamilyTreeCache.weight = 0;
+        }
+    }
+
+    static public long getNumHits() {
+        return FamilyTreeCache.numHits.get();
+    }
+
+    static public long getNumMisses() {
+        return FamilyTreeCache.numMisses.get();
+    }
+
+    static public long getNumEvictions() {
+        return FamilyTreeCache.numEvictions.get();
+    }
+
+    static public int getSize() {
+        synchronized (FamilyTreeCache.treesByUsername) {
+            return FamilyTreeCache.treesByUsername.size();
+        }
+    }
+
+    static public long getWeight() {
+        synchronized (FamilyTreeCache.treesByUsername) {
+            return FamilyTreeCache.weight;
+        }
+    }
+
+    /**
+     * Removes the trees of some users
+     *
+     * @param usernames are the usernames of the users to remove
+     */
+    static private void invalidateUsernames(String[] usernames) {
+        synchronized (FamilyTreeCache.treesByUsername) {
+            FamilyTreeCache.generation.incrementAndGet();
+            for (String username : usernames) {
+                FamilyTree oldTree = FamilyTreeCache.treesByUsername.remove(username);
+                if (oldTree != null) {
+                    FamilyTreeCache.weight -= oldTree.getWeight();
+                }
+            }
+        }
+    }
+
+    /**
+     * Shrinks the cache back down to WEIGHT_AFTER_EVICTION, removing the least
+     * recently used trees first. Must be called while holding the lock.
+     */
+    static private void evict() {
+        Iterator<Map.Entry<String, FamilyTree>> entries = FamilyTreeCache.treesByUsername.entrySet().iterator();
+        while (entries.hasNext() && FamilyTreeCache.weight > FamilyTreeCache.WEIGHT_AFTER_EVICTION) {
+            FamilyTreeCache.weight -= entries.next().getValue().getWeight();
+            entries.remove();
+            FamilyTreeCache.numEvictions.incrementAndGet();
+        }
+    }
+}
@@ -0,0 +1,215 @@
+package dataAccess;
+
+import org.junit.jupiter.api.*;
+import static org.junit.jupiter.api.Assertions.*;
+
+import models.Event;
+import models.Person;
+import models.User;
+
+/**
+ * Contains the test cases that ensure the FamilyTreeCache (and FamilyTree) classes run correctly
+ */
+@TestMethodOrder(MethodOrderer.OrderAnnotation.class)
+public class FamilyTreeCacheTest {
+    /**
+     * Runs fail(), but shows a traceback to the call of this method, instead
+     * of where the error was thrown
+     *
+     * @param err is the error that was thrown
+     */
+    private void failNoTraceback(Exception err) {
+        fail(err.getMessage());
+    }
+
+    /**
+     * Signals the Database class to use the testing database for testing
+     */
+    @BeforeAll
+    static public void useTestDB() {
+        Database.useTestDB();
+    }
+
+    /**
+     * Ensures a fresh database (with a small family and their events) before each test
+     *
+     * @throws DatabaseException whenever reset() does
+     * @throws BadAccessException whenever the accessors do
+     */
+    @BeforeEach
+    public void resetDatabase() throws DatabaseException, BadAccessException {
+        try (Database database = new Database()) {
+            database.reset();
+            User[] users = {
+                new User("baseUser", "password", "base@email.test", "Base", "User", "m", null),
+                new User("otherUser", "password", "other@email.test", "Other", "User", "f", null),
+            };
+            new UserAccessor(database).create(users);
+            Person[] persons = {
+                new Person("father", "baseUser", "Dad", "User", "m"),
+                new Person("mother", "baseUser", "Mom", "User", "f"),
+                new Person("child", "baseUser", "Base", "User", "m", "father", "mother", null),
+                new Person("other", "otherUser", "Other", "User", "f"),
+            };
+            new PersonAccessor(database).create(persons);
+            Event[] events = {
+                new Event("childDeath", "baseUser", "child", 1.0f, 1.0f, "USA", "Provo", "Death", 2070),
+                new Event("childBirth", "baseUser", "child", 1.0f, 1.0f, "USA", "Provo", "Birth", 2000),
+                new Event("fatherBirth", "baseUser", "father", 1.0f, 1.0f, "USA", "Provo", "Birth", 1970),
+            };
+            new EventAccessor(database).create(events);
+            database.commit();
+        }
+    }
+
+    /**
+     * Returns a user's tree through the cache
+     *
+     * @param username is the username of the user
+     * @return the user's tree
+     */
+    private FamilyTree getTree(String username) {
+        try (Database database = new Database()) {
+            return FamilyTreeCache.getTree(database, username);
+        } catch (DatabaseException err) {
+            this.failNoTraceback(err);
+            return null;
+        }
+    }
+
+    /**
+     * Creates a tree of unrelated persons (with no events), just to take up room
+     *
+     * @param numPersons is the number of persons in the tree
+     * @return the tree
+     */
+    private FamilyTree createFillerTree(int numPersons) {
+        Person[] persons = new Person[numPersons];
+        for (int personIdx = 0; personIdx < numPersons; ++personIdx) {
+            persons[personIdx] = new Person("filler" + personIdx, "filler", "Filler", "Person", "m");
+        }
+        return new FamilyTree(persons, new Event[0]);
+    }
+
+    /**
+     * Ensures a tree lays out its persons, children, and events by person (in year order)
+     */
+    @Test
+    @DisplayName("Tree layout test")
+    public void testTreeLayout() {
+        FamilyTree tree = this.getTree("baseUser");
+        assertEquals(3, tree.getNumPersons());
+        assertEquals(3, tree.getNumEvents());
+        assertNull(tree.getPerson("other"));
+
+        int childIdx = tree.getPersonIndex("child");
+        assertEquals("father", tree.getPersonAt(tree.getFatherIndex(childIdx)).getPersonID());
+        assertEquals("mother", tree.getPersonAt(tree.getMotherIndex(childIdx)).getPersonID());
+        assertEquals(FamilyTree.NONE, tree.getSpouseIndex(childIdx));
+        int fatherIdx = tree.getPersonIndex("father");
+        assertEquals(1, tree.getNumChildren(fatherIdx));
+        assertEquals(childIdx, tree.getChildIndex(fatherIdx, 0));
+
+        Event[] childEvents = tree.getEventsOf("child");
+        assertEquals(2, childEvents.length);
+        assertEquals("childBirth", childEvents[0].getEventID());
+        assertEquals("childDeath", childEvents[1].getEventID());
+        assertEquals(0, tree.getEventsOf("mother").length);
+        assertEquals("fatherBirth", tree.getEvent("fatherBirth").getEventID());
+    }
+
+    /**
+     * Ensures the second lookup of a tree is served from the cache
+     */
+    @Test
+    @DisplayName("Cache hit test")
+    public void testCacheHit() {
+        assertNull(FamilyTreeCache.get("baseUser"));
+        FamilyTree firstTree = this.getTree("baseUser");
+
+        long numHits = FamilyTreeCache.getNumHits();
+        FamilyTree secondTree = this.getTree("baseUser");
+        assertEquals(numHits + 1, FamilyTreeCache.getNumHits());
+        assertSame(firstTree, secondTree);
+        assertEquals(firstTree.getWeight(), FamilyTreeCache.getWeight());
+    }
+
+    /**
+     * Ensures changing a user's persons or events invalidates only their tree
+     */
+    @Test
+    @DisplayName("Cache invalidation test")
+    public void testInvalidateOnChange() {
+        this.getTree("baseUser");
+        this.getTree("otherUser");
+
+        try (Database database = new Database()) {
+            Event[] events = {new Event("motherBirth", "baseUser", "mother", 1.0f, 1.0f, "USA", "Provo", "Birth", 1971)};
+            new EventAccessor(database).create(events);
+            database.commit();
+        } catch (DatabaseException | BadAccessException err) {
+            this.failNoTraceback(err);
+        }
+        assertNull(FamilyTreeCache.get("baseUser"));
+        assertNotNull(FamilyTreeCache.get("otherUser"));
+        assertEquals(1, this.getTree("baseUser").getEventsOf("mother").length);
+
+        // moving a person changes both users' trees
+        try (Database database = new Database()) {
+            Person[] persons = {new Person("other", "baseUser", "Other", "User", "f")};
+            new PersonAccessor(database).update(persons);
+            database.commit();
+        } catch (DatabaseException | BadAccessException err) {
+            this.failNoTraceback(err);
+        }
+        assertNull(FamilyTreeCache.get("baseUser"));
+        assertNull(FamilyTreeCache.get("otherUser"));
+        assertEquals(4, this.getTree("baseUser").getNumPersons());
+        assertEquals(0, this.getTree("otherUser").getNumPersons());
+    }
+
+    /**
+     * Ensures a tree that was loaded before an invalidation isn't cached
+     */
+    @Test
+    @DisplayName("Cache invalidation test -- stale load")
+    public void testStaleLoadNotCached() {
+        FamilyTree tree = this.createFillerTree(10);
+        long generation = FamilyTreeCache.getGeneration();
+        FamilyTreeCache.invalidateAll();
+        FamilyTreeCache.put("filler", tree, generation);
+        assertNull(FamilyTreeCache.get("filler"));
+
+        FamilyTreeCache.put("filler", tree, FamilyTreeCache.getGeneration());
+        assertNotNull(FamilyTreeCache.get("filler"));
+    }
+
+    /**
+     * Ensures the least recently used trees are evicted when the cache gets too heavy
+     */
+    @Test
+    @DisplayName("Cache eviction test")
+    public void testEviction() {
+        FamilyTreeCache.invalidateAll();
+        int treeWeight = FamilyTreeCache.MAX_WEIGHT * 2 / 5;
+        FamilyTree fillerTree = this.createFillerTree(treeWeight);
+        long numEvictions = FamilyTreeCache.getNumEvictions();
+
+        FamilyTreeCache.put("first", fillerTree, FamilyTreeCache.getGeneration());
+        FamilyTreeCache.put("second", fillerTree, FamilyTreeCache.getGeneration());
+        // "first" is now used more recently than "second"
+        assertNotNull(FamilyTreeCache.get("first"));
+        FamilyTreeCache.put("third", fillerTree, FamilyTreeCache.getGeneration());
+
+        assertEquals(numEvictions + 1, FamilyTreeCache.getNumEvictions());
+        assertNull(FamilyTreeCache.get("second"));
+        assertNotNull(FamilyTreeCache.get("first"));
+        assertNotNull(FamilyTreeCache.get("third"));
+        assertTrue(FamilyTreeCache.getWeight() <= FamilyTreeCache.WEIGHT_AFTER_EVICTION);
+
+        // too heavy to cache at all
+        FamilyTreeCache.put("huge", this.createFillerTree(FamilyTreeCache.MAX_WEIGHT + 1), FamilyTreeCache.getGeneration());
+        assertNull(FamilyTreeCache.get("huge"));
+        assertEquals(2, FamilyTreeCache.getSize());
+    }
+}
@@ -5,6 +5,8 @@ import java.sql.ResultSet;
 import java.sql.SQLException;
 
 import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
 
 import models.Person;
 
@@ -13,6 +15,34 @@ import models.Person;
  * It can create, delete, update, and find Persons using a variety of methods.
  */
 public class PersonAccessor extends Accessor<Person> {
+    /** The columns of the person table, in order (they match the names of Person's fields) */
+    static public final String[] COLUMNS = {"personID", "associatedUsername", "firstName", "lastName", "gender", "fatherID", "motherID", "spouseID"};
+    /**
+     * A recursive common table expression that walks up the fatherID/motherID
+     * links from one Person, giving "ancestor(personID, generation)" (the
+     * Person itself is generation 0). Only Persons belonging to the user are
+     * followed, and generations stop at a maximum depth, so bad links (even
+     * cycles) can't run away. Its parameters are the starting personID, the
+     * username, and the maximum depth, in that order.
+     */
+    static final String ANCESTORS_CTE =
+        "with recursive ancestor(personID, generation) as (\n" +
+        "    select ?, 0\n" +
+        "    union\n" +
+        "    select case parent.isMother when 0 then child.fatherID else child.motherID end, ancestor.generation + 1\n" +
+        "    from ancestor\n" +
+        "    join person as child on child.personID == ancestor.personID\n" +
+        "    cross join (select 0 as isMother union all select 1) as parent\n" +
+        "    where child.associatedUsername == ? and ancestor.generation < ?\n" +
+        ")\n";
+
+    /** Where changes to Persons are recorded */
+    private ChangeLog changeLog;
+    /** Where the users' ancestor counts are kept */
+    private UserStats userStats;
+    /** Where the users' ancestors are tagged by side */
+    private PersonSides personSides;
+
     /**
      * Creates a PersonAccessor with a given database
      * 
@@ -20,6 +50,9 @@ public class PersonAccessor extends Accessor<Person> {
      */
     public PersonAccessor(Database database) {
         super(database);
+        this.changeLog = new ChangeLog(database);
+        this.userStats = new UserStats(database);
+        this.personSides = new PersonSides(database);
     }
 
     /**
@@ -48,6 +81,44 @@ public class PersonAccessor extends Accessor<Person> {
         }
     }
 
+    /**
+     * Returns the Persons matching some Person IDs that belong to a user, only
+     * reading some of their columns. The IDs are looked up in chunks, so any
+     * number of them can be given.
+     * 
+     * @param username is the username of the user the Persons must belong to
+     * @param personIDs is the Person IDs to query by
+     * @param columns is the columns (from COLUMNS) to read, or null for all of them (personID is always read)
+     * @return the matching (partial) Persons, in the same order as personIDs, with null for IDs that weren't found for the user
+     * @throws DatabaseException when a database error occurs
+     */
+    public Person[] getByIDsForUser(String username, String[] personIDs, String[] columns) throws DatabaseException {
+        String[] selectedColumns = this.selectColumns(PersonAccessor.COLUMNS, columns);
+        HashMap<String, Person> foundPersons = new HashMap<>();
+        for (int chunkStart = 0; chunkStart < personIDs.length; chunkStart += Accessor.MAX_IDS_PER_QUERY) {
+            int chunkSize = Math.min(Accessor.MAX_IDS_PER_QUERY, personIDs.length - chunkStart);
+            String sqlStr = "select " + String.join(", ", selectedColumns) + " from person where associatedUsername == ? and personID in (" + Accessor.createPlaceholders(chunkSize) + ")";
+            PreparedStatement statement = this.database.prepareStatement(sqlStr);
+            try {
+                statement.setString(1, username);
+                for (int idIdx = 0; idIdx < chunkSize; ++idIdx) {
+                    statement.setString(idIdx + 2, personIDs[chunkStart + idIdx]);
+                }
+            } catch (SQLException err) {
+                throw new DatabaseException(err);
+            }
+            for (Person person : this.database.query(statement, (result) -> this.mapProjectedQueryResult(result, selectedColumns))) {
+                foundPersons.put(person.getPersonID(), person);
+            }
+        }
+
+        Person[] persons = new Person[personIDs.length];
+        for (int idIdx = 0; idIdx < personIDs.length; ++idIdx) {
+            persons[idIdx] = foundPersons.get(personIDs[idIdx]);
+        }
+        return persons;
+    }
+
     /**
      * Returns all Persons in the database
      * 
@@ -68,14 +139,172 @@ public class PersonAccessor extends Accessor<Person> {
      * @throws DatabaseException when a database error occurs
      */
     public Person[] getAllForUser(String username) throws DatabaseException {
-        String sqlStr = "select * from person where associatedUsername == ?";
+        return this.getAllForUser(username, null);
+    }
+
+    /**
+     * Returns all Persons in the database that belong to a user, only reading
+     * some of their columns. The other properties are left null (or 0).
+     * 
+     * @param username is the username of the user whose people should be returned
+     * @param columns is the columns (from COLUMNS) to read, or null for all of them (personID is always read)
+     * @return an array of (partial) Persons belonging to the user
+     * @throws DatabaseException when a database error occurs
+     */
+    public Person[] getAllForUser(String username, String[] columns) throws DatabaseException {
+        String[] selectedColumns = this.selectColumns(PersonAccessor.COLUMNS, columns);
+        String sqlStr = "select " + String.join(", ", selectedColumns) + " from person where associatedUsername == ?";
         PreparedStatement statement = this.database.prepareStatement(sqlStr);
         try {
             statement.setString(1, username);
         } catch (SQLException err) {
             throw new DatabaseException(err);
         }
-        ArrayList<Person> people = this.database.query(statement, (result) -> this.mapQueryResult(result));
+        ArrayList<Person> people = this.database.query(statement, (result) -> this.mapProjectedQueryResult(result, selectedColumns));
+        return people.toArray(new Person[people.size()]);
+    }
+
+    /**
+     * Returns a page of the Persons that belong to a user, in personID order.
+     * Pages are found by personID (keyset pagination), so every page costs
+     * the same no matter how deep into the list it is.
+     * 
+     * @param username is the username of the user whose persons should be returned
+     * @param afterPersonID is the personID of the last Person on the previous page, or null for the first page
+     * @param limit is the maximum number of Persons to return, or a negative number for no limit
+     * @param columns is the columns (from COLUMNS) to read, or null for all of them (personID is always read)
+     * @return an array of (at most limit) persons belonging to the user
+     * @throws DatabaseException when a database error occurs
+     */
+    public Person[] getPageForUser(String username, String afterPersonID, int limit, String[] columns) throws DatabaseException {
+        String[] selectedColumns = this.selectColumns(PersonAccessor.COLUMNS, columns);
+        String sqlStr = "select " + String.join(", ", selectedColumns) + " from person where associatedUsername == ? and personID > ? order by personID limit ?";
+        PreparedStatement statement = this.database.prepareStatement(sqlStr);
+        try {
+            statement.setString(1, username);
+            // every ID is greater than the empty string
+            statement.setString(2, afterPersonID == null ? "" : afterPersonID);
+            statement.setInt(3, limit);
+        } catch (SQLException err) {
+            throw new DatabaseException(err);
+        }
+        ArrayList<Person> people = this.database.query(statement, (result) -> this.mapProjectedQueryResult(result, selectedColumns));
+        return people.toArray(new Person[people.size()]);
+    }
+
+    /**
+     * Returns the Persons belonging to a user that changed after a version of
+     * the ChangeLog (deleted persons obviously aren't returned)
+     * 
+     * @param username is the username of the user whose persons should be returned
+     * @param sinceVersion is the ChangeLog version to look after
+     * @param columns is the columns (from COLUMNS) to read, or null for all of them (personID is always read)
+     * @return an array of the changed (partial) Persons
+     * @throws DatabaseException when a database error occurs
+     */
+    public Person[] getChangedForUser(String username, long sinceVersion, String[] columns) throws DatabaseException {
+        String[] selectedColumns = this.selectColumns(PersonAccessor.COLUMNS, columns);
+        String sqlStr =
+            "select " + String.join(", ", selectedColumns) + " from person\n" +
+            "where associatedUsername == ? and personID in (\n" +
+            "    select modelID from changelog where associatedUsername == ? and version > ? and modelType == ?\n" +
+            ")";
+        PreparedStatement statement = this.database.prepareStatement(sqlStr);
+        try {
+            statement.setString(1, username);
+            statement.setString(2, username);
+            statement.setLong(3, sinceVersion);
+            statement.setString(4, ChangeLog.PERSON_TYPE);
+        } catch (SQLException err) {
+            throw new DatabaseException(err);
+        }
+        ArrayList<Person> people = this.database.query(statement, (result) -> this.mapProjectedQueryResult(result, selectedColumns));
+        return people.toArray(new Person[people.size()]);
+    }
+
+    /**
+     * Returns the ancestors of a Person (parents, grandparents, and so on) in
+     * one query, closest generations first. Ancestors reachable more than one
+     * way (ex. cousins who married) are only returned once.
+     * 
+     * @param username is the username of the user the Persons must belong to
+     * @param personID is the personID of the Person whose ancestors should be returned
+     * @param maxDepth is the number of generations to go up (1 for just parents)
+     * @param columns is the columns (from COLUMNS) to read, or null for all of them (personID is always read)
+     * @return an array of the (partial) ancestors, which is empty if the Person has none
+     * @throws DatabaseException when a database error occurs
+     */
+    public Person[] getAncestorsForUser(String username, String personID, int maxDepth, String[] columns) throws DatabaseException {
+        String[] selectedColumns = this.selectColumns(PersonAccessor.COLUMNS, columns);
+        String sqlStr =
+            PersonAccessor.ANCESTORS_CTE +
+            "select " + String.join(", ", selectedColumns) + " from person\n" +
+            "join (\n" +
+            "    select personID, min(generation) as generation from ancestor\n" +
+            "    where generation > 0 and personID is not null group by personID\n" +
+            ") as found using (personID)\n" +
+            "where associatedUsername == ? order by found.generation, personID";
+        PreparedStatement statement = this.database.prepareStatement(sqlStr);
+        try {
+            statement.setString(1, personID);
+            statement.setString(2, username);
+            statement.setInt(3, maxDepth);
+            statement.setString(4, username);
+        } catch (SQLException err) {
+            throw new DatabaseException(err);
+        }
+        ArrayList<Person> people = this.database.query(statement, (result) -> this.mapProjectedQueryResult(result, selectedColumns));
+        return people.toArray(new Person[people.size()]);
+    }
+
+    /**
+     * Searches the names of the Persons that belong to a user, best matches
+     * first (ranked by bm25). Every word in the query must start a word of
+     * the Person's first or last name, so "jo smi" finds "John Smith". The
+     * search goes through the person_name full text index, which holds
+     * every user's names, so the username is matched there too (and checked
+     * exactly afterwards).
+     * 
+     * @param username is the username of the user whose persons should be searched
+     * @param query is the words to search for
+     * @param limit is the maximum number of Persons to return
+     * @param columns is the columns (from COLUMNS) to read, or null for all of them (personID is always read)
+     * @return an array of (partial) Persons whose names match, which is empty if the query has no words
+     * @throws DatabaseException when a database error occurs
+     */
+    public Person[] searchForUser(String username, String query, int limit, String[] columns) throws DatabaseException {
+        StringBuilder matchStr = new StringBuilder();
+        for (String word : query.trim().split("\\s+")) {
+            if (PersonAccessor.hasSearchableChars(word)) {
+                if (matchStr.length() > 0) {
+                    matchStr.append(" AND ");
+                }
+                matchStr.append("{firstName lastName} : " + PersonAccessor.quoteForSearch(word) + "*");
+            }
+        }
+        if (matchStr.length() == 0) {
+            return new Person[0];
+        }
+        if (PersonAccessor.hasSearchableChars(username)) {
+            matchStr.append(" AND associatedUsername : " + PersonAccessor.quoteForSearch(username));
+        }
+
+        String[] selectedColumns = this.selectColumns(PersonAccessor.COLUMNS, columns);
+        String sqlStr =
+            "select " + String.join(", ", selectedColumns) + " from person\n" +
+            "join (\n" +
+            "    select rowid as nameRowid, bm25(person_name, 0.0, 1.0, 1.0) as score from person_name where person_name match ?\n" +
+            ") as found on person.rowid == found.nameRowid\n" +
+            "where associatedUsername == ? order by found.score, personID limit ?";
+        PreparedStatement statement = this.database.prepareStatement(sqlStr);
+        try {
+            statement.setString(1, matchStr.toString());
+            statement.setString(2, username);
+            statement.setInt(3, limit);
+        } catch (SQLException err) {
+            throw new DatabaseException(err);
+        }
+        ArrayList<Person> people = this.database.query(statement, (result) -> this.mapProjectedQueryResult(result, selectedColumns));
         return people.toArray(new Person[people.size()]);
     }
 
@@ -145,6 +374,11 @@ public class PersonAccessor extends Accessor<Person> {
         }
 
         this.database.update(statement);
+        this.indexNames(this.getPersonIDs(models));
+        this.changeLog.record(ChangeLog.PERSON_TYPE, "personID", this.getPersonIDs(models), false);
+        this.userStats.invalidateGenerations(this.getUsernames(models));
+        this.personSides.invalidateUsers(this.getUsernames(models));
+        FamilyTreeCache.invalidateUsernames(this.database, this.getUsernames(models));
     }
 
     @Override
@@ -170,16 +404,26 @@ public class PersonAccessor extends Accessor<Person> {
             throw new BadAccessException(errMsg);
         }
 
+        // recorded first, while the rows are still there to say who they belonged to
+        String[] personIDs = this.getPersonIDs(models);
+        this.changeLog.record(ChangeLog.PERSON_TYPE, "personID", personIDs, true);
+        this.unindexNames(personIDs);
+        String[] usernames = this.getAssociatedUsernames("person", "personID", personIDs);
+        this.userStats.invalidateGenerations(usernames);
+        this.personSides.invalidateUsers(usernames);
+        FamilyTreeCache.invalidateUsernames(this.database, usernames);
+
         StringBuilder sqlStr = new StringBuilder();
-        sqlStr.append("delete from person where\n");
+        sqlStr.append("delete from person where personID in (");
         boolean firstPerson = true;
         for (int i = 0; i < models.length; ++i) {
             if (!firstPerson) {
-                sqlStr.append(" or ");
+                sqlStr.append(", ");
             }
-            sqlStr.append("personID == ?");
+            sqlStr.append("?");
             firstPerson = false;
         }
+        sqlStr.append(")");
 
         PreparedStatement statement = this.database.prepareStatement(sqlStr.toString());
         for (int personIdx = 0; personIdx < models.length; ++personIdx) {
@@ -220,6 +464,22 @@ public class PersonAccessor extends Accessor<Person> {
             }
             throw new BadAccessException(errMsg);
         }
+
+        // if a row is moved to another user, its old user needs to see it deleted
+        // (the second record() supersedes this for rows that stay put)
+        String[] personIDs = this.getPersonIDs(models);
+        this.changeLog.record(ChangeLog.PERSON_TYPE, "personID", personIDs, true);
+        // the rows (and their rowids) stay put, but their names are re-indexed below
+        this.unindexNames(personIDs);
+        // both the old and new owners' trees change
+        String[] oldUsernames = this.getAssociatedUsernames("person", "personID", personIDs);
+        String[] newUsernames = this.getUsernames(models);
+        this.userStats.invalidateGenerations(oldUsernames);
+        this.userStats.invalidateGenerations(newUsernames);
+        this.personSides.invalidateUsers(oldUsernames);
+        this.personSides.invalidateUsers(newUsernames);
+        FamilyTreeCache.invalidateUsernames(this.database, oldUsernames);
+        FamilyTreeCache.invalidateUsernames(this.database, newUsernames);
         
         StringBuilder associatedUsernameStr = new StringBuilder();
         associatedUsernameStr.append("associatedUsername = case\n");
@@ -316,20 +576,23 @@ public class PersonAccessor extends Accessor<Person> {
         }
 
         this.database.update(statement);
+        this.indexNames(personIDs);
+        this.changeLog.record(ChangeLog.PERSON_TYPE, "personID", personIDs, false);
     }
 
     @Override
     public boolean[] exists(Person[] models) throws DatabaseException {
         StringBuilder sqlStr = new StringBuilder();
-        sqlStr.append("select personID from person where\n");
+        sqlStr.append("select personID from person where personID in (");
         boolean firstPerson = true;
         for (int i = 0; i < models.length; ++i) {
             if (!firstPerson) {
-                sqlStr.append(" or ");
+                sqlStr.append(", ");
             }
-            sqlStr.append("personID == ?");
+            sqlStr.append("?");
             firstPerson = false;
         }
+        sqlStr.append(")");
 
         PreparedStatement statement = this.database.prepareStatement(sqlStr.toString());
         for (int personIdx = 0; personIdx < models.length; ++personIdx) {
@@ -368,9 +631,13 @@ public class PersonAccessor extends Accessor<Person> {
 
     @Override
     public void clear() throws DatabaseException {
+        this.changeLog.clear(ChangeLog.PERSON_TYPE);
+        this.userStats.clearGenerations();
+        this.personSides.invalidateAll();
+        FamilyTreeCache.invalidateAll(this.database);
+        this.database.update("delete from person_name");
         String sqlStr = "delete from person";
         this.database.update(sqlStr);
-        this.database.commit();   
     }
 
     @Override
@@ -387,4 +654,164 @@ public class PersonAccessor extends Accessor<Person> {
                                    gender, fatherID, motherID, spouseID);
         return person;
     }
+
+    /**
+     * Adds the names of some Persons to the person_name full text index
+     * (after their rows are written). Changes must be committed or rolled back
+     * after calling this function.
+     * 
+     * @param personIDs is the IDs of the Persons to add
+     * @throws DatabaseException when a database error occurs
+     */
+    private void indexNames(String[] personIDs) throws DatabaseException {
+        String sqlStr =
+            "insert into person_name (rowid, associatedUsername, firstName, lastName)\n" +
+            "select rowid, associatedUsername, firstName, lastName from person where personID in (" + Accessor.createPlaceholders(personIDs.length) + ")";
+        this.updateForPersonIDs(sqlStr, personIDs);
+    }
+
+    /**
+     * Removes the names of some Persons from the person_name full text index
+     * (while their rows are still there). Changes must be committed or rolled
+     * back after calling this function.
+     * 
+     * @param personIDs is the IDs of the Persons to remove
+     * @throws DatabaseException when a database error occurs
+     */
+    private void unindexNames(String[] personIDs) throws DatabaseException {
+        String sqlStr =
+            "delete from person_name where rowid in (\n" +
+            "    select rowid from person where personID in (" + Accessor.createPlaceholders(personIDs.length) + ")\n" +
+            ")";
+        this.updateForPersonIDs(sqlStr, personIDs);
+    }
+
+    /**
+     * Runs an update whose only parameters are some personIDs
+     * 
+     * @param sqlStr is the SQL to run, with one "?" per personID
+     * @param personIDs is the personIDs to fill in
+     * @throws DatabaseException when a database error occurs
+     */
+    private void updateForPersonIDs(String sqlStr, String[] personIDs) throws DatabaseException {
+        if (personIDs.length == 0) {
+            return;
+        }
+        PreparedStatement statement = this.database.prepareStatement(sqlStr);
+        try {
+            for (int idIdx = 0; idIdx < personIDs.length; ++idIdx) {
+                statement.setString(idIdx + 1, personIDs[idIdx]);
+            }
+        } catch (SQLException err) {
+            throw new DatabaseException(err);
+        }
+        this.database.update(statement);
+    }
+
+    /**
+     * Checks if some text has anything the full text index would keep (it
+     * only indexes letters and numbers)
+     * 
+     * @param text is the text to check
+     * @return true if the text has a letter or number
+     */
+    static private boolean hasSearchableChars(String text) {
+        for (int charIdx = 0; charIdx < text.length(); ++charIdx) {
+            if (Character.isLetterOrDigit(text.charAt(charIdx))) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Quotes some text as a full text search string, so none of it is read as
+     * search syntax (like AND, or a column name)
+     * 
+     * @param text is the text to quote
+     * @return the quoted text
+     */
+    static private String quoteForSearch(String text) {
+        return "\"" + text.replace("\"", "\"\"") + "\"";
+    }
+
+    /**
+     * Collects the IDs of some Persons
+     * 
+     * @param models is the Persons to get the IDs of
+     * @return the personIDs, in the same order
+     */
+    private String[] getPersonIDs(Person[] models) {
+        String[] personIDs = new String[models.length];
+        for (int modelIdx = 0; modelIdx < models.length; ++modelIdx) {
+            personIDs[modelIdx] = models[modelIdx].getPersonID();
+        }
+        return personIDs;
+    }
+
+    /**
+     * Collects the usernames some Persons belong to
+     * 
+     * @param models is the Persons to get the usernames of
+     * @return the usernames (each only once)
+     */
+    private String[] getUsernames(Person[] models) {
+        HashSet<String> usernames = new HashSet<>();
+        for (Person model : models) {
+            usernames.add(model.getAssociatedUsername());
+        }
+        return usernames.toArray(new String[usernames.size()]);
+    }
+
+    /**
+     * Mapping function for queries that only select some columns (see selectColumns())
+     * 
+     * @param result is the ResultSet passed by query()
+     * @param selectedColumns is the columns that were selected, in order
+     * @return the (partial) Person given by the result
+     * @throws SQLException when the result fails to get data
+     */
+    private Person mapProjectedQueryResult(ResultSet result, String[] selectedColumns) throws SQLException {
+        if (selectedColumns == PersonAccessor.COLUMNS) {
+            return this.mapQueryResult(result);
+        }
+        String personID = null;
+        String associatedUsername = null;
+        String firstName = null;
+        String lastName = null;
+        String gender = null;
+        String fatherID = null;
+        String motherID = null;
+        String spouseID = null;
+        for (int columnIdx = 0; columnIdx < selectedColumns.length; ++columnIdx) {
+            switch (selectedColumns[columnIdx]) {
+                case "personID":
+                    personID = result.getString(columnIdx + 1);
+                    break;
+                case "associatedUsername":
+                    associatedUsername = result.getString(columnIdx + 1);
+                    break;
+                case "firstName":
+                    firstName = result.getString(columnIdx + 1);
+                    break;
+                case "lastName":
+                    lastName = result.getString(columnIdx + 1);
+                    break;
+                case "gender":
+                    gender = result.getString(columnIdx + 1);
+                    break;
+                case "fatherID":
+                    fatherID = result.getString(columnIdx + 1);
+                    break;
+                case "motherID":
+                    motherID = result.getString(columnIdx + 1);
+                    break;
+                case "spouseID":
+                    spouseID = result.getString(columnIdx + 1);
+                    break;
+            }
+        }
+        return new Person(personID, associatedUsername, firstName, lastName,
+                                   gender, fatherID, motherID, spouseID);
+    }
 }
@@ -228,6 +228,90 @@ public class PersonAccessorTest {
         }
     }
 
+    /**
+     * Ensures people can be grabbed by a list of IDs (in order), even when the
+     * list is longer than one query can look up
+     */
+    @Test
+    @DisplayName("Get people by IDs test")
+    public void testGetPeopleByIDs() {
+        this.fillPersons();
+        try (Database database = new Database()) {
+            String sqlStr =
+                "insert into person\n" + 
+                "   (personID, firstname, lastname, gender, associatedUsername)\n" + 
+                "values ('otherPersonID', 'firstname', 'lastname', 'm', 'baseUser2')";
+            database.update(sqlStr);
+
+            String[] personIDs = new String[Accessor.MAX_IDS_PER_QUERY + 3];
+            for (int idIdx = 0; idIdx < personIDs.length; ++idIdx) {
+                personIDs[idIdx] = "missingID" + idIdx;
+            }
+            personIDs[0] = "sallyID";
+            personIDs[1] = "otherPersonID";
+            personIDs[personIDs.length - 1] = "benID1";
+
+            PersonAccessor accessor = new PersonAccessor(database);
+            String[] columns = {"firstName"};
+            Person[] people = accessor.getByIDsForUser("baseUser", personIDs, columns);
+            assertEquals(personIDs.length, people.length);
+            assertEquals("Sally", people[0].getFirstName());
+            assertNull(people[0].getLastName());
+            // belongs to someone else
+            assertNull(people[1]);
+            assertNull(people[2]);
+            assertEquals("benID1", people[personIDs.length - 1].getPersonID());
+        } catch (DatabaseException err) {
+            this.failNoTraceback(err);
+        }
+    }
+
+    /**
+     * Ensures people can be searched for by (the start of) their names, only
+     * for their user, and that the search keeps up with changes
+     */
+    @Test
+    @DisplayName("Search people test")
+    public void testSearchPeople() {
+        try (Database database = new Database()) {
+            PersonAccessor accessor = new PersonAccessor(database);
+            Person[] people = {
+                new Person("benID1", "baseUser", "Ben", "Hanson", "m"),
+                new Person("benID2", "baseUser", "Benjamin", "Jargon", "m"),
+                new Person("sallyID", "baseUser", "Sally", "Benson", "f"),
+                new Person("zoeID", "baseUser", "Zo\u00eb", "O'Brien", "f"),
+                new Person("otherBenID", "baseUser2", "Ben", "Hanson", "m"),
+            };
+            accessor.create(people);
+
+            Person[] found = accessor.searchForUser("baseUser", "ben", 10, null);
+            assertEquals(3, found.length);
+            assertEquals("Sally", accessor.searchForUser("baseUser", "BEN sal", 10, null)[0].getFirstName());
+            assertEquals("benID1", accessor.searchForUser("baseUser", "ben han", 10, null)[0].getPersonID());
+            assertEquals(1, accessor.searchForUser("baseUser", "ben", 1, null).length);
+            // accents and punctuation are ignored
+            assertEquals("zoeID", accessor.searchForUser("baseUser", "zoe o'bri", 10, null)[0].getPersonID());
+            // search syntax is just searched for
+            assertEquals(0, accessor.searchForUser("baseUser", "\"ben OR sally\"", 10, null).length);
+            assertEquals(0, accessor.searchForUser("baseUser", "- ?", 10, null).length);
+
+            Person[] renamedPeople = {new Person("benID1", "baseUser", "Chris", "Hanson", "m")};
+            accessor.update(renamedPeople);
+            Person[] deletedPeople = {people[1]};
+            accessor.delete(deletedPeople);
+            found = accessor.searchForUser("baseUser", "ben", 10, new String[]{"firstName"});
+            assertEquals(1, found.length);
+            assertEquals("sallyID", found[0].getPersonID());
+            assertNull(found[0].getLastName());
+            assertEquals("benID1", accessor.searchForUser("baseUser", "chris", 10, null)[0].getPersonID());
+
+            accessor.clear();
+            assertEquals(0, accessor.searchForUser("baseUser2", "ben", 10, null).length);
+        } catch (DatabaseException | BadAccessException err) {
+            this.failNoTraceback(err);
+        }
+    }
+
     /**
      * Ensures an empty array is returned when grabbing people from a user who doesn't exist
      */
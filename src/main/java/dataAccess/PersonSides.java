@@ -0,0 +1,249 @@
+package dataAccess;
+
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Arrays;
+
+/**
+ * Gives access to the person_side table, which tags each user's ancestors
+ * with the side of the family they are on (their father's side, their
+ * mother's side, or both), so Events can be filtered by side without going
+ * through the whole tree.
+ *
+ * Sides are tagged when a tree is written (by FamilyTreeUtils and BulkUtils,
+ * see tagUsers() and tagStaleUsers()). One new parent link can move every
+ * ancestor above it, so PersonAccessor and UserAccessor don't try to keep the
+ * tags up to date themselves; they just mark them stale, and the next read
+ * tags them again (see tagIfStale()). Users with up to date tags are
+ * listed in the person_side_fresh table.
+ */
+public class PersonSides {
+    /** The side bit of ancestors through the user's father */
+    static public final int FATHER_SIDE = 1;
+    /** The side bit of ancestors through the user's mother */
+    static public final int MOTHER_SIDE = 2;
+    /** Every combination of side bits a tagged ancestor can have */
+    static private final int[] ALL_SIDES = {PersonSides.FATHER_SIDE, PersonSides.MOTHER_SIDE, PersonSides.FATHER_SIDE | PersonSides.MOTHER_SIDE};
+
+    /** The database the tags are in */
+    private Database database;
+
+    /**
+     * Creates a PersonSides with a given database
+     *
+     * @param database is the database to use
+     */
+    public PersonSides(Database database) {
+        this.database = database;
+    }
+
+    /**
+     * Tags the ancestors of some users with their sides now, replacing their
+     * old tags. Changes must be committed or rolled back after calling this
+     * function.
+     *
+     * @param usernames is the usernames of the users
+     * @throws DatabaseException when a database error occurs
+     */
+    public void tagUsers(String[] usernames) throws DatabaseException {
+        for (String username : usernames) {
+            this.tagUser(username);
+        }
+    }
+
+    /**
+     * Tags the ancestors of every user whose tags are stale (ex. after a
+     * load). Changes must be committed or rolled back after calling this
+     * function.
+     *
+     * @throws DatabaseException when a database error occurs
+     */
+    public void tagStaleUsers() throws DatabaseException {
+        String sqlStr = "select username from user where username not in (select associatedUsername from person_side_fresh)";
+        ArrayList<String> usernames = this.database.query(sqlStr, (result) -> result.getString(1));
+        this.tagUsers(usernames.toArray(new String[usernames.size()]));
+    }
+
+    /**
+     * Tags a user's ancestors again if their tags are stale (which must be
+     * committed afterwards), so person_side can be read for them
+     *
+     * @param username is the username of the user
+     * @throws DatabaseException when a database error occurs
+     */
+    public void tagIfStale(String username) throws DatabaseException {
+        if (!this.isFresh(username)) {
+            this.tagUser(username);
+        }
+    }
+
+    /**
+     * Finds the tags (the "sides" stored for an ancestor) that include any
+     * of some sides, so they can be looked up with "sides in (...)" instead
+     * of a bitwise test that can't use the index
+     *
+     * @param sides is the side bits (FATHER_SIDE, MOTHER_SIDE, or both)
+     * @return the matching tags
+     */
+    static public int[] findMatchingTags(int sides) {
+        int numMatching = 0;
+        int[] matchingTags = new int[PersonSides.ALL_SIDES.length];
+        for (int tag : PersonSides.ALL_SIDES) {
+            if ((tag & sides) != 0) {
+                matchingTags[numMatching] = tag;
+                ++numMatching;
+            }
+        }
+        return Arrays.copyOf(matchingTags, numMatching);
+    }
+
+    /**
+     * Marks some users' tags as stale (ex. because their Persons or their own
+     * personID changed). Changes must be committed or rolled back after
+     * calling this function.
+     *
+     * @param usernames is the usernames of the users
+     * @throws DatabaseException when a database error occurs
+     */
+    void invalidateUsers(String[] usernames) throws DatabaseException {
+        if (usernames.length == 0) {
+            return;
+        }
+
+        String sqlStr = "delete from person_side_fresh where associatedUsername in (" + Accessor.createPlaceholders(usernames.length) + ")";
+        PreparedStatement statement = this.database.prepareStatement(sqlStr);
+        try {
+            for (int usernameIdx = 0; usernameIdx < usernames.length; ++usernameIdx) {
+                statement.setString(usernameIdx + 1, usernames[usernameIdx]);
+            }
+        } catch (SQLException err) {
+            throw new DatabaseException(err);
+        }
+        this.database.update(statement);
+    }
+
+    /**
+     * Forgets the tags of some users (ex. when they are deleted)
+     *
+     * @param usernames is the usernames of the users
+     * @throws DatabaseException when a database error occurs
+     */
+    void forgetUsers(String[] usernames) throws DatabaseException {
+        if (usernames.length == 0) {
+            return;
+        }
+
+        this.invalidateUsers(usernames);
+        String sqlStr = "delete from person_side where associatedUsername in (" + Accessor.createPlaceholders(usernames.length) + ")";
+        PreparedStatement statement = this.database.prepareStatement(sqlStr);
+        try {
+            for (int usernameIdx = 0; usernameIdx < usernames.length; ++usernameIdx) {
+                statement.setString(usernameIdx + 1, usernames[usernameIdx]);
+            }
+        } catch (SQLException err) {
+            throw new DatabaseException(err);
+        }
+        this.database.update(statement);
+    }
+
+    /**
+     * Marks every user's tags as stale (ex. when the person table is cleared)
+     *
+     * @throws DatabaseException when a database error occurs
+     */
+    void invalidateAll() throws DatabaseException {
+        this.database.update("delete from person_side_fresh");
+    }
+
+    /**
+     * Forgets every tag (ex. when the user table is cleared)
+     *
+     * @throws DatabaseException when a database error occurs
+     */
+    void clear() throws DatabaseException {
+        this.database.update("delete from person_side");
+        this.invalidateAll();
+    }
+
+    /**
+     * Checks if a user's tags are up to date
+     *
+     * @param username is the username of the user
+     * @return true if they are, and false if they need to be tagged again
+     * @throws DatabaseException when a database error occurs
+     */
+    private boolean isFresh(String username) throws DatabaseException {
+        String sqlStr = "select 1 from person_side_fresh where associatedUsername == ?";
+        PreparedStatement statement = this.database.prepareStatement(sqlStr);
+        try {
+            statement.setString(1, username);
+        } catch (SQLException err) {
+            throw new DatabaseException(err);
+        }
+        return this.database.query(statement, (result) -> result.getInt(1)).size() > 0;
+    }
+
+    /**
+     * Tags a user's ancestors with their sides (starting from the user's own
+     * Person), replacing their old tags
+     *
+     * @param username is the username of the user
+     * @throws DatabaseException when a database error occurs
+     */
+    private void tagUser(String username) throws DatabaseException {
+        String deleteSqlStr = "delete from person_side where associatedUsername == ?";
+        PreparedStatement deleteStatement = this.database.prepareStatement(deleteSqlStr);
+        String personIDSqlStr = "select personID from user where username == ?";
+        PreparedStatement personIDStatement = this.database.prepareStatement(personIDSqlStr);
+        try {
+            deleteStatement.setString(1, username);
+            personIDStatement.setString(1, username);
+        } catch (SQLException err) {
+            throw new DatabaseException(err);
+        }
+        this.database.update(deleteStatement);
+        ArrayList<String> personIDs = this.database.query(personIDStatement, (result) -> result.getString(1));
+
+        if (personIDs.size() > 0 && personIDs.get(0) != null) {
+            // each (ancestor, side) pair is only found once, so loops in the tree end too
+            String tagSqlStr =
+                "with recursive side_ancestor(personID, side) as (\n" +
+                "    select case parent.isMother when 0 then fatherID else motherID end, case parent.isMother when 0 then ? else ? end\n" +
+                "    from person cross join (select 0 as isMother union all select 1) as parent\n" +
+                "    where personID == ? and associatedUsername == ?\n" +
+                "    union\n" +
+                "    select case parent.isMother when 0 then child.fatherID else child.motherID end, side_ancestor.side\n" +
+                "    from side_ancestor\n" +
+                "    join person as child on child.personID == side_ancestor.personID\n" +
+                "    cross join (select 0 as isMother union all select 1) as parent\n" +
+                "    where child.associatedUsername == ?\n" +
+                ")\n" +
+                "insert into person_side (associatedUsername, sides, personID)\n" +
+                "select ?, sum(side), personID from side_ancestor\n" +
+                "where personID in (select personID from person where associatedUsername == ?) group by personID";
+            PreparedStatement tagStatement = this.database.prepareStatement(tagSqlStr);
+            try {
+                tagStatement.setInt(1, PersonSides.FATHER_SIDE);
+                tagStatement.setInt(2, PersonSides.MOTHER_SIDE);
+                tagStatement.setString(3, personIDs.get(0));
+                tagStatement.setString(4, username);
+                tagStatement.setString(5, username);
+                tagStatement.setString(6, username);
+                tagStatement.setString(7, username);
+            } catch (SQLException err) {
+                throw new DatabaseException(err);
+            }
+            this.database.update(tagStatement);
+        }
+
+        String freshSqlStr = "insert or ignore into person_side_fresh (associatedUsername) values (?)";
+        PreparedStatement freshStatement = this.database.prepareStatement(freshSqlStr);
+        try {
+            freshStatement.setString(1, username);
+        } catch (SQLException err) {
+            throw new DatabaseException(err);
+        }
+        this.database.update(freshStatement);
+    }
+}
@@ -0,0 +1,169 @@
+package dataAccess;
+
+import org.junit.jupiter.api.*;
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.Arrays;
+
+import models.Event;
+import models.Person;
+import models.User;
+
+/**
+ * Contains the test cases that ensure the PersonSides class (and the side
+ * filters of EventAccessor) run correctly
+ */
+@TestMethodOrder(MethodOrderer.OrderAnnotation.class)
+public class PersonSidesTest {
+    /**
+     * Runs fail(), but shows a traceback to the call of this method, instead
+     * of where the error was thrown
+     *
+     * @param err is the error that was thrown
+     */
+    private void failNoTraceback(Exception err) {
+        fail(err.getMessage());
+    }
+
+    /**
+     * Signals the Database class to use the testing database for testing
+     */
+    @BeforeAll
+    static public void useTestDB() {
+        Database.useTestDB();
+    }
+
+    /**
+     * Ensures a fresh database before each test, with a user whose
+     * grandparents share an ancestor (so the elder is on both sides)
+     *
+     * @throws DatabaseException whenever reset() does
+     * @throws BadAccessException whenever the accessors do
+     */
+    @BeforeEach
+    public void resetDatabase() throws DatabaseException, BadAccessException {
+        try (Database database = new Database()) {
+            database.reset();
+            User[] users = {new User("baseUser", "password", "base@email.test", "Base", "User", "m", null)};
+            UserAccessor userAcc = new UserAccessor(database);
+            userAcc.create(users);
+            Person[] persons = {
+                new Person("elder", "baseUser", "Elder", "User", "m"),
+                new Person("grandfather", "baseUser", "Grandpa", "User", "m", "elder", null, null),
+                new Person("grandmother", "baseUser", "Grandma", "User", "f", "elder", null, null),
+                new Person("father", "baseUser", "Dad", "User", "m", "grandfather", null, null),
+                new Person("mother", "baseUser", "Mom", "User", "f", null, "grandmother", null),
+                new Person("child", "baseUser", "Base", "User", "m", "father", "mother", null),
+            };
+            new PersonAccessor(database).create(persons);
+            users[0].setPersonID("child");
+            userAcc.update(users);
+            Event[] events = new Event[persons.length];
+            for (int personIdx = 0; personIdx < persons.length; ++personIdx) {
+                String personID = persons[personIdx].getPersonID();
+                events[personIdx] = new Event(personID + "Birth", "baseUser", personID, 1.0f, 1.0f, "USA", "Provo", "Birth", 1900 + personIdx);
+            }
+            new EventAccessor(database).create(events);
+            new PersonSides(database).tagUsers(new String[]{"baseUser"});
+            database.commit();
+        }
+    }
+
+    /**
+     * Returns the sorted IDs of the Events found by a filter
+     *
+     * @param database is the database to read from
+     * @param sides is the side bits to filter by, or 0 for any
+     * @param gender is the gender to filter by, or null for either
+     * @return the sorted event IDs
+     * @throws DatabaseException whenever getFilteredForUser() does
+     */
+    private String[] getFilteredIDs(Database database, int sides, String gender) throws DatabaseException {
+        Event[] events = new EventAccessor(database).getFilteredForUser("baseUser", sides, gender, null);
+        String[] eventIDs = new String[events.length];
+        for (int eventIdx = 0; eventIdx < events.length; ++eventIdx) {
+            eventIDs[eventIdx] = events[eventIdx].getEventID();
+        }
+        Arrays.sort(eventIDs);
+        return eventIDs;
+    }
+
+    /**
+     * Ensures ancestors are tagged with their sides (the elder with both), and
+     * can be filtered by gender too
+     */
+    @Test
+    @DisplayName("Side tags test")
+    public void testSideTags() {
+        try (Database database = new Database()) {
+            assertArrayEquals(
+                new String[]{"elderBirth", "fatherBirth", "grandfatherBirth"},
+                this.getFilteredIDs(database, PersonSides.FATHER_SIDE, null)
+            );
+            assertArrayEquals(
+                new String[]{"elderBirth", "grandmotherBirth", "motherBirth"},
+                this.getFilteredIDs(database, PersonSides.MOTHER_SIDE, null)
+            );
+            assertArrayEquals(
+                new String[]{"grandmotherBirth", "motherBirth"},
+                this.getFilteredIDs(database, PersonSides.MOTHER_SIDE, "f")
+            );
+            // the user's own person isn't on either side
+            assertArrayEquals(
+                new String[]{"childBirth", "elderBirth", "fatherBirth", "grandfatherBirth"},
+                this.getFilteredIDs(database, 0, "m")
+            );
+            assertArrayEquals(new int[]{PersonSides.FATHER_SIDE, PersonSides.FATHER_SIDE | PersonSides.MOTHER_SIDE}, PersonSides.findMatchingTags(PersonSides.FATHER_SIDE));
+        } catch (DatabaseException err) {
+            this.failNoTraceback(err);
+        }
+    }
+
+    /**
+     * Ensures changing the tree, or the user's own person, tags the sides again
+     */
+    @Test
+    @DisplayName("Side tags changed test")
+    public void testSideTagsChanged() {
+        try (Database database = new Database()) {
+            PersonAccessor personAcc = new PersonAccessor(database);
+            Person[] updatedPersons = {new Person("father", "baseUser", "Dad", "User", "m")};
+            personAcc.update(updatedPersons);
+            assertArrayEquals(new String[]{"fatherBirth"}, this.getFilteredIDs(database, PersonSides.FATHER_SIDE, null));
+            assertArrayEquals(
+                new String[]{"elderBirth", "grandmotherBirth", "motherBirth"},
+                this.getFilteredIDs(database, PersonSides.MOTHER_SIDE, null)
+            );
+
+            // sides are relative to the user's own person
+            User user = new UserAccessor(database).getByUsername("baseUser");
+            user.setPersonID("mother");
+            User[] users = {user};
+            new UserAccessor(database).update(users);
+            assertEquals(0, this.getFilteredIDs(database, PersonSides.FATHER_SIDE, null).length);
+            assertArrayEquals(new String[]{"elderBirth", "grandmotherBirth"}, this.getFilteredIDs(database, PersonSides.MOTHER_SIDE, null));
+        } catch (DatabaseException | BadAccessException err) {
+            this.failNoTraceback(err);
+        }
+    }
+
+    /**
+     * Ensures stale users are tagged by tagStaleUsers(), and not before
+     */
+    @Test
+    @DisplayName("Stale users tagged test")
+    public void testTagStaleUsers() {
+        try (Database database = new Database()) {
+            String sqlStr = "select * from person_side_fresh";
+            assertEquals(1, database.query(sqlStr, (result) -> null).size());
+            new PersonAccessor(database).update(new Person[]{new Person("elder", "baseUser", "Elder", "User", "m")});
+            assertEquals(0, database.query(sqlStr, (result) -> null).size());
+
+            new PersonSides(database).tagStaleUsers();
+            assertEquals(1, database.query(sqlStr, (result) -> null).size());
+            assertEquals(3, database.query("select * from person_side where sides == 3 or sides == 1", (result) -> null).size());
+        } catch (DatabaseException | BadAccessException err) {
+            this.failNoTraceback(err);
+        }
+    }
+}
@@ -0,0 +1,220 @@
+package dataAccess;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.security.SecureRandom;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+
+/**
+ * Stateless auth tokens: instead of a random string that has to be looked up
+ * in the authtoken table, the token itself carries the username and expiry,
+ * signed with HMAC-SHA256. Validating one is pure CPU work, and any server
+ * sharing the same secret can validate tokens issued by the others.
+ *
+ * Tokens look like "base64url(payload).base64url(signature)", where the payload
+ * is the issue time and expiry (8 byte longs) followed by the UTF-8 username.
+ * The signature is truncated to SIGNATURE_SIZE bytes to keep tokens short.
+ *
+ * Since nothing is stored, tokens can't be deleted; instead, a small in-memory
+ * revocation list rejects tokens issued before a /clear (or /load), or before
+ * their user was deleted. (Revocations are per server, so on other servers a
+ * revoked token still works until it expires; keep TOKEN_TTL short.)
+ *
+ * Signed tokens are off unless the "familymap.signedTokens" system property is
+ * "true". The secret comes from the "familymap.tokenSecret" system property
+ * (base64); without one, a random secret is made (only good for one server).
+ */
+public class SignedAuthTokens {
+    /** The system property that turns signed tokens on */
+    static final String ENABLED_PROPERTY = "familymap.signedTokens";
+    /** The system property holding the (base64) signing secret */
+    static final String SECRET_PROPERTY = "familymap.tokenSecret";
+    /** The number of signature bytes kept in each token */
+    static final int SIGNATURE_SIZE = 16;
+    /** The number of users that can be revoked individually before everyone is revoked instead */
+    static final int MAX_REVOKED_USERNAMES = 1024;
+
+    /** Whether new auth tokens should be signed tokens */
+    static private volatile boolean isEnabled = Boolean.getBoolean(SignedAuthTokens.ENABLED_PROPERTY);
+    /** The key tokens are signed with */
+    static private final SecretKeySpec key = new SecretKeySpec(SignedAuthTokens.loadSecret(), "HmacSHA256");
+    /** Mac instances aren't thread safe, so each thread gets its own */
+    static private final ThreadLocal<Mac> macs = ThreadLocal.withInitial(SignedAuthTokens::createMac);
+    /** Tokens issued at or before this time (in epoch milliseconds) are revoked */
+    static private final AtomicLong revokedBefore = new AtomicLong(0);
+    /** Tokens for these users issued at or before their times are revoked */
+    static private final ConcurrentHashMap<String, Long> revokedBeforeByUsername = new ConcurrentHashMap<>();
+
+    static public boolean isEnabled() {
+        return SignedAuthTokens.isEnabled;
+    }
+
+    static public void setEnabled(boolean isEnabled) {
+        SignedAuthTokens.isEnabled = isEnabled;
+    }
+
+    /**
+     * Indicates if a token string is a signed token (as opposed to a random
+     * one stored in the authtoken table). This doesn't check the signature.
+     *
+     * @param token is the token string
+     * @return whether the token is shaped like a signed token
+     */
+    static public boolean isSignedToken(String token) {
+        // random tokens are plain base64url, which never has a "."
+        return token.indexOf('.') != -1;
+    }
+
+    /**
+     * Creates a signed token for a user
+     *
+     * @param username is the username of the user
+     * @param issuedAt is when the token is issued (in epoch milliseconds)
+     * @param expiresAt is when the token expires (in epoch milliseconds)
+     * @return the signed token
+     */
+    static public String sign(String username, long issuedAt, long expiresAt) {
+        byte[] usernameBytes = username.getBytes(StandardCharsets.UTF_8);
+        ByteBuffer payload = ByteBuffer.allocate(2 * Long.BYTES + usernameBytes.length);
+        payload.putLong(issuedAt);
+        payload.putLong(expiresAt);
+        payload.put(usernameBytes);
+
+        Base64.Encoder encoder = Base64.getUrlEncoder().withoutPadding();
+        byte[] payloadBytes = payload.array();
+        return encoder.encodeToString(payloadBytes) + "." + encoder.encodeToString(SignedAuthTokens.createSignature(payloadBytes));
+    }
+
+    /**
+     * Checks a signed token, returning who it belongs to if it is valid
+     *
+     * @param token is the token string
+     * @param now is the current time (in epoch milliseconds)
+     * @return the username the token belongs to, or null if the token is forged, expired, or revoked
+     */
+    static public String verify(String token, long now) {
+        int dotIdx = token.indexOf('.');
+        if (dotIdx == -1) {
+            return null;
+        }
+
+        byte[] payloadBytes;
+        byte[] signature;
+        try {
+            Base64.Decoder decoder = Base64.getUrlDecoder();
+            payloadBytes = decoder.decode(token.substring(0, dotIdx));
+            signature = decoder.decode(token.substring(dotIdx + 1));
+        } catch (IllegalArgumentException err) {
+            return null;
+        }
+        // constant time, so the signature can't be guessed byte by byte
+        if (!MessageDigest.isEqual(signature, SignedAuthTokens.createSignature(payloadBytes))) {
+            return null;
+        }
+        if (payloadBytes.length < 2 * Long.BYTES) {
+            return null;
+        }
+
+        ByteBuffer payload = ByteBuffer.wrap(payloadBytes);
+        long issuedAt = payload.getLong();
+        long expiresAt = payload.getLong();
+        String username = new String(payloadBytes, 2 * Long.BYTES, payloadBytes.length - 2 * Long.BYTES, StandardCharsets.UTF_8);
+        if (expiresAt <= now || SignedAuthTokens.isRevoked(username, issuedAt)) {
+            return null;
+        }
+        return username;
+    }
+
+    /**
+     * Revokes every token issued so far (ex. when the database is cleared)
+     */
+    static public void revokeAll() {
+        long now = System.currentTimeMillis();
+        SignedAuthTokens.revokedBefore.accumulateAndGet(now, Math::max);
+        // everything in here is covered now
+        SignedAuthTokens.revokedBeforeByUsername.clear();
+    }
+
+    /**
+     * Revokes every token issued so far to some users (ex. when they are deleted)
+     *
+     * @param usernames are the usernames of the users
+     */
+    static void revokeUsernames(String[] usernames) {
+        long now = System.currentTimeMillis();
+        if (SignedAuthTokens.revokedBeforeByUsername.size() + usernames.length > SignedAuthTokens.MAX_REVOKED_USERNAMES) {
+            // the list is only meant to be small; revoking too much is safer than too little
+            SignedAuthTokens.revokeAll();
+            return;
+        }
+        for (String username : usernames) {
+            SignedAuthTokens.revokedBeforeByUsername.merge(username, now, Math::max);
+        }
+    }
+
+    /**
+     * Indicates if a token was revoked
+     *
+     * @param username is the username the token belongs to
+     * @param issuedAt is when the token was issued
+     * @return whether the token was revoked
+     */
+    static private boolean isRevoked(String username, long issuedAt) {
+        if (issuedAt <= SignedAuthTokens.revokedBefore.get()) {
+            return true;
+        }
+        Long userRevokedBefore = SignedAuthTokens.revokedBeforeByUsername.get(username);
+        return userRevokedBefore != null && issuedAt <= userRevokedBefore;
+    }
+
+    /**
+     * Signs a token payload
+     *
+     * @param payloadBytes is the payload to sign
+     * @return the (truncated) signature
+     */
+    static private byte[] createSignature(byte[] payloadBytes) {
+        Mac mac = SignedAuthTokens.macs.get();
+        byte[] signature = mac.doFinal(payloadBytes);
+        return Arrays.copyOf(signature, SignedAuthTokens.SIGNATURE_SIZE);
+    }
+
+    /**
+     * Creates a Mac for the current thread
+     *
+     * @return the Mac, initialized with the signing key
+     */
+    static private Mac createMac() {
+        try {
+            Mac mac = Mac.getInstance("HmacSHA256");
+            mac.init(SignedAuthTokens.key);
+            return mac;
+        } catch (GeneralSecurityException err) {
+            // every JDK is required to have HmacSHA256...
+            throw new AssertionError("HmacSHA256 is not available: " + err.getMessage());
+        }
+    }
+
+    /**
+     * Reads the signing secret from its system property, or makes a random one
+     *
+     * @return the secret
+     */
+    static private byte[] loadSecret() {
+        String secret = System.getProperty(SignedAuthTokens.SECRET_PROPERTY);
+        if (secret != null) {
+            return Base64.getDecoder().decode(secret);
+        }
+        byte[] randomSecret = new byte[32];
+        new SecureRandom().nextBytes(randomSecret);
+        return randomSecret;
+    }
+}
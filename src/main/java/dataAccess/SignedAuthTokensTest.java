@@ -0,0 +1,136 @@
+package dataAccess;
+
+import org.junit.jupiter.api.*;
+import static org.junit.jupiter.api.Assertions.*;
+
+import models.User;
+
+/**
+ * Contains the test cases that ensure the SignedAuthTokens class runs correctly
+ */
+@TestMethodOrder(MethodOrderer.OrderAnnotation.class)
+public class SignedAuthTokensTest {
+    /**
+     * Runs fail(), but shows a traceback to the call of this method, instead
+     * of where the error was thrown
+     * 
+     * @param err is the error that was thrown
+     */
+    private void failNoTraceback(Exception err) {
+        fail(err.getMessage());
+    }
+
+    /**
+     * Signals the Database class to use the testing database for testing
+     */
+    @BeforeAll
+    static public void useTestDB() {
+        Database.useTestDB();
+    }
+
+    /**
+     * Ensures a fresh database (with a base user) before each test
+     * 
+     * @throws DatabaseException whenever reset() does
+     * @throws BadAccessException whenever the accessors do
+     */
+    @BeforeEach
+    public void resetDatabase() throws DatabaseException, BadAccessException {
+        try (Database database = new Database()) {
+            database.reset();
+            User[] users = {new User("baseUser", "password", "base@email.test", "Base", "User", "m", null)};
+            new UserAccessor(database).create(users);
+            database.commit();
+        }
+    }
+
+    /**
+     * Waits until the clock ticks over to the next millisecond, so that tokens
+     * and revocations don't happen "at the same time"
+     */
+    private void waitForNextMillisecond() {
+        long now = System.currentTimeMillis();
+        while (System.currentTimeMillis() <= now) {
+            Thread.onSpinWait();
+        }
+    }
+
+    /**
+     * Makes a token for baseUser that was issued just now (after any earlier revocations)
+     * 
+     * @return the signed token
+     */
+    private String signFreshToken() {
+        this.waitForNextMillisecond();
+        long now = System.currentTimeMillis();
+        return SignedAuthTokens.sign("baseUser", now, now + 60000);
+    }
+
+    /**
+     * Ensures signed tokens can be verified
+     */
+    @Test
+    @DisplayName("Verify signed token test")
+    public void testVerifySignedToken() {
+        String token = this.signFreshToken();
+        assertTrue(SignedAuthTokens.isSignedToken(token));
+        assertFalse(SignedAuthTokens.isSignedToken("abcdEFGH-_1"));
+        // URL safe!
+        assertTrue(token.matches("[A-Za-z0-9_\\-.]+"));
+        assertEquals("baseUser", SignedAuthTokens.verify(token, System.currentTimeMillis()));
+
+        long now = System.currentTimeMillis();
+        String unicodeToken = SignedAuthTokens.sign("b\u00f6b", now, now + 60000);
+        assertEquals("b\u00f6b", SignedAuthTokens.verify(unicodeToken, System.currentTimeMillis()));
+    }
+
+    /**
+     * Ensures forged, mangled, and expired tokens are rejected
+     */
+    @Test
+    @DisplayName("Verify signed token test -- invalid tokens")
+    public void testVerifyInvalidTokens() {
+        String token = this.signFreshToken();
+        long now = System.currentTimeMillis();
+
+        String forgedPayload = SignedAuthTokens.sign("someoneElse", now, now + 60000).split("\\.")[0];
+        String signature = token.split("\\.")[1];
+        assertNull(SignedAuthTokens.verify(forgedPayload + "." + signature, now));
+        assertNull(SignedAuthTokens.verify(token.substring(0, token.length() - 2), now));
+        assertNull(SignedAuthTokens.verify("not.base64!", now));
+        assertNull(SignedAuthTokens.verify(".", now));
+
+        // expired
+        assertNull(SignedAuthTokens.verify(token, now + 60000));
+    }
+
+    /**
+     * Ensures resetting the database and deleting users revoke their tokens
+     */
+    @Test
+    @DisplayName("Revoke signed token test")
+    public void testRevokeSignedTokens() {
+        String token = this.signFreshToken();
+        assertNotNull(SignedAuthTokens.verify(token, System.currentTimeMillis()));
+
+        this.waitForNextMillisecond();
+        try (Database database = new Database()) {
+            User[] users = {new UserAccessor(database).getByUsername("baseUser")};
+            new UserAccessor(database).delete(users);
+            database.commit();
+        } catch (DatabaseException | BadAccessException err) {
+            this.failNoTraceback(err);
+        }
+        assertNull(SignedAuthTokens.verify(token, System.currentTimeMillis()));
+
+        String otherToken = this.signFreshToken();
+        assertNotNull(SignedAuthTokens.verify(otherToken, System.currentTimeMillis()));
+        this.waitForNextMillisecond();
+        assertDoesNotThrow(() -> {
+            try (Database database = new Database()) {
+                database.reset();
+            }
+        });
+        assertNull(SignedAuthTokens.verify(otherToken, System.currentTimeMillis()));
+    }
+}
@@ -0,0 +1,62 @@
+package dataAccess;
+
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * A bounded, concurrent dictionary of canonical Strings. A few Event columns
+ * (eventType, country, and city) come from a small set of values, but the
+ * database hands back a new String for every row, so a cached tree would
+ * otherwise hold thousands of copies of "Birth". Passing those values
+ * through canonicalize() makes every copy share one instance. Columns with
+ * many distinct values (like names and usernames) aren't passed through it,
+ * since they would only fill it up.
+ *
+ * The dictionary doesn't evict single strings. Once it holds MAX_SIZE
+ * strings it stops adding new ones (canonicalize() just returns what it was
+ * given), since a dictionary that full means the values aren't repeating
+ * much anyway. Database.reset() empties it, so values from cleared data
+ * don't keep their places.
+ */
+public class StringDictionary {
+    /** The most strings the dictionary holds (a few more can slip in when threads race to add the last ones) */
+    static final int MAX_SIZE = 100000;
+    /** The longest string worth adding (longer ones are rarely repeated) */
+    static final int MAX_LENGTH = 64;
+
+    /** The canonical instance of each string */
+    static private final ConcurrentHashMap<String, String> canonicalStrings = new ConcurrentHashMap<>();
+
+    /**
+     * Returns the canonical instance of a string, adding it to the
+     * dictionary if it isn't there yet (and there is room)
+     *
+     * @param str is the string to canonicalize (which may be null)
+     * @return an equal string, shared with every other caller passing an equal string
+     */
+    static public String canonicalize(String str) {
+        if (str == null || str.length() > StringDictionary.MAX_LENGTH) {
+            return str;
+        }
+        String canonicalStr = StringDictionary.canonicalStrings.get(str);
+        if (canonicalStr != null) {
+            return canonicalStr;
+        }
+        if (StringDictionary.canonicalStrings.size() >= StringDictionary.MAX_SIZE) {
+            return str;
+        }
+        canonicalStr = StringDictionary.canonicalStrings.putIfAbsent(str, str);
+        return canonicalStr == null ? str : canonicalStr;
+    }
+
+    static public int getSize() {
+        return StringDictionary.canonicalStrings.size();
+    }
+
+    /**
+     * Removes every string from the dictionary (strings already handed out
+     * stay equal, they just stop being shared with new ones)
+     */
+    static public void clear() {
+        StringDictionary.canonicalStrings.clear();
+    }
+}
@@ -0,0 +1,122 @@
+package dataAccess;
+
+import org.junit.jupiter.api.*;
+import static org.junit.jupiter.api.Assertions.*;
+
+import models.Event;
+import models.Person;
+import models.User;
+
+/**
+ * Contains the test cases that ensure the StringDictionary class runs correctly
+ */
+@TestMethodOrder(MethodOrderer.OrderAnnotation.class)
+public class StringDictionaryTest {
+    /**
+     * Runs fail(), but shows a traceback to the call of this method, instead
+     * of where the error was thrown
+     *
+     * @param err is the error that was thrown
+     */
+    private void failNoTraceback(Exception err) {
+        fail(err.getMessage());
+    }
+
+    /**
+     * Signals the Database class to use the testing database for testing
+     */
+    @BeforeAll
+    static public void useTestDB() {
+        Database.useTestDB();
+    }
+
+    /**
+     * Ensures the dictionary starts empty before each test
+     */
+    @BeforeEach
+    public void clearDictionary() {
+        StringDictionary.clear();
+    }
+
+    /**
+     * Ensures equal strings are canonicalized to the same instance
+     */
+    @Test
+    @DisplayName("Canonicalize test")
+    public void testCanonicalize() {
+        String first = new String("Birth");
+        String second = new String("Birth");
+        assertNotSame(first, second);
+        assertSame(first, StringDictionary.canonicalize(first));
+        assertSame(first, StringDictionary.canonicalize(second));
+        assertEquals(1, StringDictionary.getSize());
+
+        assertNull(StringDictionary.canonicalize(null));
+        String longStr = "x".repeat(StringDictionary.MAX_LENGTH + 1);
+        assertSame(longStr, StringDictionary.canonicalize(longStr));
+        assertEquals(1, StringDictionary.getSize());
+    }
+
+    /**
+     * Ensures the dictionary stops growing once it is full
+     */
+    @Test
+    @DisplayName("Canonicalize test -- full dictionary")
+    public void testFullDictionary() {
+        for (int strIdx = 0; strIdx < StringDictionary.MAX_SIZE; ++strIdx) {
+            StringDictionary.canonicalize("str" + strIdx);
+        }
+        assertEquals(StringDictionary.MAX_SIZE, StringDictionary.getSize());
+
+        String extra = new String("extra");
+        assertSame(extra, StringDictionary.canonicalize(extra));
+        assertNotSame(extra, StringDictionary.canonicalize(new String("extra")));
+        assertEquals(StringDictionary.MAX_SIZE, StringDictionary.getSize());
+        // strings already in the dictionary are still shared
+        assertSame(StringDictionary.canonicalize("str0"), StringDictionary.canonicalize(new String("str0")));
+        StringDictionary.clear();
+    }
+
+    /**
+     * Ensures rows read by the accessors share their repeated event values,
+     * but don't fill the dictionary with names and usernames
+     */
+    @Test
+    @DisplayName("Accessors share strings test")
+    public void testAccessorsShareStrings() {
+        try (Database database = new Database()) {
+            database.reset();
+            User[] users = {new User("baseUser", "password", "base@email.test", "Base", "User", "m", null)};
+            new UserAccessor(database).create(users);
+            Person[] persons = {
+                new Person("father", "baseUser", "Dad", "User", "m"),
+                new Person("child", "baseUser", "Base", "User", "m", "father", null, null),
+            };
+            new PersonAccessor(database).create(persons);
+            Event[] events = {
+                new Event("childBirth", "baseUser", "child", 1.0f, 1.0f, "USA", "Provo", "Birth", 2000),
+                new Event("fatherBirth", "baseUser", "father", 1.0f, 1.0f, "USA", "Provo", "Birth", 1970),
+            };
+            new EventAccessor(database).create(events);
+
+            Event[] readEvents = new EventAccessor(database).getAllForUser("baseUser");
+            assertEquals(2, readEvents.length);
+            assertSame(readEvents[0].getCountry(), readEvents[1].getCountry());
+            assertSame(readEvents[0].getCity(), readEvents[1].getCity());
+            assertSame(readEvents[0].getEventType(), readEvents[1].getEventType());
+
+            String[] columns = {"eventType"};
+            Event[] projectedEvents = new EventAccessor(database).getAllForUser("baseUser", columns);
+            assertSame(readEvents[0].getEventType(), projectedEvents[0].getEventType());
+
+            new PersonAccessor(database).getAllForUser("baseUser");
+            // just "USA", "Provo", and "Birth"
+            assertEquals(3, StringDictionary.getSize());
+
+            database.reset();
+            assertEquals(0, StringDictionary.getSize());
+        } catch (DatabaseException | BadAccessException err) {
+            this.failNoTraceback(err);
+        }
+    }
+}
@@ -13,6 +13,11 @@ import models.User;
  * It can create, delete, update, and find Users using a variety of methods.
  */
 public class UserAccessor extends Accessor<User> {
+    /** Where the users' stats are kept */
+    private UserStats userStats;
+    /** Where the users' ancestors are tagged by side */
+    private PersonSides personSides;
+
     /**
      * Creates a UserAccessor with a given database
      * 
@@ -20,6 +25,8 @@ public class UserAccessor extends Accessor<User> {
      */
     public UserAccessor(Database database) {
         super(database);
+        this.userStats = new UserStats(database);
+        this.personSides = new PersonSides(database);
     }
     
     /**
@@ -167,16 +174,26 @@ public class UserAccessor extends Accessor<User> {
             throw new BadAccessException(errMsg);
         }
 
+        String[] usernames = new String[models.length];
+        for (int userIdx = 0; userIdx < models.length; ++userIdx) {
+            usernames[userIdx] = models[userIdx].getUsername();
+        }
+        AuthTokenCache.invalidateUsernames(this.database, usernames);
+        SignedAuthTokens.revokeUsernames(usernames);
+        this.userStats.forgetUsers(usernames);
+        this.personSides.forgetUsers(usernames);
+
         StringBuilder sqlStr = new StringBuilder();
-        sqlStr.append("delete from user where\n");
+        sqlStr.append("delete from user where username in (");
         boolean firstUser = true;
         for (int i = 0; i < models.length; ++i) {
             if (!firstUser) {
-                sqlStr.append(" or ");
+                sqlStr.append(", ");
             }
-            sqlStr.append("username == ?");
+            sqlStr.append("?");
             firstUser = false;
         }
+        sqlStr.append(")");
 
         PreparedStatement statement = this.database.prepareStatement(sqlStr.toString());
         for (int userIdx = 0; userIdx < models.length; ++userIdx) {
@@ -217,6 +234,15 @@ public class UserAccessor extends Accessor<User> {
             }
             throw new BadAccessException(errMsg);
         }
+
+        String[] usernames = new String[models.length];
+        for (int userIdx = 0; userIdx < models.length; ++userIdx) {
+            usernames[userIdx] = models[userIdx].getUsername();
+        }
+        AuthTokenCache.invalidateUsernames(this.database, usernames);
+        // their ancestors are counted (and tagged) from their personID, which may be changing
+        this.userStats.invalidateGenerations(usernames);
+        this.personSides.invalidateUsers(usernames);
         
         StringBuilder passwordStr = new StringBuilder();
         passwordStr.append("password = case\n");
@@ -309,15 +335,16 @@ public class UserAccessor extends Accessor<User> {
     @Override
     public boolean[] exists(User[] models) throws DatabaseException {
         StringBuilder sqlStr = new StringBuilder();
-        sqlStr.append("select username from user where\n");
+        sqlStr.append("select username from user where username in (");
         boolean firstUser = true;
         for (int i = 0; i < models.length; ++i) {
             if (!firstUser) {
-                sqlStr.append(" or ");
+                sqlStr.append(", ");
             }
-            sqlStr.append("username == ?");
+            sqlStr.append("?");
             firstUser = false;
         }
+        sqlStr.append(")");
 
         PreparedStatement statement = this.database.prepareStatement(sqlStr.toString());
         for (int userIdx = 0; userIdx < models.length; ++userIdx) {
@@ -356,6 +383,10 @@ public class UserAccessor extends Accessor<User> {
 
     @Override
     public void clear() throws DatabaseException {
+        AuthTokenCache.invalidateAll(this.database);
+        SignedAuthTokens.revokeAll();
+        this.userStats.clear();
+        this.personSides.clear();
         String sqlStr = "delete from user";
         this.database.update(sqlStr);
     }
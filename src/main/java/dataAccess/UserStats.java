@@ -0,0 +1,292 @@
+package dataAccess;
+
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+
+/**
+ * Gives access to the user_stats table, which keeps counts of each user's
+ * Events (by country, eventType, and decade) and ancestors (by generation).
+ *
+ * Event counts are kept up to date by EventAccessor, which adds and
+ * subtracts the Events it creates, updates, and deletes, so reading them
+ * never goes through the user's Events. Generation counts can't be kept that
+ * way (one new parent link moves every ancestor above it), so PersonAccessor
+ * and UserAccessor just mark them stale, and the next read counts them again
+ * by walking the whole tree (see getCounts()). Only reads between changes to
+ * a user's Persons are quick for generations. Users with up to date
+ * generation counts are listed in the user_stats_fresh table.
+ */
+public class UserStats {
+    /** The statType of Event counts by country */
+    static public final String COUNTRY_TYPE = "country";
+    /** The statType of Event counts by eventType */
+    static public final String EVENT_TYPE_TYPE = "eventType";
+    /** The statType of Event counts by decade (ex. "1990" for 1990 to 1999) */
+    static public final String DECADE_TYPE = "decade";
+    /** The statType of ancestor counts by generation (1 for parents, 2 for grandparents, and so on) */
+    static public final String GENERATION_TYPE = "generation";
+    /** The most generations of ancestors that are counted */
+    static final int MAX_GENERATION = 1000;
+
+    /** The database the stats are in */
+    private Database database;
+
+    /**
+     * Creates a UserStats with a given database
+     *
+     * @param database is the database to use
+     */
+    public UserStats(Database database) {
+        this.database = database;
+    }
+
+    /**
+     * Returns the counts of one type for a user. Generation counts that are
+     * stale are counted again first, by walking the user's whole tree (which
+     * must be committed afterwards).
+     *
+     * @param username is the username of the user
+     * @param statType is the type of count (COUNTRY_TYPE, EVENT_TYPE_TYPE, DECADE_TYPE, or GENERATION_TYPE)
+     * @return the counts by key, in key order for decades and generations, and most common first otherwise
+     * @throws DatabaseException when a database error occurs
+     */
+    public LinkedHashMap<String, Long> getCounts(String username, String statType) throws DatabaseException {
+        if (statType.equals(UserStats.GENERATION_TYPE) && !this.areGenerationsFresh(username)) {
+            this.countGenerations(username);
+        }
+
+        boolean isNumbered = statType.equals(UserStats.DECADE_TYPE) || statType.equals(UserStats.GENERATION_TYPE);
+        String orderStr = isNumbered ? "cast(statKey as integer), statKey" : "count desc, statKey";
+        String sqlStr = "select statKey, count from user_stats where associatedUsername == ? and statType == ? order by " + orderStr;
+        PreparedStatement statement = this.database.prepareStatement(sqlStr);
+        try {
+            statement.setString(1, username);
+            statement.setString(2, statType);
+        } catch (SQLException err) {
+            throw new DatabaseException(err);
+        }
+        LinkedHashMap<String, Long> counts = new LinkedHashMap<>();
+        this.database.query(statement, (result) -> counts.put(result.getString(1), result.getLong(2)));
+        return counts;
+    }
+
+    /**
+     * Adds (or subtracts) some Events to their users' counts, reading them
+     * from the event table. Changes must be committed or rolled back after
+     * calling this function.
+     *
+     * @param eventIDs is the IDs of the Events
+     * @param isRemoved indicates if the Events are being subtracted (ex. because they are about to be deleted)
+     * @throws DatabaseException when a database error occurs
+     */
+    void recordEvents(String[] eventIDs, boolean isRemoved) throws DatabaseException {
+        if (eventIDs.length == 0) {
+            return;
+        }
+
+        String placeholders = Accessor.createPlaceholders(eventIDs.length);
+        String sqlStr =
+            "with changed as (\n" +
+            "    select associatedUsername, country, eventType, year from event where eventID in (" + placeholders + ")\n" +
+            ")\n" +
+            "insert into user_stats (associatedUsername, statType, statKey, count)\n" +
+            "select associatedUsername, statType, statKey, count(*) * ? from (\n" +
+            "    select associatedUsername, ? as statType, country as statKey from changed\n" +
+            "    union all select associatedUsername, ?, eventType from changed\n" +
+            "    union all select associatedUsername, ?, year / 10 * 10 from changed\n" +
+            ") where true group by associatedUsername, statType, statKey\n" +
+            "on conflict (associatedUsername, statType, statKey) do update set count = count + excluded.count";
+        PreparedStatement statement = this.database.prepareStatement(sqlStr);
+        try {
+            for (int idIdx = 0; idIdx < eventIDs.length; ++idIdx) {
+                statement.setString(idIdx + 1, eventIDs[idIdx]);
+            }
+            statement.setInt(eventIDs.length + 1, isRemoved ? -1 : 1);
+            statement.setString(eventIDs.length + 2, UserStats.COUNTRY_TYPE);
+            statement.setString(eventIDs.length + 3, UserStats.EVENT_TYPE_TYPE);
+            statement.setString(eventIDs.length + 4, UserStats.DECADE_TYPE);
+        } catch (SQLException err) {
+            throw new DatabaseException(err);
+        }
+        this.database.update(statement);
+
+        if (isRemoved) {
+            // nothing is left for these keys (the Events are still there to say who they belonged to)
+            String emptySqlStr =
+                "delete from user_stats where count <= 0\n" +
+                "and associatedUsername in (select associatedUsername from event where eventID in (" + placeholders + "))";
+            PreparedStatement emptyStatement = this.database.prepareStatement(emptySqlStr);
+            try {
+                for (int idIdx = 0; idIdx < eventIDs.length; ++idIdx) {
+                    emptyStatement.setString(idIdx + 1, eventIDs[idIdx]);
+                }
+            } catch (SQLException err) {
+                throw new DatabaseException(err);
+            }
+            this.database.update(emptyStatement);
+        }
+    }
+
+    /**
+     * Marks some users' generation counts as stale (ex. because their Persons
+     * or their own personID changed). Changes must be committed or rolled
+     * back after calling this function.
+     *
+     * @param usernames is the usernames of the users
+     * @throws DatabaseException when a database error occurs
+     */
+    void invalidateGenerations(String[] usernames) throws DatabaseException {
+        if (usernames.length == 0) {
+            return;
+        }
+
+        String sqlStr = "delete from user_stats_fresh where associatedUsername in (" + Accessor.createPlaceholders(usernames.length) + ")";
+        PreparedStatement statement = this.database.prepareStatement(sqlStr);
+        try {
+            for (int usernameIdx = 0; usernameIdx < usernames.length; ++usernameIdx) {
+                statement.setString(usernameIdx + 1, usernames[usernameIdx]);
+            }
+        } catch (SQLException err) {
+            throw new DatabaseException(err);
+        }
+        this.database.update(statement);
+    }
+
+    /**
+     * Forgets every Event count (ex. when the event table is cleared)
+     *
+     * @throws DatabaseException when a database error occurs
+     */
+    void clearEvents() throws DatabaseException {
+        String sqlStr = "delete from user_stats where statType in (?, ?, ?)";
+        PreparedStatement statement = this.database.prepareStatement(sqlStr);
+        try {
+            statement.setString(1, UserStats.COUNTRY_TYPE);
+            statement.setString(2, UserStats.EVENT_TYPE_TYPE);
+            statement.setString(3, UserStats.DECADE_TYPE);
+        } catch (SQLException err) {
+            throw new DatabaseException(err);
+        }
+        this.database.update(statement);
+    }
+
+    /**
+     * Marks every user's generation counts as stale (ex. when the person
+     * table is cleared)
+     *
+     * @throws DatabaseException when a database error occurs
+     */
+    void clearGenerations() throws DatabaseException {
+        this.database.update("delete from user_stats_fresh");
+    }
+
+    /**
+     * Forgets everything about some users (ex. when they are deleted)
+     *
+     * @param usernames is the usernames of the users
+     * @throws DatabaseException when a database error occurs
+     */
+    void forgetUsers(String[] usernames) throws DatabaseException {
+        if (usernames.length == 0) {
+            return;
+        }
+
+        this.invalidateGenerations(usernames);
+        String sqlStr = "delete from user_stats where associatedUsername in (" + Accessor.createPlaceholders(usernames.length) + ")";
+        PreparedStatement statement = this.database.prepareStatement(sqlStr);
+        try {
+            for (int usernameIdx = 0; usernameIdx < usernames.length; ++usernameIdx) {
+                statement.setString(usernameIdx + 1, usernames[usernameIdx]);
+            }
+        } catch (SQLException err) {
+            throw new DatabaseException(err);
+        }
+        this.database.update(statement);
+    }
+
+    /**
+     * Forgets everything about every user (ex. when the user table is cleared)
+     *
+     * @throws DatabaseException when a database error occurs
+     */
+    void clear() throws DatabaseException {
+        this.database.update("delete from user_stats");
+        this.clearGenerations();
+    }
+
+    /**
+     * Checks if a user's generation counts are up to date
+     *
+     * @param username is the username of the user
+     * @return true if they are, and false if they need to be counted again
+     * @throws DatabaseException when a database error occurs
+     */
+    private boolean areGenerationsFresh(String username) throws DatabaseException {
+        String sqlStr = "select 1 from user_stats_fresh where associatedUsername == ?";
+        PreparedStatement statement = this.database.prepareStatement(sqlStr);
+        try {
+            statement.setString(1, username);
+        } catch (SQLException err) {
+            throw new DatabaseException(err);
+        }
+        return this.database.query(statement, (result) -> result.getInt(1)).size() > 0;
+    }
+
+    /**
+     * Counts a user's ancestors by generation (starting from the user's own
+     * Person), replacing their old generation counts
+     *
+     * @param username is the username of the user
+     * @throws DatabaseException when a database error occurs
+     */
+    private void countGenerations(String username) throws DatabaseException {
+        String deleteSqlStr = "delete from user_stats where associatedUsername == ? and statType == ?";
+        PreparedStatement deleteStatement = this.database.prepareStatement(deleteSqlStr);
+        String personIDSqlStr = "select personID from user where username == ?";
+        PreparedStatement personIDStatement = this.database.prepareStatement(personIDSqlStr);
+        try {
+            deleteStatement.setString(1, username);
+            deleteStatement.setString(2, UserStats.GENERATION_TYPE);
+            personIDStatement.setString(1, username);
+        } catch (SQLException err) {
+            throw new DatabaseException(err);
+        }
+        this.database.update(deleteStatement);
+        ArrayList<String> personIDs = this.database.query(personIDStatement, (result) -> result.getString(1));
+
+        if (personIDs.size() > 0 && personIDs.get(0) != null) {
+            String countSqlStr =
+                PersonAccessor.ANCESTORS_CTE +
+                "insert into user_stats (associatedUsername, statType, statKey, count)\n" +
+                "select ?, ?, generation, count(*) from person\n" +
+                "join (\n" +
+                "    select personID, min(generation) as generation from ancestor\n" +
+                "    where generation > 0 and personID is not null group by personID\n" +
+                ") as found using (personID)\n" +
+                "where associatedUsername == ? group by generation";
+            PreparedStatement countStatement = this.database.prepareStatement(countSqlStr);
+            try {
+                countStatement.setString(1, personIDs.get(0));
+                countStatement.setString(2, username);
+                countStatement.setInt(3, UserStats.MAX_GENERATION);
+                countStatement.setString(4, username);
+                countStatement.setString(5, UserStats.GENERATION_TYPE);
+                countStatement.setString(6, username);
+            } catch (SQLException err) {
+                throw new DatabaseException(err);
+            }
+            this.database.update(countStatement);
+        }
+
+        String freshSqlStr = "insert or ignore into user_stats_fresh (associatedUsername) values (?)";
+        PreparedStatement freshStatement = this.database.prepareStatement(freshSqlStr);
+        try {
+            freshStatement.setString(1, username);
+        } catch (SQLException err) {
+            throw new DatabaseException(err);
+        }
+        this.database.update(freshStatement);
+    }
+}
@@ -0,0 +1,174 @@
+package dataAccess;
+
+import org.junit.jupiter.api.*;
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.LinkedHashMap;
+
+import models.Event;
+import models.Person;
+import models.User;
+
+/**
+ * Contains the test cases that ensure the UserStats class runs correctly
+ */
+@TestMethodOrder(MethodOrderer.OrderAnnotation.class)
+public class UserStatsTest {
+    /**
+     * Runs fail(), but shows a traceback to the call of this method, instead
+     * of where the error was thrown
+     *
+     * @param err is the error that was thrown
+     */
+    private void failNoTraceback(Exception err) {
+        fail(err.getMessage());
+    }
+
+    /**
+     * Signals the Database class to use the testing database for testing
+     */
+    @BeforeAll
+    static public void useTestDB() {
+        Database.useTestDB();
+    }
+
+    /**
+     * Ensures a fresh database (with a user, their parents, and some events) before each test
+     *
+     * @throws DatabaseException whenever reset() does
+     * @throws BadAccessException whenever the accessors do
+     */
+    @BeforeEach
+    public void resetDatabase() throws DatabaseException, BadAccessException {
+        try (Database database = new Database()) {
+            database.reset();
+            User[] users = {
+                new User("baseUser", "password", "base@email.test", "Base", "User", "m", null),
+                new User("otherUser", "password", "other@email.test", "Other", "User", "f", null),
+            };
+            UserAccessor userAcc = new UserAccessor(database);
+            userAcc.create(users);
+            Person[] persons = {
+                new Person("father", "baseUser", "Dad", "User", "m"),
+                new Person("mother", "baseUser", "Mom", "User", "f"),
+                new Person("child", "baseUser", "Base", "User", "m", "father", "mother", null),
+                new Person("other", "otherUser", "Other", "User", "f"),
+            };
+            new PersonAccessor(database).create(persons);
+            users[0].setPersonID("child");
+            userAcc.update(users);
+            Event[] events = {
+                new Event("childBirth", "baseUser", "child", 1.0f, 1.0f, "USA", "Provo", "Birth", 2000),
+                new Event("fatherBirth", "baseUser", "father", 1.0f, 1.0f, "USA", "Provo", "Birth", 1970),
+                new Event("motherBirth", "baseUser", "mother", 1.0f, 1.0f, "Canada", "Toronto", "Birth", 1975),
+                new Event("otherBirth", "otherUser", "other", 1.0f, 1.0f, "Mexico", "Tijuana", "Birth", 1990),
+            };
+            new EventAccessor(database).create(events);
+            database.commit();
+        }
+    }
+
+    /**
+     * Creates a map of counts, in order
+     *
+     * @param keysAndCounts is each key followed by its count
+     * @return the map
+     */
+    private LinkedHashMap<String, Long> createCounts(Object... keysAndCounts) {
+        LinkedHashMap<String, Long> counts = new LinkedHashMap<>();
+        for (int argIdx = 0; argIdx < keysAndCounts.length; argIdx += 2) {
+            counts.put((String) keysAndCounts[argIdx], ((Integer) keysAndCounts[argIdx + 1]).longValue());
+        }
+        return counts;
+    }
+
+    /**
+     * Ensures creating, updating, and deleting events changes their users' counts
+     */
+    @Test
+    @DisplayName("Event counts test")
+    public void testEventCounts() {
+        try (Database database = new Database()) {
+            UserStats userStats = new UserStats(database);
+            EventAccessor eventAcc = new EventAccessor(database);
+            assertEquals(this.createCounts("USA", 2, "Canada", 1), userStats.getCounts("baseUser", UserStats.COUNTRY_TYPE));
+            assertEquals(this.createCounts("Birth", 3), userStats.getCounts("baseUser", UserStats.EVENT_TYPE_TYPE));
+            assertEquals(this.createCounts("1970", 2, "2000", 1), userStats.getCounts("baseUser", UserStats.DECADE_TYPE));
+            assertEquals(this.createCounts("Mexico", 1), userStats.getCounts("otherUser", UserStats.COUNTRY_TYPE));
+
+            Event[] updatedEvents = {new Event("motherBirth", "baseUser", "mother", 1.0f, 1.0f, "USA", "Provo", "Marriage", 1995)};
+            eventAcc.update(updatedEvents);
+            assertEquals(this.createCounts("USA", 3), userStats.getCounts("baseUser", UserStats.COUNTRY_TYPE));
+            assertEquals(this.createCounts("Birth", 2, "Marriage", 1), userStats.getCounts("baseUser", UserStats.EVENT_TYPE_TYPE));
+            assertEquals(this.createCounts("1970", 1, "1990", 1, "2000", 1), userStats.getCounts("baseUser", UserStats.DECADE_TYPE));
+
+            // moving an event moves its counts too
+            Event[] movedEvents = {new Event("otherBirth", "baseUser", "child", 1.0f, 1.0f, "Mexico", "Tijuana", "Birth", 1990)};
+            eventAcc.update(movedEvents);
+            assertEquals(0, userStats.getCounts("otherUser", UserStats.COUNTRY_TYPE).size());
+            assertEquals(this.createCounts("USA", 3, "Mexico", 1), userStats.getCounts("baseUser", UserStats.COUNTRY_TYPE));
+
+            eventAcc.delete(eventAcc.getAllForUser("baseUser"));
+            assertEquals(0, userStats.getCounts("baseUser", UserStats.COUNTRY_TYPE).size());
+            assertEquals(0, userStats.getCounts("baseUser", UserStats.EVENT_TYPE_TYPE).size());
+            assertEquals(0, userStats.getCounts("baseUser", UserStats.DECADE_TYPE).size());
+        } catch (DatabaseException | BadAccessException err) {
+            this.failNoTraceback(err);
+        }
+    }
+
+    /**
+     * Ensures ancestors are counted by generation, and counted again after their persons change
+     */
+    @Test
+    @DisplayName("Generation counts test")
+    public void testGenerationCounts() {
+        try (Database database = new Database()) {
+            UserStats userStats = new UserStats(database);
+            PersonAccessor personAcc = new PersonAccessor(database);
+            assertEquals(this.createCounts("1", 2), userStats.getCounts("baseUser", UserStats.GENERATION_TYPE));
+            // otherUser doesn't have a person yet
+            assertEquals(0, userStats.getCounts("otherUser", UserStats.GENERATION_TYPE).size());
+
+            Person[] grandparents = {new Person("grandfather", "baseUser", "Grandpa", "User", "m")};
+            personAcc.create(grandparents);
+            Person[] updatedPersons = {new Person("father", "baseUser", "Dad", "User", "m", "grandfather", null, null)};
+            personAcc.update(updatedPersons);
+            assertEquals(this.createCounts("1", 2, "2", 1), userStats.getCounts("baseUser", UserStats.GENERATION_TYPE));
+
+            // counting starts from the user's own person
+            User user = new UserAccessor(database).getByUsername("baseUser");
+            user.setPersonID("father");
+            User[] users = {user};
+            new UserAccessor(database).update(users);
+            assertEquals(this.createCounts("1", 1), userStats.getCounts("baseUser", UserStats.GENERATION_TYPE));
+        } catch (DatabaseException | BadAccessException err) {
+            this.failNoTraceback(err);
+        }
+    }
+
+    /**
+     * Ensures clearing events, or deleting a user, forgets their counts
+     */
+    @Test
+    @DisplayName("Clear counts test")
+    public void testClearCounts() {
+        try (Database database = new Database()) {
+            UserStats userStats = new UserStats(database);
+            assertEquals(1, userStats.getCounts("baseUser", UserStats.GENERATION_TYPE).size());
+
+            new EventAccessor(database).clear();
+            assertEquals(0, userStats.getCounts("baseUser", UserStats.COUNTRY_TYPE).size());
+            assertEquals(0, userStats.getCounts("otherUser", UserStats.COUNTRY_TYPE).size());
+
+            Person[] otherPersons = {new Person("other", "otherUser", "Other", "User", "f")};
+            new PersonAccessor(database).delete(otherPersons);
+            User[] otherUsers = {new User("otherUser", "password", "other@email.test", "Other", "User", "f", null)};
+            new UserAccessor(database).delete(otherUsers);
+            assertEquals(0, database.query("select * from user_stats where associatedUsername == 'otherUser'", (result) -> null).size());
+            assertEquals(1, userStats.getCounts("baseUser", UserStats.GENERATION_TYPE).size());
+        } catch (DatabaseException | BadAccessException err) {
+            this.failNoTraceback(err);
+        }
+    }
+}
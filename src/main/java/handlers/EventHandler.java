@@ -1,9 +1,12 @@
 package handlers;
 
 import java.net.HttpURLConnection;
+import java.util.Map;
 
 import com.sun.net.httpserver.*;
 
+import models.Event;
+
 import services.EventService;
 import services.requests.EventRequest;
 import services.responses.EventResponse;
@@ -11,21 +14,74 @@ import services.responses.EventResponse;
 public class EventHandler extends GenericHandler<EventRequest, EventResponse, EventService> {
     @Override
     protected EventRequest parseRequest(HttpExchange exchange) {
-        // url parts: / event (req) / eventID (opt)
-        String url = exchange.getRequestURI().toString();
+        // url parts: / event (req) / eventID OR "clusters" (opt)
+        String url = exchange.getRequestURI().getPath();
         String[] urlParts = url.split("/");
         String eventID = null;
         for (int partIdx = 0; partIdx < urlParts.length; ++partIdx) {
             // partIdx == 0 -> ""; ignore it
-            // partIdx == 1 -> "fill"; ignore it
+            // partIdx == 1 -> "event"; ignore it
             if (partIdx == 2) {
                 eventID = urlParts[partIdx];
             }
         }
 
+        Map<String, String> queryParams = this.parseQueryParams(exchange);
+
         EventRequest request = new EventRequest();
         request.authtoken = exchange.getRequestHeaders().getFirst("Authorization");
-        if (eventID == null) {
+        String limit = queryParams.get("limit");
+        if (limit != null) {
+            try {
+                request.limit = Integer.parseInt(limit);
+            } catch (NumberFormatException err) {
+                // the service rejects this with a proper message
+                request.limit = 0;
+            }
+        }
+        request.after = queryParams.get("after");
+        request.fields = this.parseListParam(queryParams.get("fields"));
+        request.ids = this.parseListParam(queryParams.get("ids"));
+        String since = queryParams.get("since");
+        if (since != null) {
+            try {
+                request.since = Long.parseLong(since);
+            } catch (NumberFormatException err) {
+                // the service rejects this with a proper message
+                request.since = -1L;
+            }
+        }
+        request.bbox = this.parseCoordinatesParam(queryParams.get("bbox"));
+        request.near = this.parseCoordinatesParam(queryParams.get("near"));
+        String radiusKm = queryParams.get("radiusKm");
+        if (radiusKm != null) {
+            try {
+                request.radiusKm = Double.parseDouble(radiusKm);
+            } catch (NumberFormatException err) {
+                // the service rejects this with a proper message
+                request.radiusKm = 0.0;
+            }
+        }
+        request.fromYear = this.parseYearParam(queryParams.get("fromYear"));
+        request.toYear = this.parseYearParam(queryParams.get("toYear"));
+        request.types = this.parseListParam(queryParams.get("type"));
+        request.side = queryParams.get("side");
+        request.gender = queryParams.get("gender");
+        String zoom = queryParams.get("zoom");
+        if (zoom != null) {
+            try {
+                request.zoom = Integer.parseInt(zoom);
+            } catch (NumberFormatException err) {
+                // the service rejects this with a proper message
+                request.zoom = -1;
+            }
+        }
+        // (an event with the ID "clusters" can still be found through "ids")
+        request.clusters = "clusters".equals(eventID);
+        if (request.clusters) {
+            request.all = false;
+            request.eventID = null;
+        } else if (eventID == null) {
             request.all = true;
             request.eventID = null;
         } else {
@@ -35,6 +91,45 @@ public class EventHandler extends GenericHandler<EventRequest, EventResponse, Ev
         return request;
     }
 
+    /**
+     * Parses a year
+     * 
+     * @param param is the value of the query parameter, or null if it wasn't given
+     * @return the year, null if the parameter wasn't given, or 0 (which the service rejects) if it isn't a number
+     */
+    private Integer parseYearParam(String param) {
+        if (param == null) {
+            return null;
+        }
+        try {
+            return Integer.parseInt(param);
+        } catch (NumberFormatException err) {
+            return 0;
+        }
+    }
+
+    /**
+     * Parses a comma-separated list of coordinates (like "40.2,-111.6")
+     * 
+     * @param param is the value of the query parameter, or null if it wasn't given
+     * @return the coordinates, null if the parameter wasn't given, or an empty array (which the service rejects) if any aren't numbers
+     */
+    private double[] parseCoordinatesParam(String param) {
+        String[] values = this.parseListParam(param);
+        if (values == null) {
+            return null;
+        }
+        double[] coordinates = new double[values.length];
+        try {
+            for (int valueIdx = 0; valueIdx < values.length; ++valueIdx) {
+                coordinates[valueIdx] = Double.parseDouble(values[valueIdx]);
+            }
+        } catch (NumberFormatException err) {
+            return new double[0];
+        }
+        return coordinates;
+    }
+
     @Override
     protected EventService createBoundService() {
         return new EventService();
@@ -54,6 +149,6 @@ public class EventHandler extends GenericHandler<EventRequest, EventResponse, Ev
 
     @Override
     protected String convertResponse(EventResponse response) {
-        return this.toResponseJSON(response);
+        return this.toProjectedResponseJSON(response, Event.class, response.fields);
     }
 }
@@ -1,6 +1,7 @@
 package handlers;
 
 import java.net.HttpURLConnection;
+import java.util.Map;
 
 import com.sun.net.httpserver.*;
 
@@ -12,18 +13,25 @@ public class FillHandler extends GenericHandler<FillRequest, FillResponse, FillS
     @Override
     protected FillRequest parseRequest(HttpExchange exchange) {
         // url parts: / fill (req) / username (req) / generations (opt)
-        String url = exchange.getRequestURI().toString();
+        //       (or: / fill (req) / status (req) / jobID (req))
+        String url = exchange.getRequestURI().getPath();
         String[] urlParts = url.split("/");
-        String username = null, generations = null;
+        String username = null, generations = null, jobID = null;
+        boolean isStatusRequest = urlParts.length > 2 && urlParts[2].equals("status");
         for (int partIdx = 0; partIdx < urlParts.length; ++partIdx) {
             // partIdx == 0 -> ""; ignore it
             // partIdx == 1 -> "fill"; ignore it
-            if (partIdx == 2) {
+            if (isStatusRequest) {
+                if (partIdx == 3) {
+                    jobID = urlParts[partIdx];
+                }
+            } else if (partIdx == 2) {
                 username = urlParts[partIdx];
             } else if (partIdx == 3) {
                 generations = urlParts[partIdx];
             }
         }
+        Map<String, String> queryParams = this.parseQueryParams(exchange);
 
         FillRequest request = new FillRequest();
         request.username = username;
@@ -32,6 +40,8 @@ public class FillHandler extends GenericHandler<FillRequest, FillResponse, FillS
         } else {
             request.generations = Integer.parseInt(generations);
         }
+        request.async = "true".equals(queryParams.get("async"));
+        request.jobID = jobID;
         return request;
     }
 
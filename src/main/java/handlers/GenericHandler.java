@@ -1,9 +1,19 @@
 package handlers;
 
 import java.io.*;
+import java.lang.reflect.Field;
 import java.net.HttpURLConnection;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
 
+import com.google.gson.ExclusionStrategy;
+import com.google.gson.FieldAttributes;
 import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
 import com.sun.net.httpserver.*;
 
 import services.GenericService;
@@ -28,6 +38,32 @@ public abstract class GenericHandler<
             ServiceType service = this.createBoundService();
             ResponseType response = service.process(method, request);
     
+            byte[] responseBytes = null;
+            if (response != null) {
+                responseBytes = this.convertBinaryResponse(response);
+            }
+            if (responseBytes != null) {
+                int statusCode = this.getStatusCode(response);
+                exchange.getResponseHeaders().set("Content-Type", "application/octet-stream");
+                exchange.sendResponseHeaders(statusCode, responseBytes.length);
+                OutputStream responseBody = exchange.getResponseBody();
+                responseBody.write(responseBytes);
+                responseBody.close();
+                System.out.println(String.format("Binary response sent successfully (HTTP %d, %d bytes)", statusCode, responseBytes.length));
+                return;
+            }
+            if (response != null && this.isStreamedResponse(response)) {
+                // the length isn't known up front, so the body is sent in chunks as it's written
+                int statusCode = this.getStatusCode(response);
+                exchange.getResponseHeaders().set("Content-Type", "application/json");
+                exchange.sendResponseHeaders(statusCode, 0);
+                OutputStream responseBody = exchange.getResponseBody();
+                this.streamResponse(response, responseBody);
+                responseBody.close();
+                System.out.println(String.format("Streamed response sent successfully (HTTP %d)", statusCode));
+                return;
+            }
+    
             int statusCode;
             String responseBodyStr;
             if (response == null) {
@@ -97,10 +133,55 @@ public abstract class GenericHandler<
      */
     protected abstract String convertResponse(ResponseType response);
 
-    protected void toResponseJSON(ResponseType obj, OutputStream stream) {
-        OutputStreamWriter writer = new OutputStreamWriter(stream);
+    /**
+     * Converts the response into raw bytes to send back to the client, for
+     * responses that aren't JSON (or text) at all. When this returns null
+     * (which it does unless overridden), convertResponse() is used instead.
+     * 
+     * @param response is the response to convert
+     * @return the response bytes, or null to send the converted response string
+     */
+    protected byte[] convertBinaryResponse(ResponseType response) {
+        return null;
+    }
+
+    /**
+     * Indicates if a response should be written with streamResponse() instead
+     * of being converted to one string first (for responses that can get
+     * large). This returns false unless overridden.
+     * 
+     * @param response is the response returned by the service
+     * @return whether to stream the response
+     */
+    protected boolean isStreamedResponse(ResponseType response) {
+        return false;
+    }
+
+    /**
+     * Writes a response straight to the client (see isStreamedResponse()).
+     * This writes the response's JSON unless overridden.
+     * 
+     * @param response is the response to write
+     * @param stream is the response body to write to
+     * @throws IOException when the response can't be written
+     */
+    protected void streamResponse(ResponseType response, OutputStream stream) throws IOException {
+        this.toResponseJSON(response, stream);
+    }
+
+    /**
+     * Writes the JSON representation of a response to a stream as it is
+     * generated, without building the whole string in memory
+     * 
+     * @param response is the response to convert
+     * @param stream is the stream to write the JSON to (it is flushed, but not closed)
+     * @throws IOException when the JSON can't be written
+     */
+    protected void toResponseJSON(ResponseType response, OutputStream stream) throws IOException {
+        Writer writer = new BufferedWriter(new OutputStreamWriter(stream, StandardCharsets.UTF_8));
         Gson gson = new Gson();
-        gson.toJson(writer);
+        gson.toJson(response, writer);
+        writer.flush();
     }
 
     protected String toResponseJSON(ResponseType response) {
@@ -108,12 +189,100 @@ public abstract class GenericHandler<
         return gson.toJson(response);
     }
 
+    /**
+     * Converts a response to JSON like toResponseJSON(), but only keeps some
+     * properties of a model (wherever they appear, on the response itself or
+     * on the models in it). Properties that aren't part of the model (like
+     * "success") are always kept.
+     * 
+     * @param response is the response to convert
+     * @param modelClass is the class of the model being projected
+     * @param fields is the model properties to keep, or null to keep everything
+     * @return the JSON representation of the response
+     */
+    protected String toProjectedResponseJSON(ResponseType response, Class<?> modelClass, String[] fields) {
+        if (fields == null) {
+            return this.toResponseJSON(response);
+        }
+        HashSet<String> modelFields = new HashSet<>();
+        for (Field field : modelClass.getDeclaredFields()) {
+            modelFields.add(field.getName());
+        }
+        HashSet<String> keptFields = new HashSet<>(Arrays.asList(fields));
+        Class<?> responseClass = response.getClass();
+
+        Gson gson = new GsonBuilder().setExclusionStrategies(new ExclusionStrategy() {
+            @Override
+            public boolean shouldSkipField(FieldAttributes field) {
+                boolean isModelField = modelFields.contains(field.getName()) &&
+                    (field.getDeclaringClass() == modelClass || field.getDeclaringClass() == responseClass);
+                return isModelField && !keptFields.contains(field.getName());
+            }
+
+            @Override
+            public boolean shouldSkipClass(Class<?> clazz) {
+                return false;
+            }
+        }).create();
+        return gson.toJson(response);
+    }
+
     protected RequestType fromRequestJSON(InputStream stream, Class<RequestType> requestClass) {
         InputStreamReader reader = new InputStreamReader(stream);
         Gson gson = new Gson();
         return (RequestType) gson.fromJson(reader, requestClass);
     }
 
+    /**
+     * Parses the query string of the request URL (everything after the "?")
+     * into a map of parameter names to their (decoded) values
+     * 
+     * @param exchange is the HttpExchange the request is stored in
+     * @return the map of query parameters, which is empty when there is no query string
+     */
+    protected HashMap<String, String> parseQueryParams(HttpExchange exchange) {
+        HashMap<String, String> params = new HashMap<>();
+        String query = exchange.getRequestURI().getRawQuery();
+        if (query == null) {
+            return params;
+        }
+        for (String param : query.split("&")) {
+            if (param.isEmpty()) {
+                continue;
+            }
+            String[] nameAndValue = param.split("=", 2);
+            String name = URLDecoder.decode(nameAndValue[0], StandardCharsets.UTF_8);
+            String value;
+            if (nameAndValue.length == 2) {
+                value = URLDecoder.decode(nameAndValue[1], StandardCharsets.UTF_8);
+            } else {
+                value = "";
+            }
+            params.put(name, value);
+        }
+        return params;
+    }
+
+    /**
+     * Splits a comma separated query parameter (like "fields=a,b,c") into its values
+     * 
+     * @param param is the value of the query parameter, or null if it wasn't given
+     * @return the (non-empty) values, or null if the parameter wasn't given
+     */
+    protected String[] parseListParam(String param) {
+        if (param == null) {
+            return null;
+        }
+        ArrayList<String> values = new ArrayList<>();
+        for (String value : param.split(",")) {
+            value = value.trim();
+            if (!value.isEmpty()) {
+                values.add(value);
+            }
+        }
+        return values.toArray(new String[values.size()]);
+    }
+
     private String generateInternalErrorResponse(String message) {
         return "{\"message\":\"" + message + "\",\"success\":false}";
     }
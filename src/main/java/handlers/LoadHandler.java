@@ -1,7 +1,10 @@
 package handlers;
 
 import java.io.InputStream;
+import java.io.InputStreamReader;
 import java.net.HttpURLConnection;
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
 
 import com.sun.net.httpserver.*;
 
@@ -13,6 +16,13 @@ public class LoadHandler extends GenericHandler<LoadRequest, LoadResponse, LoadS
     @Override
     protected LoadRequest parseRequest(HttpExchange exchange) {
         InputStream stream = exchange.getRequestBody();
+        Map<String, String> queryParams = this.parseQueryParams(exchange);
+        if ("true".equals(queryParams.get("stream"))) {
+            // the service parses the body as it loads it
+            LoadRequest request = new LoadRequest();
+            request.streamedData = new InputStreamReader(stream, StandardCharsets.UTF_8);
+            return request;
+        }
         LoadRequest request = this.fromRequestJSON(stream, LoadRequest.class);
         return request;
     }
@@ -1,9 +1,13 @@
 package handlers;
 
 import java.net.HttpURLConnection;
+import java.util.Arrays;
+import java.util.Map;
 
 import com.sun.net.httpserver.*;
 
+import models.Person;
+
 import services.PersonService;
 import services.requests.PersonRequest;
 import services.responses.PersonResponse;
@@ -11,21 +15,77 @@ import services.responses.PersonResponse;
 public class PersonHandler extends GenericHandler<PersonRequest, PersonResponse, PersonService> {
     @Override
     protected PersonRequest parseRequest(HttpExchange exchange) {
-        // url parts: / person (req) / personID (opt)
-        String url = exchange.getRequestURI().toString();
+        // url parts: / person (req) / personID OR "search" (opt) / "ancestors" OR "relationship" (opt) / relativeID (opt)
+        String url = exchange.getRequestURI().getPath();
         String[] urlParts = url.split("/");
         String personID = null;
+        String subresource = null;
+        String relativeID = null;
         for (int partIdx = 0; partIdx < urlParts.length; ++partIdx) {
             // partIdx == 0 -> ""; ignore it
-            // partIdx == 1 -> "fill"; ignore it
+            // partIdx == 1 -> "person"; ignore it
             if (partIdx == 2) {
                 personID = urlParts[partIdx];
+            } else if (partIdx == 3) {
+                subresource = urlParts[partIdx];
+            } else if (partIdx == 4 && "relationship".equals(subresource)) {
+                relativeID = urlParts[partIdx];
             }
         }
+        // anything else after the personID would otherwise just get the person
+        boolean isKnownSubresource = subresource == null
+            || ("ancestors".equals(subresource) && urlParts.length == 4)
+            || ("relationship".equals(subresource) && urlParts.length == 5);
+        String unknownSubresource = null;
+        if (!isKnownSubresource) {
+            unknownSubresource = String.join("/", Arrays.copyOfRange(urlParts, 3, urlParts.length));
+        }
+
+        Map<String, String> queryParams = this.parseQueryParams(exchange);
 
         PersonRequest request = new PersonRequest();
         request.authtoken = exchange.getRequestHeaders().getFirst("Authorization");
-        if (personID == null) {
+        String limit = queryParams.get("limit");
+        if (limit != null) {
+            try {
+                request.limit = Integer.parseInt(limit);
+            } catch (NumberFormatException err) {
+                // the service rejects this with a proper message
+                request.limit = 0;
+            }
+        }
+        request.after = queryParams.get("after");
+        request.fields = this.parseListParam(queryParams.get("fields"));
+        request.ids = this.parseListParam(queryParams.get("ids"));
+        String since = queryParams.get("since");
+        if (since != null) {
+            try {
+                request.since = Long.parseLong(since);
+            } catch (NumberFormatException err) {
+                // the service rejects this with a proper message
+                request.since = -1L;
+            }
+        }
+        String depth = queryParams.get("depth");
+        if (depth != null) {
+            try {
+                request.depth = Integer.parseInt(depth);
+            } catch (NumberFormatException err) {
+                // the service rejects this with a proper message
+                request.depth = 0;
+            }
+        }
+        request.includeEvents = "true".equals(queryParams.get("events"));
+        request.ancestors = "ancestors".equals(subresource);
+        request.relativeID = relativeID;
+        request.unknownSubresource = unknownSubresource;
+        // (a person with the ID "search" can still be found through "ids")
+        request.search = "search".equals(personID) && subresource == null;
+        request.query = queryParams.get("q");
+        if (request.search) {
+            request.all = false;
+            request.personID = null;
+        } else if (personID == null) {
             request.all = true;
             request.personID = null;
         } else {
@@ -54,6 +114,6 @@ public class PersonHandler extends GenericHandler<PersonRequest, PersonResponse,
 
     @Override
     protected String convertResponse(PersonResponse response) {
-        return this.toResponseJSON(response);
+        return this.toProjectedResponseJSON(response, Person.class, response.fields);
     }
 }
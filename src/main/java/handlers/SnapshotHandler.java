@@ -0,0 +1,51 @@
+package handlers;
+
+import java.net.HttpURLConnection;
+import java.util.Map;
+
+import com.sun.net.httpserver.*;
+
+import services.SnapshotService;
+import services.requests.SnapshotRequest;
+import services.responses.SnapshotResponse;
+
+public class SnapshotHandler extends GenericHandler<SnapshotRequest, SnapshotResponse, SnapshotService> {
+    @Override
+    protected SnapshotRequest parseRequest(HttpExchange exchange) {
+        Map<String, String> queryParams = this.parseQueryParams(exchange);
+
+        SnapshotRequest request = new SnapshotRequest();
+        request.adminSecret = exchange.getRequestHeaders().getFirst("Authorization");
+        request.username = queryParams.get("username");
+        request.includeCredentials = "true".equals(queryParams.get("credentials"));
+        if (exchange.getRequestMethod().equals("POST")) {
+            // the service reads the snapshot straight off the request body
+            request.snapshotData = exchange.getRequestBody();
+        }
+        return request;
+    }
+
+    @Override
+    protected SnapshotService createBoundService() {
+        return new SnapshotService();
+    }
+
+    @Override
+    protected int getStatusCode(SnapshotResponse response) {
+        if (response.success) {
+            return HttpURLConnection.HTTP_OK;
+        } else {
+            return HttpURLConnection.HTTP_BAD_REQUEST;
+        }
+    }
+
+    @Override
+    protected String convertResponse(SnapshotResponse response) {
+        return this.toResponseJSON(response);
+    }
+
+    @Override
+    protected byte[] convertBinaryResponse(SnapshotResponse response) {
+        return response.snapshot;
+    }
+}
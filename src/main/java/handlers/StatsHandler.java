@@ -0,0 +1,37 @@
+package handlers;
+
+import java.net.HttpURLConnection;
+
+import com.sun.net.httpserver.*;
+
+import services.StatsService;
+import services.requests.StatsRequest;
+import services.responses.StatsResponse;
+
+public class StatsHandler extends GenericHandler<StatsRequest, StatsResponse, StatsService> {
+    @Override
+    protected StatsRequest parseRequest(HttpExchange exchange) {
+        StatsRequest request = new StatsRequest();
+        request.authtoken = exchange.getRequestHeaders().getFirst("Authorization");
+        return request;
+    }
+
+    @Override
+    protected StatsService createBoundService() {
+        return new StatsService();
+    }
+
+    @Override
+    protected int getStatusCode(StatsResponse response) {
+        if (response.success) {
+            return HttpURLConnection.HTTP_OK;
+        } else {
+            return HttpURLConnection.HTTP_BAD_REQUEST;
+        }
+    }
+
+    @Override
+    protected String convertResponse(StatsResponse response) {
+        return this.toResponseJSON(response);
+    }
+}
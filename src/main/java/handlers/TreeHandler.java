@@ -0,0 +1,43 @@
+package handlers;
+
+import java.net.HttpURLConnection;
+
+import com.sun.net.httpserver.*;
+
+import services.TreeService;
+import services.requests.TreeRequest;
+import services.responses.TreeResponse;
+
+public class TreeHandler extends GenericHandler<TreeRequest, TreeResponse, TreeService> {
+    @Override
+    protected TreeRequest parseRequest(HttpExchange exchange) {
+        TreeRequest request = new TreeRequest();
+        request.authtoken = exchange.getRequestHeaders().getFirst("Authorization");
+        return request;
+    }
+
+    @Override
+    protected TreeService createBoundService() {
+        return new TreeService();
+    }
+
+    @Override
+    protected int getStatusCode(TreeResponse response) {
+        if (response.success) {
+            return HttpURLConnection.HTTP_OK;
+        } else {
+            return HttpURLConnection.HTTP_BAD_REQUEST;
+        }
+    }
+
+    @Override
+    protected String convertResponse(TreeResponse response) {
+        return this.toResponseJSON(response);
+    }
+
+    @Override
+    protected boolean isStreamedResponse(TreeResponse response) {
+        // whole trees can be big, so they're written out as they're serialized
+        return response.success;
+    }
+}
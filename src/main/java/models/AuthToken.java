@@ -9,16 +9,34 @@ public class AuthToken {
     private String authtoken;
     /** The username of the user this token belongs to */
     private String username;
+    /** When the token was created, in milliseconds since the epoch */
+    private long createdAt;
+    /** When the token was last used, in milliseconds since the epoch */
+    private long lastUsed;
 
     /**
      * Creates an AuthToken by defining each property directly
      * 
      * @param authtoken is the token string to use
      * @param username is the associated username
+     * @param createdAt is when the token was created (in epoch milliseconds)
+     * @param lastUsed is when the token was last used (in epoch milliseconds)
      */
-    public AuthToken(String authtoken, String username) {
+    public AuthToken(String authtoken, String username, long createdAt, long lastUsed) {
         this.setAuthtoken(authtoken);
         this.setUsername(username);
+        this.setCreatedAt(createdAt);
+        this.setLastUsed(lastUsed);
+    }
+
+    /**
+     * Creates a brand new AuthToken (created and last used right now)
+     * 
+     * @param authtoken is the token string to use
+     * @param username is the associated username
+     */
+    public AuthToken(String authtoken, String username) {
+        this(authtoken, username, System.currentTimeMillis(), System.currentTimeMillis());
     }
 
     public String getAuthtoken() {
@@ -36,4 +54,20 @@ public class AuthToken {
     public void setUsername(String username) {
         this.username = username;
     }
+
+    public long getCreatedAt() {
+        return this.createdAt;
+    }
+
+    public void setCreatedAt(long createdAt) {
+        this.createdAt = createdAt;
+    }
+
+    public long getLastUsed() {
+        return this.lastUsed;
+    }
+
+    public void setLastUsed(long lastUsed) {
+        this.lastUsed = lastUsed;
+    }
 }
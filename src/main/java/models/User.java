@@ -8,7 +8,7 @@ package models;
 public class User {
     /** A unique username for the user */
     private String username;
-    /** The user's password, stored in glorious plaintext for any curious DB admins */
+    /** The user's password, hashed by the PasswordHasher (or plaintext, for legacy/loaded users) */
     private String password;
     /** The user's (unique) email address */
     private String email;
@@ -1,11 +1,21 @@
 package services;
 
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+
+import dataAccess.ChangeLog;
 import dataAccess.Database;
 import dataAccess.DatabaseException;
 import dataAccess.EventAccessor;
+import dataAccess.EventClusters;
+import dataAccess.FamilyTree;
+import dataAccess.FamilyTreeCache;
+import dataAccess.PersonSides;
 
 import models.Event;
-import models.User;
 
 import services.requests.EventRequest;
 import services.responses.EventResponse;
@@ -25,34 +35,236 @@ public class EventService extends GenericService<EventRequest, EventResponse> {
         super("EventService");
     }
 
+    /** The mean radius of the earth, in kilometers */
+    static final double EARTH_RADIUS_KM = 6371.0;
+    /** How many levels finer than the map's tiles the clusters are (so a tile shows up to 4x4 of them) */
+    static final int CLUSTER_LEVEL_OFFSET = 2;
+
     @Override
     public EventResponse onGet(EventRequest request, Database database) throws InvalidHTTPMethodException, DatabaseException {
         // check authorization
         AuthUtils authUtils = new AuthUtils(database);
-        User authenticatedUser = authUtils.getAuthenticatedUser(request.authtoken);
-        boolean userIsAuthenticated = authenticatedUser != null;
+        String authenticatedUsername = authUtils.getAuthenticatedUsername(request.authtoken);
+        boolean userIsAuthenticated = authenticatedUsername != null;
         if (!userIsAuthenticated) {
             return this.createUnauthenticatedResponse();
         }
 
+        EventResponse badFieldsResponse = this.checkFieldsKnown(request.fields, EventAccessor.COLUMNS);
+        if (badFieldsResponse != null) {
+            return badFieldsResponse;
+        }
+
+        // each branch below handles one kind of filter, so mixing them would drop some
+        String[] filterNames = this.findFilterNames(request);
+        if (filterNames.length > 1) {
+            return this.createUnsupportedFiltersResponse(filterNames);
+        }
+
         // determine branch
-        if (request.all) {
-            // get all persons
+        if (request.clusters) {
+            // get the events grouped into clusters for a map (without reading the events themselves)
+            if (request.zoom == null) {
+                return this.createIncompleteResponse("zoom");
+            }
+            if (request.zoom < 0) {
+                return this.createInvalidZoomResponse();
+            }
+            double[] box = request.bbox == null ? new double[]{-90, -180, 90, 180} : request.bbox;
+            if (!this.isValidBox(box)) {
+                return this.createInvalidBoxResponse();
+            }
+            // zooming in past the finest cells just shows the finest cells
+            int level = Math.min(request.zoom, EventClusters.MAX_LEVEL - EventService.CLUSTER_LEVEL_OFFSET) + EventService.CLUSTER_LEVEL_OFFSET;
+            EventClusters eventClusters = new EventClusters(database);
+            EventClusters.Cluster[] boxClusters = eventClusters.getInBoxForUser(authenticatedUsername, level, box[0], box[1], box[2], box[3]);
+
+            // generate response
+            return this.createSuccessfulClustersResponse(boxClusters);
+        } else if (request.all && request.ids != null) {
+            // get a list of events at once
+            if (request.ids.length == 0) {
+                return this.createInvalidIDsResponse();
+            }
+            // asking for an ID twice only returns it once
+            String[] eventIDs = new LinkedHashSet<>(Arrays.asList(request.ids)).toArray(new String[0]);
+            EventAccessor eventAcc = new EventAccessor(database);
+            // only the user's events are found, so this checks ownership too
+            Event[] matchingEvents = eventAcc.getByIDsForUser(authenticatedUsername, eventIDs, request.fields);
+
+            // generate response
+            ArrayList<Event> foundEvents = new ArrayList<>();
+            ArrayList<String> missingIDs = new ArrayList<>();
+            for (int idIdx = 0; idIdx < eventIDs.length; ++idIdx) {
+                if (matchingEvents[idIdx] == null) {
+                    missingIDs.add(eventIDs[idIdx]);
+                } else {
+                    foundEvents.add(matchingEvents[idIdx]);
+                }
+            }
+            EventResponse response = this.createSuccessfulIDsResponse(
+                foundEvents.toArray(new Event[foundEvents.size()]),
+                missingIDs.toArray(new String[missingIDs.size()])
+            );
+            response.fields = request.fields;
+            return response;
+        } else if (request.all && request.since != null) {
+            // get only what changed since the last sync
+            if (request.since < 0) {
+                return this.createInvalidSinceResponse();
+            }
+            EventAccessor eventAcc = new EventAccessor(database);
+            ChangeLog changeLog = new ChangeLog(database);
+            long version = changeLog.getVersion(authenticatedUsername);
+            EventResponse response;
+            // (a client that has nothing yet can't miss any deletions)
+            boolean isBeforeHorizon = request.since > 0 && request.since < changeLog.getHorizon(authenticatedUsername);
+            if (isBeforeHorizon || request.since > version) {
+                // deletions from back then were compacted away (or cleared),
+                // or the client synced with some other database
+                Event[] allEvents = eventAcc.getAllForUser(authenticatedUsername, request.fields);
+                response = this.createSuccessfulSyncResponse(allEvents, null, version);
+            } else {
+                Event[] changedEvents = eventAcc.getChangedForUser(authenticatedUsername, request.since, request.fields);
+                String[] changedIDs = changeLog.getChangedIDs(authenticatedUsername, ChangeLog.EVENT_TYPE, request.since);
+                HashSet<String> deletedIDs = new HashSet<>(Arrays.asList(changedIDs));
+                for (Event changedEvent : changedEvents) {
+                    deletedIDs.remove(changedEvent.getEventID());
+                }
+                response = this.createSuccessfulSyncResponse(changedEvents, deletedIDs.toArray(new String[deletedIDs.size()]), version);
+            }
+            response.fields = request.fields;
+            return response;
+        } else if (request.all && request.bbox != null) {
+            // get the events inside a box (like a map's viewport)
+            if (!this.isValidBox(request.bbox)) {
+                return this.createInvalidBoxResponse();
+            }
+            EventAccessor eventAcc = new EventAccessor(database);
+            double[] box = request.bbox;
+            Event[] boxEvents = eventAcc.getInBoxForUser(authenticatedUsername, box[0], box[1], box[2], box[3], request.fields);
+
+            // generate response
+            EventResponse response = this.createSuccessfulAllResponse(boxEvents);
+            response.fields = request.fields;
+            return response;
+        } else if (request.all && request.near != null) {
+            // get the events within a distance of a point, closest first
+            if (request.near.length != 2 || !this.isValidLocation(request.near[0], request.near[1])) {
+                return this.createInvalidNearResponse();
+            }
+            if (request.radiusKm == null || !(request.radiusKm > 0)) {
+                return this.createInvalidRadiusResponse();
+            }
+            double latitude = request.near[0];
+            double longitude = request.near[1];
+            double radiusKm = request.radiusKm;
+
+            // every event in the circle is in this box; the corners are filtered out after
+            double[] box = this.findBoundingBox(latitude, longitude, radiusKm);
+            EventAccessor eventAcc = new EventAccessor(database);
+            String[] columns = this.withLocationColumns(request.fields);
+            Event[] boxEvents = eventAcc.getInBoxForUser(authenticatedUsername, box[0], box[1], box[2], box[3], columns);
+            ArrayList<Event> nearEvents = new ArrayList<>();
+            for (Event event : boxEvents) {
+                if (this.findDistanceKm(latitude, longitude, event.getLatitude(), event.getLongitude()) <= radiusKm) {
+                    nearEvents.add(event);
+                }
+            }
+            nearEvents.sort(Comparator.comparingDouble((event) -> this.findDistanceKm(latitude, longitude, event.getLatitude(), event.getLongitude())));
+
+            // generate response
+            EventResponse response = this.createSuccessfulAllResponse(nearEvents.toArray(new Event[nearEvents.size()]));
+            response.fields = request.fields;
+            return response;
+        } else if (request.all && (request.fromYear != null || request.toYear != null || request.types != null)) {
+            // get a timeline of events, in year order
+            boolean yearsArePositive = (request.fromYear == null || request.fromYear > 0) && (request.toYear == null || request.toYear > 0);
+            if (!yearsArePositive || (request.fromYear != null && request.toYear != null && request.fromYear > request.toYear)) {
+                return this.createInvalidYearsResponse();
+            }
+            if (request.types != null && request.types.length == 0) {
+                return this.createInvalidTypesResponse();
+            }
+            EventAccessor eventAcc = new EventAccessor(database);
+            Event[] timelineEvents = eventAcc.getTimelineForUser(authenticatedUsername, request.fromYear, request.toYear, request.types, request.fields);
+
+            // generate response
+            EventResponse response = this.createSuccessfulAllResponse(timelineEvents);
+            response.fields = request.fields;
+            return response;
+        } else if (request.all && (request.side != null || request.gender != null)) {
+            // get the events on one side of the family and/or of one gender (like the map's filters)
+            int sides = 0;
+            if ("father".equals(request.side)) {
+                sides = PersonSides.FATHER_SIDE;
+            } else if ("mother".equals(request.side)) {
+                sides = PersonSides.MOTHER_SIDE;
+            } else if (request.side != null) {
+                return this.createInvalidSideResponse();
+            }
+            if (request.gender != null && !request.gender.equals("m") && !request.gender.equals("f")) {
+                return this.createInvalidGenderResponse();
+            }
             EventAccessor eventAcc = new EventAccessor(database);
-            Event[] allEvents = eventAcc.getAllForUser(authenticatedUser.getUsername());
+            Event[] filteredEvents = eventAcc.getFilteredForUser(authenticatedUsername, sides, request.gender, request.fields);
+
+            // generate response
+            EventResponse response = this.createSuccessfulAllResponse(filteredEvents);
+            response.fields = request.fields;
+            return response;
+        } else if (request.all && (request.limit != null || request.after != null)) {
+            // get one page of events
+            if (request.limit != null && request.limit <= 0) {
+                return this.createInvalidLimitResponse();
+            }
+            EventAccessor eventAcc = new EventAccessor(database);
+            int limit = request.limit == null ? -1 : request.limit;
+            // fetching one extra shows whether there is another page
+            int fetchLimit = limit < 0 || limit == Integer.MAX_VALUE ? limit : limit + 1;
+            Event[] pageEvents = eventAcc.getPageForUser(authenticatedUsername, request.after, fetchLimit, request.fields);
+
+            // generate response
+            String nextCursor = null;
+            if (limit >= 0 && pageEvents.length > limit) {
+                pageEvents = Arrays.copyOf(pageEvents, limit);
+                nextCursor = pageEvents[limit - 1].getEventID();
+            }
+            EventResponse response = this.createSuccessfulPageResponse(pageEvents, nextCursor);
+            response.fields = request.fields;
+            return response;
+        } else if (request.all) {
+            // get all events (projections read less from the database instead)
+            Event[] allEvents;
+            if (request.fields == null) {
+                allEvents = FamilyTreeCache.getTree(database, authenticatedUsername).getEvents();
+            } else {
+                EventAccessor eventAcc = new EventAccessor(database);
+                allEvents = eventAcc.getAllForUser(authenticatedUsername, request.fields);
+            }
             
             // generate response
-            return this.createSuccessfulAllResponse(allEvents);
+            EventResponse response = this.createSuccessfulAllResponse(allEvents);
+            response.fields = request.fields;
+            return response;
         } else if (request.eventID != null) {
-            // get all persons
-            EventAccessor eventAcc = new EventAccessor(database);
-            Event matchingEvent = eventAcc.getByID(request.eventID);
+            // get specific event (loading the whole tree for one event isn't worth it)
+            FamilyTree cachedTree = FamilyTreeCache.get(authenticatedUsername);
+            Event matchingEvent;
+            if (cachedTree != null) {
+                matchingEvent = cachedTree.getEvent(request.eventID);
+            } else {
+                EventAccessor eventAcc = new EventAccessor(database);
+                matchingEvent = eventAcc.getByID(request.eventID);
+            }
             
             // generate response
-            if (matchingEvent == null || !matchingEvent.getAssociatedUsername().equals(authenticatedUser.getUsername())) {
+            if (matchingEvent == null || !matchingEvent.getAssociatedUsername().equals(authenticatedUsername)) {
                 return this.createInvalidEventResponse();
             } else {
-                return this.createSuccessfulSingleResponse(matchingEvent);
+                EventResponse response = this.createSuccessfulSingleResponse(matchingEvent);
+                response.fields = request.fields;
+                return response;
             }
         } else {
             return this.createIncompleteResponse("all OR eventID");
@@ -72,6 +284,345 @@ public class EventService extends GenericService<EventRequest, EventResponse> {
         return response;
     }
 
+    /**
+     * Creates a response for a successful "clusters" request
+     * 
+     * @param clusters is the clusters to include in the response
+     * @return the successful EventResponse
+     */
+    private EventResponse createSuccessfulClustersResponse(EventClusters.Cluster[] clusters) {
+        EventResponse response = new EventResponse();
+        response.success = true;
+        response.clusters = clusters;
+        return response;
+    }
+
+    /**
+     * Creates a response for a successful "ids" request
+     * 
+     * @param foundEvents is the events that were found, in the order they were asked for
+     * @param missingIDs is the IDs that weren't found for the user, in the order they were asked for
+     * @return the successful EventResponse
+     */
+    private EventResponse createSuccessfulIDsResponse(Event[] foundEvents, String[] missingIDs) {
+        EventResponse response = new EventResponse();
+        response.success = true;
+        response.data = foundEvents;
+        response.missingIDs = missingIDs;
+        return response;
+    }
+
+    /**
+     * Creates a response for a successful page of an "all events" request
+     * 
+     * @param pageEvents is the page of events to include in the response
+     * @param nextCursor is the cursor for the next page, or null if this is the last page
+     * @return the successful EventResponse
+     */
+    private EventResponse createSuccessfulPageResponse(Event[] pageEvents, String nextCursor) {
+        EventResponse response = new EventResponse();
+        response.success = true;
+        response.data = pageEvents;
+        response.nextCursor = nextCursor;
+        return response;
+    }
+
+    /**
+     * Creates a response for a successful "since" request
+     * 
+     * @param changedEvents is the events that changed since the last sync
+     * @param deletedIDs is the IDs of events deleted since the last sync, or null if this is a full sync
+     * @param version is the version to sync from next time
+     * @return the successful EventResponse
+     */
+    private EventResponse createSuccessfulSyncResponse(Event[] changedEvents, String[] deletedIDs, long version) {
+        EventResponse response = new EventResponse();
+        response.success = true;
+        response.data = changedEvents;
+        response.deletedIDs = deletedIDs;
+        response.version = version;
+        response.fullSync = deletedIDs == null;
+        return response;
+    }
+
+    /**
+     * Indicates if a latitude and longitude are on the map
+     * 
+     * @param latitude is the latitude, in degrees
+     * @param longitude is the longitude, in degrees
+     * @return whether the location is valid
+     */
+    private boolean isValidLocation(double latitude, double longitude) {
+        return latitude >= -90 && latitude <= 90 && longitude >= -180 && longitude <= 180;
+    }
+
+    /**
+     * Finds which kinds of filters a request uses (where parameters that only
+     * make sense together, like fromYear and toYear, are one kind)
+     * 
+     * @param request is the request to check
+     * @return the names of the kinds of filters used
+     */
+    private String[] findFilterNames(EventRequest request) {
+        ArrayList<String> filterNames = new ArrayList<>();
+        if (request.clusters) {
+            // (clusters are limited to the bbox themselves)
+            filterNames.add("clusters");
+        }
+        if (request.ids != null) {
+            filterNames.add("ids");
+        }
+        if (request.since != null) {
+            filterNames.add("since");
+        }
+        if (request.bbox != null && !request.clusters) {
+            filterNames.add("bbox");
+        }
+        if (request.near != null || request.radiusKm != null) {
+            filterNames.add("near/radiusKm");
+        }
+        if (request.fromYear != null || request.toYear != null || request.types != null) {
+            filterNames.add("fromYear/toYear/type");
+        }
+        if (request.side != null || request.gender != null) {
+            filterNames.add("side/gender");
+        }
+        if (request.limit != null || request.after != null) {
+            filterNames.add("limit/after");
+        }
+        return filterNames.toArray(new String[filterNames.size()]);
+    }
+
+    /**
+     * Indicates if a box is valid: two valid corners, with the south edge
+     * below the north edge (the west edge can be east of the east edge, for
+     * boxes crossing the antimeridian)
+     * 
+     * @param box is the box: {minLatitude, minLongitude, maxLatitude, maxLongitude}
+     * @return whether the box is valid
+     */
+    private boolean isValidBox(double[] box) {
+        return box.length == 4 &&
+            this.isValidLocation(box[0], box[1]) && this.isValidLocation(box[2], box[3]) &&
+            box[0] <= box[2];
+    }
+
+    /**
+     * Finds the smallest latitude/longitude box holding a circle on the
+     * earth. Near the poles (or for huge circles), the box covers every longitude.
+     * 
+     * @param latitude is the latitude of the center, in degrees
+     * @param longitude is the longitude of the center, in degrees
+     * @param radiusKm is the radius of the circle, in kilometers
+     * @return the box: {minLatitude, minLongitude, maxLatitude, maxLongitude}
+     */
+    private double[] findBoundingBox(double latitude, double longitude, double radiusKm) {
+        double angularRadius = radiusKm / EventService.EARTH_RADIUS_KM;
+        double latitudeDelta = Math.toDegrees(angularRadius);
+        double minLatitude = latitude - latitudeDelta;
+        double maxLatitude = latitude + latitudeDelta;
+        if (minLatitude <= -90 || maxLatitude >= 90) {
+            // the circle covers a pole
+            return new double[]{Math.max(minLatitude, -90), -180, Math.min(maxLatitude, 90), 180};
+        }
+
+        double longitudeDelta = Math.toDegrees(Math.asin(Math.sin(angularRadius) / Math.cos(Math.toRadians(latitude))));
+        if (Double.isNaN(longitudeDelta) || longitudeDelta >= 180) {
+            return new double[]{minLatitude, -180, maxLatitude, 180};
+        }
+        double minLongitude = longitude - longitudeDelta;
+        double maxLongitude = longitude + longitudeDelta;
+        // wrapped edges make a box that crosses the antimeridian
+        if (minLongitude < -180) {
+            minLongitude += 360;
+        }
+        if (maxLongitude > 180) {
+            maxLongitude -= 360;
+        }
+        return new double[]{minLatitude, minLongitude, maxLatitude, maxLongitude};
+    }
+
+    /**
+     * Finds the great-circle distance between two points (with the haversine formula)
+     * 
+     * @param latitude1 is the latitude of the first point, in degrees
+     * @param longitude1 is the longitude of the first point, in degrees
+     * @param latitude2 is the latitude of the second point, in degrees
+     * @param longitude2 is the longitude of the second point, in degrees
+     * @return the distance, in kilometers
+     */
+    private double findDistanceKm(double latitude1, double longitude1, double latitude2, double longitude2) {
+        double latitudeDelta = Math.toRadians(latitude2 - latitude1);
+        double longitudeDelta = Math.toRadians(longitude2 - longitude1);
+        double haversine =
+            Math.pow(Math.sin(latitudeDelta / 2), 2) +
+            Math.cos(Math.toRadians(latitude1)) * Math.cos(Math.toRadians(latitude2)) * Math.pow(Math.sin(longitudeDelta / 2), 2);
+        return 2 * EventService.EARTH_RADIUS_KM * Math.asin(Math.min(1, Math.sqrt(haversine)));
+    }
+
+    /**
+     * Adds the latitude and longitude to a list of requested columns (they
+     * are needed to find distances, even if they aren't returned)
+     * 
+     * @param fields is the requested columns, or null for all of them
+     * @return the columns to read
+     */
+    private String[] withLocationColumns(String[] fields) {
+        if (fields == null) {
+            return null;
+        }
+        String[] columns = Arrays.copyOf(fields, fields.length + 2);
+        columns[fields.length] = "latitude";
+        columns[fields.length + 1] = "longitude";
+        return columns;
+    }
+
+    /**
+     * Creates a response for a timeline request with years that aren't valid
+     * 
+     * @return the failed EventResponse
+     */
+    private EventResponse createInvalidYearsResponse() {
+        EventResponse response = new EventResponse();
+        response.success = false;
+        response.message = "The fromYear and toYear must be positive numbers, with fromYear no later than toYear";
+        return response;
+    }
+
+    /**
+     * Creates a response for a timeline request with an empty list of types
+     * 
+     * @return the failed EventResponse
+     */
+    private EventResponse createInvalidTypesResponse() {
+        EventResponse response = new EventResponse();
+        response.success = false;
+        response.message = "The type must name at least one event type";
+        return response;
+    }
+
+    /**
+     * Creates a response for a filtered request with a side that isn't valid
+     * 
+     * @return the failed EventResponse
+     */
+    private EventResponse createInvalidSideResponse() {
+        EventResponse response = new EventResponse();
+        response.success = false;
+        response.message = "The side must be \"father\" or \"mother\"";
+        return response;
+    }
+
+    /**
+     * Creates a response for a filtered request with a gender that isn't valid
+     * 
+     * @return the failed EventResponse
+     */
+    private EventResponse createInvalidGenderResponse() {
+        EventResponse response = new EventResponse();
+        response.success = false;
+        response.message = "The gender must be \"m\" or \"f\"";
+        return response;
+    }
+
+    /**
+     * Creates a response for a "bbox" request with a box that isn't valid
+     * 
+     * @return the failed EventResponse
+     */
+    private EventResponse createInvalidBoxResponse() {
+        EventResponse response = new EventResponse();
+        response.success = false;
+        response.message = "The bbox must be minLat,minLon,maxLat,maxLon, with valid latitudes and longitudes";
+        return response;
+    }
+
+    /**
+     * Creates a response for a "clusters" request with a zoom that isn't valid
+     * 
+     * @return the failed EventResponse
+     */
+    private EventResponse createInvalidZoomResponse() {
+        EventResponse response = new EventResponse();
+        response.success = false;
+        response.message = "The zoom must be a non-negative number";
+        return response;
+    }
+
+    /**
+     * Creates a response for a "near" request with a point that isn't valid
+     * 
+     * @return the failed EventResponse
+     */
+    private EventResponse createInvalidNearResponse() {
+        EventResponse response = new EventResponse();
+        response.success = false;
+        response.message = "The near point must be lat,lon, with a valid latitude and longitude";
+        return response;
+    }
+
+    /**
+     * Creates a response for a "near" request without a positive radius
+     * 
+     * @return the failed EventResponse
+     */
+    private EventResponse createInvalidRadiusResponse() {
+        EventResponse response = new EventResponse();
+        response.success = false;
+        response.message = "The radiusKm must be a positive number";
+        return response;
+    }
+
+    /**
+     * Creates a response for a "since" request with a version that isn't valid
+     * 
+     * @return the failed EventResponse
+     */
+    private EventResponse createInvalidSinceResponse() {
+        EventResponse response = new EventResponse();
+        response.success = false;
+        response.message = "The since version must be a non-negative number";
+        return response;
+    }
+
+    /**
+     * Creates a response for an "ids" request that didn't list any IDs
+     * 
+     * @return the failed EventResponse
+     */
+    private EventResponse createInvalidIDsResponse() {
+        EventResponse response = new EventResponse();
+        response.success = false;
+        response.message = "At least one ID must be given for ids";
+        return response;
+    }
+
+    /**
+     * Creates a response for a paged request with a limit that isn't positive
+     * 
+     * @return the failed EventResponse
+     */
+    private EventResponse createInvalidLimitResponse() {
+        EventResponse response = new EventResponse();
+        response.success = false;
+        response.message = "The limit must be a positive number";
+        return response;
+    }
+
+    /**
+     * Creates a response for a request that mixes filters which can't be
+     * used together
+     * 
+     * @param filterNames are the names of the kinds of filters used
+     * @return the failed EventResponse
+     */
+    private EventResponse createUnsupportedFiltersResponse(String[] filterNames) {
+        EventResponse response = new EventResponse();
+        response.success = false;
+        response.message = "These filters can't be used together: " + String.join(", ", filterNames);
+        return response;
+    }
+
     /**
      * Creates a response for an event request with an invalid eventID
      * 
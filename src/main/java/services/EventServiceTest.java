@@ -6,7 +6,9 @@ import static org.junit.jupiter.api.Assertions.*;
 import dataAccess.*;
 import models.*;
 
+import services.requests.ClearRequest;
 import services.requests.EventRequest;
+import services.responses.ClearResponse;
 import services.responses.EventResponse;
 
 /**
@@ -236,6 +238,432 @@ public class EventServiceTest {
         this.assertNumModelsInDatabase(2, 4, 7, 1);
     }
 
+    /**
+     * Ensures all events can be fetched a page at a time, without skipping or repeating any
+     */
+    @Test
+    @DisplayName("Getting all Events test -- paged")
+    public void testGetAllEventsPaged() {
+        this.fillDatabase();
+
+        EventService service = new EventService();
+        EventRequest request = new EventRequest();
+        request.all = true;
+        request.authtoken = "sallyauth";
+        request.limit = 4;
+        EventResponse firstPage = service.process("GET", request);
+
+        assertTrue(firstPage.success);
+        assertEquals(4, firstPage.data.length);
+        assertEquals(firstPage.data[4 - 1].getEventID(), firstPage.nextCursor);
+
+        request.after = firstPage.nextCursor;
+        EventResponse lastPage = service.process("GET", request);
+
+        assertTrue(lastPage.success);
+        assertEquals(6 - 4, lastPage.data.length);
+        assertNull(lastPage.nextCursor);
+        // pages come in ID order
+        for (int idx = 1; idx < lastPage.data.length; ++idx) {
+            assertTrue(lastPage.data[idx - 1].getEventID().compareTo(lastPage.data[idx].getEventID()) < 0);
+        }
+        assertTrue(firstPage.nextCursor.compareTo(lastPage.data[0].getEventID()) < 0);
+
+        request.limit = 0;
+        EventResponse badResponse = service.process("GET", request);
+        assertFalse(badResponse.success);
+        assertTrue(badResponse.message.matches(".*limit.*"));
+    }
+
+    /**
+     * Ensures only the requested fields are read when getting all events
+     */
+    @Test
+    @DisplayName("Getting all Events test -- only some fields")
+    public void testGetAllEventsProjected() {
+        this.fillDatabase();
+
+        EventService service = new EventService();
+        EventRequest request = new EventRequest();
+        request.all = true;
+        request.authtoken = "sallyauth";
+        request.fields = new String[]{"personID", "latitude", "eventType", "year"};
+        EventResponse response = service.process("GET", request);
+
+        assertTrue(response.success);
+        assertEquals(7 - 1, response.data.length);
+        for (Event event : response.data) {
+            // the ID is always read
+            assertNotNull(event.getEventID());
+            assertNotNull(event.getPersonID());
+            assertNotNull(event.getEventType());
+            assertTrue(event.getYear() > 0);
+            assertNull(event.getCountry());
+            assertNull(event.getCity());
+            assertNull(event.getAssociatedUsername());
+        }
+        assertArrayEquals(request.fields, response.fields);
+
+        request.fields = new String[]{"eventType", "password"};
+        response = service.process("GET", request);
+        assertFalse(response.success);
+        assertTrue(response.message.contains("'password'"));
+    }
+
+    /**
+     * Ensures syncing only returns the events that changed (or were deleted) since the last sync
+     */
+    @Test
+    @DisplayName("Getting changed Events test")
+    public void testGetEventsSince() throws DatabaseException, BadAccessException {
+        this.fillDatabase();
+
+        EventService service = new EventService();
+        EventRequest request = new EventRequest();
+        request.all = true;
+        request.authtoken = "sallyauth";
+        request.since = 0L;
+        EventResponse firstSync = service.process("GET", request);
+
+        assertTrue(firstSync.success);
+        assertEquals(7 - 1, firstSync.data.length);
+        assertEquals(0, firstSync.deletedIDs.length);
+        assertFalse(firstSync.fullSync);
+        assertNotNull(firstSync.version);
+
+        try (Database database = new Database()) {
+            EventAccessor eventAcc = new EventAccessor(database);
+            Event fatherBirth = eventAcc.getByID("fatherbirtheventid");
+            fatherBirth.setYear(1969);
+            Event[] updatedEvents = {fatherBirth};
+            eventAcc.update(updatedEvents);
+            Event[] deletedEvents = {eventAcc.getByID("mothermarriageeventid")};
+            eventAcc.delete(deletedEvents);
+            database.commit();
+        }
+
+        request.since = firstSync.version;
+        EventResponse secondSync = service.process("GET", request);
+
+        assertTrue(secondSync.success);
+        assertEquals(1, secondSync.data.length);
+        assertEquals("fatherbirtheventid", secondSync.data[0].getEventID());
+        assertEquals(1969, secondSync.data[0].getYear());
+        assertArrayEquals(new String[]{"mothermarriageeventid"}, secondSync.deletedIDs);
+        assertTrue(secondSync.version > firstSync.version);
+
+        // nothing changed since then
+        request.since = secondSync.version;
+        EventResponse thirdSync = service.process("GET", request);
+        assertEquals(0, thirdSync.data.length);
+        assertEquals(0, thirdSync.deletedIDs.length);
+        assertEquals(secondSync.version, thirdSync.version);
+
+        request.since = -1L;
+        EventResponse badResponse = service.process("GET", request);
+        assertFalse(badResponse.success);
+    }
+
+    /**
+     * Ensures a client that synced before the database was cleared (and
+     * loaded again) gets everything again, instead of an empty delta
+     */
+    @Test
+    @DisplayName("Getting changed Events test -- after a clear")
+    public void testGetEventsSinceAfterClear() throws DatabaseException {
+        this.fillDatabase();
+
+        EventService service = new EventService();
+        EventRequest request = new EventRequest();
+        request.all = true;
+        request.authtoken = "sallyauth";
+        request.since = 0L;
+        EventResponse firstSync = service.process("GET", request);
+        assertTrue(firstSync.success);
+        assertFalse(firstSync.fullSync);
+
+        ClearResponse clearResponse = new ClearService().process("POST", new ClearRequest());
+        assertTrue(clearResponse.success);
+        this.fillDatabase();
+
+        request.since = firstSync.version;
+        EventResponse secondSync = service.process("GET", request);
+        assertTrue(secondSync.success);
+        assertTrue(secondSync.fullSync);
+        assertEquals(7 - 1, secondSync.data.length);
+        assertNull(secondSync.deletedIDs);
+        assertTrue(secondSync.version > firstSync.version);
+
+        // versions from the future (ex. from some other database) get everything too
+        request.since = secondSync.version + 1000;
+        EventResponse futureSync = service.process("GET", request);
+        assertTrue(futureSync.success);
+        assertTrue(futureSync.fullSync);
+        assertEquals(7 - 1, futureSync.data.length);
+
+        request.since = secondSync.version;
+        EventResponse thirdSync = service.process("GET", request);
+        assertFalse(thirdSync.fullSync);
+        assertEquals(0, thirdSync.data.length);
+    }
+
+    /**
+     * Ensures a list of events can be fetched at once, in order, with the
+     * ones that can't be found (or aren't the user's) marked as missing
+     */
+    @Test
+    @DisplayName("Getting Events by IDs test")
+    public void testGetEventsByIDs() {
+        this.fillDatabase();
+
+        EventService service = new EventService();
+        EventRequest request = new EventRequest();
+        request.all = true;
+        request.authtoken = "sallyauth";
+        request.ids = new String[]{"fatherdeatheventid", "motherdeatheventid", "sallybirtheventid", "notaneventid"};
+        request.fields = new String[]{"year"};
+        EventResponse response = service.process("GET", request);
+
+        assertTrue(response.success);
+        assertEquals(2, response.data.length);
+        assertEquals("fatherdeatheventid", response.data[0].getEventID());
+        assertEquals(2023, response.data[0].getYear());
+        assertNull(response.data[0].getCountry());
+        assertEquals("sallybirtheventid", response.data[1].getEventID());
+        assertArrayEquals(new String[]{"motherdeatheventid", "notaneventid"}, response.missingIDs);
+    }
+
+    /**
+     * Ensures events can be found inside a box, or near a point (closest first)
+     */
+    @Test
+    @DisplayName("Getting Events by location test")
+    public void testGetEventsByLocation() {
+        this.fillDatabase();
+
+        EventService service = new EventService();
+        EventRequest request = new EventRequest();
+        request.all = true;
+        request.authtoken = "sallyauth";
+        request.bbox = new double[]{2.0, 2.0, 3.15, 3.15};
+        EventResponse response = service.process("GET", request);
+        assertTrue(response.success);
+        // mark's event at 3.2 would be outside anyway
+        assertEquals(3, response.data.length);
+
+        request.bbox = new double[]{3.0, 2.0, 2.0, 3.0};
+        response = service.process("GET", request);
+        assertFalse(response.success);
+        request.bbox = new double[0];
+        response = service.process("GET", request);
+        assertFalse(response.success);
+
+        // about 111 km per degree there, so 2.1 and 3.1 are about 157 km away
+        request.bbox = null;
+        request.near = new double[]{2.2, 2.2};
+        request.radiusKm = 160.0;
+        response = service.process("GET", request);
+        assertTrue(response.success);
+        assertEquals(3, response.data.length);
+        assertEquals("fatherdeatheventid", response.data[0].getEventID());
+
+        request.fields = new String[]{"city"};
+        request.radiusKm = 10.0;
+        response = service.process("GET", request);
+        assertTrue(response.success);
+        assertEquals(1, response.data.length);
+
+        request.radiusKm = null;
+        response = service.process("GET", request);
+        assertFalse(response.success);
+        request.radiusKm = 10.0;
+        request.near = new double[]{91.0, 0.0};
+        response = service.process("GET", request);
+        assertFalse(response.success);
+    }
+
+    /**
+     * Ensures events can be found by year range and type, in year order
+     */
+    @Test
+    @DisplayName("Getting Events timeline test")
+    public void testGetEventsTimeline() {
+        this.fillDatabase();
+
+        EventService service = new EventService();
+        EventRequest request = new EventRequest();
+        request.all = true;
+        request.authtoken = "sallyauth";
+        request.fromYear = 1970;
+        request.toYear = 1990;
+        EventResponse response = service.process("GET", request);
+        assertTrue(response.success);
+        assertEquals(4, response.data.length);
+        for (int eventIdx = 1; eventIdx < response.data.length; ++eventIdx) {
+            assertTrue(response.data[eventIdx - 1].getYear() <= response.data[eventIdx].getYear());
+        }
+
+        request.toYear = null;
+        request.types = new String[]{"birth", "DEATH"};
+        response = service.process("GET", request);
+        assertTrue(response.success);
+        // mark's death event isn't sally's
+        assertEquals(4, response.data.length);
+        assertEquals("fatherbirtheventid", response.data[0].getEventID());
+        assertEquals("fatherdeatheventid", response.data[3].getEventID());
+
+        request.fromYear = 2000;
+        request.toYear = 1990;
+        response = service.process("GET", request);
+        assertFalse(response.success);
+        request.fromYear = 0;
+        request.toYear = null;
+        response = service.process("GET", request);
+        assertFalse(response.success);
+    }
+
+    /**
+     * Ensures events can be filtered by side of the family and by gender
+     */
+    @Test
+    @DisplayName("Getting Events by side and gender test")
+    public void testGetEventsBySideAndGender() {
+        this.fillDatabase();
+        try (Database database = new Database()) {
+            Person[] persons = {new Person("sallypersonid", "sillysally", "Sally", "Black", "f", "fatherpersonid", "motherpersonid", null)};
+            new PersonAccessor(database).update(persons);
+            database.commit();
+        } catch (DatabaseException | BadAccessException err) {
+            this.failNoTraceback(err);
+        }
+
+        EventService service = new EventService();
+        EventRequest request = new EventRequest();
+        request.all = true;
+        request.authtoken = "sallyauth";
+        request.side = "father";
+        EventResponse response = service.process("GET", request);
+        assertTrue(response.success);
+        assertEquals(3, response.data.length);
+        for (Event event : response.data) {
+            assertEquals("fatherpersonid", event.getPersonID());
+        }
+
+        // mark's death event isn't sally's
+        request.side = "mother";
+        response = service.process("GET", request);
+        assertTrue(response.success);
+        assertEquals(2, response.data.length);
+
+        request.side = null;
+        request.gender = "f";
+        response = service.process("GET", request);
+        assertTrue(response.success);
+        assertEquals(3, response.data.length);
+
+        request.side = "father";
+        response = service.process("GET", request);
+        assertTrue(response.success);
+        assertEquals(0, response.data.length);
+
+        request.side = "uncle";
+        response = service.process("GET", request);
+        assertFalse(response.success);
+        request.side = null;
+        request.gender = "x";
+        response = service.process("GET", request);
+        assertFalse(response.success);
+    }
+
+    /**
+     * Ensures filters that can't be used together are refused instead of
+     * some of them being ignored
+     */
+    @Test
+    @DisplayName("Getting Events with mixed filters test")
+    public void testGetEventsMixedFilters() {
+        this.fillDatabase();
+
+        EventService service = new EventService();
+        EventRequest request = new EventRequest();
+        request.all = true;
+        request.authtoken = "sallyauth";
+        request.types = new String[]{"birth"};
+        request.limit = 50;
+        EventResponse response = service.process("GET", request);
+        assertFalse(response.success);
+        assertTrue(response.message.contains("fromYear/toYear/type"));
+        assertTrue(response.message.contains("limit/after"));
+
+        request.types = null;
+        request.limit = null;
+        request.bbox = new double[]{-90, -180, 90, 180};
+        request.fromYear = 1900;
+        response = service.process("GET", request);
+        assertFalse(response.success);
+
+        request.bbox = null;
+        request.side = "father";
+        response = service.process("GET", request);
+        assertFalse(response.success);
+
+        // each of them alone still works
+        request.fromYear = null;
+        response = service.process("GET", request);
+        assertTrue(response.success);
+        request.side = null;
+        request.bbox = new double[]{-90, -180, 90, 180};
+        response = service.process("GET", request);
+        assertTrue(response.success);
+    }
+
+    /**
+     * Ensures events can be returned as map clusters, which split apart as the zoom increases
+     */
+    @Test
+    @DisplayName("Getting Event clusters test")
+    public void testGetEventClusters() {
+        this.fillDatabase();
+
+        EventService service = new EventService();
+        EventRequest request = new EventRequest();
+        request.clusters = true;
+        request.authtoken = "sallyauth";
+        EventResponse response = service.process("GET", request);
+        assertFalse(response.success);
+
+        request.zoom = 0;
+        response = service.process("GET", request);
+        assertTrue(response.success);
+        assertNull(response.data);
+        // mark's death event isn't sally's
+        assertEquals(1, response.clusters.length);
+        assertEquals(6, response.clusters[0].getCount());
+        assertEquals((1.1 + 2.1 + 5.1 + 2.2 + 3.1 + 5.1) / 6, response.clusters[0].getLatitude(), 0.0001);
+        assertEquals("Birth", response.clusters[0].getEventType());
+
+        // both marriages happened in the same place
+        request.zoom = 20;
+        response = service.process("GET", request);
+        assertTrue(response.success);
+        assertEquals(5, response.clusters.length);
+
+        request.bbox = new double[]{4.0, 4.0, 6.0, 6.0};
+        response = service.process("GET", request);
+        assertTrue(response.success);
+        assertEquals(1, response.clusters.length);
+        assertEquals(2, response.clusters[0].getCount());
+        assertEquals("Marriage", response.clusters[0].getEventType());
+
+        request.bbox = new double[]{6.0, 4.0, 4.0, 6.0};
+        response = service.process("GET", request);
+        assertFalse(response.success);
+        request.bbox = null;
+        request.zoom = -1;
+        response = service.process("GET", request);
+        assertFalse(response.success);
+    }
+
     /**
      * Ensures using POST fails
      */
@@ -0,0 +1,304 @@
+package services;
+
+import java.util.UUID;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+import dataAccess.Database;
+import dataAccess.DatabaseException;
+import dataAccess.UserAccessor;
+
+import models.User;
+
+import utils.FamilyTreeUtils;
+
+/**
+ * A fill request that runs in the background instead of holding onto its HTTP
+ * connection. Jobs run on a small, bounded executor (so a burst of fills can't
+ * take over the server), and at most one job per user is ever in flight;
+ * submitting again for the same user just returns the job already running.
+ *
+ * The tree is generated in memory before anything is written, so the database
+ * is only locked for the short transaction that clears the user's old data
+ * and saves the new tree (and not while the tree is generated).
+ */
+public class FillJob {
+    /** The job is waiting for a thread on the executor */
+    static public final String STATUS_QUEUED = "queued";
+    /** The family tree is being generated (in memory) */
+    static public final String STATUS_GENERATING = "generating";
+    /** The user's old data is being cleared and the new tree saved */
+    static public final String STATUS_SAVING = "saving";
+    /** The job finished and its data was committed */
+    static public final String STATUS_SUCCEEDED = "succeeded";
+    /** The job failed and its changes were rolled back */
+    static public final String STATUS_FAILED = "failed";
+
+    /** The number of jobs that can run at the same time */
+    static private final int NUM_THREADS = 2;
+    /** The number of jobs that can wait for a thread before new jobs are rejected */
+    static private final int MAX_QUEUED_JOBS = 16;
+    /** The number of finished jobs to remember (for status requests) */
+    static private final int MAX_FINISHED_JOBS = 256;
+
+    /** The executor that all fill jobs run on */
+    static private final ThreadPoolExecutor executor = new ThreadPoolExecutor(
+        FillJob.NUM_THREADS, FillJob.NUM_THREADS, 0, TimeUnit.MILLISECONDS,
+        new ArrayBlockingQueue<>(FillJob.MAX_QUEUED_JOBS),
+        (runnable) -> {
+            Thread thread = new Thread(runnable, "FillJob-worker");
+            thread.setDaemon(true);
+            return thread;
+        }
+    );
+    /** Every remembered job, by job ID */
+    static private final ConcurrentHashMap<String, FillJob> jobsByID = new ConcurrentHashMap<>();
+    /** The job currently in flight for each user, by username */
+    static private final ConcurrentHashMap<String, FillJob> inFlightJobsByUsername = new ConcurrentHashMap<>();
+    /** The IDs of finished jobs, oldest first */
+    static private final ConcurrentLinkedQueue<String> finishedJobIDs = new ConcurrentLinkedQueue<>();
+
+    /**
+     * Submits a new fill job for a user, unless one is already in flight for
+     * that user, in which case the existing job is returned instead
+     *
+     * @param username is the username of the user to fill
+     * @param generations is the number of generations to fill (or negative for the default)
+     * @return the job that will fill the user
+     * @throws RejectedExecutionException when too many jobs are already queued
+     */
+    static public FillJob submit(String username, int generations) throws RejectedExecutionException {
+        FillJob[] submittedJob = {null};
+        FillJob job = FillJob.inFlightJobsByUsername.computeIfAbsent(username, (unused) -> {
+            FillJob newJob = new FillJob(username, generations);
+            submittedJob[0] = newJob;
+            return newJob;
+        });
+
+        if (job == submittedJob[0]) {
+            FillJob.jobsByID.put(job.jobID, job);
+            try {
+                FillJob.executor.execute(job::run);
+            } catch (RejectedExecutionException err) {
+                FillJob.jobsByID.remove(job.jobID);
+                FillJob.inFlightJobsByUsername.remove(username, job);
+                throw err;
+            }
+        }
+        return job;
+    }
+
+    /**
+     * Returns a job (in flight or recently finished) given its ID
+     *
+     * @param jobID is the ID returned when the job was submitted
+     * @return the job, or null if no job is remembered with that ID
+     */
+    static public FillJob getByID(String jobID) {
+        return FillJob.jobsByID.get(jobID);
+    }
+
+    /** The unique identifier for this job */
+    private String jobID;
+    /** The username of the user being filled */
+    private String username;
+    /** The number of generations to fill (or negative for the default) */
+    private int generations;
+    /** The current stage of the job (one of the STATUS_* constants) */
+    private volatile String status;
+    /** The number of Persons created (only set once the job succeeds) */
+    private volatile int numPersonsCreated;
+    /** The number of Events created (only set once the job succeeds) */
+    private volatile int numEventsCreated;
+    /** The error message if the job failed */
+    private volatile String errorMessage;
+    /** When the job started running (in epoch milliseconds), or 0 while it is queued */
+    private volatile long startedAtMillis;
+    /** When the job finished (in epoch milliseconds), or 0 until it does */
+    private volatile long finishedAtMillis;
+    /** The tree being generated, or null until generating starts */
+    private volatile FamilyTreeUtils.GenerationAttempt attempt;
+
+    /**
+     * Creates a new, queued job
+     *
+     * @param username is the username of the user to fill
+     * @param generations is the number of generations to fill (or negative for the default)
+     */
+    private FillJob(String username, int generations) {
+        this.jobID = UUID.randomUUID().toString();
+        this.username = username;
+        this.generations = generations;
+        this.status = FillJob.STATUS_QUEUED;
+        this.numPersonsCreated = 0;
+        this.numEventsCreated = 0;
+        this.errorMessage = null;
+        this.startedAtMillis = 0;
+        this.finishedAtMillis = 0;
+        this.attempt = null;
+    }
+
+    public String getJobID() {
+        return this.jobID;
+    }
+
+    public String getUsername() {
+        return this.username;
+    }
+
+    public String getStatus() {
+        return this.status;
+    }
+
+    public int getNumPersonsCreated() {
+        return this.numPersonsCreated;
+    }
+
+    public int getNumEventsCreated() {
+        return this.numEventsCreated;
+    }
+
+    public String getErrorMessage() {
+        return this.errorMessage;
+    }
+
+    /**
+     * Returns how many Persons have been generated so far (which goes up
+     * while the job is generating)
+     *
+     * @return the number of Persons generated
+     */
+    public int getNumPersonsGenerated() {
+        FamilyTreeUtils.GenerationAttempt attempt = this.attempt;
+        return attempt == null ? 0 : attempt.getNumPersonsCreated();
+    }
+
+    /**
+     * Returns how many Events have been generated so far (which goes up
+     * while the job is generating)
+     *
+     * @return the number of Events generated
+     */
+    public int getNumEventsGenerated() {
+        FamilyTreeUtils.GenerationAttempt attempt = this.attempt;
+        return attempt == null ? 0 : attempt.getNumEventsCreated();
+    }
+
+    /**
+     * Returns how many Persons the finished tree will have (every Person has
+     * both parents, up to the last generation)
+     *
+     * @return the number of Persons, or null if it is too big to count
+     */
+    public Long getNumPersonsExpected() {
+        int generations = this.getGenerations();
+        if (generations >= Long.SIZE - 2) {
+            return null;
+        }
+        return (1L << (generations + 1)) - 1;
+    }
+
+    /**
+     * Returns how long the job has been running (or ran for, once it finished)
+     *
+     * @return the running time in milliseconds, or null if the job hasn't started yet
+     */
+    public Long getElapsedMillis() {
+        long startedAtMillis = this.startedAtMillis;
+        if (startedAtMillis == 0) {
+            return null;
+        }
+        long finishedAtMillis = this.finishedAtMillis;
+        long endMillis = finishedAtMillis == 0 ? System.currentTimeMillis() : finishedAtMillis;
+        return endMillis - startedAtMillis;
+    }
+
+    /**
+     * Indicates if the job is done running, whether it succeeded or not
+     *
+     * @return whether or not the job is finished
+     */
+    public boolean isFinished() {
+        return this.status.equals(FillJob.STATUS_SUCCEEDED) || this.status.equals(FillJob.STATUS_FAILED);
+    }
+
+    /**
+     * Returns the number of generations the job fills
+     *
+     * @return the number of generations (with the default filled in)
+     */
+    private int getGenerations() {
+        return this.generations >= 0 ? this.generations : FamilyTreeUtils.NUM_GENERATIONS;
+    }
+
+    /**
+     * Runs the job on its own database connections (called by the executor)
+     */
+    private void run() {
+        this.startedAtMillis = System.currentTimeMillis();
+        try (Database database = new Database()) {
+            // generate first, with the read transaction ended so nothing waits on it meanwhile
+            User user = this.getUser(database);
+            database.rollback();
+            FamilyTreeUtils famTreeUtils = new FamilyTreeUtils(database);
+            FamilyTreeUtils.GenerationAttempt attempt = famTreeUtils.new GenerationAttempt();
+            this.attempt = attempt;
+            this.status = FillJob.STATUS_GENERATING;
+            famTreeUtils.generateUnsavedFamilyTree(user, this.getGenerations(), attempt);
+
+            // then clear and save in one short transaction
+            // (reading the user again, in case it changed while the tree was generated)
+            this.status = FillJob.STATUS_SAVING;
+            user = this.getUser(database);
+            new FillService().clearUser(user, database);
+            famTreeUtils.saveFamilyTree(user, attempt);
+            database.commit();
+
+            this.numPersonsCreated = attempt.getNumPersonsCreated();
+            this.numEventsCreated = attempt.getNumEventsCreated();
+            this.finishedAtMillis = System.currentTimeMillis();
+            this.status = FillJob.STATUS_SUCCEEDED;
+        } catch (Throwable err) {
+            this.errorMessage = err.getMessage() == null ? err.getClass().getSimpleName() : err.getMessage();
+            this.finishedAtMillis = System.currentTimeMillis();
+            this.status = FillJob.STATUS_FAILED;
+        } finally {
+            FillJob.inFlightJobsByUsername.remove(this.username, this);
+            this.rememberFinished();
+        }
+    }
+
+    /**
+     * Reads the job's user
+     *
+     * @param database is the database to read from
+     * @return the user
+     * @throws DatabaseException when a database error occurs
+     * @throws IllegalStateException when the user doesn't exist (anymore)
+     */
+    private User getUser(Database database) throws DatabaseException {
+        User user = new UserAccessor(database).getByUsername(this.username);
+        if (user == null) {
+            throw new IllegalStateException("User '" + this.username + "' does not exist");
+        }
+        return user;
+    }
+
+    /**
+     * Records that this job finished, forgetting the oldest finished jobs
+     * when too many are remembered
+     */
+    private void rememberFinished() {
+        FillJob.finishedJobIDs.add(this.jobID);
+        while (FillJob.finishedJobIDs.size() > FillJob.MAX_FINISHED_JOBS) {
+            String oldJobID = FillJob.finishedJobIDs.poll();
+            if (oldJobID != null) {
+                FillJob.jobsByID.remove(oldJobID);
+            }
+        }
+    }
+}
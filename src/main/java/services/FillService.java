@@ -1,5 +1,7 @@
 package services;
 
+import java.util.concurrent.RejectedExecutionException;
+
 import dataAccess.BadAccessException;
 import dataAccess.Database;
 import dataAccess.DatabaseException;
@@ -15,7 +17,8 @@ import utils.FamilyTreeUtils;
 
 /**
  * This service provides functionality for the data fill endpoint.
- * It accepts calls through the HTTP POST method.
+ * It accepts calls through the HTTP POST method, and the HTTP GET method
+ * for checking on the status of background (async) fill jobs.
  */
 public class FillService extends GenericService<FillRequest, FillResponse> {
     /**
@@ -26,6 +29,21 @@ public class FillService extends GenericService<FillRequest, FillResponse> {
         super("FillService");
     }
 
+    @Override
+    public FillResponse onGet(FillRequest request, Database database) throws InvalidHTTPMethodException, DatabaseException {
+        String jobID = request.jobID;
+        if (jobID == null) {
+            // only fill job status can be gotten; filling itself is a POST
+            return super.onGet(request, database);
+        }
+
+        FillJob job = FillJob.getByID(jobID);
+        if (job == null) {
+            return this.createJobNotFoundResponse(jobID);
+        }
+        return this.createJobStatusResponse(job);
+    }
+
     @Override
     public FillResponse onPost(FillRequest request, Database database) throws InvalidHTTPMethodException, DatabaseException {
         String username = request.username;
@@ -34,17 +52,56 @@ public class FillService extends GenericService<FillRequest, FillResponse> {
         }
         int generations = request.generations;
 
-        // clear data for the user
         UserAccessor userAcc = new UserAccessor(database); 
         User user = userAcc.getByUsername(username);
+        if (request.async) {
+            if (user == null) {
+                return this.createUserNotFoundResponse(username);
+            }
+            try {
+                FillJob job = FillJob.submit(username, generations);
+                return this.createJobStatusResponse(job);
+            } catch (RejectedExecutionException err) {
+                return this.createTooManyJobsResponse();
+            }
+        }
+
+        // clear data for the user
+        this.clearUser(user, database);
+
+        // generate family history data for the user
+        FamilyTreeUtils.GenerationAttempt attempt = this.fillUser(user, generations, database);
+
+        // generate the response
+        return this.createSuccessfulResponse(attempt.getNumPersonsCreated(), attempt.getNumEventsCreated());
+    }
+
+    /**
+     * Removes all existing family history data for a user
+     * 
+     * @param user is the user to clear
+     * @param database is the active database to clear the data from
+     * @throws DatabaseException if the database throws a sql temper tantrum
+     */
+    void clearUser(User user, Database database) throws DatabaseException {
         BulkUtils bulkUtils = new BulkUtils(database);
         try {
             bulkUtils.deleteUsersAssociatedData(user);
         } catch (BadAccessException err) {
             throw new AssertionError("User Accessor returned a user that doesn't exist (which was supposed to)");
         }
+    }
 
-        // generate family history data for the user
+    /**
+     * Generates family history data for a (cleared) user
+     * 
+     * @param user is the user to fill
+     * @param generations is the number of generations to fill, or a negative number for the default
+     * @param database is the active database to save the data to
+     * @return the GenerationAttempt describing what was created
+     * @throws DatabaseException if the database throws a sql temper tantrum
+     */
+    FamilyTreeUtils.GenerationAttempt fillUser(User user, int generations, Database database) throws DatabaseException {
         FamilyTreeUtils famTreeUtils = new FamilyTreeUtils(database);
         FamilyTreeUtils.GenerationAttempt attempt;
         try {
@@ -58,9 +115,7 @@ public class FillService extends GenericService<FillRequest, FillResponse> {
         }
         String personID = user.getPersonID();
         assert personID != null : "FamilyTreeUtils did not generate a personID";
-
-        // generate the response
-        return this.createSuccessfulResponse(attempt.getNumPersonsCreated(), attempt.getNumEventsCreated());
+        return attempt;
     }
 
     /**
@@ -77,6 +132,80 @@ public class FillService extends GenericService<FillRequest, FillResponse> {
         return response;
     }
 
+    /**
+     * Creates a response describing the current state of a background fill job
+     * (which is only unsuccessful if the job failed)
+     * 
+     * @param job is the job to describe
+     * @return the FillResponse
+     */
+    private FillResponse createJobStatusResponse(FillJob job) {
+        FillResponse response = new FillResponse();
+        // (the status is read once, so the rest of the response agrees with it)
+        String status = job.getStatus();
+        response.success = !status.equals(FillJob.STATUS_FAILED);
+        response.jobID = job.getJobID();
+        response.status = status;
+        response.elapsedMillis = job.getElapsedMillis();
+        response.numPersonsGenerated = job.getNumPersonsGenerated();
+        response.numEventsGenerated = job.getNumEventsGenerated();
+        response.numPersonsExpected = job.getNumPersonsExpected();
+        if (status.equals(FillJob.STATUS_SUCCEEDED)) {
+            response.numPersonsCreated = job.getNumPersonsCreated();
+            response.numEventsCreated = job.getNumEventsCreated();
+            response.message = String.format("Successfully added %d persons and %d events to the database.", job.getNumPersonsCreated(), job.getNumEventsCreated());
+        } else if (status.equals(FillJob.STATUS_FAILED)) {
+            response.message = "Fill job failed after " + response.elapsedMillis + " ms: " + job.getErrorMessage();
+        } else if (response.elapsedMillis == null) {
+            response.message = "Fill job for user '" + job.getUsername() + "' is " + status;
+        } else {
+            String expectedStr = response.numPersonsExpected == null ? "" : " of " + response.numPersonsExpected;
+            response.message = String.format(
+                "Fill job for user '%s' is %s (%d%s persons and %d events generated, running for %d ms)",
+                job.getUsername(), status, response.numPersonsGenerated, expectedStr, response.numEventsGenerated, response.elapsedMillis
+            );
+        }
+        return response;
+    }
+
+    /**
+     * Creates a response for a status request with an unknown job ID
+     * 
+     * @param jobID is the job ID that wasn't found
+     * @return the failed FillResponse
+     */
+    private FillResponse createJobNotFoundResponse(String jobID) {
+        FillResponse response = new FillResponse();
+        response.success = false;
+        response.message = "No fill job was found with ID '" + jobID + "'";
+        return response;
+    }
+
+    /**
+     * Creates a response for a fill request for a user that doesn't exist
+     * 
+     * @param username is the username that wasn't found
+     * @return the failed FillResponse
+     */
+    private FillResponse createUserNotFoundResponse(String username) {
+        FillResponse response = new FillResponse();
+        response.success = false;
+        response.message = "User '" + username + "' does not exist";
+        return response;
+    }
+
+    /**
+     * Creates a response for an async fill request that couldn't be queued
+     * 
+     * @return the failed FillResponse
+     */
+    private FillResponse createTooManyJobsResponse() {
+        FillResponse response = new FillResponse();
+        response.success = false;
+        response.message = "Too many fill jobs are already queued; try again later";
+        return response;
+    }
+
     @Override
     protected FillResponse createSpecificErrorResponse(String errMsg) {
         return new FillResponse();
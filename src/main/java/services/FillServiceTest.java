@@ -180,6 +180,169 @@ public class FillServiceTest {
         this.assertNumModelsInDatabase(1, 1, 1, 1);
     }
 
+    /**
+     * Waits for a background fill job to finish, failing if it takes too long
+     * 
+     * @param jobID is the ID of the job to wait for
+     * @return the final status response for the job
+     */
+    private FillResponse waitForFillJob(String jobID) throws InterruptedException {
+        FillService service = new FillService();
+        FillRequest request = new FillRequest();
+        request.jobID = jobID;
+        FillResponse response = null;
+        for (int waitIdx = 0; waitIdx < 200; ++waitIdx) {
+            response = service.process("GET", request);
+            assertEquals(!response.status.equals(FillJob.STATUS_FAILED), response.success, response.message);
+            if (response.status.equals(FillJob.STATUS_SUCCEEDED) || response.status.equals(FillJob.STATUS_FAILED)) {
+                return response;
+            }
+            Thread.sleep(50);
+        }
+        fail("Fill job did not finish in time: " + response.message);
+        return null;
+    }
+
+    /**
+     * Ensures an async fill returns a job ID right away, and that the job fills the user
+     */
+    @Test
+    @DisplayName("Async fill reports its status")
+    public void testAsyncFill() throws InterruptedException {
+        this.fillDatabase();
+        this.assertNumModelsInDatabase(1, 3, 7, 1);
+
+        FillService service = new FillService();
+        FillRequest request = new FillRequest();
+        request.username = "sillysally";
+        request.generations = 2;
+        request.async = true;
+        FillResponse response = service.process("POST", request);
+
+        assertNotNull(response);
+        assertTrue(response.success);
+        assertNotNull(response.jobID);
+        assertNotNull(response.status);
+
+        FillResponse statusResponse = this.waitForFillJob(response.jobID);
+        assertEquals(FillJob.STATUS_SUCCEEDED, statusResponse.status, statusResponse.message);
+        assertEquals(1 + 2 + 4, statusResponse.numPersonsCreated);
+        assertEquals(1 + 2*3 + 4*3, statusResponse.numEventsCreated);
+        assertNotNull(statusResponse.elapsedMillis);
+        this.assertNumModelsInDatabase(1, 1 + 2 + 4, 1 + 2*3 + 4*3, 1);
+    }
+
+    /**
+     * Ensures a job's status counts what it has generated so far, and that
+     * the database can be written to while the tree is being generated
+     */
+    @Test
+    @DisplayName("Async fill reports its progress")
+    public void testAsyncFillProgress() throws InterruptedException {
+        this.fillDatabase();
+
+        FillJob job = FillJob.submit("sillysally", 8);
+        FillService service = new FillService();
+        FillRequest statusRequest = new FillRequest();
+        statusRequest.jobID = job.getJobID();
+        FillResponse statusResponse = service.process("GET", statusRequest);
+        int lastNumPersonsGenerated = 0;
+        boolean wroteWhileGenerating = false;
+        for (int waitIdx = 0; waitIdx < 400 && !job.isFinished(); ++waitIdx) {
+            assertTrue(statusResponse.success, statusResponse.message);
+            assertEquals((1L << 9) - 1, statusResponse.numPersonsExpected);
+            assertTrue(statusResponse.numPersonsGenerated >= lastNumPersonsGenerated);
+            assertTrue(statusResponse.numPersonsGenerated <= statusResponse.numPersonsExpected);
+            lastNumPersonsGenerated = statusResponse.numPersonsGenerated;
+
+            if (!wroteWhileGenerating && statusResponse.status.equals(FillJob.STATUS_GENERATING)) {
+                // nothing is locked yet, so this doesn't wait on the job
+                try (Database database = new Database()) {
+                    AuthToken[] authTokens = {new AuthToken("sallyauth2", "sillysally")};
+                    new AuthTokenAccessor(database).create(authTokens);
+                    database.commit();
+                    wroteWhileGenerating = true;
+                } catch (DatabaseException | BadAccessException err) {
+                    this.failNoTraceback(err);
+                }
+            }
+            Thread.sleep(5);
+            statusResponse = service.process("GET", statusRequest);
+        }
+
+        statusResponse = this.waitForFillJob(job.getJobID());
+        assertEquals(FillJob.STATUS_SUCCEEDED, statusResponse.status, statusResponse.message);
+        assertEquals(511, statusResponse.numPersonsGenerated);
+        assertEquals(511, statusResponse.numPersonsCreated);
+        assertEquals(statusResponse.numEventsCreated, statusResponse.numEventsGenerated);
+    }
+
+    /**
+     * Ensures a second async fill for a user coalesces with the one in flight
+     */
+    @Test
+    @DisplayName("Duplicate async fills coalesce")
+    public void testAsyncFillCoalesces() throws InterruptedException {
+        this.fillDatabase();
+
+        FillService service = new FillService();
+        FillRequest request = new FillRequest();
+        request.username = "sillysally";
+        request.generations = 8;
+        request.async = true;
+        FillResponse firstResponse = service.process("POST", request);
+        FillResponse secondResponse = service.process("POST", request);
+
+        assertTrue(firstResponse.success);
+        assertTrue(secondResponse.success);
+        FillResponse statusResponse = this.waitForFillJob(firstResponse.jobID);
+        assertEquals(FillJob.STATUS_SUCCEEDED, statusResponse.status, statusResponse.message);
+        if (!secondResponse.jobID.equals(firstResponse.jobID)) {
+            // the first job finished before the second was submitted; it can't have overlapped
+            assertEquals(FillJob.STATUS_SUCCEEDED, this.waitForFillJob(secondResponse.jobID).status);
+        }
+        this.assertNumModelsInDatabase(1, 511, 1 + 510*3, 1);
+    }
+
+    /**
+     * Ensures async fills fail for users that don't exist, and status requests fail for unknown jobs
+     */
+    @Test
+    @DisplayName("Async fill with bad username/job ID fails")
+    public void testAsyncFillBadInput() {
+        FillService service = new FillService();
+        FillRequest request = new FillRequest();
+        request.username = "nobody";
+        request.generations = 2;
+        request.async = true;
+        FillResponse response = service.process("POST", request);
+        assertFalse(response.success);
+        assertTrue(response.message.matches("Error:.*"));
+
+        FillRequest statusRequest = new FillRequest();
+        statusRequest.jobID = "notarealjobid";
+        FillResponse statusResponse = service.process("GET", statusRequest);
+        assertFalse(statusResponse.success);
+        assertTrue(statusResponse.message.matches("Error:.*"));
+    }
+
+    /**
+     * Ensures a job that fails while running reports the failure (and why) in its status
+     */
+    @Test
+    @DisplayName("Failed async fill reports its error")
+    public void testAsyncFillFails() throws InterruptedException {
+        // the service checks the user first, so the job itself has to find them missing
+        FillJob job = FillJob.submit("nobody", 2);
+
+        FillResponse statusResponse = this.waitForFillJob(job.getJobID());
+        assertEquals(FillJob.STATUS_FAILED, statusResponse.status);
+        assertFalse(statusResponse.success);
+        assertTrue(statusResponse.message.matches("Error:.*does not exist.*"), statusResponse.message);
+        assertNotNull(statusResponse.elapsedMillis);
+        assertNull(statusResponse.numPersonsCreated);
+    }
+
     /**
      * Ensures using GET fails
      */
@@ -148,6 +148,34 @@ public abstract class GenericService<
         return this.createErrorResponse(String.format("The request was missing required fields: %s", badProp));
     }
 
+    /**
+     * Creates an error response for requests asking for fields that don't exist
+     * (ex. "fields=" projections), if any fields are unknown
+     * (To be used in subclasses that need it)
+     * 
+     * @param fields is the fields that were asked for (null is always fine)
+     * @param knownFields is every field that can be asked for
+     * @return the failed response, or null if every field is known
+     */
+    protected ResponseType checkFieldsKnown(String[] fields, String[] knownFields) {
+        if (fields == null) {
+            return null;
+        }
+        for (String field : fields) {
+            boolean isKnown = false;
+            for (String knownField : knownFields) {
+                if (field.equals(knownField)) {
+                    isKnown = true;
+                    break;
+                }
+            }
+            if (!isKnown) {
+                return this.createErrorResponse(String.format("The requested field '%s' does not exist", field));
+            }
+        }
+        return null;
+    }
+
     /**
      * Overridable function that is called when a GET request is sent to the service
      * 
@@ -1,5 +1,7 @@
 package services;
 
+import java.util.ArrayList;
+
 import dataAccess.Database;
 import dataAccess.DatabaseException;
 
@@ -8,6 +10,7 @@ import models.*;
 import services.requests.LoadRequest;
 import services.responses.LoadResponse;
 import utils.BulkUtils;
+import utils.ReferenceValidator;
 
 /**
  * This service provides functionality for the loading endpoint.
@@ -24,6 +27,10 @@ public class LoadService extends GenericService<LoadRequest, LoadResponse> {
 
     @Override
     public LoadResponse onPost(LoadRequest request, Database database) throws InvalidHTTPMethodException, DatabaseException {
+        if (request.streamedData != null) {
+            return this.onStreamedPost(request, database);
+        }
+
         User[] users = request.users;
         if (users == null) {
             return this.createIncompleteResponse("users");
@@ -37,6 +44,16 @@ public class LoadService extends GenericService<LoadRequest, LoadResponse> {
             return this.createIncompleteResponse("events");
         }
 
+        // make sure the data only references itself (before anything is cleared!)
+        ReferenceValidator validator = new ReferenceValidator();
+        validator.addUsers(users);
+        validator.addPersons(persons);
+        validator.addEvents(events);
+        ArrayList<String> problems = validator.findProblems();
+        if (problems.size() > 0) {
+            return this.createInvalidReferencesResponse(problems);
+        }
+
         // clear all data from the database
         BulkUtils bulkUtils = new BulkUtils(database);
         bulkUtils.clearDatabase();
@@ -49,6 +66,27 @@ public class LoadService extends GenericService<LoadRequest, LoadResponse> {
         return this.createSuccessfulResponse(users.length, persons.length, events.length);
     }
 
+    /**
+     * Loads data for a streamed request, parsing it as it is inserted (in batches)
+     * so the whole data set never needs to be held in memory
+     * 
+     * @param request is the streamed request
+     * @param database is the active database to load data into
+     * @return the response object to send back to the user
+     * @throws DatabaseException if the database throws a sql temper tantrum (or the data couldn't be parsed)
+     */
+    private LoadResponse onStreamedPost(LoadRequest request, Database database) throws DatabaseException {
+        // replace all data in the database (clearing in the same transaction,
+        // since bad data is only found partway through)
+        BulkUtils bulkUtils = new BulkUtils(database);
+        BulkUtils.StreamedLoad load = bulkUtils.streamIntoDatabase(request.streamedData, true);
+
+        // generate a response
+        LoadResponse response = this.createSuccessfulResponse(load.getNumUsersCreated(), load.getNumPersonsCreated(), load.getNumEventsCreated());
+        response.message += String.format(" (%.0f rows/s)", load.getRowsPerSecond());
+        return response;
+    }
+
     /**
      * Creates a successful LoadResponse with required parameters
      * 
@@ -67,6 +105,19 @@ public class LoadService extends GenericService<LoadRequest, LoadResponse> {
         return response;
     }
 
+    /**
+     * Creates a failed LoadResponse describing the invalid references in the data
+     * 
+     * @param problems is the list of problems found by the ReferenceValidator
+     * @return the failed LoadResponse
+     */
+    private LoadResponse createInvalidReferencesResponse(ArrayList<String> problems) {
+        LoadResponse response = new LoadResponse();
+        response.success = false;
+        response.message = ReferenceValidator.createReport(problems);
+        return response;
+    }
+
     @Override
     protected LoadResponse createSpecificErrorResponse(String errMsg) {
         return new LoadResponse();
@@ -1,5 +1,7 @@
 package services;
 
+import java.io.StringReader;
+
 import org.junit.jupiter.api.*;
 import static org.junit.jupiter.api.Assertions.*;
 
@@ -191,6 +193,162 @@ public class LoadServiceTest {
         this.assertNumModelsInDatabase(1, 3, 7, 0);
     }
 
+    /**
+     * Ensures data referencing things that weren't loaded is rejected, without
+     * clearing the database
+     */
+    @Test
+    @DisplayName("Loading database test -- invalid references")
+    public void testLoadDatabaseInvalidReferences() {
+        this.fillDatabase();
+        this.assertNumModelsInDatabase(1, 3, 7, 1);
+
+        User sallyUser = new User("sillysally", "password", "sally@email.test", "Sally", "Black", "f", "sallypersonid");
+        User[] users = {sallyUser};
+        Person sallyPerson = new Person(sallyUser.getPersonID(), sallyUser.getUsername(), sallyUser.getFirstName(), sallyUser.getLastName(), "f");
+        // who's your daddy? (not anyone who was loaded...)
+        sallyPerson.setFatherID("missingfatherid");
+        Person[] persons = {sallyPerson};
+        Event sallyBirth = new Event("sallybirtheventid", sallyUser.getUsername(), sallyPerson.getPersonID(), 1.1, 1.1, "USA", "Provo", "Birth", 2000);
+        Event ghostBirth = new Event("ghostbirtheventid", "ghostuser", "ghostpersonid", 1.1, 1.1, "USA", "Provo", "Birth", 1900);
+        Event[] events = {sallyBirth, ghostBirth};
+
+        LoadService service = new LoadService();
+        LoadRequest request = new LoadRequest();
+        request.users = users;
+        request.persons = persons;
+        request.events = events;
+        LoadResponse response = service.process("POST", request);
+
+        assertNotNull(response);
+        assertFalse(response.success);
+        assertTrue(response.message.startsWith("Error: Found 3 invalid references"));
+        assertTrue(response.message.contains("missingfatherid"));
+        assertTrue(response.message.contains("ghostuser"));
+        assertTrue(response.message.contains("ghostpersonid"));
+        // nothing was cleared (or loaded)
+        this.assertNumModelsInDatabase(1, 3, 7, 1);
+    }
+
+    /**
+     * Ensures IDs only have to be unique among their own kind of model (a
+     * username can be the same as a personID or eventID), while repeated IDs
+     * of the same kind are still rejected
+     */
+    @Test
+    @DisplayName("Loading database test -- shared IDs across models")
+    public void testLoadDatabaseSharedIDs() {
+        User sallyUser = new User("sally", "password", "sally@email.test", "Sally", "Black", "f", "sally");
+        User[] users = {sallyUser};
+        Person sallyPerson = new Person("sally", "sally", "Sally", "Black", "f");
+        Person[] persons = {sallyPerson};
+        Event sallyBirth = new Event("sally", "sally", "sally", 1.1, 1.1, "USA", "Provo", "Birth", 2000);
+        Event[] events = {sallyBirth};
+
+        LoadService service = new LoadService();
+        LoadRequest request = new LoadRequest();
+        request.users = users;
+        request.persons = persons;
+        request.events = events;
+        LoadResponse response = service.process("POST", request);
+
+        assertNotNull(response);
+        assertTrue(response.success);
+        this.assertNumModelsInDatabase(1, 1, 1, 0);
+
+        Event sallyDeath = new Event("sally", "sally", "sally", 1.1, 1.1, "USA", "Provo", "Death", 2080);
+        request.events = new Event[]{sallyBirth, sallyDeath};
+        response = service.process("POST", request);
+
+        assertNotNull(response);
+        assertFalse(response.success);
+        assertTrue(response.message.startsWith("Error: Found 2 invalid references"));
+        assertTrue(response.message.contains("eventID that is used more than once"));
+        this.assertNumModelsInDatabase(1, 1, 1, 0);
+    }
+
+    /**
+     * Ensures the database can be loaded from streamed JSON, across several batches
+     */
+    @Test
+    @DisplayName("Loading database test -- streamed")
+    public void testLoadDatabaseStreamed() {
+        this.fillDatabase();
+        this.assertNumModelsInDatabase(1, 3, 7, 1);
+
+        int numEvents = 1234;
+        StringBuilder json = new StringBuilder();
+        json.append("{\"users\": [{\"username\": \"sillysally\", \"password\": \"password\", \"email\": \"sally@email.test\", ");
+        json.append("\"firstName\": \"Sally\", \"lastName\": \"Black\", \"gender\": \"f\", \"personID\": \"sallypersonid\"}], ");
+        json.append("\"persons\": [{\"personID\": \"sallypersonid\", \"associatedUsername\": \"sillysally\", ");
+        json.append("\"firstName\": \"Sally\", \"lastName\": \"Black\", \"gender\": \"f\"}], ");
+        json.append("\"events\": [");
+        for (int eventIdx = 0; eventIdx < numEvents; ++eventIdx) {
+            if (eventIdx != 0) {
+                json.append(", ");
+            }
+            json.append("{\"eventID\": \"event" + eventIdx + "\", \"associatedUsername\": \"sillysally\", \"personID\": \"sallypersonid\", ");
+            json.append("\"latitude\": 1.1, \"longitude\": 1.1, \"country\": \"USA\", \"city\": \"Provo\", \"eventType\": \"Birth\", \"year\": 2000}");
+        }
+        json.append("]}");
+
+        LoadService service = new LoadService();
+        LoadRequest request = new LoadRequest();
+        request.streamedData = new StringReader(json.toString());
+        LoadResponse response = service.process("POST", request);
+
+        assertNotNull(response);
+        assertTrue(response.success);
+        assertTrue(response.message.matches("Successfully added 1 users, 1 persons, and 1234 events to the database. \\(\\d+ rows/s\\)"));
+        this.assertNumModelsInDatabase(1, 1, numEvents, 0);
+    }
+
+    /**
+     * Ensures malformed streamed JSON fails without loading (or clearing) anything
+     */
+    @Test
+    @DisplayName("Loading database test -- streamed, malformed")
+    public void testLoadDatabaseStreamedMalformed() {
+        this.fillDatabase();
+        String json = "{\"users\": [{\"username\": \"sillysally\", \"password\": \"password\", \"email\": \"sally@email.test\", "
+                    + "\"firstName\": \"Sally\", \"lastName\": \"Black\", \"gender\": \"f\"}], \"persons\": [{";
+
+        LoadService service = new LoadService();
+        LoadRequest request = new LoadRequest();
+        request.streamedData = new StringReader(json);
+        LoadResponse response = service.process("POST", request);
+
+        assertNotNull(response);
+        assertFalse(response.success);
+        // the old data wasn't cleared either
+        this.assertNumModelsInDatabase(1, 3, 7, 1);
+    }
+
+    /**
+     * Ensures streamed data referencing things that weren't loaded is rolled back
+     * (along with the clear before it)
+     */
+    @Test
+    @DisplayName("Loading database test -- streamed, invalid references")
+    public void testLoadDatabaseStreamedInvalidReferences() {
+        this.fillDatabase();
+        String json = "{\"users\": [{\"username\": \"sillysally\", \"password\": \"password\", \"email\": \"sally@email.test\", "
+                    + "\"firstName\": \"Sally\", \"lastName\": \"Black\", \"gender\": \"f\", \"personID\": \"sallypersonid\"}], "
+                    + "\"persons\": [{\"personID\": \"sallypersonid\", \"associatedUsername\": \"sillysally\", "
+                    + "\"firstName\": \"Sally\", \"lastName\": \"Black\", \"gender\": \"f\", \"spouseID\": \"missingspouseid\"}]}";
+
+        LoadService service = new LoadService();
+        LoadRequest request = new LoadRequest();
+        request.streamedData = new StringReader(json);
+        LoadResponse response = service.process("POST", request);
+
+        assertNotNull(response);
+        assertFalse(response.success);
+        assertTrue(response.message.contains("missingspouseid"));
+        // the old data wasn't cleared either
+        this.assertNumModelsInDatabase(1, 3, 7, 1);
+    }
+
     /**
      * Ensures using GET fails
      */
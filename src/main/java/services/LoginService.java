@@ -2,9 +2,6 @@ package services;
 
 import dataAccess.Database;
 import dataAccess.DatabaseException;
-import dataAccess.UserAccessor;
-
-import models.User;
 
 import services.requests.LoginRequest;
 import services.responses.LoginResponse;
@@ -37,15 +34,14 @@ public class LoginService extends GenericService<LoginRequest, LoginResponse> {
         
         // log the user in/generate auth token
         AuthUtils authUtils = new AuthUtils(database);
-        String authToken = authUtils.authenticateUser(username, password);
-        if (authToken == null) {
+        AuthUtils.LoggedInUser loggedInUser = authUtils.logInUser(username, password);
+        if (loggedInUser == null) {
             return this.createLoginFailedResponse(username);
         }
         
-        // generate the response
-        UserAccessor userAcc = new UserAccessor(database);
-        User user = userAcc.getByUsername(username);
-        String personID = user.getPersonID();
+        // generate the response (no need to look the user up again)
+        String authToken = loggedInUser.getAuthToken();
+        String personID = loggedInUser.getUser().getPersonID();
         return this.createSuccessfulResponse(authToken, username, personID);
     }
 
@@ -9,6 +9,8 @@ import models.*;
 import services.requests.LoginRequest;
 import services.responses.LoginResponse;
 
+import utils.PasswordHasher;
+
 /**
  * Contains test cases to ensure the LoginService works correctly
  */
@@ -139,6 +141,36 @@ public class LoginServiceTest {
         this.assertNumModelsInDatabase(1, 3, 7, 2);
     }
 
+    /**
+     * Tests that legacy (plaintext) passwords are hashed on login, and still work afterwards
+     */
+    @Test
+    @DisplayName("Valid login attempt test -- legacy password is rehashed")
+    public void testLegacyPasswordRehashed() throws DatabaseException {
+        this.fillDatabase();
+
+        LoginService service = new LoginService();
+        LoginRequest request = new LoginRequest();
+        request.username = "sillysally";
+        request.password = "password";
+        LoginResponse response = service.process("POST", request);
+        assertTrue(response.success);
+
+        try (Database database = new Database()) {
+            String storedPassword = new UserAccessor(database).getByUsername("sillysally").getPassword();
+            assertTrue(PasswordHasher.isHashed(storedPassword));
+            assertFalse(storedPassword.contains("password"));
+            assertFalse(PasswordHasher.needsRehash(storedPassword));
+        }
+
+        // logging in again goes through the hash this time
+        response = service.process("POST", request);
+        assertTrue(response.success);
+        request.password = "wrong password";
+        response = service.process("POST", request);
+        assertFalse(response.success);
+    }
+
     /**
      * Tests that a login fails when it is the wrong password
      */
@@ -187,6 +219,29 @@ public class LoginServiceTest {
         this.assertNumModelsInDatabase(1, 3, 7, 1);
     }
 
+    /**
+     * Ensures checking a password for a user that doesn't exist takes about
+     * as long as checking a real one (so the time doesn't give away which
+     * usernames exist)
+     */
+    @Test
+    @DisplayName("Invalid login attempt test -- user does not exist takes as long")
+    public void testInvalidLoginAttempt_noUserTiming() {
+        String storedPassword = PasswordHasher.hash("password");
+        long minRealNanos = Long.MAX_VALUE;
+        long minMissingNanos = Long.MAX_VALUE;
+        for (int attemptNum = 0; attemptNum < 3; ++attemptNum) {
+            long startTime = System.nanoTime();
+            assertFalse(PasswordHasher.verify("wrong password", storedPassword));
+            minRealNanos = Math.min(minRealNanos, System.nanoTime() - startTime);
+
+            startTime = System.nanoTime();
+            assertFalse(PasswordHasher.verify("wrong password", null));
+            minMissingNanos = Math.min(minMissingNanos, System.nanoTime() - startTime);
+        }
+        assertTrue(minMissingNanos > minRealNanos / 2);
+    }
+
     /**
      * Ensures using GET fails
      */
@@ -1,22 +1,39 @@
 package services;
 
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+
+import dataAccess.ChangeLog;
 import dataAccess.Database;
 import dataAccess.DatabaseException;
+import dataAccess.EventAccessor;
+import dataAccess.FamilyTree;
+import dataAccess.FamilyTreeCache;
 import dataAccess.PersonAccessor;
 
+import models.Event;
 import models.Person;
-import models.User;
 
 import services.requests.PersonRequest;
 import services.responses.PersonResponse;
 
 import utils.AuthUtils;
+import utils.FamilyGraph;
 
 /**
  * This service provides functionality for the person getter endpoint.
  * It accepts calls through the HTTP GET method.
  */
 public class PersonService extends GenericService<PersonRequest, PersonResponse> {
+    /** The most generations of ancestors returned by one request */
+    static final int MAX_ANCESTOR_DEPTH = 32;
+    /** The number of Persons returned by a search, unless a limit is given */
+    static final int DEFAULT_SEARCH_LIMIT = 50;
+    /** The most Persons returned by one search */
+    static final int MAX_SEARCH_LIMIT = 1000;
+
     /**
      * Creates a new PersonService by calling GenericService with this
      * service's name
@@ -29,30 +46,184 @@ public class PersonService extends GenericService<PersonRequest, PersonResponse>
     public PersonResponse onGet(PersonRequest request, Database database) throws InvalidHTTPMethodException, DatabaseException {
         // check authorization
         AuthUtils authUtils = new AuthUtils(database);
-        User authenticatedUser = authUtils.getAuthenticatedUser(request.authtoken);
-        boolean userIsAuthenticated = authenticatedUser != null;
+        String authenticatedUsername = authUtils.getAuthenticatedUsername(request.authtoken);
+        boolean userIsAuthenticated = authenticatedUsername != null;
         if (!userIsAuthenticated) {
             return this.createUnauthenticatedResponse();
         }
 
+        PersonResponse badFieldsResponse = this.checkFieldsKnown(request.fields, PersonAccessor.COLUMNS);
+        if (badFieldsResponse != null) {
+            return badFieldsResponse;
+        }
+
+        if (request.unknownSubresource != null) {
+            return this.createUnknownSubresourceResponse(request.unknownSubresource);
+        }
+
         // determine branch
-        if (request.all) {
-            // get all persons
+        if (request.search) {
+            // search the user's persons by name
+            if (request.query == null) {
+                return this.createIncompleteResponse("q");
+            }
+            if (request.query.trim().isEmpty()) {
+                return this.createInvalidQueryResponse();
+            }
+            if (request.limit != null && request.limit <= 0) {
+                return this.createInvalidLimitResponse();
+            }
+            PersonAccessor personAcc = new PersonAccessor(database);
+            int limit = request.limit == null ? PersonService.DEFAULT_SEARCH_LIMIT : Math.min(request.limit, PersonService.MAX_SEARCH_LIMIT);
+            Person[] foundPersons = personAcc.searchForUser(authenticatedUsername, request.query, limit, request.fields);
+
+            // generate response
+            PersonResponse response = this.createSuccessfulAllResponse(foundPersons);
+            response.fields = request.fields;
+            return response;
+        } else if (request.all && request.ids != null) {
+            // get a list of persons at once
+            if (request.ids.length == 0) {
+                return this.createInvalidIDsResponse();
+            }
+            // asking for an ID twice only returns it once
+            String[] personIDs = new LinkedHashSet<>(Arrays.asList(request.ids)).toArray(new String[0]);
+            PersonAccessor personAcc = new PersonAccessor(database);
+            // only the user's persons are found, so this checks ownership too
+            Person[] matchingPersons = personAcc.getByIDsForUser(authenticatedUsername, personIDs, request.fields);
+
+            // generate response
+            ArrayList<Person> foundPersons = new ArrayList<>();
+            ArrayList<String> missingIDs = new ArrayList<>();
+            for (int idIdx = 0; idIdx < personIDs.length; ++idIdx) {
+                if (matchingPersons[idIdx] == null) {
+                    missingIDs.add(personIDs[idIdx]);
+                } else {
+                    foundPersons.add(matchingPersons[idIdx]);
+                }
+            }
+            PersonResponse response = this.createSuccessfulIDsResponse(
+                foundPersons.toArray(new Person[foundPersons.size()]),
+                missingIDs.toArray(new String[missingIDs.size()])
+            );
+            response.fields = request.fields;
+            return response;
+        } else if (request.all && request.since != null) {
+            // get only what changed since the last sync
+            if (request.since < 0) {
+                return this.createInvalidSinceResponse();
+            }
+            PersonAccessor personAcc = new PersonAccessor(database);
+            ChangeLog changeLog = new ChangeLog(database);
+            long version = changeLog.getVersion(authenticatedUsername);
+            PersonResponse response;
+            // (a client that has nothing yet can't miss any deletions)
+            boolean isBeforeHorizon = request.since > 0 && request.since < changeLog.getHorizon(authenticatedUsername);
+            if (isBeforeHorizon || request.since > version) {
+                // deletions from back then were compacted away (or cleared),
+                // or the client synced with some other database
+                Person[] allPersons = personAcc.getAllForUser(authenticatedUsername, request.fields);
+                response = this.createSuccessfulSyncResponse(allPersons, null, version);
+            } else {
+                Person[] changedPersons = personAcc.getChangedForUser(authenticatedUsername, request.since, request.fields);
+                String[] changedIDs = changeLog.getChangedIDs(authenticatedUsername, ChangeLog.PERSON_TYPE, request.since);
+                HashSet<String> deletedIDs = new HashSet<>(Arrays.asList(changedIDs));
+                for (Person changedPerson : changedPersons) {
+                    deletedIDs.remove(changedPerson.getPersonID());
+                }
+                response = this.createSuccessfulSyncResponse(changedPersons, deletedIDs.toArray(new String[deletedIDs.size()]), version);
+            }
+            response.fields = request.fields;
+            return response;
+        } else if (request.all && (request.limit != null || request.after != null)) {
+            // get one page of persons
+            if (request.limit != null && request.limit <= 0) {
+                return this.createInvalidLimitResponse();
+            }
             PersonAccessor personAcc = new PersonAccessor(database);
-            Person[] allPersons = personAcc.getAllForUser(authenticatedUser.getUsername());
+            int limit = request.limit == null ? -1 : request.limit;
+            // fetching one extra shows whether there is another page
+            int fetchLimit = limit < 0 || limit == Integer.MAX_VALUE ? limit : limit + 1;
+            Person[] pagePersons = personAcc.getPageForUser(authenticatedUsername, request.after, fetchLimit, request.fields);
+
+            // generate response
+            String nextCursor = null;
+            if (limit >= 0 && pagePersons.length > limit) {
+                pagePersons = Arrays.copyOf(pagePersons, limit);
+                nextCursor = pagePersons[limit - 1].getPersonID();
+            }
+            PersonResponse response = this.createSuccessfulPageResponse(pagePersons, nextCursor);
+            response.fields = request.fields;
+            return response;
+        } else if (request.all) {
+            // get all persons (projections read less from the database instead)
+            Person[] allPersons;
+            if (request.fields == null) {
+                allPersons = FamilyTreeCache.getTree(database, authenticatedUsername).getPersons();
+            } else {
+                PersonAccessor personAcc = new PersonAccessor(database);
+                allPersons = personAcc.getAllForUser(authenticatedUsername, request.fields);
+            }
             
             // generate response
-            return this.createSuccessfulAllResponse(allPersons);
-        } else if (request.personID != null) {
-            // get specific person
+            PersonResponse response = this.createSuccessfulAllResponse(allPersons);
+            response.fields = request.fields;
+            return response;
+        } else if (request.personID != null && request.relativeID != null) {
+            // find how two persons are related
+            FamilyGraph graph = new FamilyGraph(FamilyTreeCache.getTree(database, authenticatedUsername));
+            // the graph only has the user's persons, so this checks ownership too
+            if (!graph.contains(request.personID) || !graph.contains(request.relativeID)) {
+                return this.createInvalidPersonResponse();
+            }
+            FamilyGraph.Relationship relationship = graph.findRelationship(request.personID, request.relativeID);
+
+            // generate response
+            if (relationship == null) {
+                return this.createUnrelatedResponse();
+            } else {
+                return this.createSuccessfulRelationshipResponse(relationship);
+            }
+        } else if (request.personID != null && request.ancestors) {
+            // get the ancestors of a person
+            if (request.depth != null && request.depth <= 0) {
+                return this.createInvalidDepthResponse();
+            }
             PersonAccessor personAcc = new PersonAccessor(database);
             Person matchingPerson = personAcc.getByID(request.personID);
+            if (matchingPerson == null || !matchingPerson.getAssociatedUsername().equals(authenticatedUsername)) {
+                return this.createInvalidPersonResponse();
+            }
+            int depth = request.depth == null ? PersonService.MAX_ANCESTOR_DEPTH : Math.min(request.depth, PersonService.MAX_ANCESTOR_DEPTH);
+            Person[] ancestors = personAcc.getAncestorsForUser(authenticatedUsername, request.personID, depth, request.fields);
+            Event[] ancestorEvents = null;
+            if (request.includeEvents) {
+                EventAccessor eventAcc = new EventAccessor(database);
+                ancestorEvents = eventAcc.getAncestorEventsForUser(authenticatedUsername, request.personID, depth);
+            }
 
             // generate response
-            if (matchingPerson == null || !matchingPerson.getAssociatedUsername().equals(authenticatedUser.getUsername())) {
+            PersonResponse response = this.createSuccessfulAncestorsResponse(ancestors, ancestorEvents);
+            response.fields = request.fields;
+            return response;
+        } else if (request.personID != null) {
+            // get specific person (loading the whole tree for one person isn't worth it)
+            FamilyTree cachedTree = FamilyTreeCache.get(authenticatedUsername);
+            Person matchingPerson;
+            if (cachedTree != null) {
+                matchingPerson = cachedTree.getPerson(request.personID);
+            } else {
+                PersonAccessor personAcc = new PersonAccessor(database);
+                matchingPerson = personAcc.getByID(request.personID);
+            }
+
+            // generate response
+            if (matchingPerson == null || !matchingPerson.getAssociatedUsername().equals(authenticatedUsername)) {
                 return this.createInvalidPersonResponse();
             } else {
-                return this.createSuccessfulSingleResponse(matchingPerson);
+                PersonResponse response = this.createSuccessfulSingleResponse(matchingPerson);
+                response.fields = request.fields;
+                return response;
             }
         } else {
             return this.createIncompleteResponse("all OR personID");
@@ -72,6 +243,169 @@ public class PersonService extends GenericService<PersonRequest, PersonResponse>
         return response;
     }
 
+    /**
+     * Creates a response for a successful "ids" request
+     * 
+     * @param foundPersons is the persons that were found, in the order they were asked for
+     * @param missingIDs is the IDs that weren't found for the user, in the order they were asked for
+     * @return the successful PersonResponse
+     */
+    private PersonResponse createSuccessfulIDsResponse(Person[] foundPersons, String[] missingIDs) {
+        PersonResponse response = new PersonResponse();
+        response.success = true;
+        response.data = foundPersons;
+        response.missingIDs = missingIDs;
+        return response;
+    }
+
+    /**
+     * Creates a response for a successful page of an "all persons" request
+     * 
+     * @param pagePersons is the page of persons to include in the response
+     * @param nextCursor is the cursor for the next page, or null if this is the last page
+     * @return the successful PersonResponse
+     */
+    private PersonResponse createSuccessfulPageResponse(Person[] pagePersons, String nextCursor) {
+        PersonResponse response = new PersonResponse();
+        response.success = true;
+        response.data = pagePersons;
+        response.nextCursor = nextCursor;
+        return response;
+    }
+
+    /**
+     * Creates a response for a successful "since" request
+     * 
+     * @param changedPersons is the persons that changed since the last sync
+     * @param deletedIDs is the IDs of persons deleted since the last sync, or null if this is a full sync
+     * @param version is the version to sync from next time
+     * @return the successful PersonResponse
+     */
+    private PersonResponse createSuccessfulSyncResponse(Person[] changedPersons, String[] deletedIDs, long version) {
+        PersonResponse response = new PersonResponse();
+        response.success = true;
+        response.data = changedPersons;
+        response.deletedIDs = deletedIDs;
+        response.version = version;
+        response.fullSync = deletedIDs == null;
+        return response;
+    }
+
+    /**
+     * Creates a response for a successful "ancestors" request
+     * 
+     * @param ancestors is the ancestors to include in the response
+     * @param ancestorEvents is the ancestors' events, or null if they weren't requested
+     * @return the successful PersonResponse
+     */
+    private PersonResponse createSuccessfulAncestorsResponse(Person[] ancestors, Event[] ancestorEvents) {
+        PersonResponse response = new PersonResponse();
+        response.success = true;
+        response.data = ancestors;
+        response.events = ancestorEvents;
+        return response;
+    }
+
+    /**
+     * Creates a response for a successful "relationship" request
+     * 
+     * @param relationship is the relationship found between the persons
+     * @return the successful PersonResponse
+     */
+    private PersonResponse createSuccessfulRelationshipResponse(FamilyGraph.Relationship relationship) {
+        PersonResponse response = new PersonResponse();
+        response.success = true;
+        response.relationshipPath = relationship.getPersonIDs();
+        response.relationshipSteps = relationship.getSteps();
+        response.relationship = relationship.getLabel();
+        return response;
+    }
+
+    /**
+     * Creates a response for a "relationship" request between persons that aren't related
+     * 
+     * @return the failed PersonResponse
+     */
+    private PersonResponse createUnrelatedResponse() {
+        PersonResponse response = new PersonResponse();
+        response.success = false;
+        response.message = "The persons requested are not related";
+        return response;
+    }
+
+    /**
+     * Creates a response for an "ancestors" request with a depth that isn't positive
+     * 
+     * @return the failed PersonResponse
+     */
+    private PersonResponse createInvalidDepthResponse() {
+        PersonResponse response = new PersonResponse();
+        response.success = false;
+        response.message = "The depth must be a positive number";
+        return response;
+    }
+
+    /**
+     * Creates a response for a "since" request with a version that isn't valid
+     * 
+     * @return the failed PersonResponse
+     */
+    private PersonResponse createInvalidSinceResponse() {
+        PersonResponse response = new PersonResponse();
+        response.success = false;
+        response.message = "The since version must be a non-negative number";
+        return response;
+    }
+
+    /**
+     * Creates a response for a search request that didn't have any words to search for
+     * 
+     * @return the failed PersonResponse
+     */
+    private PersonResponse createInvalidQueryResponse() {
+        PersonResponse response = new PersonResponse();
+        response.success = false;
+        response.message = "The search query must have at least one word";
+        return response;
+    }
+
+    /**
+     * Creates a response for an "ids" request that didn't list any IDs
+     * 
+     * @return the failed PersonResponse
+     */
+    private PersonResponse createInvalidIDsResponse() {
+        PersonResponse response = new PersonResponse();
+        response.success = false;
+        response.message = "At least one ID must be given for ids";
+        return response;
+    }
+
+    /**
+     * Creates a response for a paged request with a limit that isn't positive
+     * 
+     * @return the failed PersonResponse
+     */
+    private PersonResponse createInvalidLimitResponse() {
+        PersonResponse response = new PersonResponse();
+        response.success = false;
+        response.message = "The limit must be a positive number";
+        return response;
+    }
+
+    /**
+     * Creates a response for a person request with a sub-resource that doesn't exist
+     * 
+     * @param subresource is the part of the URL that wasn't understood
+     * @return the failed PersonResponse
+     */
+    private PersonResponse createUnknownSubresourceResponse(String subresource) {
+        PersonResponse response = new PersonResponse();
+        response.success = false;
+        response.message = "Unknown person sub-resource '" + subresource + "' (expected \"ancestors\" or \"relationship/[relativeID]\")";
+        return response;
+    }
+
     /**
      * Creates a response for a person request with an invalid personID
      * 
@@ -6,9 +6,13 @@ import static org.junit.jupiter.api.Assertions.*;
 import dataAccess.*;
 import models.*;
 
+import services.requests.LoginRequest;
 import services.requests.PersonRequest;
+import services.responses.LoginResponse;
 import services.responses.PersonResponse;
 
+import utils.AuthUtils;
+
 /**
  * Contains test cases to ensure the PersonService works correctly
  */
@@ -192,6 +196,71 @@ public class PersonServiceTest {
         this.assertNumModelsInDatabase(2, 4, 7, 1);
     }
 
+    /**
+     * Ensures expired auth tokens (by either TTL) are rejected
+     */
+    @Test
+    @DisplayName("Getting father Person test -- expired auth tokens")
+    public void testExpiredAuthToken() {
+        this.fillDatabase();
+        long now = System.currentTimeMillis();
+        try (Database database = new Database()) {
+            AuthToken[] authTokens = {
+                new AuthToken("tooOldAuth", "sillysally", now - AuthUtils.ABSOLUTE_TTL_MILLIS - 1000, now),
+                new AuthToken("unusedAuth", "sillysally", now, now - AuthUtils.SLIDING_TTL_MILLIS - 1000),
+            };
+            new AuthTokenAccessor(database).create(authTokens);
+            database.commit();
+        } catch (DatabaseException | BadAccessException err) {
+            this.failNoTraceback(err);
+        }
+
+        for (String authToken : new String[] {"tooOldAuth", "unusedAuth"}) {
+            PersonService service = new PersonService();
+            PersonRequest request = new PersonRequest();
+            request.personID = "fatherpersonid";
+            request.authtoken = authToken;
+            PersonResponse response = service.process("GET", request);
+
+            assertNotNull(response);
+            assertFalse(response.success);
+            assertTrue(response.message.matches("(.*A|.*a)uthorization failed.*"));
+        }
+    }
+
+    /**
+     * Ensures signed auth tokens (from logging in while they are enabled) work
+     */
+    @Test
+    @DisplayName("Getting father Person test -- signed auth token")
+    public void testSignedAuthToken() {
+        this.fillDatabase();
+        SignedAuthTokens.setEnabled(true);
+        try {
+            LoginService loginService = new LoginService();
+            LoginRequest loginRequest = new LoginRequest();
+            loginRequest.username = "sillysally";
+            loginRequest.password = "password";
+            LoginResponse loginResponse = loginService.process("POST", loginRequest);
+            assertTrue(loginResponse.success);
+            assertTrue(SignedAuthTokens.isSignedToken(loginResponse.authtoken));
+            // nothing was stored for it
+            this.assertNumModelsInDatabase(2, 4, 7, 1);
+
+            PersonService service = new PersonService();
+            PersonRequest request = new PersonRequest();
+            request.personID = "fatherpersonid";
+            request.authtoken = loginResponse.authtoken;
+            PersonResponse response = service.process("GET", request);
+
+            assertNotNull(response);
+            assertTrue(response.success);
+            assertEquals("Gregory", response.firstName);
+        } finally {
+            SignedAuthTokens.setEnabled(false);
+        }
+    }
+
     /**
      * Should fail when an invalid person id is requested
      */
@@ -236,6 +305,270 @@ public class PersonServiceTest {
         this.assertNumModelsInDatabase(2, 4, 7, 1);
     }
 
+    /**
+     * Ensures all persons can be fetched a page at a time, without skipping or repeating any
+     */
+    @Test
+    @DisplayName("Getting all Persons test -- paged")
+    public void testGetAllPersonsPaged() {
+        this.fillDatabase();
+
+        PersonService service = new PersonService();
+        PersonRequest request = new PersonRequest();
+        request.all = true;
+        request.authtoken = "sallyauth";
+        request.limit = 2;
+        PersonResponse firstPage = service.process("GET", request);
+
+        assertTrue(firstPage.success);
+        assertEquals(2, firstPage.data.length);
+        assertEquals(firstPage.data[2 - 1].getPersonID(), firstPage.nextCursor);
+
+        request.after = firstPage.nextCursor;
+        PersonResponse lastPage = service.process("GET", request);
+
+        assertTrue(lastPage.success);
+        assertEquals(3 - 2, lastPage.data.length);
+        assertNull(lastPage.nextCursor);
+        // pages come in ID order
+        for (int idx = 1; idx < lastPage.data.length; ++idx) {
+            assertTrue(lastPage.data[idx - 1].getPersonID().compareTo(lastPage.data[idx].getPersonID()) < 0);
+        }
+        assertTrue(firstPage.nextCursor.compareTo(lastPage.data[0].getPersonID()) < 0);
+
+        request.limit = 0;
+        PersonResponse badResponse = service.process("GET", request);
+        assertFalse(badResponse.success);
+        assertTrue(badResponse.message.matches(".*limit.*"));
+    }
+
+    /**
+     * Ensures only the requested fields are read when getting all persons
+     */
+    @Test
+    @DisplayName("Getting all Persons test -- only some fields")
+    public void testGetAllPersonsProjected() {
+        this.fillDatabase();
+
+        PersonService service = new PersonService();
+        PersonRequest request = new PersonRequest();
+        request.all = true;
+        request.authtoken = "sallyauth";
+        request.fields = new String[]{"firstName"};
+        PersonResponse response = service.process("GET", request);
+
+        assertTrue(response.success);
+        assertEquals(4 - 1, response.data.length);
+        for (Person person : response.data) {
+            // the ID is always read
+            assertNotNull(person.getPersonID());
+            assertNotNull(person.getFirstName());
+            assertNull(person.getLastName());
+            assertNull(person.getGender());
+        }
+
+        request.fields = new String[]{"firstName", "nickname"};
+        response = service.process("GET", request);
+        assertFalse(response.success);
+        assertTrue(response.message.contains("'nickname'"));
+    }
+
+    /**
+     * Ensures a list of persons can be fetched at once, in order, with the
+     * ones that can't be found (or aren't the user's) marked as missing
+     */
+    @Test
+    @DisplayName("Getting Persons by IDs test")
+    public void testGetPersonsByIDs() {
+        this.fillDatabase();
+
+        PersonService service = new PersonService();
+        PersonRequest request = new PersonRequest();
+        request.all = true;
+        request.authtoken = "sallyauth";
+        request.ids = new String[]{"motherpersonid", "markpersonid", "sallypersonid", "notapersonid", "motherpersonid"};
+        PersonResponse response = service.process("GET", request);
+
+        assertTrue(response.success);
+        assertEquals(2, response.data.length);
+        assertEquals("motherpersonid", response.data[0].getPersonID());
+        assertEquals("sallypersonid", response.data[1].getPersonID());
+        assertArrayEquals(new String[]{"markpersonid", "notapersonid"}, response.missingIDs);
+
+        request.ids = new String[0];
+        response = service.process("GET", request);
+        assertFalse(response.success);
+        assertTrue(response.message.startsWith("Error:"));
+    }
+
+    /**
+     * Ensures the user's persons can be searched by name
+     */
+    @Test
+    @DisplayName("Searching Persons test")
+    public void testSearchPersons() {
+        this.fillDatabase();
+
+        PersonService service = new PersonService();
+        PersonRequest request = new PersonRequest();
+        request.search = true;
+        request.authtoken = "sallyauth";
+        request.query = "greg";
+        PersonResponse response = service.process("GET", request);
+        assertTrue(response.success);
+        assertEquals(1, response.data.length);
+        assertEquals("fatherpersonid", response.data[0].getPersonID());
+
+        // mark's person isn't sally's
+        request.query = "mark";
+        response = service.process("GET", request);
+        assertTrue(response.success);
+        assertEquals(0, response.data.length);
+
+        request.query = "  ";
+        response = service.process("GET", request);
+        assertFalse(response.success);
+        request.query = null;
+        response = service.process("GET", request);
+        assertFalse(response.success);
+    }
+
+    /**
+     * Ensures the ancestors of a person can be found (with their events), up to a depth
+     */
+    @Test
+    @DisplayName("Getting ancestors test")
+    public void testGetAncestors() {
+        this.fillDatabase();
+        try (Database database = new Database()) {
+            PersonAccessor personAcc = new PersonAccessor(database);
+            // mark's person doesn't belong to sally, so it isn't followed
+            Person[] grandparents = {new Person("grandpapersonid", "sillysally", "Bill", "Black", "m", "markpersonid", null, null)};
+            personAcc.create(grandparents);
+            Person[] linkedPersons = {
+                new Person("sallypersonid", "sillysally", "Sally", "Black", "f", "fatherpersonid", "motherpersonid", null),
+                new Person("fatherpersonid", "sillysally", "Gregory", "Black", "m", "grandpapersonid", null, "motherpersonid"),
+            };
+            personAcc.update(linkedPersons);
+            database.commit();
+        } catch (DatabaseException | BadAccessException err) {
+            this.failNoTraceback(err);
+        }
+
+        PersonService service = new PersonService();
+        PersonRequest request = new PersonRequest();
+        request.authtoken = "sallyauth";
+        request.personID = "sallypersonid";
+        request.ancestors = true;
+        PersonResponse response = service.process("GET", request);
+        assertTrue(response.success);
+        assertEquals(3, response.data.length);
+        // closest generations first
+        assertEquals("grandpapersonid", response.data[2].getPersonID());
+        assertNull(response.events);
+
+        request.depth = 1;
+        request.includeEvents = true;
+        response = service.process("GET", request);
+        assertTrue(response.success);
+        assertEquals(2, response.data.length);
+        assertEquals(7 - 1, response.events.length);
+        for (Event event : response.events) {
+            assertNotEquals("sallypersonid", event.getPersonID());
+        }
+
+        request.depth = 0;
+        response = service.process("GET", request);
+        assertFalse(response.success);
+
+        request.depth = null;
+        request.personID = "markpersonid";
+        response = service.process("GET", request);
+        assertFalse(response.success);
+    }
+
+    /**
+     * Ensures the relationship between two persons is found, with the steps between them
+     */
+    @Test
+    @DisplayName("Getting relationship test")
+    public void testGetRelationship() {
+        this.fillDatabase();
+        try (Database database = new Database()) {
+            PersonAccessor personAcc = new PersonAccessor(database);
+            Person[] newPersons = {
+                new Person("grandpapersonid", "sillysally", "Bill", "Black", "m"),
+                new Person("strangerpersonid", "sillysally", "Nobody", "Special", "f"),
+            };
+            personAcc.create(newPersons);
+            Person[] linkedPersons = {
+                new Person("sallypersonid", "sillysally", "Sally", "Black", "f", "fatherpersonid", "motherpersonid", null),
+                new Person("fatherpersonid", "sillysally", "Gregory", "Black", "m", "grandpapersonid", null, "motherpersonid"),
+                new Person("motherpersonid", "sillysally", "Amy", "Thomson", "f", null, null, "fatherpersonid"),
+            };
+            personAcc.update(linkedPersons);
+            database.commit();
+        } catch (DatabaseException | BadAccessException err) {
+            this.failNoTraceback(err);
+        }
+
+        PersonService service = new PersonService();
+        PersonRequest request = new PersonRequest();
+        request.authtoken = "sallyauth";
+        request.personID = "sallypersonid";
+        request.relativeID = "grandpapersonid";
+        PersonResponse response = service.process("GET", request);
+        assertTrue(response.success);
+        assertArrayEquals(new String[]{"sallypersonid", "fatherpersonid", "grandpapersonid"}, response.relationshipPath);
+        assertArrayEquals(new String[]{"father", "father"}, response.relationshipSteps);
+        assertEquals("grandfather", response.relationship);
+
+        request.personID = "grandpapersonid";
+        request.relativeID = "sallypersonid";
+        response = service.process("GET", request);
+        assertTrue(response.success);
+        assertArrayEquals(new String[]{"son", "daughter"}, response.relationshipSteps);
+        assertEquals("granddaughter", response.relationship);
+
+        request.relativeID = "motherpersonid";
+        response = service.process("GET", request);
+        assertTrue(response.success);
+        assertArrayEquals(new String[]{"son", "wife"}, response.relationshipSteps);
+        assertEquals("daughter-in-law", response.relationship);
+
+        request.relativeID = "strangerpersonid";
+        response = service.process("GET", request);
+        assertFalse(response.success);
+
+        // mark's person doesn't belong to sally
+        request.relativeID = "markpersonid";
+        response = service.process("GET", request);
+        assertFalse(response.success);
+    }
+
+    /**
+     * Ensures sub-resources that don't exist fail instead of getting the person
+     */
+    @Test
+    @DisplayName("Getting unknown sub-resource test")
+    public void testGetUnknownSubresource() {
+        this.fillDatabase();
+
+        PersonService service = new PersonService();
+        PersonRequest request = new PersonRequest();
+        request.authtoken = "sallyauth";
+        request.personID = "sallypersonid";
+        request.unknownSubresource = "bogus";
+        PersonResponse response = service.process("GET", request);
+        assertFalse(response.success);
+        assertTrue(response.message.matches("Error:.*bogus.*"), response.message);
+        assertNull(response.personID);
+
+        request.unknownSubresource = null;
+        response = service.process("GET", request);
+        assertTrue(response.success);
+    }
+
     /**
      * Ensures using POST fails
      */
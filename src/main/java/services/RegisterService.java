@@ -11,6 +11,7 @@ import services.responses.RegisterResponse;
 
 import utils.AuthUtils;
 import utils.FamilyTreeUtils;
+import utils.PasswordHasher;
 
 /**
  * This service provides functionality for the user registration endpoint.
@@ -53,7 +54,8 @@ public class RegisterService extends GenericService<RegisterRequest, RegisterRes
         }
 
         // create new user account
-        User newUser = new User(username, password, email, firstName, lastName, gender, null);
+        String hashedPassword = PasswordHasher.hash(password);
+        User newUser = new User(username, hashedPassword, email, firstName, lastName, gender, null);
         UserAccessor userAcc = new UserAccessor(database);
         User[] users = {newUser};
         try {
@@ -62,10 +64,10 @@ public class RegisterService extends GenericService<RegisterRequest, RegisterRes
             return this.createUserExistsResponse(newUser);
         }
 
-        // generate 4 generations of ancestor data
+        // generate 4 generations of ancestor data (usually pre-generated by the FamilyTreePool)
         FamilyTreeUtils famTreeUtils = new FamilyTreeUtils(database);
         try {
-            famTreeUtils.generateFamilyTree(newUser);
+            famTreeUtils.generatePooledFamilyTree(newUser);
         } catch (BadAccessException err) {
             throw new AssertionError("User Accessor did not catch duplicate create");
         }
@@ -74,8 +76,8 @@ public class RegisterService extends GenericService<RegisterRequest, RegisterRes
 
         // log the user in/generate auth token
         AuthUtils authUtils = new AuthUtils(database);
-        String authToken = authUtils.authenticateUser(username, password);
-        assert authToken != null : "Newly created user's password doesn't match newly created password";
+        // (no need to check the password that was just set)
+        String authToken = authUtils.issueAuthToken(newUser).getAuthToken();
         
         // generate the response
         return this.createSuccessfulResponse(username, personID, authToken);
@@ -9,6 +9,9 @@ import models.*;
 import services.requests.RegisterRequest;
 import services.responses.RegisterResponse;
 
+import utils.FamilyTreePool;
+import utils.PasswordHasher;
+
 /**
  * Contains test cases to ensure the RegisterService works correctly
  */
@@ -141,6 +144,16 @@ public class RegisterServiceTest {
 
         // 1 user, 4 generations of people, 3 events per person per generation, and 1 new auth token
         this.assertNumModelsInDatabase(1, 1 + 2 + 4 + 8 + 16, 1 + 2*3 + 4*3 + 8*3 + 16*3, 1);
+
+        // the password should never be stored as-is
+        try (Database database = new Database()) {
+            String storedPassword = new UserAccessor(database).getByUsername("newuser").getPassword();
+            assertTrue(PasswordHasher.isHashed(storedPassword));
+            assertTrue(PasswordHasher.verify("newpassword", storedPassword));
+            assertFalse(PasswordHasher.verify("wrongpassword", storedPassword));
+        } catch (DatabaseException err) {
+            this.failNoTraceback(err);
+        }
     }
 
     /**
@@ -172,6 +185,78 @@ public class RegisterServiceTest {
         this.assertNumModelsInDatabase(1 + 1, 3 + (1 + 2 + 4 + 8 + 16), 7 + (1 + 2*3 + 4*3 + 8*3 + 16*3), 2);
     }
 
+    /**
+     * Ensures a family tree claimed from the FamilyTreePool is fully bound to the new user
+     */
+    @Test
+    @DisplayName("Register test with a pre-generated family tree")
+    public void testRegisterWithPooledFamilyTree() throws Exception {
+        FamilyTreePool.start();
+        try {
+            // give the pool a moment to generate some trees
+            for (int waitIdx = 0; waitIdx < 100 && FamilyTreePool.getPoolSize() == 0; ++waitIdx) {
+                Thread.sleep(50);
+            }
+            long numPoolHitsBefore = FamilyTreePool.getNumPoolHits();
+
+            RegisterService service = new RegisterService();
+            RegisterRequest request = new RegisterRequest();
+            request.username = "newuser";
+            request.password = "newpassword";
+            request.email = "new@email.test";
+            request.firstName = "NewFirstName";
+            request.lastName = "NewLastName";
+            request.gender = "m";
+            RegisterResponse response = service.process("POST", request);
+
+            assertNotNull(response);
+            assertTrue(response.success);
+            assertEquals(numPoolHitsBefore + 1, FamilyTreePool.getNumPoolHits());
+            this.assertNumModelsInDatabase(1, 1 + 2 + 4 + 8 + 16, 1 + 2*3 + 4*3 + 8*3 + 16*3, 1);
+
+            try (Database database = new Database()) {
+                PersonAccessor personAcc = new PersonAccessor(database);
+                Person userPerson = personAcc.getByID(response.personID);
+                assertEquals("newuser", userPerson.getAssociatedUsername());
+                assertEquals("NewFirstName", userPerson.getFirstName());
+                assertEquals("NewLastName", userPerson.getLastName());
+                assertEquals("m", userPerson.getGender());
+                Person father = personAcc.getByID(userPerson.getFatherID());
+                assertEquals("NewLastName", father.getLastName());
+
+                for (Person person : personAcc.getAll()) {
+                    assertEquals("newuser", person.getAssociatedUsername());
+                }
+                EventAccessor eventAcc = new EventAccessor(database);
+                for (Event event : eventAcc.getAll()) {
+                    assertEquals("newuser", event.getAssociatedUsername());
+                    assertNotNull(personAcc.getByID(event.getPersonID()));
+                }
+            }
+        } finally {
+            FamilyTreePool.stop();
+        }
+    }
+
+    /**
+     * Ensures no trees are added to the FamilyTreePool after it is stopped,
+     * even by a refill thread that was in the middle of generating one
+     */
+    @Test
+    @DisplayName("Stopped family tree pool stays empty")
+    public void testStopFamilyTreePool() throws Exception {
+        FamilyTreePool.start();
+        for (int waitIdx = 0; waitIdx < 100 && FamilyTreePool.getPoolSize() == 0; ++waitIdx) {
+            Thread.sleep(50);
+        }
+        // (the pool keeps generating up to its high watermark, so a tree is likely in progress)
+        FamilyTreePool.stop();
+        FamilyTreePool.start();
+        FamilyTreePool.stop();
+        Thread.sleep(500);
+        assertEquals(0, FamilyTreePool.getPoolSize());
+    }
+
     /**
      * Ensures using GET fails
      */
@@ -0,0 +1,155 @@
+package services;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+
+import dataAccess.BadAccessException;
+import dataAccess.Database;
+import dataAccess.DatabaseException;
+
+import services.requests.SnapshotRequest;
+import services.responses.SnapshotResponse;
+
+import utils.SnapshotUtils;
+
+/**
+ * This service provides functionality for the (admin) snapshot endpoint.
+ * It exports binary snapshots of the database (or a single user) through the
+ * HTTP GET method, and imports them through the HTTP POST method.
+ *
+ * Snapshots can read (and replace) every user's data, so both methods require
+ * the admin secret (sent in the Authorization header). The endpoint is off
+ * unless the secret is set, through the "familymap.snapshotSecret" system
+ * property (or setAdminSecret()).
+ */
+public class SnapshotService extends GenericService<SnapshotRequest, SnapshotResponse> {
+    /** The system property holding the admin secret */
+    static final String SECRET_PROPERTY = "familymap.snapshotSecret";
+
+    /** The secret admin requests must carry, or null if snapshots are off */
+    static private volatile String adminSecret = System.getProperty(SnapshotService.SECRET_PROPERTY);
+
+    static public void setAdminSecret(String adminSecret) {
+        SnapshotService.adminSecret = adminSecret;
+    }
+
+    /**
+     * Creates a new SnapshotService by calling GenericService with this
+     * service's name
+     */
+    public SnapshotService() {
+        super("SnapshotService");
+    }
+
+    @Override
+    public SnapshotResponse onGet(SnapshotRequest request, Database database) throws InvalidHTTPMethodException, DatabaseException {
+        SnapshotResponse unauthorizedResponse = this.checkAdminSecret(request);
+        if (unauthorizedResponse != null) {
+            return unauthorizedResponse;
+        }
+
+        SnapshotUtils snapshotUtils = new SnapshotUtils(database);
+        if (request.username == null) {
+            return this.createExportResponse(snapshotUtils.exportDatabase(request.includeCredentials));
+        }
+
+        try {
+            return this.createExportResponse(snapshotUtils.exportUser(request.username, request.includeCredentials));
+        } catch (BadAccessException err) {
+            return this.createFailedResponse(err.getMessage());
+        }
+    }
+
+    @Override
+    public SnapshotResponse onPost(SnapshotRequest request, Database database) throws InvalidHTTPMethodException, DatabaseException {
+        SnapshotResponse unauthorizedResponse = this.checkAdminSecret(request);
+        if (unauthorizedResponse != null) {
+            return unauthorizedResponse;
+        }
+
+        if (request.snapshotData == null) {
+            return this.createIncompleteResponse("snapshotData");
+        }
+
+        SnapshotUtils snapshotUtils = new SnapshotUtils(database);
+        SnapshotUtils.ImportedSnapshot snapshot = snapshotUtils.importSnapshot(request.snapshotData);
+        return this.createImportResponse(snapshot);
+    }
+
+    /**
+     * Checks that a request carries the admin secret (comparing in constant
+     * time, so the secret can't be guessed a byte at a time)
+     *
+     * @param request is the request to check
+     * @return the failed response if the request isn't allowed, or null if it is
+     */
+    private SnapshotResponse checkAdminSecret(SnapshotRequest request) {
+        String adminSecret = SnapshotService.adminSecret;
+        if (adminSecret == null || adminSecret.isEmpty()) {
+            return this.createFailedResponse("Snapshots are disabled on this server");
+        }
+        if (request.adminSecret == null || !MessageDigest.isEqual(
+            adminSecret.getBytes(StandardCharsets.UTF_8), request.adminSecret.getBytes(StandardCharsets.UTF_8)
+        )) {
+            return this.createUnauthenticatedResponse();
+        }
+        return null;
+    }
+
+    /**
+     * Creates a successful SnapshotResponse carrying an exported snapshot
+     * 
+     * @param snapshot is the snapshot bytes
+     * @return the successful SnapshotResponse
+     */
+    private SnapshotResponse createExportResponse(byte[] snapshot) {
+        SnapshotResponse response = new SnapshotResponse();
+        response.success = true;
+        response.snapshot = snapshot;
+        return response;
+    }
+
+    /**
+     * Creates a successful SnapshotResponse describing an import
+     * 
+     * @param snapshot is the ImportedSnapshot returned by SnapshotUtils
+     * @return the successful SnapshotResponse
+     */
+    private SnapshotResponse createImportResponse(SnapshotUtils.ImportedSnapshot snapshot) {
+        SnapshotResponse response = new SnapshotResponse();
+        response.success = true;
+        String scope;
+        if (snapshot.getUsername() == null) {
+            scope = "the database";
+        } else {
+            scope = "user '" + snapshot.getUsername() + "'";
+        }
+        response.message = String.format(
+            "Successfully restored %s from the snapshot. (%.0f rows/s)",
+            scope, snapshot.getRowsPerSecond()
+        );
+        response.numUsersImported = snapshot.getNumUsersImported();
+        response.numPersonsImported = snapshot.getNumPersonsImported();
+        response.numEventsImported = snapshot.getNumEventsImported();
+        response.numAuthTokensImported = snapshot.getNumAuthTokensImported();
+        return response;
+    }
+
+    /**
+     * Creates a failed SnapshotResponse with an error message
+     * 
+     * @param errMsg is the message to send back in the response
+     * @return the failed SnapshotResponse
+     */
+    private SnapshotResponse createFailedResponse(String errMsg) {
+        SnapshotResponse response = new SnapshotResponse();
+        response.success = false;
+        response.message = errMsg;
+        return response;
+    }
+
+    @Override
+    protected SnapshotResponse createSpecificErrorResponse(String errMsg) {
+        return new SnapshotResponse();
+    }
+}
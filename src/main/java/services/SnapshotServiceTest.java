@@ -0,0 +1,466 @@
+package services;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.zip.CRC32;
+
+import org.junit.jupiter.api.*;
+import static org.junit.jupiter.api.Assertions.*;
+
+import dataAccess.*;
+import models.*;
+
+import services.requests.SnapshotRequest;
+import services.responses.SnapshotResponse;
+
+@TestMethodOrder(MethodOrderer.OrderAnnotation.class)
+public class SnapshotServiceTest {
+    /** The admin secret the tests turn snapshots on with */
+    static private final String ADMIN_SECRET = "testsecret";
+
+    /**
+     * Runs fail(), but shows a traceback to the call of this method, instead
+     * of where the error was thrown
+     * 
+     * @param err is the error that was thrown
+     */
+    @SuppressWarnings("unused")
+    private void failNoTraceback(Exception err) {
+        fail(err.getMessage());
+    }
+
+    /**
+     * Signals the Database class to use the testing database for testing
+     */
+    @BeforeAll
+    static public void useTestDB() {
+        Database.useTestDB();
+        SnapshotService.setAdminSecret(SnapshotServiceTest.ADMIN_SECRET);
+    }
+
+    /**
+     * Turns snapshots back off once the tests are done
+     */
+    @AfterAll
+    static public void disableSnapshots() {
+        SnapshotService.setAdminSecret(null);
+    }
+
+    /**
+     * Ensures an empty, fresh database before each test
+     * 
+     * @throws DatabaseException whenever reset() does
+     */
+    @BeforeEach
+    public void resetDatabase() throws DatabaseException {
+        try (Database database = new Database()) {
+            database.reset();
+        }
+    }
+
+    /**
+     * Fills the database with two users and their (valid) data
+     */
+    private void fillDatabase() {
+        try (Database database = new Database()) {
+            User sallyUser = new User("sillysally", "password", "sally@email.test", "Sally", "Black", "f", null);
+            User bobUser = new User("bobbybob", "password", "bob@email.test", "Bob", "Brown", "m", null);
+            UserAccessor userAcc = new UserAccessor(database);
+            User[] users = {sallyUser, bobUser};
+            userAcc.create(users);
+
+            Person sallyPerson = new Person("sallypersonid", sallyUser.getUsername(), sallyUser.getFirstName(), sallyUser.getLastName(), "f", "fatherpersonid", "motherpersonid", null);
+            Person sallyFather = new Person("fatherpersonid", sallyUser.getUsername(), "Gregory", sallyUser.getLastName(), "m", null, null, "motherpersonid");
+            Person sallyMother = new Person("motherpersonid", sallyUser.getUsername(), "Amy", "Thomson", "f", null, null, "fatherpersonid");
+            Person bobPerson = new Person("bobpersonid", bobUser.getUsername(), bobUser.getFirstName(), bobUser.getLastName(), "m");
+            PersonAccessor personAcc = new PersonAccessor(database);
+            Person[] persons = {sallyPerson, sallyFather, sallyMother, bobPerson};
+            personAcc.create(persons);
+
+            sallyUser.setPersonID(sallyPerson.getPersonID());
+            bobUser.setPersonID(bobPerson.getPersonID());
+            userAcc.update(users);
+
+            Event sallyBirth = new Event("sallybirtheventid", sallyUser.getUsername(), sallyPerson.getPersonID(), 1.1, -1.1, "USA", "Provo", "Birth", 2000);
+            Event fatherBirth = new Event("fatherbirtheventid", sallyUser.getUsername(), sallyFather.getPersonID(), 2.1, 2.1, "USA", "Provo", "Birth", 1970);
+            Event motherBirth = new Event("motherbirtheventid", sallyUser.getUsername(), sallyMother.getPersonID(), 3.1, 3.1, "USA", "Provo", "Birth", 1971);
+            Event bobBirth = new Event("bobbirtheventid", bobUser.getUsername(), bobPerson.getPersonID(), 4.1, 4.1, "Canada", "Toronto", "Birth", 1999);
+            EventAccessor eventAcc = new EventAccessor(database);
+            Event[] events = {sallyBirth, fatherBirth, motherBirth, bobBirth};
+            eventAcc.create(events);
+
+            AuthToken sallyAuthToken = new AuthToken("sallyauth", sallyUser.getUsername());
+            AuthToken bobAuthToken = new AuthToken("bobauth", bobUser.getUsername());
+            AuthTokenAccessor authTokenAcc = new AuthTokenAccessor(database);
+            AuthToken[] authTokens = {sallyAuthToken, bobAuthToken};
+            authTokenAcc.create(authTokens);
+            
+            database.commit();
+        } catch (Throwable err) {
+            System.out.println("An exception occurred in fillDatabase()");
+        }
+    }
+
+    /**
+     * Asserts that the number of each type of model is present in the database
+     * 
+     * @param expNumUsers is the expected number of Users to be in the database
+     * @param expNumPersons is the expected number of Persons to be in the database
+     * @param expNumEvents is the expected number of Events to be in the database
+     * @param expNumAuthTokens is the expected number of AuthTokens to be in the database
+     */
+    private void assertNumModelsInDatabase(int expNumUsers, int expNumPersons, int expNumEvents, int expNumAuthTokens) throws AssertionError {
+        try (Database database = new Database()) {
+            assertEquals(expNumUsers, new UserAccessor(database).getAll().length);
+            assertEquals(expNumPersons, new PersonAccessor(database).getAll().length);
+            assertEquals(expNumEvents, new EventAccessor(database).getAll().length);
+            assertEquals(expNumAuthTokens, new AuthTokenAccessor(database).getAll().length);
+        } catch (AssertionError err) {
+            throw err;
+        } catch (Throwable err) {
+            System.out.println("An exception occurred in assertNumModelsInDatabase(): " + err.getClass().getName());
+        }
+    }
+
+    /**
+     * Exports a snapshot through the service
+     * 
+     * @param username is the username to export, or null for the whole database
+     * @param includeCredentials is if password hashes and AuthTokens should be exported
+     * @return the snapshot bytes
+     */
+    private byte[] exportSnapshot(String username, boolean includeCredentials) {
+        SnapshotService service = new SnapshotService();
+        SnapshotRequest request = new SnapshotRequest();
+        request.adminSecret = SnapshotServiceTest.ADMIN_SECRET;
+        request.username = username;
+        request.includeCredentials = includeCredentials;
+        SnapshotResponse response = service.process("GET", request);
+        assertNotNull(response);
+        assertTrue(response.success);
+        assertNotNull(response.snapshot);
+        return response.snapshot;
+    }
+
+    /**
+     * Imports a snapshot through the service
+     * 
+     * @param snapshot is the snapshot bytes
+     * @return the service's response
+     */
+    private SnapshotResponse importSnapshot(byte[] snapshot) {
+        SnapshotService service = new SnapshotService();
+        SnapshotRequest request = new SnapshotRequest();
+        request.adminSecret = SnapshotServiceTest.ADMIN_SECRET;
+        request.snapshotData = new ByteArrayInputStream(snapshot);
+        SnapshotResponse response = service.process("POST", request);
+        assertNotNull(response);
+        return response;
+    }
+
+    /**
+     * Ensures a full snapshot restores everything exactly as it was
+     */
+    @Test
+    @DisplayName("Snapshot test -- full round trip")
+    public void testFullSnapshotRoundTrip() {
+        this.fillDatabase();
+        this.assertNumModelsInDatabase(2, 4, 4, 2);
+        byte[] snapshot = this.exportSnapshot(null, true);
+
+        assertDoesNotThrow(() -> this.resetDatabase());
+        this.assertNumModelsInDatabase(0, 0, 0, 0);
+        SnapshotResponse response = this.importSnapshot(snapshot);
+
+        assertTrue(response.success);
+        assertEquals(2, response.numUsersImported);
+        assertEquals(4, response.numPersonsImported);
+        assertEquals(4, response.numEventsImported);
+        assertEquals(2, response.numAuthTokensImported);
+        this.assertNumModelsInDatabase(2, 4, 4, 2);
+
+        try (Database database = new Database()) {
+            User sallyUser = new UserAccessor(database).getByUsername("sillysally");
+            assertEquals("sallypersonid", sallyUser.getPersonID());
+            assertEquals("sally@email.test", sallyUser.getEmail());
+
+            Person sallyPerson = new PersonAccessor(database).getByID("sallypersonid");
+            assertEquals("fatherpersonid", sallyPerson.getFatherID());
+            assertEquals("motherpersonid", sallyPerson.getMotherID());
+            assertNull(sallyPerson.getSpouseID());
+
+            Event sallyBirth = new EventAccessor(database).getByID("sallybirtheventid");
+            assertEquals(1.1f, sallyBirth.getLatitude());
+            assertEquals(-1.1f, sallyBirth.getLongitude());
+            assertEquals("Provo", sallyBirth.getCity());
+            assertEquals(2000, sallyBirth.getYear());
+
+            assertEquals("bobbybob", new AuthTokenAccessor(database).getByAuthToken("bobauth").getUsername());
+        } catch (DatabaseException err) {
+            this.failNoTraceback(err);
+        }
+    }
+
+    /**
+     * Ensures a single user snapshot only replaces that user's data
+     */
+    @Test
+    @DisplayName("Snapshot test -- single user")
+    public void testSingleUserSnapshot() {
+        this.fillDatabase();
+        byte[] snapshot = this.exportSnapshot("sillysally", true);
+
+        // change sally's data, which the import should undo
+        try (Database database = new Database()) {
+            EventAccessor eventAcc = new EventAccessor(database);
+            Event[] events = {eventAcc.getByID("sallybirtheventid")};
+            eventAcc.delete(events);
+            database.commit();
+        } catch (DatabaseException | BadAccessException err) {
+            this.failNoTraceback(err);
+        }
+        this.assertNumModelsInDatabase(2, 4, 3, 2);
+
+        SnapshotResponse response = this.importSnapshot(snapshot);
+
+        assertTrue(response.success);
+        assertTrue(response.message.contains("sillysally"));
+        assertEquals(1, response.numUsersImported);
+        assertEquals(3, response.numPersonsImported);
+        assertEquals(3, response.numEventsImported);
+        assertEquals(1, response.numAuthTokensImported);
+        // bob's data was left alone
+        this.assertNumModelsInDatabase(2, 4, 4, 2);
+    }
+
+    /**
+     * Ensures a corrupt snapshot fails without changing anything
+     */
+    @Test
+    @DisplayName("Snapshot test -- corrupt snapshot")
+    public void testCorruptSnapshot() {
+        this.fillDatabase();
+        byte[] snapshot = this.exportSnapshot(null, true);
+        snapshot[snapshot.length / 2] ^= 0x01;
+
+        assertDoesNotThrow(() -> this.resetDatabase());
+        SnapshotResponse response = this.importSnapshot(snapshot);
+
+        assertFalse(response.success);
+        assertTrue(response.message.contains("checksum"));
+        this.assertNumModelsInDatabase(0, 0, 0, 0);
+
+        byte[] tooShort = {1, 2};
+        response = this.importSnapshot(tooShort);
+        assertFalse(response.success);
+    }
+
+    /**
+     * Ensures exporting a user that doesn't exist fails
+     */
+    @Test
+    @DisplayName("Snapshot test -- non-existing user")
+    public void testNonExistingUserSnapshot() {
+        SnapshotService service = new SnapshotService();
+        SnapshotRequest request = new SnapshotRequest();
+        request.adminSecret = SnapshotServiceTest.ADMIN_SECRET;
+        request.username = "nobody";
+        SnapshotResponse response = service.process("GET", request);
+
+        assertNotNull(response);
+        assertFalse(response.success);
+        assertNull(response.snapshot);
+        assertTrue(response.message.startsWith("Error:"));
+    }
+
+    /**
+     * Ensures snapshots are refused without the admin secret, and while they
+     * are turned off
+     */
+    @Test
+    @DisplayName("Snapshot test -- admin secret")
+    public void testAdminSecret() {
+        this.fillDatabase();
+        SnapshotService service = new SnapshotService();
+        SnapshotRequest request = new SnapshotRequest();
+        SnapshotResponse response = service.process("GET", request);
+        assertFalse(response.success);
+        assertNull(response.snapshot);
+
+        request.adminSecret = "wrongsecret";
+        response = service.process("GET", request);
+        assertFalse(response.success);
+        assertNull(response.snapshot);
+
+        request.snapshotData = new ByteArrayInputStream(this.exportSnapshot(null, true));
+        response = service.process("POST", request);
+        assertFalse(response.success);
+        this.assertNumModelsInDatabase(2, 4, 4, 2);
+
+        SnapshotService.setAdminSecret(null);
+        try {
+            request.adminSecret = SnapshotServiceTest.ADMIN_SECRET;
+            request.snapshotData = null;
+            response = service.process("GET", request);
+            assertFalse(response.success);
+            assertTrue(response.message.contains("disabled"));
+        } finally {
+            SnapshotService.setAdminSecret(SnapshotServiceTest.ADMIN_SECRET);
+        }
+    }
+
+    /**
+     * Ensures credentials are left out of snapshots unless asked for, and
+     * importing one without them keeps the existing passwords
+     */
+    @Test
+    @DisplayName("Snapshot test -- without credentials")
+    public void testSnapshotWithoutCredentials() {
+        this.fillDatabase();
+        byte[] snapshot = this.exportSnapshot(null, false);
+        byte[] credentialsSnapshot = this.exportSnapshot(null, true);
+        String snapshotStr = new String(snapshot, StandardCharsets.ISO_8859_1);
+        String credentialsSnapshotStr = new String(credentialsSnapshot, StandardCharsets.ISO_8859_1);
+        assertFalse(snapshotStr.contains("sallyauth"));
+        assertTrue(credentialsSnapshotStr.contains("sallyauth"));
+
+        String oldPassword = null;
+        try (Database database = new Database()) {
+            oldPassword = new UserAccessor(database).getByUsername("sillysally").getPassword();
+        } catch (DatabaseException err) {
+            this.failNoTraceback(err);
+        }
+        assertFalse(snapshotStr.contains(oldPassword));
+        assertTrue(credentialsSnapshotStr.contains(oldPassword));
+
+        SnapshotResponse response = this.importSnapshot(snapshot);
+        assertTrue(response.success);
+        assertEquals(0, response.numAuthTokensImported);
+        this.assertNumModelsInDatabase(2, 4, 4, 0);
+        try (Database database = new Database()) {
+            assertEquals(oldPassword, new UserAccessor(database).getByUsername("sillysally").getPassword());
+        } catch (DatabaseException err) {
+            this.failNoTraceback(err);
+        }
+
+        // without the old users, there's no password to keep
+        assertDoesNotThrow(() -> this.resetDatabase());
+        response = this.importSnapshot(snapshot);
+        assertFalse(response.success);
+        assertTrue(response.message.contains("password"));
+        this.assertNumModelsInDatabase(0, 0, 0, 0);
+    }
+
+    /**
+     * Ensures a single user snapshot holding someone else's records is
+     * rejected without changing anything
+     */
+    @Test
+    @DisplayName("Snapshot test -- single user with other users' records")
+    public void testSingleUserSnapshotOtherOwner() {
+        this.fillDatabase();
+        String[] dictionary = {
+            "sillysally", "password", "sally@email.test", "Sally", "Black", "f", "sallypersonid",
+            "bobbybob", "evilpersonid", "Evil", "Twin", "m",
+        };
+        // user sillysally, then a Person belonging to bobbybob
+        int[] records = {
+            1,
+            1, 2, 3, 4, 5, 6, 7,
+            1,
+            9, 8, 10, 11, 12, 0, 0, 0,
+            0,
+            0,
+        };
+        SnapshotResponse response = this.importSnapshot(this.craftSnapshot(true, dictionary, records));
+        assertFalse(response.success);
+        assertTrue(response.message.contains("belonging to 'bobbybob'"));
+        this.assertNumModelsInDatabase(2, 4, 4, 2);
+
+        // or an AuthToken belonging to bobbybob
+        records = new int[]{
+            1,
+            1, 2, 3, 4, 5, 6, 7,
+            0,
+            0,
+            1,
+            9, 8, 0, 0,
+        };
+        response = this.importSnapshot(this.craftSnapshot(true, dictionary, records));
+        assertFalse(response.success);
+        this.assertNumModelsInDatabase(2, 4, 4, 2);
+
+        // claiming bob's person as sally's own is rejected too
+        dictionary[6] = "bobpersonid";
+        records = new int[]{1, 1, 2, 3, 4, 5, 6, 7, 0, 0, 0};
+        response = this.importSnapshot(this.craftSnapshot(true, dictionary, records));
+        assertFalse(response.success);
+        this.assertNumModelsInDatabase(2, 4, 4, 2);
+    }
+
+    /**
+     * Ensures a full snapshot that fails after the old data is cleared
+     * leaves the old data alone
+     */
+    @Test
+    @DisplayName("Snapshot test -- full snapshot failing after the clear")
+    public void testFullSnapshotFailsAfterClear() {
+        this.fillDatabase();
+        String[] dictionary = {"sillysally", "password", "sally@email.test", "Sally", "Black", "f", "sallypersonid"};
+        // the same user twice, which can only fail once the users are being created
+        int[] records = {
+            2,
+            1, 2, 3, 4, 5, 6, 7,
+            1, 2, 3, 4, 5, 6, 7,
+            0,
+            0,
+            0,
+        };
+        SnapshotResponse response = this.importSnapshot(this.craftSnapshot(false, dictionary, records));
+        assertFalse(response.success);
+        this.assertNumModelsInDatabase(2, 4, 4, 2);
+    }
+
+    /**
+     * Builds a snapshot (with credentials) by hand, so it can hold records
+     * the server would never export. Every record value is written as a
+     * single byte, so dictionaries must stay small.
+     *
+     * @param isSingleUser is if the snapshot is for the dictionary's first string (instead of the whole database)
+     * @param dictionary is the snapshot's string dictionary
+     * @param records is the values of the users, persons, events, and auth tokens sections
+     * @return the snapshot bytes
+     */
+    private byte[] craftSnapshot(boolean isSingleUser, String[] dictionary, int[] records) {
+        ByteArrayOutputStream snapshotBytes = new ByteArrayOutputStream();
+        DataOutputStream snapshot = new DataOutputStream(snapshotBytes);
+        try {
+            snapshot.writeBytes("FMSS");
+            snapshot.writeByte(3);
+            snapshot.writeByte(dictionary.length);
+            for (String str : dictionary) {
+                byte[] strBytes = str.getBytes(StandardCharsets.UTF_8);
+                snapshot.writeByte(strBytes.length);
+                snapshot.write(strBytes);
+            }
+            // the scope, then "with credentials", then the user's name (for single user snapshots)
+            snapshot.writeByte(isSingleUser ? 1 : 0);
+            snapshot.writeByte(1);
+            if (isSingleUser) {
+                snapshot.writeByte(1);
+            }
+            for (int value : records) {
+                snapshot.writeByte(value);
+            }
+            CRC32 checksum = new CRC32();
+            checksum.update(snapshotBytes.toByteArray());
+            snapshot.writeInt((int) checksum.getValue());
+        } catch (IOException err) {
+            this.failNoTraceback(err);
+        }
+        return snapshotBytes.toByteArray();
+    }
+}
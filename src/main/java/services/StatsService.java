@@ -0,0 +1,52 @@
+package services;
+
+import dataAccess.Database;
+import dataAccess.DatabaseException;
+import dataAccess.UserStats;
+
+import services.requests.StatsRequest;
+import services.responses.StatsResponse;
+
+import utils.AuthUtils;
+
+/**
+ * This service provides functionality for the user stats endpoint, which
+ * returns the counts kept in the user_stats table (so it costs the same no
+ * matter how big the user's tree is). It accepts calls through the HTTP GET
+ * method.
+ */
+public class StatsService extends GenericService<StatsRequest, StatsResponse> {
+    /**
+     * Creates a new StatsService by calling GenericService with this
+     * service's name
+     */
+    public StatsService() {
+        super("StatsService");
+    }
+
+    @Override
+    public StatsResponse onGet(StatsRequest request, Database database) throws InvalidHTTPMethodException, DatabaseException {
+        // check authorization
+        AuthUtils authUtils = new AuthUtils(database);
+        String authenticatedUsername = authUtils.getAuthenticatedUsername(request.authtoken);
+        boolean userIsAuthenticated = authenticatedUsername != null;
+        if (!userIsAuthenticated) {
+            return this.createUnauthenticatedResponse();
+        }
+
+        // stale generation counts are counted again here (and committed with the response)
+        UserStats userStats = new UserStats(database);
+        StatsResponse response = new StatsResponse();
+        response.success = true;
+        response.countries = userStats.getCounts(authenticatedUsername, UserStats.COUNTRY_TYPE);
+        response.eventTypes = userStats.getCounts(authenticatedUsername, UserStats.EVENT_TYPE_TYPE);
+        response.decades = userStats.getCounts(authenticatedUsername, UserStats.DECADE_TYPE);
+        response.generations = userStats.getCounts(authenticatedUsername, UserStats.GENERATION_TYPE);
+        return response;
+    }
+
+    @Override
+    protected StatsResponse createSpecificErrorResponse(String errMsg) {
+        return new StatsResponse();
+    }
+}
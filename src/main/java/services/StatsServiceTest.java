@@ -0,0 +1,106 @@
+package services;
+
+import org.junit.jupiter.api.*;
+import static org.junit.jupiter.api.Assertions.*;
+
+import dataAccess.*;
+import models.*;
+
+import services.requests.StatsRequest;
+import services.responses.StatsResponse;
+
+/**
+ * Contains test cases to ensure the StatsService works correctly
+ */
+@TestMethodOrder(MethodOrderer.OrderAnnotation.class)
+public class StatsServiceTest {
+    /**
+     * Signals the Database class to use the testing database for testing
+     */
+    @BeforeAll
+    static public void useTestDB() {
+        Database.useTestDB();
+    }
+
+    /**
+     * Ensures an empty, fresh database before each test
+     * 
+     * @throws DatabaseException whenever reset() does
+     */
+    @BeforeEach
+    public void resetDatabase() throws DatabaseException {
+        try (Database database = new Database()) {
+            database.reset();
+        }
+    }
+
+    /**
+     * Fills the database with a user, their parents, and some events
+     */
+    private void fillDatabase() {
+        try (Database database = new Database()) {
+            User sallyUser = new User("sillysally", "password", "sally@email.test", "Sally", "Black", "f", null);
+            UserAccessor userAcc = new UserAccessor(database);
+            User[] users = {sallyUser};
+            userAcc.create(users);
+
+            Person sallyFather = new Person("fatherpersonid", sallyUser.getUsername(), "Gregory", sallyUser.getLastName(), "m");
+            Person sallyMother = new Person("motherpersonid", sallyUser.getUsername(), "Amy", "Thomson", "f");
+            Person sallyPerson = new Person("sallypersonid", sallyUser.getUsername(), sallyUser.getFirstName(), sallyUser.getLastName(), "f", sallyFather.getPersonID(), sallyMother.getPersonID(), null);
+            Person[] persons = {sallyFather, sallyMother, sallyPerson};
+            new PersonAccessor(database).create(persons);
+            sallyUser.setPersonID(sallyPerson.getPersonID());
+            userAcc.update(users);
+
+            Event sallyBirth = new Event("sallybirtheventid", sallyUser.getUsername(), sallyPerson.getPersonID(), 1.1, 1.1, "USA", "Provo", "Birth", 2000);
+            Event fatherBirth = new Event("fatherbirtheventid", sallyUser.getUsername(), sallyFather.getPersonID(), 2.1, 2.1, "USA", "Provo", "Birth", 1970);
+            Event motherDeath = new Event("motherdeatheventid", sallyUser.getUsername(), sallyMother.getPersonID(), 3.2, 3.2, "Canada", "Toronto", "Death", 2020);
+            Event[] events = {sallyBirth, fatherBirth, motherDeath};
+            new EventAccessor(database).create(events);
+
+            AuthToken[] authTokens = {new AuthToken("sallyauth", sallyUser.getUsername())};
+            new AuthTokenAccessor(database).create(authTokens);
+
+            database.commit();
+        } catch (Throwable err) {
+            System.out.println("An exception occurred in fillDatabase()");
+        }
+    }
+
+    /**
+     * Ensures the stats endpoint returns every count for the user
+     */
+    @Test
+    @DisplayName("Get stats test")
+    public void testGetStats() {
+        this.fillDatabase();
+
+        StatsRequest request = new StatsRequest();
+        request.authtoken = "sallyauth";
+        StatsResponse response = new StatsService().process("GET", request);
+        assertTrue(response.success);
+        assertEquals(2, response.countries.get("USA"));
+        assertEquals(1, response.countries.get("Canada"));
+        assertEquals(2, response.eventTypes.get("Birth"));
+        assertEquals(1, response.eventTypes.get("Death"));
+        assertArrayEquals(new String[]{"1970", "2000", "2020"}, response.decades.keySet().toArray());
+        assertEquals(2, response.generations.get("1"));
+        assertEquals(1, response.generations.size());
+    }
+
+    /**
+     * Ensures the stats endpoint requires authorization
+     */
+    @Test
+    @DisplayName("Get stats test -- bad auth")
+    public void testGetStatsBadAuth() {
+        this.fillDatabase();
+
+        StatsRequest request = new StatsRequest();
+        request.authtoken = "notanauthtoken";
+        StatsResponse response = new StatsService().process("GET", request);
+        assertFalse(response.success);
+        assertNotNull(response.message);
+        assertNull(response.countries);
+    }
+}
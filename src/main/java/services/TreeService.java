@@ -0,0 +1,56 @@
+package services;
+
+import dataAccess.Database;
+import dataAccess.DatabaseException;
+import dataAccess.FamilyTree;
+import dataAccess.FamilyTreeCache;
+
+import services.requests.TreeRequest;
+import services.responses.TreeResponse;
+
+import utils.AuthUtils;
+
+/**
+ * This service provides functionality for the tree endpoint, which returns
+ * all of a user's Persons and Events at once (instead of calling /person
+ * and then /event). It accepts calls through the HTTP GET method.
+ *
+ * Both lists come from the same FamilyTree, which is read in one
+ * transaction (or taken from the FamilyTreeCache), so they always agree with
+ * each other, even if a /fill lands while the response is being sent.
+ */
+public class TreeService extends GenericService<TreeRequest, TreeResponse> {
+    /**
+     * Creates a new TreeService by calling GenericService with this
+     * service's name
+     */
+    public TreeService() {
+        super("TreeService");
+    }
+
+    @Override
+    public TreeResponse onGet(TreeRequest request, Database database) throws InvalidHTTPMethodException, DatabaseException {
+        // check authorization
+        AuthUtils authUtils = new AuthUtils(database);
+        String authenticatedUsername = authUtils.getAuthenticatedUsername(request.authtoken);
+        boolean userIsAuthenticated = authenticatedUsername != null;
+        if (!userIsAuthenticated) {
+            return this.createUnauthenticatedResponse();
+        }
+
+        FamilyTree tree = FamilyTreeCache.getTree(database, authenticatedUsername);
+
+        // generate response
+        TreeResponse response = new TreeResponse();
+        response.success = true;
+        response.persons = tree.getPersons();
+        // (already grouped by person)
+        response.events = tree.getEvents();
+        return response;
+    }
+
+    @Override
+    protected TreeResponse createSpecificErrorResponse(String errMsg) {
+        return new TreeResponse();
+    }
+}
@@ -0,0 +1,140 @@
+package services;
+
+import org.junit.jupiter.api.*;
+import static org.junit.jupiter.api.Assertions.*;
+
+import dataAccess.*;
+import models.*;
+
+import services.requests.TreeRequest;
+import services.responses.TreeResponse;
+
+/**
+ * Contains test cases to ensure the TreeService works correctly
+ */
+@TestMethodOrder(MethodOrderer.OrderAnnotation.class)
+public class TreeServiceTest {
+    /**
+     * Signals the Database class to use the testing database for testing
+     */
+    @BeforeAll
+    static public void useTestDB() {
+        Database.useTestDB();
+    }
+
+    /**
+     * Ensures an empty, fresh database before each test
+     * 
+     * @throws DatabaseException whenever reset() does
+     */
+    @BeforeEach
+    public void resetDatabase() throws DatabaseException {
+        try (Database database = new Database()) {
+            database.reset();
+        }
+    }
+
+    /**
+     * Fills the database with a user, their parents, some events, and another user
+     */
+    private void fillDatabase() {
+        try (Database database = new Database()) {
+            User sallyUser = new User("sillysally", "password", "sally@email.test", "Sally", "Black", "f", null);
+            User markUser = new User("markimoo", "markabarkbark", "mark@email.test", "Mark", "Bark", "m", null);
+            UserAccessor userAcc = new UserAccessor(database);
+            User[] users = {sallyUser, markUser};
+            userAcc.create(users);
+
+            Person sallyFather = new Person("fatherpersonid", sallyUser.getUsername(), "Gregory", sallyUser.getLastName(), "m");
+            Person sallyMother = new Person("motherpersonid", sallyUser.getUsername(), "Amy", "Thomson", "f");
+            Person sallyPerson = new Person("sallypersonid", sallyUser.getUsername(), sallyUser.getFirstName(), sallyUser.getLastName(), "f", sallyFather.getPersonID(), sallyMother.getPersonID(), null);
+            Person markPerson = new Person("markpersonid", markUser.getUsername(), markUser.getFirstName(), markUser.getLastName(), "m");
+            Person[] persons = {sallyFather, sallyMother, sallyPerson, markPerson};
+            new PersonAccessor(database).create(persons);
+            sallyUser.setPersonID(sallyPerson.getPersonID());
+            markUser.setPersonID(markPerson.getPersonID());
+            userAcc.update(users);
+
+            Event sallyBirth = new Event("sallybirtheventid", sallyUser.getUsername(), sallyPerson.getPersonID(), 1.1, 1.1, "USA", "Provo", "Birth", 2000);
+            Event fatherDeath = new Event("fatherdeatheventid", sallyUser.getUsername(), sallyFather.getPersonID(), 2.2, 2.2, "USA", "Provo", "Death", 2023);
+            Event fatherBirth = new Event("fatherbirtheventid", sallyUser.getUsername(), sallyFather.getPersonID(), 2.1, 2.1, "USA", "Provo", "Birth", 1970);
+            Event motherDeath = new Event("motherdeatheventid", sallyUser.getUsername(), sallyMother.getPersonID(), 3.2, 3.2, "Canada", "Toronto", "Death", 2020);
+            Event markBirth = new Event("markbirtheventid", markUser.getUsername(), markPerson.getPersonID(), 4.1, 4.1, "USA", "Provo", "Birth", 1999);
+            Event[] events = {sallyBirth, fatherDeath, fatherBirth, motherDeath, markBirth};
+            new EventAccessor(database).create(events);
+
+            AuthToken[] authTokens = {new AuthToken("sallyauth", sallyUser.getUsername())};
+            new AuthTokenAccessor(database).create(authTokens);
+
+            database.commit();
+        } catch (Throwable err) {
+            System.out.println("An exception occurred in fillDatabase()");
+        }
+    }
+
+    /**
+     * Ensures the tree has all of the user's persons, and their events grouped by person
+     */
+    @Test
+    @DisplayName("Get tree test")
+    public void testGetTree() {
+        this.fillDatabase();
+
+        TreeRequest request = new TreeRequest();
+        request.authtoken = "sallyauth";
+        TreeResponse response = new TreeService().process("GET", request);
+        assertTrue(response.success);
+        assertEquals(3, response.persons.length);
+        assertEquals("fatherpersonid", response.persons[0].getPersonID());
+        assertEquals("sallypersonid", response.persons[2].getPersonID());
+
+        String[] eventIDs = new String[response.events.length];
+        for (int eventIdx = 0; eventIdx < response.events.length; ++eventIdx) {
+            eventIDs[eventIdx] = response.events[eventIdx].getEventID();
+        }
+        assertArrayEquals(new String[]{"fatherbirtheventid", "fatherdeatheventid", "motherdeatheventid", "sallybirtheventid"}, eventIDs);
+    }
+
+    /**
+     * Ensures the tree reflects changes made after it was first returned
+     */
+    @Test
+    @DisplayName("Get tree test -- after a change")
+    public void testGetTreeAfterChange() {
+        this.fillDatabase();
+
+        TreeRequest request = new TreeRequest();
+        request.authtoken = "sallyauth";
+        TreeResponse response = new TreeService().process("GET", request);
+        assertEquals(4, response.events.length);
+
+        try (Database database = new Database()) {
+            Event[] events = {new Event("motherbirtheventid", "sillysally", "motherpersonid", 3.1, 3.1, "Canada", "Toronto", "Birth", 1971)};
+            new EventAccessor(database).create(events);
+            database.commit();
+        } catch (DatabaseException | BadAccessException err) {
+            fail(err.getMessage());
+        }
+        response = new TreeService().process("GET", request);
+        assertTrue(response.success);
+        assertEquals(5, response.events.length);
+        assertEquals("motherbirtheventid", response.events[2].getEventID());
+    }
+
+    /**
+     * Ensures the tree endpoint requires authorization
+     */
+    @Test
+    @DisplayName("Get tree test -- bad auth")
+    public void testGetTreeBadAuth() {
+        this.fillDatabase();
+
+        TreeRequest request = new TreeRequest();
+        request.authtoken = "notanauthtoken";
+        TreeResponse response = new TreeService().process("GET", request);
+        assertFalse(response.success);
+        assertNotNull(response.message);
+        assertNull(response.persons);
+        assertNull(response.events);
+    }
+}
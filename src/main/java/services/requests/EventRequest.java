@@ -6,4 +6,34 @@ public class EventRequest extends AuthorizedRequest {
     public String eventID;
     /** An indication that all Events should be returned instead of just one */
     public boolean all;
+    /** An indication that the Events should be returned as map clusters instead */
+    public boolean clusters;
+    /** The map zoom level to cluster the Events for (for "clusters" requests) */
+    public Integer zoom;
+    /** The Event IDs of the Events to return (in order) instead of all of them, or null */
+    public String[] ids;
+    /** The maximum number of Events to return (for "all" requests), or null for no limit */
+    public Integer limit;
+    /** The nextCursor of the previous page (for "all" requests), or null for the first page */
+    public String after;
+    /** The only Event properties to return, or null for all of them */
+    public String[] fields;
+    /** The version from the last sync (for "all" requests); only Events changed since then are returned */
+    public Long since;
+    /** The box to return Events inside of (for "all" and "clusters" requests): {minLatitude, minLongitude, maxLatitude, maxLongitude} */
+    public double[] bbox;
+    /** The point to return Events near (for "all" requests): {latitude, longitude} */
+    public double[] near;
+    /** How far from the "near" point Events can be, in kilometers */
+    public Double radiusKm;
+    /** The earliest year of Events to return (for "all" requests), or null for no limit */
+    public Integer fromYear;
+    /** The latest year of Events to return (for "all" requests), or null for no limit */
+    public Integer toYear;
+    /** The types of Events to return (for "all" requests), or null for every type */
+    public String[] types;
+    /** The side of the user's family ("father" or "mother") to return Events for (for "all" requests), or null for any side */
+    public String side;
+    /** The gender ("m" or "f") of the Persons to return Events for (for "all" requests), or null for either */
+    public String gender;
 }
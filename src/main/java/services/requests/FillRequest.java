@@ -6,4 +6,8 @@ public class FillRequest extends GenericRequest {
     public String username;
     /** The number of generations to fill */
     public int generations;
+    /** An indication that the fill should run as a background job */
+    public boolean async;
+    /** The job ID of the background fill job to report on (for status requests) */
+    public String jobID;
 }
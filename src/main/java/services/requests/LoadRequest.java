@@ -1,5 +1,7 @@
 package services.requests;
 
+import java.io.Reader;
+
 import models.*;
 
 /** Contains request data for the LoadService */
@@ -10,4 +12,9 @@ public class LoadRequest extends GenericRequest {
     public Person[] persons;
     /** The array of Events to load into the database */
     public Event[] events;
+    /**
+     * The raw (JSON) request body, for streamed loads. When this is set, the
+     * arrays above are left null, and the data is parsed while it is loaded.
+     */
+    public transient Reader streamedData;
 }
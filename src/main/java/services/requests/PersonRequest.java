@@ -6,4 +6,28 @@ public class PersonRequest extends AuthorizedRequest {
     public String personID;
     /** An indication that all Persons should be returned instead of just one */
     public boolean all;
+    /** An indication that the user's Persons should be searched by name instead */
+    public boolean search;
+    /** The words to search the Persons' names for (for "search" requests) */
+    public String query;
+    /** The Person IDs of the Persons to return (in order) instead of all of them, or null */
+    public String[] ids;
+    /** The maximum number of Persons to return (for "all" requests), or null for no limit */
+    public Integer limit;
+    /** The nextCursor of the previous page (for "all" requests), or null for the first page */
+    public String after;
+    /** The only Person properties to return, or null for all of them */
+    public String[] fields;
+    /** The version from the last sync (for "all" requests); only Persons changed since then are returned */
+    public Long since;
+    /** An indication that the ancestors of the target Person should be returned instead of the Person */
+    public boolean ancestors;
+    /** The number of generations of ancestors to return, or null for as many as there are (up to a limit) */
+    public Integer depth;
+    /** An indication that the ancestors' Events should be returned too (for "ancestors" requests) */
+    public boolean includeEvents;
+    /** The Person ID of the Person whose relationship to the target Person should be returned instead of the Person */
+    public String relativeID;
+    /** The part of the URL after the Person ID that isn't a known sub-resource, or null if there is none */
+    public String unknownSubresource;
 }
@@ -0,0 +1,15 @@
+package services.requests;
+
+import java.io.InputStream;
+
+/** Contains request data for the SnapshotService */
+public class SnapshotRequest extends GenericRequest {
+    /** The admin secret (from the Authorization header) */
+    public String adminSecret;
+    /** The username of the single User to export (or null to export everything) */
+    public String username;
+    /** If password hashes and AuthTokens should be exported too (they are left out by default) */
+    public boolean includeCredentials;
+    /** The raw (binary) snapshot to import, for POST requests */
+    public transient InputStream snapshotData;
+}
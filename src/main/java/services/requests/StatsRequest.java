@@ -0,0 +1,7 @@
+package services.requests;
+
+/** Contains request data for the StatsService */
+public class StatsRequest extends AuthorizedRequest {
+    // StatsRequest only needs the auth token
+    // this block intentionally left blank
+}
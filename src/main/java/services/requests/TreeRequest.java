@@ -0,0 +1,7 @@
+package services.requests;
+
+/** Contains request data for the TreeService */
+public class TreeRequest extends AuthorizedRequest {
+    // TreeRequest only needs the auth token
+    // this block intentionally left blank
+}
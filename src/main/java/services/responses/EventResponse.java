@@ -1,11 +1,27 @@
 package services.responses;
 
+import dataAccess.EventClusters;
+
 import models.Event;
 
 /** Contains response data returned by the EventService */
 public class EventResponse extends GenericResponse {
     /** The JSON-able list of all Events (for "all" requests) */
     public Event[] data;
+    /** The JSON-able list of clusters of Events (for "clusters" requests) */
+    public EventClusters.Cluster[] clusters;
+    /** The IDs that weren't found for the user, in the order they were asked for (for "ids" requests) */
+    public String[] missingIDs;
+    /** The cursor to pass as "after" for the next page, or null if this was the last page (for "all" requests) */
+    public String nextCursor;
+    /** The version to pass as "since" for the next sync (for "since" requests) */
+    public Long version;
+    /** The IDs of Events deleted since the last sync (for "since" requests that aren't full syncs) */
+    public String[] deletedIDs;
+    /** Whether every Event was returned, because the last sync was too old (for "since" requests) */
+    public Boolean fullSync;
+    /** The only Event properties to serialize, or null for all of them (not serialized itself) */
+    public transient String[] fields;
     /** The "eventID" property of the target Event */
     public String eventID;
     /** The "associatedUsername" property of the target Event */
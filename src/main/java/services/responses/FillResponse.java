@@ -2,6 +2,20 @@ package services.responses;
 
 /** Contains response data returned by the FillService */
 public class FillResponse extends GenericResponse {
-    // FillResponse contains no extra parameters
-    // this block intentionally left blank
+    /** The job ID of the background fill job (for async/status requests) */
+    public String jobID;
+    /** The status of the background fill job (for async/status requests) */
+    public String status;
+    /** The number of Persons created by the background fill job (for status requests) */
+    public Integer numPersonsCreated;
+    /** The number of Events created by the background fill job (for status requests) */
+    public Integer numEventsCreated;
+    /** The number of Persons the background fill job has generated so far (for status requests) */
+    public Integer numPersonsGenerated;
+    /** The number of Events the background fill job has generated so far (for status requests) */
+    public Integer numEventsGenerated;
+    /** The number of Persons the background fill job will generate in all (for status requests), or null if it is too big to count */
+    public Long numPersonsExpected;
+    /** How long the background fill job has been running, in milliseconds (for status requests), or null while it is queued */
+    public Long elapsedMillis;
 }
@@ -1,11 +1,32 @@
 package services.responses;
 
+import models.Event;
 import models.Person;
 
 /** Contains response data returned by the PersonService */
 public class PersonResponse extends GenericResponse {
     /** The JSON-able list of all Persons (for "all" requests) */
     public Person[] data;
+    /** The JSON-able list of the ancestors' Events (for "ancestors" requests that include events) */
+    public Event[] events;
+    /** The IDs that weren't found for the user, in the order they were asked for (for "ids" requests) */
+    public String[] missingIDs;
+    /** The cursor to pass as "after" for the next page, or null if this was the last page (for "all" requests) */
+    public String nextCursor;
+    /** The version to pass as "since" for the next sync (for "since" requests) */
+    public Long version;
+    /** The IDs of Persons deleted since the last sync (for "since" requests that aren't full syncs) */
+    public String[] deletedIDs;
+    /** Whether every Person was returned, because the last sync was too old (for "since" requests) */
+    public Boolean fullSync;
+    /** The personIDs from the target Person to the relative, inclusive (for "relationship" requests) */
+    public String[] relationshipPath;
+    /** What each Person in the relationshipPath is to the one before them, like "mother" or "wife" (for "relationship" requests) */
+    public String[] relationshipSteps;
+    /** What the relative is to the target Person, like "grandmother" or "first cousin" (for "relationship" requests) */
+    public String relationship;
+    /** The only Person properties to serialize, or null for all of them (not serialized itself) */
+    public transient String[] fields;
     /** The "personID" property of the target Person */
     public String personID;
     /** The "associatedUsername" property of the target Person */
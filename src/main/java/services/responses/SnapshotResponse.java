@@ -0,0 +1,15 @@
+package services.responses;
+
+/** Contains response data returned by the SnapshotService */
+public class SnapshotResponse extends GenericResponse {
+    /** The exported (binary) snapshot, which is sent as-is instead of as JSON */
+    public transient byte[] snapshot;
+    /** The number of Users imported (for imports) */
+    public Integer numUsersImported;
+    /** The number of Persons imported (for imports) */
+    public Integer numPersonsImported;
+    /** The number of Events imported (for imports) */
+    public Integer numEventsImported;
+    /** The number of AuthTokens imported (for imports) */
+    public Integer numAuthTokensImported;
+}
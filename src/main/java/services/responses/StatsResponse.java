@@ -0,0 +1,15 @@
+package services.responses;
+
+import java.util.Map;
+
+/** Contains response data returned by the StatsService */
+public class StatsResponse extends GenericResponse {
+    /** The number of the user's Events in each country, most common first */
+    public Map<String, Long> countries;
+    /** The number of the user's Events of each eventType, most common first */
+    public Map<String, Long> eventTypes;
+    /** The number of the user's Events in each decade (ex. "1990" for 1990 to 1999), in order */
+    public Map<String, Long> decades;
+    /** The number of the user's ancestors in each generation (1 for parents, 2 for grandparents...), in order */
+    public Map<String, Long> generations;
+}
@@ -0,0 +1,12 @@
+package services.responses;
+
+import models.Event;
+import models.Person;
+
+/** Contains response data returned by the TreeService */
+public class TreeResponse extends GenericResponse {
+    /** The JSON-able list of all the user's Persons, in personID order */
+    public Person[] persons;
+    /** The JSON-able list of all the user's Events, grouped by Person (in the same order) and then in year order */
+    public Event[] events;
+}
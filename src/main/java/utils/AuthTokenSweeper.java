@@ -0,0 +1,181 @@
+package utils;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import dataAccess.*;
+
+import models.AuthToken;
+
+/**
+ * Keeps the authtoken table from growing forever. Every SWEEP_INTERVAL_MILLIS,
+ * a background thread writes out when tokens were last used (which are only
+ * recorded in memory as requests come in, so authenticating never has to write
+ * to the database), and then deletes expired tokens (see AuthUtils for the TTLs).
+ *
+ * Both happen in chunks of SWEEP_CHUNK_SIZE, committing after each chunk, so
+ * the sweeper never holds the write lock for long (and /register and /login
+ * don't have to wait on it).
+ */
+public class AuthTokenSweeper {
+    /** How often the sweeper runs */
+    static final long SWEEP_INTERVAL_MILLIS = TimeUnit.MINUTES.toMillis(1);
+    /** The number of tokens updated or deleted per transaction */
+    static final int SWEEP_CHUNK_SIZE = 500;
+
+    /** When each recently used auth token was last used, waiting to be written out */
+    static private final ConcurrentHashMap<String, Long> pendingLastUsed = new ConcurrentHashMap<>();
+    /** The number of expired tokens deleted so far */
+    static private final AtomicLong numTokensSwept = new AtomicLong();
+    /** The background thread running sweeps, or null if the sweeper is not running */
+    static private ScheduledExecutorService executor;
+
+    /**
+     * Starts sweeping in the background, if the sweeper isn't already running
+     */
+    static public synchronized void start() {
+        if (AuthTokenSweeper.executor != null) {
+            return;
+        }
+        AuthTokenSweeper.executor = Executors.newSingleThreadScheduledExecutor((runnable) -> {
+            Thread thread = new Thread(runnable, "AuthTokenSweeper");
+            thread.setDaemon(true);
+            return thread;
+        });
+        AuthTokenSweeper.executor.scheduleWithFixedDelay(
+            AuthTokenSweeper::runScheduledSweep,
+            AuthTokenSweeper.SWEEP_INTERVAL_MILLIS, AuthTokenSweeper.SWEEP_INTERVAL_MILLIS, TimeUnit.MILLISECONDS
+        );
+    }
+
+    /**
+     * Stops sweeping in the background (last-used times are still recorded)
+     */
+    static public synchronized void stop() {
+        if (AuthTokenSweeper.executor != null) {
+            AuthTokenSweeper.executor.shutdownNow();
+            AuthTokenSweeper.executor = null;
+        }
+    }
+
+    /**
+     * Records that an auth token was just used. This only touches memory; the
+     * time is written to the database by the next sweep.
+     *
+     * @param authToken is the auth token that was used
+     */
+    static public void recordUse(String authToken) {
+        long now = System.currentTimeMillis();
+        AuthTokenSweeper.pendingLastUsed.merge(authToken, now, Math::max);
+    }
+
+    /**
+     * Returns when an auth token was last used, if that hasn't been written to
+     * the database yet
+     *
+     * @param authToken is the auth token to check
+     * @return the last-used time (in epoch milliseconds), or 0 if nothing is pending
+     */
+    static public long getPendingLastUsed(String authToken) {
+        return AuthTokenSweeper.pendingLastUsed.getOrDefault(authToken, 0L);
+    }
+
+    static public long getNumTokensSwept() {
+        return AuthTokenSweeper.numTokensSwept.get();
+    }
+
+    /**
+     * Writes out pending last-used times, then deletes every expired token
+     *
+     * @return the number of expired tokens deleted
+     * @throws DatabaseException when the database has a bad day
+     */
+    static public int sweep() throws DatabaseException {
+        try (Database database = new Database()) {
+            AuthTokenSweeper.flushLastUsed(database);
+            return AuthTokenSweeper.deleteExpired(database);
+        }
+    }
+
+    /**
+     * Runs a sweep from the background thread. Errors are only logged, since
+     * throwing would cancel all future sweeps.
+     */
+    static private void runScheduledSweep() {
+        try {
+            int numSwept = AuthTokenSweeper.sweep();
+            if (numSwept > 0) {
+                System.out.println(String.format("Swept %d expired auth tokens", numSwept));
+            }
+        } catch (Throwable err) {
+            System.out.println("Auth token sweep failed: " + err.getClass().getName() + ": " + err.getMessage());
+        }
+    }
+
+    /**
+     * Writes the pending last-used times to the database, one chunk per transaction
+     *
+     * @param database is the database to write to
+     * @throws DatabaseException when the database has a bad day
+     */
+    static private void flushLastUsed(Database database) throws DatabaseException {
+        AuthTokenAccessor authTokenAcc = new AuthTokenAccessor(database);
+        HashMap<String, Long> chunk = new HashMap<>();
+        for (Map.Entry<String, Long> entry : AuthTokenSweeper.pendingLastUsed.entrySet()) {
+            // if the token was used again in the meantime, the newer time
+            // stays pending for the next sweep
+            if (AuthTokenSweeper.pendingLastUsed.remove(entry.getKey(), entry.getValue())) {
+                chunk.put(entry.getKey(), entry.getValue());
+            }
+            if (chunk.size() == AuthTokenSweeper.SWEEP_CHUNK_SIZE) {
+                authTokenAcc.touch(chunk);
+                database.commit();
+                chunk.clear();
+            }
+        }
+        if (chunk.size() > 0) {
+            authTokenAcc.touch(chunk);
+            database.commit();
+        }
+    }
+
+    /**
+     * Deletes expired tokens from the database, one chunk per transaction
+     *
+     * @param database is the database to delete from
+     * @return the number of tokens deleted
+     * @throws DatabaseException when the database has a bad day
+     */
+    static private int deleteExpired(Database database) throws DatabaseException {
+        AuthTokenAccessor authTokenAcc = new AuthTokenAccessor(database);
+        long now = System.currentTimeMillis();
+        long createdBefore = now - AuthUtils.ABSOLUTE_TTL_MILLIS;
+        long lastUsedBefore = now - AuthUtils.SLIDING_TTL_MILLIS;
+        int numDeleted = 0;
+        while (true) {
+            AuthToken[] expiredTokens = authTokenAcc.getExpired(createdBefore, lastUsedBefore, AuthTokenSweeper.SWEEP_CHUNK_SIZE);
+            if (expiredTokens.length == 0) {
+                break;
+            }
+            try {
+                authTokenAcc.delete(expiredTokens);
+            } catch (BadAccessException err) {
+                // something else deleted them first (like a /clear); try again next time
+                database.rollback();
+                break;
+            }
+            database.commit();
+            numDeleted += expiredTokens.length;
+            AuthTokenSweeper.numTokensSwept.addAndGet(expiredTokens.length);
+            if (expiredTokens.length < AuthTokenSweeper.SWEEP_CHUNK_SIZE) {
+                break;
+            }
+        }
+        return numDeleted;
+    }
+}
@@ -1,7 +1,9 @@
 package utils;
 
+import java.security.NoSuchAlgorithmException;
 import java.security.SecureRandom;
 import java.util.Base64;
+import java.util.concurrent.TimeUnit;
 
 import dataAccess.*;
 
@@ -12,36 +14,96 @@ import models.User;
  * Provides helpful functions when trying to authenticate a user
  */
 public class AuthUtils extends GenericUtility {
+    /** How long an auth token can be used after it is created, no matter how often it's used */
+    static public final long ABSOLUTE_TTL_MILLIS = TimeUnit.HOURS.toMillis(24);
+    /** How long an auth token can go unused before it expires */
+    static public final long SLIDING_TTL_MILLIS = TimeUnit.HOURS.toMillis(2);
+    /** How long a signed auth token can be used (they can't slide, since nothing is stored) */
+    static public final long SIGNED_TOKEN_TTL_MILLIS = AuthUtils.SLIDING_TTL_MILLIS;
+
+    /** Where auth tokens come from (shared, since seeding a new one for every login is slow) */
+    static private final SecureRandom random = AuthUtils.createRandom();
+
     public AuthUtils(Database database) {
         super(database);
     }
 
     /**
-     * Gets a user currently logged in by their auth token
+     * Gets a user currently logged in by their auth token. Recently used auth
+     * tokens are served from the AuthTokenCache, without touching the database.
+     * Expired auth tokens are treated as invalid (the AuthTokenSweeper deletes
+     * them later).
      * 
      * @param authTokenStr is the auth token the user logged in with
-     * @return the corresponding logged-in User object, or null if the auth token is invalid
+     * @return the corresponding logged-in User object, or null if the auth token is invalid or expired
      * @throws DatabaseException when the database feels like throwing up a sql error
      */
     public User getAuthenticatedUser(String authTokenStr) throws DatabaseException {
         if (authTokenStr == null) {
             return null;
         }
+        if (SignedAuthTokens.isSignedToken(authTokenStr)) {
+            String username = this.verifySignedToken(authTokenStr);
+            if (username == null) {
+                return null;
+            }
+            UserAccessor userAcc = new UserAccessor(this.database);
+            return userAcc.getByUsername(username);
+        }
+        User cachedUser = AuthTokenCache.get(authTokenStr);
+        if (cachedUser != null) {
+            AuthTokenSweeper.recordUse(authTokenStr);
+            return cachedUser;
+        }
 
+        long cacheGeneration = AuthTokenCache.getGeneration();
         AuthTokenAccessor authTokenAcc = new AuthTokenAccessor(this.database);
         AuthToken authToken = authTokenAcc.getByAuthToken(authTokenStr);
         
         User authedUser;
-        if (authToken == null) {
+        long expiresAt = 0;
+        if (authToken != null) {
+            long lastUsed = Math.max(authToken.getLastUsed(), AuthTokenSweeper.getPendingLastUsed(authTokenStr));
+            expiresAt = Math.min(authToken.getCreatedAt() + AuthUtils.ABSOLUTE_TTL_MILLIS, lastUsed + AuthUtils.SLIDING_TTL_MILLIS);
+        }
+        if (authToken == null || expiresAt <= System.currentTimeMillis()) {
             authedUser = null;
         } else {
             String username = authToken.getUsername();
             UserAccessor userAcc = new UserAccessor(this.database);
             authedUser = userAcc.getByUsername(username);
         }
+        if (authedUser != null) {
+            AuthTokenSweeper.recordUse(authTokenStr);
+            AuthTokenCache.put(authTokenStr, authedUser, cacheGeneration, expiresAt);
+        }
         return authedUser;
     }
 
+    /**
+     * Gets the username of the user currently logged in with an auth token. This
+     * is all most authorization checks need, and for signed auth tokens it
+     * doesn't touch the database at all.
+     * 
+     * @param authTokenStr is the auth token the user logged in with
+     * @return the username of the logged-in user, or null if the auth token is invalid or expired
+     * @throws DatabaseException when the database feels like throwing up a sql error
+     */
+    public String getAuthenticatedUsername(String authTokenStr) throws DatabaseException {
+        if (authTokenStr == null) {
+            return null;
+        }
+        if (SignedAuthTokens.isSignedToken(authTokenStr)) {
+            return this.verifySignedToken(authTokenStr);
+        }
+
+        User authedUser = this.getAuthenticatedUser(authTokenStr);
+        if (authedUser == null) {
+            return null;
+        }
+        return authedUser.getUsername();
+    }
+
     /**
      * Logs in a user and returns their new auth token, or null if unsuccessful.
      * A "login attempt" is successful if the given password matches the password
@@ -53,27 +115,84 @@ public class AuthUtils extends GenericUtility {
      * @throws DatabaseException when the database fails to perform an operation
      */
     public String authenticateUser(String username, String password) throws DatabaseException {
+        LoggedInUser loggedInUser = this.logInUser(username, password);
+        if (loggedInUser == null) {
+            return null;
+        }
+        return loggedInUser.getAuthToken();
+    }
+
+    /**
+     * Logs in a user like authenticateUser(), but also returns the User that
+     * logged in, so callers don't have to look them up again. This costs one
+     * read (the User) and one write (the new auth token, or none at all for
+     * signed auth tokens). Passwords are checked with the PasswordHasher, and
+     * legacy (plaintext or outdated) passwords are rehashed on the way in.
+     * 
+     * @param username is the username of the User attempting to log in
+     * @param password is the password the user gave
+     * @return the new auth token and its User if login was successful, otherwise null
+     * @throws DatabaseException when the database fails to perform an operation
+     */
+    public LoggedInUser logInUser(String username, String password) throws DatabaseException {
         UserAccessor userAcc = new UserAccessor(this.database);
         User user = userAcc.getByUsername(username);
         
-        boolean successfulLogin = user != null && password.equals(user.getPassword());
-        if (successfulLogin) {
-            AuthTokenAccessor authAcc = new AuthTokenAccessor(this.database);
-            String tokenStr = null;
-            while (tokenStr == null) {
-                tokenStr = this.makeAuthTokenString();
-                AuthToken[] tokensToCreate = {new AuthToken(tokenStr, username)};
-                try {
-                    authAcc.create(tokensToCreate);
-                } catch (BadAccessException err) {
-                    // a collision happened! make a new one
-                    tokenStr = null;
-                }
+        // checked even without a user (see PasswordHasher.verify()), so how
+        // long this takes doesn't tell if the username exists
+        String storedPassword = user == null ? null : user.getPassword();
+        boolean successfulLogin = PasswordHasher.verify(password, storedPassword) && user != null;
+        if (!successfulLogin) {
+            return null;
+        }
+        if (PasswordHasher.needsRehash(user.getPassword())) {
+            user.setPassword(PasswordHasher.hash(password));
+            User[] usersToUpdate = {user};
+            try {
+                userAcc.update(usersToUpdate);
+            } catch (BadAccessException err) {
+                throw new AssertionError("User disappeared while logging in");
             }
-            return tokenStr;
-        } else {
+        }
+        return this.issueAuthToken(user);
+    }
+
+    /**
+     * Creates a new auth token for a user without checking their password
+     * (ex. for a user that was just registered)
+     * 
+     * @param user is the User to create the auth token for
+     * @return the new auth token and its User
+     * @throws DatabaseException when the database fails to perform an operation
+     */
+    public LoggedInUser issueAuthToken(User user) throws DatabaseException {
+        String username = user.getUsername();
+        long now = System.currentTimeMillis();
+        if (SignedAuthTokens.isEnabled()) {
+            String tokenStr = SignedAuthTokens.sign(username, now, now + AuthUtils.SIGNED_TOKEN_TTL_MILLIS);
+            return new LoggedInUser(tokenStr, user);
+        }
+
+        AuthTokenAccessor authAcc = new AuthTokenAccessor(this.database);
+        String tokenStr;
+        do {
+            // collisions are astronomically unlikely, but just in case...
+            tokenStr = this.makeAuthTokenString();
+        } while (!authAcc.tryCreate(new AuthToken(tokenStr, username, now, now)));
+        return new LoggedInUser(tokenStr, user);
+    }
+
+    /**
+     * Checks a signed auth token (which are only accepted while signed tokens are enabled)
+     * 
+     * @param authTokenStr is the signed auth token
+     * @return the username the auth token belongs to, or null if it is invalid
+     */
+    private String verifySignedToken(String authTokenStr) {
+        if (!SignedAuthTokens.isEnabled()) {
             return null;
         }
+        return SignedAuthTokens.verify(authTokenStr, System.currentTimeMillis());
     }
 
     /**
@@ -82,12 +201,55 @@ public class AuthUtils extends GenericUtility {
      * @return the auth token
      */
     private String makeAuthTokenString() {
-        SecureRandom rand = new SecureRandom();
         byte[] randomBytes = new byte[8];
-        rand.nextBytes(randomBytes);
+        AuthUtils.random.nextBytes(randomBytes);
         
         Base64.Encoder encoder = Base64.getUrlEncoder();
         String strWithEquals = encoder.encodeToString(randomBytes);
         return strWithEquals.split("=")[0];
     }
+
+    /**
+     * Creates the random source for auth tokens, preferring one that never
+     * blocks waiting for entropy
+     * 
+     * @return the random source
+     */
+    static private SecureRandom createRandom() {
+        try {
+            return SecureRandom.getInstance("NativePRNGNonBlocking");
+        } catch (NoSuchAlgorithmException err) {
+            // not on this platform (ex. Windows), where the default doesn't block anyway
+            return new SecureRandom();
+        }
+    }
+
+    /**
+     * A newly logged in User, along with their new auth token (see logInUser())
+     */
+    public class LoggedInUser {
+        /** The new auth token */
+        private String authToken;
+        /** The User that logged in */
+        private User user;
+
+        /**
+         * Creates a new LoggedInUser
+         * 
+         * @param authToken is the new auth token
+         * @param user is the User that logged in
+         */
+        public LoggedInUser(String authToken, User user) {
+            this.authToken = authToken;
+            this.user = user;
+        }
+
+        public String getAuthToken() {
+            return this.authToken;
+        }
+
+        public User getUser() {
+            return this.user;
+        }
+    }
 }
@@ -1,5 +1,15 @@
 package utils;
 
+import java.io.IOException;
+import java.io.Reader;
+import java.lang.reflect.Array;
+import java.util.ArrayList;
+import java.util.function.Consumer;
+
+import com.google.gson.Gson;
+import com.google.gson.JsonParseException;
+import com.google.gson.stream.JsonReader;
+
 import dataAccess.*;
 import models.*;
 
@@ -7,6 +17,9 @@ import models.*;
  * Contains helpful functions that involve operating on all models in the database
  */
 public class BulkUtils extends GenericUtility {
+    /** The number of models inserted per statement by streamed loads */
+    static final int STREAMED_BATCH_SIZE = 500;
+
     /**
      * Creates a new BulkUtils instance, given some database to work on
      * 
@@ -25,6 +38,20 @@ public class BulkUtils extends GenericUtility {
         this.database.reset();
     }
 
+    /**
+     * Deletes every model from the database through the Accessors. Unlike
+     * clearDatabase(), this is part of the current transaction (so it can be
+     * rolled back with whatever fails after it).
+     * 
+     * @throws DatabaseException when the database has a bad day
+     */
+    public void deleteAllData() throws DatabaseException {
+        new AuthTokenAccessor(this.database).clear();
+        new EventAccessor(this.database).clear();
+        new PersonAccessor(this.database).clear();
+        new UserAccessor(this.database).clear();
+    }
+
     /**
      * Removes anything that has an "associatedUsername" pointing to the user
      * 
@@ -93,9 +120,170 @@ public class BulkUtils extends GenericUtility {
                 // add auth tokens
                 AuthTokenAccessor authTokenAcc = new AuthTokenAccessor(this.database);
                 authTokenAcc.create(authTokens);
+
+                // tag father's/mother's side for the loaded users
+                new PersonSides(this.database).tagStaleUsers();
             } catch (BadAccessException err) {
                 throw new DatabaseException(err.getMessage());
             }
         });
     }
+
+    /**
+     * Loads data into the database straight from its JSON representation (the
+     * same format as a LoadRequest), inserting models in batches as they are
+     * parsed. Only one batch is held in memory at a time, no matter how much
+     * data is loaded. Everything is loaded in a single transaction, which is
+     * rolled back if the loaded data references anything that wasn't loaded.
+     * When replacing the existing data, it is deleted in that same
+     * transaction, so a failed load leaves it alone.
+     * 
+     * @param jsonData is the reader for the JSON data to load
+     * @param replaceExisting is if all existing data should be deleted first
+     * @return a StreamedLoad, describing how much was loaded (and how fast)
+     * @throws DatabaseException when the data is malformed, or the database throws up (a sql error, that is)
+     */
+    public StreamedLoad streamIntoDatabase(Reader jsonData, boolean replaceExisting) throws DatabaseException {
+        StreamedLoad load = new StreamedLoad();
+        ReferenceValidator validator = new ReferenceValidator();
+        long startTime = System.nanoTime();
+        this.database.load(() -> {
+            if (replaceExisting) {
+                this.deleteAllData();
+            }
+            try {
+                JsonReader jsonReader = new JsonReader(jsonData);
+                jsonReader.beginObject();
+                while (jsonReader.hasNext()) {
+                    String arrayName = jsonReader.nextName();
+                    if (arrayName.equals("users")) {
+                        UserAccessor userAcc = new UserAccessor(this.database);
+                        load.numUsersCreated += this.streamArrayIntoDatabase(jsonReader, User.class, userAcc, validator::addUsers);
+                    } else if (arrayName.equals("persons")) {
+                        PersonAccessor personAcc = new PersonAccessor(this.database);
+                        load.numPersonsCreated += this.streamArrayIntoDatabase(jsonReader, Person.class, personAcc, validator::addPersons);
+                    } else if (arrayName.equals("events")) {
+                        EventAccessor eventAcc = new EventAccessor(this.database);
+                        load.numEventsCreated += this.streamArrayIntoDatabase(jsonReader, Event.class, eventAcc, validator::addEvents);
+                    } else {
+                        jsonReader.skipValue();
+                    }
+                }
+                jsonReader.endObject();
+
+                // throwing here rolls back everything that was inserted
+                ArrayList<String> problems = validator.findProblems();
+                if (problems.size() > 0) {
+                    throw new DatabaseException(ReferenceValidator.createReport(problems));
+                }
+
+                // tag father's/mother's side once every user and person is in
+                new PersonSides(this.database).tagStaleUsers();
+            } catch (IOException | JsonParseException | IllegalStateException err) {
+                throw new DatabaseException("Load data could not be parsed: " + err.getMessage());
+            } catch (BadAccessException err) {
+                throw new DatabaseException(err.getMessage());
+            }
+        });
+        load.elapsedNanos = System.nanoTime() - startTime;
+        return load;
+    }
+
+    /**
+     * Reads a JSON array of models, creating them in the database in batches
+     * 
+     * @param <ModelType> is the type of model in the array
+     * @param jsonReader is the reader, positioned at the start of the array
+     * @param modelClass is the class of the models in the array
+     * @param accessor is the Accessor to create the models with
+     * @param batchCallback is called with each batch of models as it is created
+     * @return the number of models created
+     * @throws IOException when the JSON can't be read
+     * @throws BadAccessException when a model already exists
+     * @throws DatabaseException when another database error occurs
+     */
+    private <ModelType> int streamArrayIntoDatabase(JsonReader jsonReader, Class<ModelType> modelClass, Accessor<ModelType> accessor, Consumer<ModelType[]> batchCallback) throws IOException, BadAccessException, DatabaseException {
+        Gson gson = new Gson();
+        ArrayList<ModelType> batch = new ArrayList<>(BulkUtils.STREAMED_BATCH_SIZE);
+        int numCreated = 0;
+        jsonReader.beginArray();
+        while (jsonReader.hasNext()) {
+            ModelType model = gson.fromJson(jsonReader, modelClass);
+            batch.add(model);
+            if (batch.size() == BulkUtils.STREAMED_BATCH_SIZE) {
+                numCreated += this.createBatch(batch, modelClass, accessor, batchCallback);
+            }
+        }
+        jsonReader.endArray();
+        numCreated += this.createBatch(batch, modelClass, accessor, batchCallback);
+        return numCreated;
+    }
+
+    /**
+     * Creates (and then clears) a batch of models in the database
+     * 
+     * @param <ModelType> is the type of model in the batch
+     * @param batch is the list of models to create
+     * @param modelClass is the class of the models in the batch
+     * @param accessor is the Accessor to create the models with
+     * @param batchCallback is called with the batch of models after they are created
+     * @return the number of models created
+     * @throws BadAccessException when a model already exists
+     * @throws DatabaseException when another database error occurs
+     */
+    private <ModelType> int createBatch(ArrayList<ModelType> batch, Class<ModelType> modelClass, Accessor<ModelType> accessor, Consumer<ModelType[]> batchCallback) throws BadAccessException, DatabaseException {
+        @SuppressWarnings("unchecked")
+        ModelType[] models = batch.toArray((ModelType[]) Array.newInstance(modelClass, batch.size()));
+        accessor.create(models);
+        batchCallback.accept(models);
+        batch.clear();
+        return models.length;
+    }
+
+    /**
+     * Records what happened during a streamed load (see streamIntoDatabase())
+     */
+    public class StreamedLoad {
+        /** The number of Users created */
+        private int numUsersCreated;
+        /** The number of Persons created */
+        private int numPersonsCreated;
+        /** The number of Events created */
+        private int numEventsCreated;
+        /** How long the load took, in nanoseconds */
+        private long elapsedNanos;
+
+        /**
+         * Creates a new, blank StreamedLoad
+         */
+        public StreamedLoad() {
+            this.numUsersCreated = 0;
+            this.numPersonsCreated = 0;
+            this.numEventsCreated = 0;
+            this.elapsedNanos = 0;
+        }
+
+        public int getNumUsersCreated() {
+            return this.numUsersCreated;
+        }
+
+        public int getNumPersonsCreated() {
+            return this.numPersonsCreated;
+        }
+
+        public int getNumEventsCreated() {
+            return this.numEventsCreated;
+        }
+
+        /**
+         * Returns the throughput of the load
+         * 
+         * @return the number of rows created per second
+         */
+        public double getRowsPerSecond() {
+            int numRows = this.numUsersCreated + this.numPersonsCreated + this.numEventsCreated;
+            double elapsedSeconds = Math.max(this.elapsedNanos, 1) / 1e9;
+            return numRows / elapsedSeconds;
+        }
+    }
 }
@@ -0,0 +1,117 @@
+package utils;
+
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import dataAccess.*;
+
+/**
+ * Keeps the changelog table from growing forever. Every COMPACT_INTERVAL_MILLIS,
+ * a background thread deletes changes that were superseded by newer changes
+ * to the same model (only the latest one matters to a sync), and then deletions
+ * older than DELETION_TTL_MILLIS (clients that haven't synced since then have
+ * to sync everything again anyway; see ChangeLog).
+ *
+ * Like the AuthTokenSweeper, both happen in chunks of COMPACT_CHUNK_SIZE,
+ * committing after each chunk, so the compactor never holds the write lock for long.
+ */
+public class ChangeLogCompactor {
+    /** How often the compactor runs */
+    static final long COMPACT_INTERVAL_MILLIS = TimeUnit.MINUTES.toMillis(5);
+    /** How long deletions are kept for syncing clients */
+    static final long DELETION_TTL_MILLIS = TimeUnit.DAYS.toMillis(30);
+    /** The number of changes deleted per transaction */
+    static final int COMPACT_CHUNK_SIZE = 500;
+
+    /** The number of changes deleted so far */
+    static private final AtomicLong numChangesCompacted = new AtomicLong();
+    /** The background thread running compactions, or null if the compactor is not running */
+    static private ScheduledExecutorService executor;
+
+    /**
+     * Starts compacting in the background, if the compactor isn't already running
+     */
+    static public synchronized void start() {
+        if (ChangeLogCompactor.executor != null) {
+            return;
+        }
+        ChangeLogCompactor.executor = Executors.newSingleThreadScheduledExecutor((runnable) -> {
+            Thread thread = new Thread(runnable, "ChangeLogCompactor");
+            thread.setDaemon(true);
+            return thread;
+        });
+        ChangeLogCompactor.executor.scheduleWithFixedDelay(
+            ChangeLogCompactor::runScheduledCompaction,
+            ChangeLogCompactor.COMPACT_INTERVAL_MILLIS, ChangeLogCompactor.COMPACT_INTERVAL_MILLIS, TimeUnit.MILLISECONDS
+        );
+    }
+
+    /**
+     * Stops compacting in the background
+     */
+    static public synchronized void stop() {
+        if (ChangeLogCompactor.executor != null) {
+            ChangeLogCompactor.executor.shutdownNow();
+            ChangeLogCompactor.executor = null;
+        }
+    }
+
+    static public long getNumChangesCompacted() {
+        return ChangeLogCompactor.numChangesCompacted.get();
+    }
+
+    /**
+     * Deletes every superseded change, then every deletion older than DELETION_TTL_MILLIS
+     *
+     * @return the number of changes deleted
+     * @throws DatabaseException when the database has a bad day
+     */
+    static public int compact() throws DatabaseException {
+        return ChangeLogCompactor.compact(System.currentTimeMillis() - ChangeLogCompactor.DELETION_TTL_MILLIS);
+    }
+
+    /**
+     * Deletes every superseded change, then every deletion older than a given time
+     *
+     * @param deletedBefore is the time (in epoch milliseconds) deletions must be older than to be compacted
+     * @return the number of changes deleted
+     * @throws DatabaseException when the database has a bad day
+     */
+    static int compact(long deletedBefore) throws DatabaseException {
+        int numCompacted = 0;
+        try (Database database = new Database()) {
+            ChangeLog changeLog = new ChangeLog(database);
+            int numDeleted;
+            do {
+                numDeleted = changeLog.deleteSuperseded(ChangeLogCompactor.COMPACT_CHUNK_SIZE);
+                database.commit();
+                numCompacted += numDeleted;
+            } while (numDeleted == ChangeLogCompactor.COMPACT_CHUNK_SIZE);
+
+            do {
+                numDeleted = changeLog.deleteOldDeletions(deletedBefore, ChangeLogCompactor.COMPACT_CHUNK_SIZE);
+                database.commit();
+                numCompacted += numDeleted;
+            } while (numDeleted == ChangeLogCompactor.COMPACT_CHUNK_SIZE);
+        }
+        ChangeLogCompactor.numChangesCompacted.addAndGet(numCompacted);
+        return numCompacted;
+    }
+
+    /**
+     * Runs a compaction from the background thread. Errors are only logged,
+     * since throwing would cancel all future compactions.
+     */
+    static private void runScheduledCompaction() {
+        try {
+            int numCompacted = ChangeLogCompactor.compact();
+            if (numCompacted > 0) {
+                System.out.println(String.format("Compacted %d changelog entries", numCompacted));
+            }
+        } catch (Throwable err) {
+            System.out.println("Changelog compaction failed: " + err.getClass().getName() + ": " + err.getMessage());
+        }
+    }
+}
@@ -0,0 +1,461 @@
+package utils;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+
+import dataAccess.FamilyTree;
+
+/**
+ * Answers questions like "how is this Person related to that one" about a
+ * user's FamilyTree. The tree already keeps each Person's father, mother,
+ * spouse, and children as indexes in plain int arrays, so even a
+ * 20-generation tree can be searched without making millions of objects.
+ *
+ * Relationships are found with a bidirectional breadth-first search over the
+ * father, mother, spouse, and child edges: both Persons search outwards one
+ * level at a time (whichever side has the smaller frontier goes next) until
+ * the searches meet. Since each side only has to go half the distance, this
+ * visits far fewer Persons than a search from one side would.
+ */
+public class FamilyGraph {
+    /** The edge from a Person to one of their parents */
+    static private final byte PARENT_EDGE = 0;
+    /** The edge from a Person to one of their children */
+    static private final byte CHILD_EDGE = 1;
+    /** The edge from a Person to their spouse */
+    static private final byte SPOUSE_EDGE = 2;
+
+    /** The tree being searched */
+    private FamilyTree tree;
+
+    /**
+     * Creates a graph for searching a family tree
+     *
+     * @param tree is the tree to search
+     */
+    public FamilyGraph(FamilyTree tree) {
+        this.tree = tree;
+    }
+
+    /**
+     * Indicates if a Person is in the graph
+     *
+     * @param personID is the personID of the Person
+     * @return whether the Person is in the graph
+     */
+    public boolean contains(String personID) {
+        return this.tree.getPersonIndex(personID) != FamilyTree.NONE;
+    }
+
+    /**
+     * Finds the shortest chain of father, mother, spouse, and child
+     * relationships from one Person to another
+     *
+     * @param fromPersonID is the personID of the Person to start from
+     * @param toPersonID is the personID of the Person to end at
+     * @return the Relationship, or null if either Person isn't in the graph or they aren't related
+     */
+    public Relationship findRelationship(String fromPersonID, String toPersonID) {
+        if (!this.contains(fromPersonID) || !this.contains(toPersonID)) {
+            return null;
+        }
+        int fromIdx = this.tree.getPersonIndex(fromPersonID);
+        int toIdx = this.tree.getPersonIndex(toPersonID);
+        if (fromIdx == toIdx) {
+            return new Relationship(new int[]{fromIdx}, new byte[0]);
+        }
+
+        // for each side, how far each Person is from it (-1 if not reached),
+        // the Person it was reached from, and the edge it was reached by
+        int numPersons = this.tree.getNumPersons();
+        int[] fromDists = new int[numPersons];
+        int[] toDists = new int[numPersons];
+        Arrays.fill(fromDists, -1);
+        Arrays.fill(toDists, -1);
+        int[] fromPrevs = new int[numPersons];
+        int[] toPrevs = new int[numPersons];
+        byte[] fromEdges = new byte[numPersons];
+        byte[] toEdges = new byte[numPersons];
+        fromDists[fromIdx] = 0;
+        toDists[toIdx] = 0;
+        int[] fromFrontier = {fromIdx};
+        int[] toFrontier = {toIdx};
+
+        int meetingIdx = FamilyTree.NONE;
+        while (meetingIdx == FamilyTree.NONE && fromFrontier.length > 0 && toFrontier.length > 0) {
+            if (fromFrontier.length <= toFrontier.length) {
+                fromFrontier = this.expandFrontier(fromFrontier, fromDists, fromPrevs, fromEdges);
+                meetingIdx = this.findClosestMeeting(fromFrontier, fromDists, toDists);
+            } else {
+                toFrontier = this.expandFrontier(toFrontier, toDists, toPrevs, toEdges);
+                meetingIdx = this.findClosestMeeting(toFrontier, fromDists, toDists);
+            }
+        }
+        if (meetingIdx == FamilyTree.NONE) {
+            return null;
+        }
+
+        // the "from" side is walked backwards from the meeting point, and the
+        // "to" side forwards (with each edge flipped, since it was found from the other end)
+        int pathLength = fromDists[meetingIdx] + toDists[meetingIdx];
+        int[] path = new int[pathLength + 1];
+        byte[] edges = new byte[pathLength];
+        int pathIdx = fromDists[meetingIdx];
+        for (int personIdx = meetingIdx; personIdx != fromIdx; personIdx = fromPrevs[personIdx]) {
+            path[pathIdx] = personIdx;
+            edges[pathIdx - 1] = fromEdges[personIdx];
+            --pathIdx;
+        }
+        path[0] = fromIdx;
+        pathIdx = fromDists[meetingIdx];
+        for (int personIdx = meetingIdx; personIdx != toIdx; personIdx = toPrevs[personIdx]) {
+            edges[pathIdx] = FamilyGraph.flipEdge(toEdges[personIdx]);
+            ++pathIdx;
+            path[pathIdx] = toPrevs[personIdx];
+        }
+        return new Relationship(path, edges);
+    }
+
+    /**
+     * Returns the gender of a Person
+     *
+     * @param personIdx is the index of the Person
+     * @return the Person's gender
+     */
+    private String getGender(int personIdx) {
+        return this.tree.getPersonAt(personIdx).getGender();
+    }
+
+    /**
+     * Moves one side of the search out by one level, recording how each
+     * newly reached Person was reached
+     *
+     * @param frontier is the Persons reached in the last level
+     * @param dists is the distance of each Person from this side (-1 if not reached)
+     * @param prevs is the Person each Person was reached from
+     * @param edges is the edge each Person was reached by
+     * @return the Persons reached in the new level
+     */
+    private int[] expandFrontier(int[] frontier, int[] dists, int[] prevs, byte[] edges) {
+        int[] nextFrontier = new int[frontier.length * 4];
+        int numNext = 0;
+        for (int personIdx : frontier) {
+            int numNeighbors = 3 + this.tree.getNumChildren(personIdx);
+            for (int neighborNum = 0; neighborNum < numNeighbors; ++neighborNum) {
+                int neighborIdx;
+                byte edge;
+                if (neighborNum == 0) {
+                    neighborIdx = this.tree.getFatherIndex(personIdx);
+                    edge = FamilyGraph.PARENT_EDGE;
+                } else if (neighborNum == 1) {
+                    neighborIdx = this.tree.getMotherIndex(personIdx);
+                    edge = FamilyGraph.PARENT_EDGE;
+                } else if (neighborNum == 2) {
+                    neighborIdx = this.tree.getSpouseIndex(personIdx);
+                    edge = FamilyGraph.SPOUSE_EDGE;
+                } else {
+                    neighborIdx = this.tree.getChildIndex(personIdx, neighborNum - 3);
+                    edge = FamilyGraph.CHILD_EDGE;
+                }
+
+                if (neighborIdx != FamilyTree.NONE && dists[neighborIdx] == -1) {
+                    dists[neighborIdx] = dists[personIdx] + 1;
+                    prevs[neighborIdx] = personIdx;
+                    edges[neighborIdx] = edge;
+                    if (numNext == nextFrontier.length) {
+                        nextFrontier = Arrays.copyOf(nextFrontier, numNext * 2);
+                    }
+                    nextFrontier[numNext] = neighborIdx;
+                    ++numNext;
+                }
+            }
+        }
+        return Arrays.copyOf(nextFrontier, numNext);
+    }
+
+    /**
+     * Finds the Person in a new frontier that both sides have reached with
+     * the shortest total distance (checking the whole level, not just the
+     * first meeting, keeps the path the shortest one)
+     *
+     * @param frontier is the Persons just reached by one side
+     * @param fromDists is the distance of each Person from the "from" side
+     * @param toDists is the distance of each Person from the "to" side
+     * @return the index of the closest meeting Person, or NONE if the sides haven't met
+     */
+    private int findClosestMeeting(int[] frontier, int[] fromDists, int[] toDists) {
+        int meetingIdx = FamilyTree.NONE;
+        int meetingDist = Integer.MAX_VALUE;
+        for (int personIdx : frontier) {
+            if (fromDists[personIdx] != -1 && toDists[personIdx] != -1) {
+                int dist = fromDists[personIdx] + toDists[personIdx];
+                if (dist < meetingDist) {
+                    meetingIdx = personIdx;
+                    meetingDist = dist;
+                }
+            }
+        }
+        return meetingIdx;
+    }
+
+    /**
+     * Returns the edge going the other way (parent <-> child)
+     *
+     * @param edge is the edge to flip
+     * @return the flipped edge
+     */
+    static private byte flipEdge(byte edge) {
+        if (edge == FamilyGraph.PARENT_EDGE) {
+            return FamilyGraph.CHILD_EDGE;
+        } else if (edge == FamilyGraph.CHILD_EDGE) {
+            return FamilyGraph.PARENT_EDGE;
+        } else {
+            return edge;
+        }
+    }
+
+    /**
+     * Picks the word for a relative based on their gender
+     *
+     * @param gender is the gender of the relative ("m" or "f")
+     * @param maleWord is the word for a male relative
+     * @param femaleWord is the word for a female relative
+     * @param neutralWord is the word when the gender isn't known
+     * @return the word for the relative
+     */
+    static private String genderedWord(String gender, String maleWord, String femaleWord, String neutralWord) {
+        if ("m".equals(gender)) {
+            return maleWord;
+        } else if ("f".equals(gender)) {
+            return femaleWord;
+        } else {
+            return neutralWord;
+        }
+    }
+
+    /**
+     * Returns an ordinal number as words (first, second, ..., 11th, 21st, ...)
+     *
+     * @param number is the (positive) number
+     * @return the ordinal
+     */
+    static private String ordinal(int number) {
+        String[] words = {"first", "second", "third"};
+        if (number <= words.length) {
+            return words[number - 1];
+        }
+        boolean isTeen = number % 100 >= 11 && number % 100 <= 13;
+        if (!isTeen && number % 10 == 1) {
+            return number + "st";
+        } else if (!isTeen && number % 10 == 2) {
+            return number + "nd";
+        } else if (!isTeen && number % 10 == 3) {
+            return number + "rd";
+        } else {
+            return number + "th";
+        }
+    }
+
+    /**
+     * The chain of relationships from one Person to another, as found by
+     * findRelationship()
+     */
+    public class Relationship {
+        /** The indexes of each Person along the way, starting with the first Person and ending with the second */
+        private int[] path;
+        /** The edge from each Person in the path to the next one */
+        private byte[] edges;
+
+        /**
+         * Creates a Relationship from a path through the graph
+         *
+         * @param path is the indexes of each Person along the way
+         * @param edges is the edge from each Person in the path to the next one
+         */
+        private Relationship(int[] path, byte[] edges) {
+            this.path = path;
+            this.edges = edges;
+        }
+
+        /**
+         * Returns the personIDs of each Person along the way, starting with
+         * the first Person and ending with the second
+         *
+         * @return the personIDs
+         */
+        public String[] getPersonIDs() {
+            String[] pathIDs = new String[this.path.length];
+            for (int pathIdx = 0; pathIdx < this.path.length; ++pathIdx) {
+                pathIDs[pathIdx] = FamilyGraph.this.tree.getPersonAt(this.path[pathIdx]).getPersonID();
+            }
+            return pathIDs;
+        }
+
+        /**
+         * Returns what each Person along the way is to the Person before them
+         * (ex. "father", "wife", "son")
+         *
+         * @return the steps, one less than the number of Persons
+         */
+        public String[] getSteps() {
+            String[] steps = new String[this.edges.length];
+            for (int edgeIdx = 0; edgeIdx < this.edges.length; ++edgeIdx) {
+                String gender = FamilyGraph.this.getGender(this.path[edgeIdx + 1]);
+                if (this.edges[edgeIdx] == FamilyGraph.PARENT_EDGE) {
+                    steps[edgeIdx] = FamilyGraph.genderedWord(gender, "father", "mother", "parent");
+                } else if (this.edges[edgeIdx] == FamilyGraph.CHILD_EDGE) {
+                    steps[edgeIdx] = FamilyGraph.genderedWord(gender, "son", "daughter", "child");
+                } else {
+                    steps[edgeIdx] = FamilyGraph.genderedWord(gender, "husband", "wife", "spouse");
+                }
+            }
+            return steps;
+        }
+
+        /**
+         * Returns what the second Person is to the first, in kinship terms
+         * (ex. "grandmother", "second cousin once removed", "brother-in-law").
+         * Chains that have no single word are joined with "'s" (ex. "wife's
+         * first cousin").
+         *
+         * @return the kinship label
+         */
+        public String getLabel() {
+            if (this.edges.length == 0) {
+                return "self";
+            }
+
+            // split into runs of ups-then-downs (blood relatives) and spouses;
+            // each part is {ups, downs, index in path of the Person it ends at}
+            ArrayList<int[]> parts = new ArrayList<>();
+            int ups = 0;
+            int downs = 0;
+            for (int edgeIdx = 0; edgeIdx < this.edges.length; ++edgeIdx) {
+                byte edge = this.edges[edgeIdx];
+                boolean endsRun = edge == FamilyGraph.SPOUSE_EDGE || (edge == FamilyGraph.PARENT_EDGE && downs > 0);
+                if (endsRun && ups + downs > 0) {
+                    parts.add(new int[]{ups, downs, edgeIdx});
+                    ups = 0;
+                    downs = 0;
+                }
+                if (edge == FamilyGraph.SPOUSE_EDGE) {
+                    parts.add(new int[]{0, 0, edgeIdx + 1});
+                } else if (edge == FamilyGraph.PARENT_EDGE) {
+                    ++ups;
+                } else {
+                    ++downs;
+                }
+            }
+            if (ups + downs > 0) {
+                parts.add(new int[]{ups, downs, this.edges.length});
+            }
+
+            String inLawLabel = this.findInLawLabel(parts);
+            if (inLawLabel != null) {
+                return inLawLabel;
+            }
+            StringBuilder label = new StringBuilder();
+            for (int[] part : parts) {
+                if (label.length() > 0) {
+                    label.append("'s ");
+                }
+                label.append(this.labelPart(part));
+            }
+            return label.toString();
+        }
+
+        /**
+         * Returns the single-word label for a relative by marriage (parent-,
+         * child-, or sibling-in-law, step-parent, or step-child), if the parts
+         * of the relationship make one
+         *
+         * @param parts is the parts of the relationship (see getLabel())
+         * @return the label, or null if there isn't a single word for it
+         */
+        private String findInLawLabel(ArrayList<int[]> parts) {
+            if (parts.size() != 2) {
+                return null;
+            }
+            int[] first = parts.get(0);
+            int[] second = parts.get(1);
+            String gender = FamilyGraph.this.getGender(this.path[second[2]]);
+            boolean firstIsSpouse = first[0] + first[1] == 0;
+            boolean secondIsSpouse = second[0] + second[1] == 0;
+            if (firstIsSpouse && !secondIsSpouse) {
+                int[] blood = second;
+                if (blood[0] == 1 && blood[1] == 0) {
+                    return FamilyGraph.genderedWord(gender, "father", "mother", "parent") + "-in-law";
+                } else if (blood[0] == 1 && blood[1] == 1) {
+                    return FamilyGraph.genderedWord(gender, "brother", "sister", "sibling") + "-in-law";
+                } else if (blood[0] == 0 && blood[1] == 1) {
+                    return "step" + FamilyGraph.genderedWord(gender, "son", "daughter", "child");
+                }
+            } else if (!firstIsSpouse && secondIsSpouse) {
+                int[] blood = first;
+                if (blood[0] == 0 && blood[1] == 1) {
+                    return FamilyGraph.genderedWord(gender, "son", "daughter", "child") + "-in-law";
+                } else if (blood[0] == 1 && blood[1] == 1) {
+                    return FamilyGraph.genderedWord(gender, "brother", "sister", "sibling") + "-in-law";
+                } else if (blood[0] == 1 && blood[1] == 0) {
+                    return "step" + FamilyGraph.genderedWord(gender, "father", "mother", "parent");
+                }
+            }
+            return null;
+        }
+
+        /**
+         * Returns the label for one part of a relationship
+         *
+         * @param part is the part (see getLabel())
+         * @return the label, like "husband", "uncle", or "first cousin"
+         */
+        private String labelPart(int[] part) {
+            int ups = part[0];
+            int downs = part[1];
+            String gender = FamilyGraph.this.getGender(this.path[part[2]]);
+            if (ups == 0 && downs == 0) {
+                return FamilyGraph.genderedWord(gender, "husband", "wife", "spouse");
+            } else if (downs == 0) {
+                String word = FamilyGraph.genderedWord(gender, "father", "mother", "parent");
+                return this.grandPrefix(ups) + word;
+            } else if (ups == 0) {
+                String word = FamilyGraph.genderedWord(gender, "son", "daughter", "child");
+                return this.grandPrefix(downs) + word;
+            } else if (ups == 1 && downs == 1) {
+                return FamilyGraph.genderedWord(gender, "brother", "sister", "sibling");
+            } else if (downs == 1) {
+                String word = FamilyGraph.genderedWord(gender, "uncle", "aunt", "aunt or uncle");
+                return "great-".repeat(ups - 2) + word;
+            } else if (ups == 1) {
+                String word = FamilyGraph.genderedWord(gender, "nephew", "niece", "niece or nephew");
+                return "great-".repeat(downs - 2) + word;
+            } else {
+                int degree = Math.min(ups, downs) - 1;
+                int removed = Math.abs(ups - downs);
+                String label = FamilyGraph.ordinal(degree) + " cousin";
+                if (removed == 1) {
+                    label += " once removed";
+                } else if (removed == 2) {
+                    label += " twice removed";
+                } else if (removed > 2) {
+                    label += " " + removed + " times removed";
+                }
+                return label;
+            }
+        }
+
+        /**
+         * Returns the prefix for a direct ancestor or descendant some
+         * generations away ("", "grand", "great-grand", ...)
+         *
+         * @param numGenerations is the number of generations away (at least 1)
+         * @return the prefix
+         */
+        private String grandPrefix(int numGenerations) {
+            if (numGenerations == 1) {
+                return "";
+            }
+            return "great-".repeat(numGenerations - 2) + "grand";
+        }
+    }
+}
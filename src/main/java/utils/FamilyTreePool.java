@@ -0,0 +1,153 @@
+package utils;
+
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.atomic.AtomicLong;
+
+import models.User;
+
+/**
+ * Keeps a pool of pre-generated (default sized) family trees, so that
+ * registering a user doesn't have to pay for generating one. The trees are
+ * generated for a placeholder user by a background thread, and are rebound
+ * to the real user when claimed (see FamilyTreeUtils.bindFamilyTree()).
+ *
+ * The pool refills itself whenever it drops below LOW_WATERMARK, and stops
+ * refilling once it holds HIGH_WATERMARK trees.
+ *
+ * A refill thread only adds trees while it is still the pool's refill thread,
+ * so one that was stopped in the middle of generating a tree (and is still
+ * finishing it) never adds anything after stop(), even if the pool was
+ * started again with a new thread in the meantime.
+ */
+public class FamilyTreePool {
+    /** When the pool holds fewer trees than this, it is refilled */
+    static final int LOW_WATERMARK = 8;
+    /** The number of trees the pool is refilled to */
+    static final int HIGH_WATERMARK = 32;
+    /** The user that pooled trees are generated for before being claimed */
+    static final User PLACEHOLDER_USER = new User(
+        "(pooled family tree)", null, null, "(pooled)", "(pooled)", "f", null
+    );
+
+    /** The pre-generated trees that are ready to be claimed */
+    static private final LinkedBlockingQueue<FamilyTreeUtils.GenerationAttempt> pool = new LinkedBlockingQueue<>();
+    /** Used by claim() to wake up the refill thread */
+    static private final Object refillSignal = new Object();
+    /** The number of trees that were successfully claimed from the pool */
+    static private final AtomicLong numPoolHits = new AtomicLong();
+    /** The number of claims that found the pool empty (and had to generate on the spot) */
+    static private final AtomicLong numFallbacks = new AtomicLong();
+    /** The background thread generating trees, or null if the pool is not running */
+    static private volatile Thread refillThread;
+
+    /**
+     * Starts the background refill thread, if it isn't already running
+     */
+    static public synchronized void start() {
+        if (FamilyTreePool.refillThread != null) {
+            return;
+        }
+        FamilyTreePool.refillThread = new Thread(FamilyTreePool::runRefillLoop, "FamilyTreePool-refill");
+        // don't keep the server alive just to make family trees...
+        FamilyTreePool.refillThread.setDaemon(true);
+        FamilyTreePool.refillThread.start();
+    }
+
+    /**
+     * Stops the background refill thread and throws away any pooled trees
+     */
+    static public synchronized void stop() {
+        if (FamilyTreePool.refillThread != null) {
+            FamilyTreePool.refillThread.interrupt();
+            FamilyTreePool.refillThread = null;
+        }
+        FamilyTreePool.pool.clear();
+    }
+
+    /**
+     * Takes a pre-generated family tree out of the pool. The tree still belongs
+     * to the placeholder user, and must be rebound before it is saved.
+     *
+     * @return the unsaved GenerationAttempt, or null if the pool was empty
+     */
+    static FamilyTreeUtils.GenerationAttempt claim() {
+        FamilyTreeUtils.GenerationAttempt attempt = FamilyTreePool.pool.poll();
+        if (attempt == null) {
+            FamilyTreePool.numFallbacks.incrementAndGet();
+        } else {
+            FamilyTreePool.numPoolHits.incrementAndGet();
+        }
+
+        if (FamilyTreePool.pool.size() < FamilyTreePool.LOW_WATERMARK) {
+            synchronized (FamilyTreePool.refillSignal) {
+                FamilyTreePool.refillSignal.notify();
+            }
+        }
+        return attempt;
+    }
+
+    static public long getNumPoolHits() {
+        return FamilyTreePool.numPoolHits.get();
+    }
+
+    static public long getNumFallbacks() {
+        return FamilyTreePool.numFallbacks.get();
+    }
+
+    static public int getPoolSize() {
+        return FamilyTreePool.pool.size();
+    }
+
+    /**
+     * The loop run by the refill thread. It sleeps until the pool is low, then
+     * generates trees until the pool is full again.
+     */
+    static private void runRefillLoop() {
+        // generating doesn't touch the database, so none is needed
+        FamilyTreeUtils famTreeUtils = new FamilyTreeUtils(null);
+        try {
+            while (FamilyTreePool.isRefillThread()) {
+                synchronized (FamilyTreePool.refillSignal) {
+                    while (FamilyTreePool.pool.size() >= FamilyTreePool.LOW_WATERMARK) {
+                        FamilyTreePool.refillSignal.wait();
+                    }
+                }
+                while (FamilyTreePool.pool.size() < FamilyTreePool.HIGH_WATERMARK && FamilyTreePool.isRefillThread()) {
+                    FamilyTreeUtils.GenerationAttempt attempt = famTreeUtils.generateUnsavedFamilyTree(
+                        FamilyTreePool.PLACEHOLDER_USER, FamilyTreeUtils.NUM_GENERATIONS
+                    );
+                    if (!FamilyTreePool.offer(attempt)) {
+                        return;
+                    }
+                }
+            }
+        } catch (InterruptedException err) {
+            // stop() was called; just let the thread finish
+        }
+    }
+
+    /**
+     * Indicates if the calling thread is (still) the pool's refill thread
+     *
+     * @return whether stop() (or a stop() and start()) hasn't replaced it
+     */
+    static private boolean isRefillThread() {
+        return FamilyTreePool.refillThread == Thread.currentThread();
+    }
+
+    /**
+     * Adds a generated tree to the pool, unless the calling thread was
+     * stopped while generating it (checked under the same lock as stop(), so
+     * nothing is added once it returns)
+     *
+     * @param attempt is the generated tree
+     * @return whether the tree was added (and the thread should keep going)
+     */
+    static private synchronized boolean offer(FamilyTreeUtils.GenerationAttempt attempt) {
+        if (!FamilyTreePool.isRefillThread()) {
+            return false;
+        }
+        FamilyTreePool.pool.offer(attempt);
+        return true;
+    }
+}
@@ -5,6 +5,7 @@ import java.io.FileNotFoundException;
 import java.io.FileReader;
 
 import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.Random;
 
 import com.google.gson.Gson;
@@ -14,7 +15,7 @@ import models.*;
 
 public class FamilyTreeUtils extends GenericUtility {
     /** The default number of generations to generate when one isn't provided */
-    static final int NUM_GENERATIONS = 4;
+    static public final int NUM_GENERATIONS = 4;
     
     /**
      * Creates a new FamilyTreeUtils instance with a database to work with
@@ -35,7 +36,68 @@ public class FamilyTreeUtils extends GenericUtility {
      * @throws DatabaseException whenever another database error occurs
      */
     public GenerationAttempt generateFamilyTree(User user, int numGenerations) throws DatabaseException, BadAccessException {
+        GenerationAttempt attempt = this.generateUnsavedFamilyTree(user, numGenerations);
+        this.saveFamilyTree(user, attempt);
+        return attempt;
+    }
+    
+    /**
+     * Generates a fake family tree with a default number of generations
+     * 
+     * @param user is the user whose family should be generated
+     * @return a GenerationAttempt, containing information on what happened during the procedure
+     * @throws BadAccessException when the user's information is not properly cleared/ready (lingering Person/Event references, particularly)
+     * @throws DatabaseException whenever another database error occurs
+     */
+    public GenerationAttempt generateFamilyTree(User user) throws DatabaseException, BadAccessException {
+        return this.generateFamilyTree(user, FamilyTreeUtils.NUM_GENERATIONS);
+    }
+
+    /**
+     * Generates a fake family tree with a default number of generations, taking
+     * a pre-generated tree from the FamilyTreePool when one is available. Only
+     * when the pool is empty (or not running) is the tree generated on the spot.
+     * 
+     * @param user is the user whose family should be generated
+     * @return a GenerationAttempt, containing information on what happened during the procedure
+     * @throws BadAccessException when the user's information is not properly cleared/ready (lingering Person/Event references, particularly)
+     * @throws DatabaseException whenever another database error occurs
+     */
+    public GenerationAttempt generatePooledFamilyTree(User user) throws DatabaseException, BadAccessException {
+        GenerationAttempt pooledAttempt = FamilyTreePool.claim();
+        if (pooledAttempt == null) {
+            return this.generateFamilyTree(user);
+        }
+
+        this.bindFamilyTree(pooledAttempt, user);
+        this.saveFamilyTree(user, pooledAttempt);
+        return pooledAttempt;
+    }
+
+    /**
+     * Generates a fake family tree for a user, but does not touch the database
+     * (the user is not updated either). The result can be saved later with saveFamilyTree().
+     * 
+     * @param user is the user whose family should be generated
+     * @param numGenerations is the number of generations to generate
+     * @return a GenerationAttempt holding the unsaved Persons and Events
+     */
+    public GenerationAttempt generateUnsavedFamilyTree(User user, int numGenerations) {
         GenerationAttempt attempt = new GenerationAttempt();
+        this.generateUnsavedFamilyTree(user, numGenerations, attempt);
+        return attempt;
+    }
+
+    /**
+     * Generates a fake family tree for a user into a given (new) attempt,
+     * without touching the database. The attempt's counts go up as the tree
+     * is generated, so other threads can watch its progress.
+     * 
+     * @param user is the user whose family should be generated
+     * @param numGenerations is the number of generations to generate
+     * @param attempt is the blank GenerationAttempt to hold the unsaved Persons and Events
+     */
+    public void generateUnsavedFamilyTree(User user, int numGenerations, GenerationAttempt attempt) {
         attempt.setSuccess(false);
         
         Person userPerson = this.createUserPerson(user, attempt);
@@ -43,8 +105,19 @@ public class FamilyTreeUtils extends GenericUtility {
         // fill the family tree
         Constraints startingConstraints = new Constraints(numGenerations);
         this.recursiveFillPerson(userPerson, startingConstraints, attempt);
+    }
+
+    /**
+     * Ties a generated family tree to a user and writes it to the database
+     * 
+     * @param user is the user the family tree was generated for
+     * @param attempt is the (unsaved) GenerationAttempt to save
+     * @throws BadAccessException when the user's information is not properly cleared/ready (lingering Person/Event references, particularly)
+     * @throws DatabaseException whenever another database error occurs
+     */
+    public void saveFamilyTree(User user, GenerationAttempt attempt) throws DatabaseException, BadAccessException {
         // finally, tie with the user
-        user.setPersonID(userPerson.getPersonID());
+        user.setPersonID(attempt.getRootPerson().getPersonID());
 
         // lets update that database!
         PersonAccessor personAcc = new PersonAccessor(this.database);
@@ -54,22 +127,63 @@ public class FamilyTreeUtils extends GenericUtility {
         UserAccessor userAcc = new UserAccessor(this.database);
         User[] users = {user};
         userAcc.update(users);
+        // tag father's/mother's side now, so side filters don't have to wait for it
+        PersonSides personSides = new PersonSides(this.database);
+        String[] usernames = {user.getUsername()};
+        personSides.tagUsers(usernames);
 
         // return the necessary data
         attempt.setSuccess(true);
-        return attempt;
     }
-    
+
     /**
-     * Generates a fake family tree with a default number of generations
+     * Rebinds an unsaved family tree (generated for some other/placeholder user)
+     * to a new user. Every Person and Event gets a fresh ID (with references
+     * remapped), the associated username is replaced, and the root Person takes
+     * the user's names and gender. The father line inherits the new last name,
+     * just like it would have if the tree was generated for the user directly.
      * 
-     * @param user is the user whose family should be generated
-     * @return a GenerationAttempt, containing information on what happened during the procedure
-     * @throws BadAccessException when the user's information is not properly cleared/ready (lingering Person/Event references, particularly)
-     * @throws DatabaseException whenever another database error occurs
+     * @param attempt is the unsaved GenerationAttempt to rebind (it is modified in place)
+     * @param user is the user to bind the family tree to
      */
-    public GenerationAttempt generateFamilyTree(User user) throws DatabaseException, BadAccessException {
-        return this.generateFamilyTree(user, FamilyTreeUtils.NUM_GENERATIONS);
+    public void bindFamilyTree(GenerationAttempt attempt, User user) {
+        Person[] persons = attempt.getCreatedPersons();
+        Event[] events = attempt.getCreatedEvents();
+        Person rootPerson = attempt.getRootPerson();
+
+        // the father line shares the root's last name, so it needs to be found
+        // before any IDs are changed
+        HashMap<String, Person> personsByOldID = new HashMap<>();
+        for (Person person : persons) {
+            personsByOldID.put(person.getPersonID(), person);
+        }
+        Person paternalPerson = personsByOldID.get(rootPerson.getFatherID());
+        while (paternalPerson != null) {
+            paternalPerson.setLastName(user.getLastName());
+            paternalPerson = personsByOldID.get(paternalPerson.getFatherID());
+        }
+
+        HashMap<String, String> newPersonIDs = new HashMap<>();
+        for (Person person : persons) {
+            newPersonIDs.put(person.getPersonID(), Person.generateID());
+        }
+        for (Person person : persons) {
+            person.setPersonID(newPersonIDs.get(person.getPersonID()));
+            person.setAssociatedUsername(user.getUsername());
+            // get() returns null for null IDs, which is exactly what we want
+            person.setFatherID(newPersonIDs.get(person.getFatherID()));
+            person.setMotherID(newPersonIDs.get(person.getMotherID()));
+            person.setSpouseID(newPersonIDs.get(person.getSpouseID()));
+        }
+        rootPerson.setFirstName(user.getFirstName());
+        rootPerson.setLastName(user.getLastName());
+        rootPerson.setGender(user.getGender());
+
+        for (Event event : events) {
+            event.setEventID(Event.generateID());
+            event.setAssociatedUsername(user.getUsername());
+            event.setPersonID(newPersonIDs.get(event.getPersonID()));
+        }
     }
 
     /**
@@ -131,6 +245,12 @@ public class FamilyTreeUtils extends GenericUtility {
         private ArrayList<Person> createdPersons;
         /** Represents the number of Events created during generation */
         private ArrayList<Event> createdEvents;
+        /** The Person representing the User the tree was generated for */
+        private Person rootPerson;
+        /** The number of Persons tracked so far (readable from other threads, unlike the list) */
+        private volatile int numPersonsCreated;
+        /** The number of Events tracked so far (readable from other threads, unlike the list) */
+        private volatile int numEventsCreated;
 
         /**
          * Creates a new, blank GenerationAttempt
@@ -139,6 +259,9 @@ public class FamilyTreeUtils extends GenericUtility {
             this.success = false;
             this.createdPersons = new ArrayList<>();
             this.createdEvents = new ArrayList<>();
+            this.rootPerson = null;
+            this.numPersonsCreated = 0;
+            this.numEventsCreated = 0;
         }
 
         public boolean getSuccess() {
@@ -150,7 +273,7 @@ public class FamilyTreeUtils extends GenericUtility {
         }
 
         public int getNumPersonsCreated() {
-            return this.createdPersons.size();
+            return this.numPersonsCreated;
         }
 
         public Person[] getCreatedPersons() {
@@ -164,10 +287,25 @@ public class FamilyTreeUtils extends GenericUtility {
          */
         protected void trackCreatePerson(Person person) {
             this.createdPersons.add(person);
+            this.numPersonsCreated = this.createdPersons.size();
+        }
+
+        public Person getRootPerson() {
+            return this.rootPerson;
+        }
+
+        /**
+         * Tracks the newly created Person representing the User
+         * 
+         * @param rootPerson is the new person that was just created for the User
+         */
+        protected void trackRootPerson(Person rootPerson) {
+            this.trackCreatePerson(rootPerson);
+            this.rootPerson = rootPerson;
         }
 
         public int getNumEventsCreated() {
-            return this.createdEvents.size();
+            return this.numEventsCreated;
         }
 
         public Event[] getCreatedEvents() {
@@ -181,6 +319,7 @@ public class FamilyTreeUtils extends GenericUtility {
          */
         protected void trackCreateEvent(Event event) {
             this.createdEvents.add(event);
+            this.numEventsCreated = this.createdEvents.size();
         }
     }
 
@@ -370,7 +509,7 @@ public class FamilyTreeUtils extends GenericUtility {
             newPersonID, user.getUsername(), user.getFirstName(),
             user.getLastName(), user.getGender()
         );
-        attempt.trackCreatePerson(userPerson);
+        attempt.trackRootPerson(userPerson);
         return userPerson;
     }
 
@@ -566,7 +705,11 @@ public class FamilyTreeUtils extends GenericUtility {
         FileReader locationFile = new FileReader(new File("json/locations.json"));
         Gson gson = new Gson();
         Location[] locations = gson.fromJson(locationFile, LocationJSONList.class).data;
-        return this.randomChoice(locations);
+        Location location = this.randomChoice(locations);
+        // the file is parsed again every time, so share the strings instead of keeping every copy
+        location.country = StringDictionary.canonicalize(location.country);
+        location.city = StringDictionary.canonicalize(location.city);
+        return location;
     }
 
     /**
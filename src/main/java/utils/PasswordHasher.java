@@ -0,0 +1,217 @@
+package utils;
+
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.security.SecureRandom;
+import java.util.Base64;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import javax.crypto.SecretKeyFactory;
+import javax.crypto.spec.PBEKeySpec;
+
+/**
+ * Hashes and verifies passwords with salted PBKDF2 (HMAC-SHA256). Hashed
+ * passwords are stored as "pbkdf2$iterations$salt$hash" (salt and hash in
+ * base64), so the iteration count can be raised later without breaking old
+ * hashes; needsRehash() tells when a stored password should be upgraded.
+ * Anything not in that format is a legacy plaintext password (ex. from /load).
+ *
+ * Hashing is slow on purpose, so only one hash per core runs at a time (the
+ * rest wait for a permit, in order). Only a few threads may wait, and not for
+ * long; any more are refused right away (as "busy"), so a burst of logins
+ * can't tie up every request thread. The server keeps getMaxThreads() more
+ * request threads than it would otherwise, so other requests are still
+ * served while logins hash.
+ *
+ * Checking a password against nothing (ex. for a username that doesn't exist)
+ * still runs a hash, so how long a login takes doesn't tell which usernames
+ * are registered.
+ *
+ * The iteration count comes from the "familymap.passwordIterations" system
+ * property, and defaults to DEFAULT_ITERATIONS.
+ */
+public class PasswordHasher {
+    /** The system property holding the number of PBKDF2 iterations */
+    static final String ITERATIONS_PROPERTY = "familymap.passwordIterations";
+    /** The number of PBKDF2 iterations used when the property isn't set */
+    static final int DEFAULT_ITERATIONS = 100000;
+    /** The first part of every hashed password */
+    static final String HASH_PREFIX = "pbkdf2";
+    /** The number of bytes of random salt per password */
+    static final int SALT_SIZE = 16;
+    /** The number of bytes of hash per password */
+    static final int HASH_SIZE = 32;
+    /** The plaintext hashed for checks against nothing (its hash is never stored) */
+    static final String DUMMY_PASSWORD = "not a real password";
+    /** The number of passwords hashed at the same time (one per core) */
+    static final int NUM_HASHING_THREADS = Runtime.getRuntime().availableProcessors();
+    /** The number of threads that can wait to hash before more are refused */
+    static final int MAX_WAITING_THREADS = PasswordHasher.NUM_HASHING_THREADS;
+    /** How long a thread waits to hash before it is refused, in milliseconds */
+    static final long MAX_WAIT_MILLIS = 5000;
+
+    /** The number of PBKDF2 iterations new hashes get */
+    static private final int iterations = Integer.getInteger(PasswordHasher.ITERATIONS_PROPERTY, PasswordHasher.DEFAULT_ITERATIONS);
+    /** Where salts come from */
+    static private final SecureRandom random = new SecureRandom();
+    /** One permit per core, which hashing threads must hold */
+    static private final Semaphore hashPermits = new Semaphore(PasswordHasher.NUM_HASHING_THREADS, true);
+    /** The number of threads waiting for a permit */
+    static private final AtomicInteger numWaitingThreads = new AtomicInteger(0);
+    /** The hash checked against when there is no stored password */
+    static private final String dummyHash = PasswordHasher.hash(PasswordHasher.DUMMY_PASSWORD);
+
+    static public int getIterations() {
+        return PasswordHasher.iterations;
+    }
+
+    /**
+     * Returns the most threads that can be busy with hashing at once (hashing
+     * or waiting to), which is how many request threads logins can hold
+     *
+     * @return the number of threads
+     */
+    static public int getMaxThreads() {
+        return PasswordHasher.NUM_HASHING_THREADS + PasswordHasher.MAX_WAITING_THREADS;
+    }
+
+    /**
+     * Indicates if a stored password is hashed (as opposed to legacy plaintext)
+     *
+     * @param storedPassword is the password as stored in the database
+     * @return whether the password is a PBKDF2 hash
+     */
+    static public boolean isHashed(String storedPassword) {
+        return storedPassword != null && storedPassword.startsWith(PasswordHasher.HASH_PREFIX + "$");
+    }
+
+    /**
+     * Hashes a password with a new random salt
+     *
+     * @param password is the plaintext password
+     * @return the hashed password, ready to store
+     */
+    static public String hash(String password) {
+        byte[] salt = new byte[PasswordHasher.SALT_SIZE];
+        PasswordHasher.random.nextBytes(salt);
+        int iterations = PasswordHasher.iterations;
+        byte[] hash = PasswordHasher.runLimited(password, salt, iterations);
+
+        Base64.Encoder encoder = Base64.getEncoder().withoutPadding();
+        return PasswordHasher.HASH_PREFIX + "$" + iterations + "$" + encoder.encodeToString(salt) + "$" + encoder.encodeToString(hash);
+    }
+
+    /**
+     * Checks a password against a stored (hashed or legacy plaintext) password
+     *
+     * @param password is the plaintext password to check
+     * @param storedPassword is the password as stored in the database, or null if there is none
+     * @return whether the password matches (which it never does when there is no stored password)
+     */
+    static public boolean verify(String password, String storedPassword) {
+        if (storedPassword == null) {
+            // takes as long as a real check, but can't match
+            PasswordHasher.verify(password, PasswordHasher.dummyHash);
+            return false;
+        }
+        if (!PasswordHasher.isHashed(storedPassword)) {
+            // legacy row; still compared in constant time
+            byte[] passwordBytes = password.getBytes(StandardCharsets.UTF_8);
+            return MessageDigest.isEqual(passwordBytes, storedPassword.getBytes(StandardCharsets.UTF_8));
+        }
+
+        String[] parts = storedPassword.split("\\$");
+        if (parts.length != 4) {
+            return false;
+        }
+        int iterations;
+        byte[] salt;
+        byte[] expectedHash;
+        try {
+            iterations = Integer.parseInt(parts[1]);
+            Base64.Decoder decoder = Base64.getDecoder();
+            salt = decoder.decode(parts[2]);
+            expectedHash = decoder.decode(parts[3]);
+        } catch (IllegalArgumentException err) {
+            return false;
+        }
+        if (iterations <= 0) {
+            return false;
+        }
+        byte[] hash = PasswordHasher.runLimited(password, salt, iterations);
+        return MessageDigest.isEqual(hash, expectedHash);
+    }
+
+    /**
+     * Indicates if a stored password should be hashed again (because it is
+     * legacy plaintext, or was hashed with a different iteration count)
+     *
+     * @param storedPassword is the password as stored in the database
+     * @return whether the password should be rehashed
+     */
+    static public boolean needsRehash(String storedPassword) {
+        if (!PasswordHasher.isHashed(storedPassword)) {
+            return true;
+        }
+        String[] parts = storedPassword.split("\\$");
+        return parts.length != 4 || !parts[1].equals(Integer.toString(PasswordHasher.iterations));
+    }
+
+    /**
+     * Runs PBKDF2 on a password once a hashing permit is free
+     *
+     * @param password is the plaintext password
+     * @param salt is the salt to use
+     * @param iterations is the number of iterations to run
+     * @return the hash
+     * @throws IllegalStateException when too many threads are already waiting to hash (or this one waited too long)
+     */
+    static private byte[] runLimited(String password, byte[] salt, int iterations) {
+        if (PasswordHasher.numWaitingThreads.incrementAndGet() > PasswordHasher.MAX_WAITING_THREADS + PasswordHasher.hashPermits.availablePermits()) {
+            PasswordHasher.numWaitingThreads.decrementAndGet();
+            throw new IllegalStateException("Too many passwords are being checked right now; try again later");
+        }
+        boolean hasPermit;
+        try {
+            // (a timed tryAcquire() still waits in order, unlike the untimed one)
+            hasPermit = PasswordHasher.hashPermits.tryAcquire(PasswordHasher.MAX_WAIT_MILLIS, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException err) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while waiting to hash a password");
+        } finally {
+            PasswordHasher.numWaitingThreads.decrementAndGet();
+        }
+        if (!hasPermit) {
+            throw new IllegalStateException("Too many passwords are being checked right now; try again later");
+        }
+        try {
+            return PasswordHasher.pbkdf2(password, salt, iterations);
+        } catch (GeneralSecurityException err) {
+            throw new IllegalStateException("Password hashing failed: " + err.getMessage());
+        } finally {
+            PasswordHasher.hashPermits.release();
+        }
+    }
+
+    /**
+     * Runs PBKDF2 on a password
+     *
+     * @param password is the plaintext password
+     * @param salt is the salt to use
+     * @param iterations is the number of iterations to run
+     * @return the hash
+     * @throws GeneralSecurityException when PBKDF2 isn't available (which it always should be)
+     */
+    static private byte[] pbkdf2(String password, byte[] salt, int iterations) throws GeneralSecurityException {
+        PBEKeySpec spec = new PBEKeySpec(password.toCharArray(), salt, iterations, PasswordHasher.HASH_SIZE * 8);
+        try {
+            SecretKeyFactory factory = SecretKeyFactory.getInstance("PBKDF2WithHmacSHA256");
+            return factory.generateSecret(spec).getEncoded();
+        } finally {
+            spec.clearPassword();
+        }
+    }
+}
@@ -0,0 +1,205 @@
+package utils;
+
+import java.util.ArrayList;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import models.*;
+
+/**
+ * Checks that a set of Users, Persons, and Events (usually from a /load) only
+ * reference each other, before they are inserted with foreign keys turned off.
+ * Models are added (in as many batches as needed), and then findProblems()
+ * indexes every ID and checks every reference in parallel.
+ *
+ * Only the IDs and references of each model are kept, not the models themselves.
+ */
+public class ReferenceValidator {
+    /** The maximum number of problems to describe in an error report */
+    static final int MAX_REPORTED_PROBLEMS = 25;
+
+    /** The references of each added User: {username, personID} */
+    private ArrayList<String[]> userRefs;
+    /** The references of each added Person: {personID, associatedUsername, fatherID, motherID, spouseID} */
+    private ArrayList<String[]> personRefs;
+    /** The references of each added Event: {eventID, associatedUsername, personID} */
+    private ArrayList<String[]> eventRefs;
+
+    /**
+     * Creates a new ReferenceValidator with no models added
+     */
+    public ReferenceValidator() {
+        this.userRefs = new ArrayList<>();
+        this.personRefs = new ArrayList<>();
+        this.eventRefs = new ArrayList<>();
+    }
+
+    /**
+     * Adds Users to be validated
+     *
+     * @param users is the array of Users to add
+     */
+    public void addUsers(User[] users) {
+        for (User user : users) {
+            String[] refs = {user.getUsername(), user.getPersonID()};
+            this.userRefs.add(refs);
+        }
+    }
+
+    /**
+     * Adds Persons to be validated
+     *
+     * @param persons is the array of Persons to add
+     */
+    public void addPersons(Person[] persons) {
+        for (Person person : persons) {
+            String[] refs = {person.getPersonID(), person.getAssociatedUsername(), person.getFatherID(), person.getMotherID(), person.getSpouseID()};
+            this.personRefs.add(refs);
+        }
+    }
+
+    /**
+     * Adds Events to be validated
+     *
+     * @param events is the array of Events to add
+     */
+    public void addEvents(Event[] events) {
+        for (Event event : events) {
+            String[] refs = {event.getEventID(), event.getAssociatedUsername(), event.getPersonID()};
+            this.eventRefs.add(refs);
+        }
+    }
+
+    /**
+     * Checks every added model for missing/duplicate IDs and references to
+     * Users or Persons that were not added
+     *
+     * @return a description of each problem found (empty if everything is valid)
+     */
+    public ArrayList<String> findProblems() {
+        // each model has its own table, so an ID only has to be unique among its own kind
+        ConcurrentHashMap<String, Boolean> duplicateUsernames = new ConcurrentHashMap<>();
+        ConcurrentHashMap<String, Boolean> duplicatePersonIDs = new ConcurrentHashMap<>();
+        ConcurrentHashMap<String, Boolean> duplicateEventIDs = new ConcurrentHashMap<>();
+        Set<String> usernames = this.indexIDs(this.userRefs, duplicateUsernames);
+        Set<String> personIDs = this.indexIDs(this.personRefs, duplicatePersonIDs);
+        // events can't be referenced, but their IDs still need to be unique
+        this.indexIDs(this.eventRefs, duplicateEventIDs);
+
+        Stream<String> userProblems = this.userRefs.parallelStream().flatMap((refs) -> {
+            String user = "User '" + refs[0] + "'";
+            return Stream.of(
+                this.checkID(user, "username", refs[0], duplicateUsernames),
+                this.checkReference(user, "personID", refs[1], personIDs, true)
+            );
+        });
+        Stream<String> personProblems = this.personRefs.parallelStream().flatMap((refs) -> {
+            String person = "Person '" + refs[0] + "'";
+            return Stream.of(
+                this.checkID(person, "personID", refs[0], duplicatePersonIDs),
+                this.checkReference(person, "associatedUsername", refs[1], usernames, false),
+                this.checkReference(person, "fatherID", refs[2], personIDs, true),
+                this.checkReference(person, "motherID", refs[3], personIDs, true),
+                this.checkReference(person, "spouseID", refs[4], personIDs, true)
+            );
+        });
+        Stream<String> eventProblems = this.eventRefs.parallelStream().flatMap((refs) -> {
+            String event = "Event '" + refs[0] + "'";
+            return Stream.of(
+                this.checkID(event, "eventID", refs[0], duplicateEventIDs),
+                this.checkReference(event, "associatedUsername", refs[1], usernames, false),
+                this.checkReference(event, "personID", refs[2], personIDs, false)
+            );
+        });
+
+        return Stream.concat(userProblems, Stream.concat(personProblems, eventProblems))
+            .filter((problem) -> problem != null)
+            .collect(Collectors.toCollection(ArrayList::new));
+    }
+
+    /**
+     * Describes a list of problems (from findProblems()) in a single message,
+     * truncated to MAX_REPORTED_PROBLEMS
+     *
+     * @param problems is the list of problems to describe
+     * @return the error report
+     */
+    static public String createReport(ArrayList<String> problems) {
+        StringBuilder report = new StringBuilder();
+        report.append(String.format("Found %d invalid references: ", problems.size()));
+        int numReported = Math.min(problems.size(), ReferenceValidator.MAX_REPORTED_PROBLEMS);
+        for (int problemIdx = 0; problemIdx < numReported; ++problemIdx) {
+            if (problemIdx != 0) {
+                report.append("; ");
+            }
+            report.append(problems.get(problemIdx));
+        }
+        if (numReported < problems.size()) {
+            report.append(String.format("; ...and %d more", problems.size() - numReported));
+        }
+        return report.toString();
+    }
+
+    /**
+     * Builds a (concurrent) hash set of the IDs of some models, in parallel
+     *
+     * @param modelRefs is the list of references for each model, where the ID is the first reference
+     * @param duplicates is the set to add IDs to when they are seen more than once
+     * @return the set of IDs
+     */
+    private Set<String> indexIDs(ArrayList<String[]> modelRefs, ConcurrentHashMap<String, Boolean> duplicates) {
+        Set<String> ids = ConcurrentHashMap.newKeySet(modelRefs.size());
+        modelRefs.parallelStream().forEach((refs) -> {
+            String id = refs[0];
+            if (id != null && !ids.add(id)) {
+                duplicates.put(id, true);
+            }
+        });
+        return ids;
+    }
+
+    /**
+     * Checks a model's own ID for problems
+     *
+     * @param model is the description of the model being checked
+     * @param idName is the name of the ID property
+     * @param id is the ID of the model
+     * @param duplicates is the set of IDs that were seen more than once
+     * @return the description of the problem, or null if there isn't one
+     */
+    private String checkID(String model, String idName, String id, ConcurrentHashMap<String, Boolean> duplicates) {
+        if (id == null) {
+            return model + " is missing its " + idName;
+        } else if (duplicates.containsKey(id)) {
+            return model + " has a " + idName + " that is used more than once";
+        } else {
+            return null;
+        }
+    }
+
+    /**
+     * Checks a model's reference to another model for problems
+     *
+     * @param model is the description of the model being checked
+     * @param refName is the name of the reference property
+     * @param ref is the ID being referenced
+     * @param ids is the set of IDs that can be referenced
+     * @param isOptional indicates if the reference can be null
+     * @return the description of the problem, or null if there isn't one
+     */
+    private String checkReference(String model, String refName, String ref, Set<String> ids, boolean isOptional) {
+        if (ref == null) {
+            if (isOptional) {
+                return null;
+            } else {
+                return model + " is missing its " + refName;
+            }
+        } else if (!ids.contains(ref)) {
+            return model + " has " + refName + " '" + ref + "', which was not loaded";
+        } else {
+            return null;
+        }
+    }
+}
@@ -0,0 +1,706 @@
+package utils;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.zip.CRC32;
+
+import dataAccess.*;
+import models.*;
+
+/**
+ * Exports and imports compact binary snapshots of the database, either in full
+ * or for a single user (and everything associated with them).
+ *
+ * A snapshot looks like this (all integers are unsigned varints unless noted):
+ * <pre>
+ *   magic ("FMSS", 4 bytes) | version (1 byte)
+ *   string dictionary: count, then (byte length, UTF-8 bytes) for each string
+ *   scope (1 byte: 0 = full, 1 = single user) | flags (1 byte: 1 = has credentials)
+ *   username (single user snapshots only)
+ *   users | persons | events | auth tokens: count, then each record's fields
+ *   CRC32 of everything above (4 bytes, big endian)
+ * </pre>
+ * Every string field is written as a reference into the dictionary (0 for null,
+ * otherwise the string's index + 1), so repeated usernames, places, and event
+ * types are only stored once. Event coordinates are 4 byte floats, years are
+ * zigzag encoded (just in case), and auth token times are varint milliseconds.
+ *
+ * Credentials (password hashes and auth tokens) are left out unless they are
+ * asked for. Importing a snapshot without them keeps the passwords of users
+ * that already exist, and fails for users that don't. A single user snapshot
+ * may only hold records belonging to its user.
+ */
+public class SnapshotUtils extends GenericUtility {
+    /** The bytes every snapshot starts with */
+    static final byte[] MAGIC = {'F', 'M', 'S', 'S'};
+    /** The version of the format written by this class */
+    static final int FORMAT_VERSION = 3;
+    /** The scope of a snapshot containing the whole database */
+    static final int SCOPE_FULL = 0;
+    /** The scope of a snapshot containing a single user's data */
+    static final int SCOPE_SINGLE_USER = 1;
+    /** The flag marking a snapshot that includes password hashes and auth tokens */
+    static final int FLAG_HAS_CREDENTIALS = 1;
+    /** The number of bytes used by the CRC32 trailer */
+    static final int CHECKSUM_SIZE = 4;
+
+    /**
+     * Creates a new SnapshotUtils instance, given some database to work on
+     *
+     * @param database is the database to work on
+     */
+    public SnapshotUtils(Database database) {
+        super(database);
+    }
+
+    /**
+     * Exports every User, Person, Event, and AuthToken in the database
+     *
+     * @param includeCredentials is if password hashes and AuthTokens should be exported too
+     * @return the snapshot bytes
+     * @throws DatabaseException when the database has a bad day
+     */
+    public byte[] exportDatabase(boolean includeCredentials) throws DatabaseException {
+        UserAccessor userAcc = new UserAccessor(this.database);
+        PersonAccessor personAcc = new PersonAccessor(this.database);
+        EventAccessor eventAcc = new EventAccessor(this.database);
+        AuthTokenAccessor authTokenAcc = new AuthTokenAccessor(this.database);
+        return this.writeSnapshot(
+            null, includeCredentials, userAcc.getAll(), personAcc.getAll(), eventAcc.getAll(),
+            includeCredentials ? authTokenAcc.getAll() : new AuthToken[0]
+        );
+    }
+
+    /**
+     * Exports a single User along with their Persons, Events, and AuthTokens
+     *
+     * @param username is the username of the user to export
+     * @param includeCredentials is if their password hash and AuthTokens should be exported too
+     * @return the snapshot bytes
+     * @throws BadAccessException when the user doesn't exist
+     * @throws DatabaseException when the database has a bad day
+     */
+    public byte[] exportUser(String username, boolean includeCredentials) throws BadAccessException, DatabaseException {
+        UserAccessor userAcc = new UserAccessor(this.database);
+        User user = userAcc.getByUsername(username);
+        if (user == null) {
+            throw new BadAccessException("User '" + username + "' does not exist");
+        }
+        User[] users = {user};
+        PersonAccessor personAcc = new PersonAccessor(this.database);
+        EventAccessor eventAcc = new EventAccessor(this.database);
+        AuthTokenAccessor authTokenAcc = new AuthTokenAccessor(this.database);
+        return this.writeSnapshot(
+            username, includeCredentials, users, personAcc.getAllForUser(username), eventAcc.getAllForUser(username),
+            includeCredentials ? authTokenAcc.getByUsername(username) : new AuthToken[0]
+        );
+    }
+
+    /**
+     * Imports a snapshot into the database in a single transaction. A full
+     * snapshot replaces everything in the database; a single user snapshot
+     * only replaces that user's data (and is rejected if it holds records
+     * belonging to anyone else). The checksum is verified before the
+     * database is touched, so a corrupt snapshot never changes anything.
+     *
+     * @param snapshotData is the stream of snapshot bytes
+     * @return an ImportedSnapshot, describing what was imported (and how fast)
+     * @throws DatabaseException when the snapshot is corrupt, or conflicts with existing data
+     */
+    public ImportedSnapshot importSnapshot(InputStream snapshotData) throws DatabaseException {
+        ImportedSnapshot snapshot = new ImportedSnapshot();
+        long startTime = System.nanoTime();
+
+        byte[] bytes;
+        try {
+            bytes = snapshotData.readAllBytes();
+        } catch (IOException err) {
+            throw new DatabaseException("Snapshot could not be read: " + err.getMessage());
+        }
+        this.verifyChecksum(bytes);
+
+        DataInputStream input = new DataInputStream(new ByteArrayInputStream(bytes, 0, bytes.length - SnapshotUtils.CHECKSUM_SIZE));
+        this.database.load(() -> {
+            try {
+                String[] dictionary = this.readHeader(input);
+                int scope = input.readUnsignedByte();
+                boolean hasCredentials = (input.readUnsignedByte() & SnapshotUtils.FLAG_HAS_CREDENTIALS) != 0;
+                // passwords left out of the snapshot are kept from the users being replaced
+                HashMap<String, String> oldPasswords = new HashMap<>();
+                if (scope == SnapshotUtils.SCOPE_FULL) {
+                    if (!hasCredentials) {
+                        for (User user : new UserAccessor(this.database).getAll()) {
+                            oldPasswords.put(user.getUsername(), user.getPassword());
+                        }
+                    }
+                    new BulkUtils(this.database).deleteAllData();
+                } else if (scope == SnapshotUtils.SCOPE_SINGLE_USER) {
+                    snapshot.username = this.readString(input, dictionary);
+                    if (snapshot.username == null) {
+                        throw new IOException("Single user snapshot has no username");
+                    }
+                    User oldUser = new UserAccessor(this.database).getByUsername(snapshot.username);
+                    if (!hasCredentials && oldUser != null) {
+                        oldPasswords.put(oldUser.getUsername(), oldUser.getPassword());
+                    }
+                    this.clearUser(snapshot.username);
+                } else {
+                    throw new IOException("Unknown snapshot scope " + scope);
+                }
+
+                snapshot.numUsersImported = this.importUsers(input, dictionary, snapshot.username, oldPasswords);
+                snapshot.numPersonsImported = this.importPersons(input, dictionary, snapshot.username);
+                snapshot.numEventsImported = this.importEvents(input, dictionary, snapshot.username);
+                snapshot.numAuthTokensImported = this.importAuthTokens(input, dictionary, snapshot.username);
+                if (snapshot.username != null) {
+                    this.checkOwnPerson(snapshot.username);
+                }
+                if (input.available() > 0) {
+                    throw new IOException("Unexpected data after the last record");
+                }
+            } catch (IOException err) {
+                throw new DatabaseException("Snapshot could not be read: " + err.getMessage());
+            } catch (BadAccessException err) {
+                throw new DatabaseException(err.getMessage());
+            }
+        });
+        snapshot.elapsedNanos = System.nanoTime() - startTime;
+        return snapshot;
+    }
+
+    /**
+     * Encodes models into the snapshot format
+     *
+     * @param username is the username of the (single) exported user, or null for a full snapshot
+     * @param includeCredentials is if password hashes should be written (AuthTokens are written either way)
+     * @param users is the array of Users to write
+     * @param persons is the array of Persons to write
+     * @param events is the array of Events to write
+     * @param authTokens is the array of AuthTokens to write
+     * @return the snapshot bytes
+     */
+    private byte[] writeSnapshot(String username, boolean includeCredentials, User[] users, Person[] persons, Event[] events, AuthToken[] authTokens) {
+        // the records are written first (to find every string for the dictionary),
+        // even though they come after the dictionary in the snapshot
+        Dictionary dictionary = new Dictionary();
+        ByteArrayOutputStream recordBytes = new ByteArrayOutputStream();
+        DataOutputStream records = new DataOutputStream(recordBytes);
+        ByteArrayOutputStream snapshotBytes = new ByteArrayOutputStream();
+        DataOutputStream snapshot = new DataOutputStream(snapshotBytes);
+        try {
+            if (username != null) {
+                this.writeVarInt(records, dictionary.getRef(username));
+            }
+
+            this.writeVarInt(records, users.length);
+            for (User user : users) {
+                this.writeVarInt(records, dictionary.getRef(user.getUsername()));
+                this.writeVarInt(records, dictionary.getRef(includeCredentials ? user.getPassword() : null));
+                this.writeVarInt(records, dictionary.getRef(user.getEmail()));
+                this.writeVarInt(records, dictionary.getRef(user.getFirstName()));
+                this.writeVarInt(records, dictionary.getRef(user.getLastName()));
+                this.writeVarInt(records, dictionary.getRef(user.getGender()));
+                this.writeVarInt(records, dictionary.getRef(user.getPersonID()));
+            }
+
+            this.writeVarInt(records, persons.length);
+            for (Person person : persons) {
+                this.writeVarInt(records, dictionary.getRef(person.getPersonID()));
+                this.writeVarInt(records, dictionary.getRef(person.getAssociatedUsername()));
+                this.writeVarInt(records, dictionary.getRef(person.getFirstName()));
+                this.writeVarInt(records, dictionary.getRef(person.getLastName()));
+                this.writeVarInt(records, dictionary.getRef(person.getGender()));
+                this.writeVarInt(records, dictionary.getRef(person.getFatherID()));
+                this.writeVarInt(records, dictionary.getRef(person.getMotherID()));
+                this.writeVarInt(records, dictionary.getRef(person.getSpouseID()));
+            }
+
+            this.writeVarInt(records, events.length);
+            for (Event event : events) {
+                this.writeVarInt(records, dictionary.getRef(event.getEventID()));
+                this.writeVarInt(records, dictionary.getRef(event.getAssociatedUsername()));
+                this.writeVarInt(records, dictionary.getRef(event.getPersonID()));
+                records.writeFloat(event.getLatitude());
+                records.writeFloat(event.getLongitude());
+                this.writeVarInt(records, dictionary.getRef(event.getCountry()));
+                this.writeVarInt(records, dictionary.getRef(event.getCity()));
+                this.writeVarInt(records, dictionary.getRef(event.getEventType()));
+                // zigzag encoding keeps small negative numbers small too
+                int year = event.getYear();
+                this.writeVarInt(records, (year << 1) ^ (year >> 31));
+            }
+
+            this.writeVarInt(records, authTokens.length);
+            for (AuthToken authToken : authTokens) {
+                this.writeVarInt(records, dictionary.getRef(authToken.getAuthtoken()));
+                this.writeVarInt(records, dictionary.getRef(authToken.getUsername()));
+                this.writeVarLong(records, authToken.getCreatedAt());
+                this.writeVarLong(records, authToken.getLastUsed());
+            }
+
+            snapshot.write(SnapshotUtils.MAGIC);
+            snapshot.writeByte(SnapshotUtils.FORMAT_VERSION);
+            this.writeVarInt(snapshot, dictionary.strings.size());
+            for (String str : dictionary.strings) {
+                byte[] strBytes = str.getBytes(StandardCharsets.UTF_8);
+                this.writeVarInt(snapshot, strBytes.length);
+                snapshot.write(strBytes);
+            }
+            if (username != null) {
+                snapshot.writeByte(SnapshotUtils.SCOPE_SINGLE_USER);
+            } else {
+                snapshot.writeByte(SnapshotUtils.SCOPE_FULL);
+            }
+            snapshot.writeByte(includeCredentials ? SnapshotUtils.FLAG_HAS_CREDENTIALS : 0);
+            recordBytes.writeTo(snapshot);
+
+            CRC32 checksum = new CRC32();
+            checksum.update(snapshotBytes.toByteArray());
+            snapshot.writeInt((int) checksum.getValue());
+        } catch (IOException err) {
+            // byte array streams don't actually throw these...
+            throw new AssertionError("Writing to memory failed: " + err.getMessage());
+        }
+        return snapshotBytes.toByteArray();
+    }
+
+    /**
+     * Checks the CRC32 trailer of a snapshot against its contents
+     *
+     * @param bytes is the entire snapshot, including the trailer
+     * @throws DatabaseException when the checksum doesn't match
+     */
+    private void verifyChecksum(byte[] bytes) throws DatabaseException {
+        if (bytes.length < SnapshotUtils.CHECKSUM_SIZE) {
+            throw new DatabaseException("Snapshot could not be read: it is too short");
+        }
+        int dataLength = bytes.length - SnapshotUtils.CHECKSUM_SIZE;
+        CRC32 checksum = new CRC32();
+        checksum.update(bytes, 0, dataLength);
+        int expected = ((bytes[dataLength] & 0xFF) << 24)
+                     | ((bytes[dataLength + 1] & 0xFF) << 16)
+                     | ((bytes[dataLength + 2] & 0xFF) << 8)
+                     | (bytes[dataLength + 3] & 0xFF);
+        if ((int) checksum.getValue() != expected) {
+            throw new DatabaseException("Snapshot could not be read: the checksum does not match (is it corrupt?)");
+        }
+    }
+
+    /**
+     * Reads the magic bytes, version, and string dictionary of a snapshot
+     *
+     * @param input is the snapshot stream, positioned at the start
+     * @return the string dictionary
+     * @throws IOException when the header is invalid
+     */
+    private String[] readHeader(DataInputStream input) throws IOException {
+        byte[] magic = new byte[SnapshotUtils.MAGIC.length];
+        input.readFully(magic);
+        for (int byteIdx = 0; byteIdx < magic.length; ++byteIdx) {
+            if (magic[byteIdx] != SnapshotUtils.MAGIC[byteIdx]) {
+                throw new IOException("This is not a snapshot");
+            }
+        }
+        int version = input.readUnsignedByte();
+        if (version != SnapshotUtils.FORMAT_VERSION) {
+            throw new IOException("Unsupported snapshot version " + version);
+        }
+
+        int numStrings = this.readVarInt(input);
+        String[] dictionary = new String[numStrings];
+        for (int strIdx = 0; strIdx < numStrings; ++strIdx) {
+            byte[] strBytes = new byte[this.readVarInt(input)];
+            input.readFully(strBytes);
+            dictionary[strIdx] = new String(strBytes, StandardCharsets.UTF_8);
+        }
+        return dictionary;
+    }
+
+    /**
+     * Deletes a user and everything associated with them, if they exist
+     * (as part of the current transaction)
+     *
+     * @param username is the username of the user to delete
+     * @throws BadAccessException when something can't be deleted
+     * @throws DatabaseException when the database has a bad day
+     */
+    private void clearUser(String username) throws BadAccessException, DatabaseException {
+        // foreign keys are off during loads, so the order doesn't matter
+        AuthTokenAccessor authTokenAcc = new AuthTokenAccessor(this.database);
+        authTokenAcc.delete(authTokenAcc.getByUsername(username));
+        EventAccessor eventAcc = new EventAccessor(this.database);
+        eventAcc.delete(eventAcc.getAllForUser(username));
+        PersonAccessor personAcc = new PersonAccessor(this.database);
+        personAcc.delete(personAcc.getAllForUser(username));
+        UserAccessor userAcc = new UserAccessor(this.database);
+        User user = userAcc.getByUsername(username);
+        if (user != null) {
+            User[] users = {user};
+            userAcc.delete(users);
+        }
+    }
+
+    /**
+     * Reads the Users section of a snapshot, creating the Users in batches
+     *
+     * @param input is the snapshot stream, positioned at the section
+     * @param dictionary is the snapshot's string dictionary
+     * @param owner is the username every User must have, or null if they can be anyone
+     * @param oldPasswords is the passwords of replaced users, for Users written without one
+     * @return the number of Users created
+     * @throws IOException when the section is invalid
+     * @throws BadAccessException when a User already exists, doesn't belong to the owner, or has no password
+     * @throws DatabaseException when another database error occurs
+     */
+    private int importUsers(DataInputStream input, String[] dictionary, String owner, HashMap<String, String> oldPasswords) throws IOException, BadAccessException, DatabaseException {
+        UserAccessor userAcc = new UserAccessor(this.database);
+        int numUsers = this.readVarInt(input);
+        ArrayList<User> batch = new ArrayList<>();
+        for (int userIdx = 0; userIdx < numUsers; ++userIdx) {
+            User user = new User(
+                this.readString(input, dictionary), this.readString(input, dictionary), this.readString(input, dictionary),
+                this.readString(input, dictionary), this.readString(input, dictionary), this.readString(input, dictionary),
+                this.readString(input, dictionary)
+            );
+            this.checkOwner(owner, user.getUsername(), "User");
+            if (user.getPassword() == null) {
+                String oldPassword = oldPasswords.get(user.getUsername());
+                if (oldPassword == null) {
+                    throw new BadAccessException("User '" + user.getUsername() + "' has no password in the snapshot (export it with credentials=true)");
+                }
+                user.setPassword(oldPassword);
+            }
+            batch.add(user);
+            if (batch.size() == BulkUtils.STREAMED_BATCH_SIZE || userIdx == numUsers - 1) {
+                userAcc.create(batch.toArray(new User[batch.size()]));
+                batch.clear();
+            }
+        }
+        return numUsers;
+    }
+
+    /**
+     * Reads the Persons section of a snapshot, creating the Persons in batches
+     *
+     * @param input is the snapshot stream, positioned at the section
+     * @param dictionary is the snapshot's string dictionary
+     * @param owner is the username every Person must belong to, or null if they can be anyone's
+     * @return the number of Persons created
+     * @throws IOException when the section is invalid
+     * @throws BadAccessException when a Person already exists, or doesn't belong to the owner
+     * @throws DatabaseException when another database error occurs
+     */
+    private int importPersons(DataInputStream input, String[] dictionary, String owner) throws IOException, BadAccessException, DatabaseException {
+        PersonAccessor personAcc = new PersonAccessor(this.database);
+        int numPersons = this.readVarInt(input);
+        ArrayList<Person> batch = new ArrayList<>();
+        for (int personIdx = 0; personIdx < numPersons; ++personIdx) {
+            Person person = new Person(
+                this.readString(input, dictionary), this.readString(input, dictionary), this.readString(input, dictionary),
+                this.readString(input, dictionary), this.readString(input, dictionary), this.readString(input, dictionary),
+                this.readString(input, dictionary), this.readString(input, dictionary)
+            );
+            this.checkOwner(owner, person.getAssociatedUsername(), "Person");
+            batch.add(person);
+            if (batch.size() == BulkUtils.STREAMED_BATCH_SIZE || personIdx == numPersons - 1) {
+                personAcc.create(batch.toArray(new Person[batch.size()]));
+                batch.clear();
+            }
+        }
+        return numPersons;
+    }
+
+    /**
+     * Reads the Events section of a snapshot, creating the Events in batches
+     *
+     * @param input is the snapshot stream, positioned at the section
+     * @param dictionary is the snapshot's string dictionary
+     * @param owner is the username every Event must belong to, or null if they can be anyone's
+     * @return the number of Events created
+     * @throws IOException when the section is invalid
+     * @throws BadAccessException when an Event already exists, or doesn't belong to the owner
+     * @throws DatabaseException when another database error occurs
+     */
+    private int importEvents(DataInputStream input, String[] dictionary, String owner) throws IOException, BadAccessException, DatabaseException {
+        EventAccessor eventAcc = new EventAccessor(this.database);
+        int numEvents = this.readVarInt(input);
+        ArrayList<Event> batch = new ArrayList<>();
+        for (int eventIdx = 0; eventIdx < numEvents; ++eventIdx) {
+            String eventID = this.readString(input, dictionary);
+            String associatedUsername = this.readString(input, dictionary);
+            String personID = this.readString(input, dictionary);
+            float latitude = input.readFloat();
+            float longitude = input.readFloat();
+            String country = this.readString(input, dictionary);
+            String city = this.readString(input, dictionary);
+            String eventType = this.readString(input, dictionary);
+            int zigzagYear = this.readVarInt(input);
+            int year = (zigzagYear >>> 1) ^ -(zigzagYear & 1);
+            this.checkOwner(owner, associatedUsername, "Event");
+            batch.add(new Event(eventID, associatedUsername, personID, latitude, longitude, country, city, eventType, year));
+            if (batch.size() == BulkUtils.STREAMED_BATCH_SIZE || eventIdx == numEvents - 1) {
+                eventAcc.create(batch.toArray(new Event[batch.size()]));
+                batch.clear();
+            }
+        }
+        return numEvents;
+    }
+
+    /**
+     * Reads the AuthTokens section of a snapshot, creating the AuthTokens in batches
+     *
+     * @param input is the snapshot stream, positioned at the section
+     * @param dictionary is the snapshot's string dictionary
+     * @param owner is the username every AuthToken must belong to, or null if they can be anyone's
+     * @return the number of AuthTokens created
+     * @throws IOException when the section is invalid
+     * @throws BadAccessException when an AuthToken already exists, or doesn't belong to the owner
+     * @throws DatabaseException when another database error occurs
+     */
+    private int importAuthTokens(DataInputStream input, String[] dictionary, String owner) throws IOException, BadAccessException, DatabaseException {
+        AuthTokenAccessor authTokenAcc = new AuthTokenAccessor(this.database);
+        int numAuthTokens = this.readVarInt(input);
+        ArrayList<AuthToken> batch = new ArrayList<>();
+        for (int tokenIdx = 0; tokenIdx < numAuthTokens; ++tokenIdx) {
+            AuthToken authToken = new AuthToken(
+                this.readString(input, dictionary), this.readString(input, dictionary),
+                this.readVarLong(input), this.readVarLong(input)
+            );
+            this.checkOwner(owner, authToken.getUsername(), "AuthToken");
+            batch.add(authToken);
+            if (batch.size() == BulkUtils.STREAMED_BATCH_SIZE || tokenIdx == numAuthTokens - 1) {
+                authTokenAcc.create(batch.toArray(new AuthToken[batch.size()]));
+                batch.clear();
+            }
+        }
+        return numAuthTokens;
+    }
+
+    /**
+     * Checks that a record from a single user snapshot belongs to its user
+     *
+     * @param owner is the snapshot's username, or null for a full snapshot
+     * @param username is the username the record belongs to
+     * @param modelName is the name of the record's model (for the error message)
+     * @throws BadAccessException when the record belongs to someone else
+     */
+    private void checkOwner(String owner, String username, String modelName) throws BadAccessException {
+        if (owner != null && !owner.equals(username)) {
+            throw new BadAccessException(String.format(
+                "The snapshot for user '%s' contains a %s belonging to '%s'", owner, modelName, username
+            ));
+        }
+    }
+
+    /**
+     * Checks that the imported user of a single user snapshot doesn't claim
+     * someone else's Person as their own
+     *
+     * @param owner is the snapshot's username
+     * @throws BadAccessException when the user's Person belongs to someone else
+     * @throws DatabaseException when the database has a bad day
+     */
+    private void checkOwnPerson(String owner) throws BadAccessException, DatabaseException {
+        User user = new UserAccessor(this.database).getByUsername(owner);
+        if (user == null || user.getPersonID() == null) {
+            return;
+        }
+        Person person = new PersonAccessor(this.database).getByID(user.getPersonID());
+        if (person != null) {
+            this.checkOwner(owner, person.getAssociatedUsername(), "Person");
+        }
+    }
+
+    /**
+     * Writes an unsigned integer using as few bytes as possible (7 bits per byte,
+     * where the high bit means "there's more")
+     *
+     * @param output is the stream to write to
+     * @param value is the (non-negative) value to write
+     * @throws IOException when the stream can't be written to
+     */
+    private void writeVarInt(DataOutputStream output, int value) throws IOException {
+        while ((value & ~0x7F) != 0) {
+            output.writeByte((value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        output.writeByte(value);
+    }
+
+    /**
+     * Reads an unsigned integer written by writeVarInt()
+     *
+     * @param input is the stream to read from
+     * @return the value read
+     * @throws IOException when the stream ends early, or the value is too big
+     */
+    private int readVarInt(DataInputStream input) throws IOException {
+        int value = 0;
+        for (int shift = 0; shift < 32; shift += 7) {
+            int nextByte = input.readUnsignedByte();
+            value |= (nextByte & 0x7F) << shift;
+            if ((nextByte & 0x80) == 0) {
+                return value;
+            }
+        }
+        throw new IOException("Integer is too large");
+    }
+
+    /**
+     * Writes an unsigned long the same way writeVarInt() writes an int
+     *
+     * @param output is the stream to write to
+     * @param value is the (non-negative) value to write
+     * @throws IOException when the stream can't be written to
+     */
+    private void writeVarLong(DataOutputStream output, long value) throws IOException {
+        while ((value & ~0x7FL) != 0) {
+            output.writeByte((int) (value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        output.writeByte((int) value);
+    }
+
+    /**
+     * Reads an unsigned long written by writeVarLong()
+     *
+     * @param input is the stream to read from
+     * @return the value read
+     * @throws IOException when the stream ends early, or the value is too big
+     */
+    private long readVarLong(DataInputStream input) throws IOException {
+        long value = 0;
+        for (int shift = 0; shift < 64; shift += 7) {
+            int nextByte = input.readUnsignedByte();
+            value |= (long) (nextByte & 0x7F) << shift;
+            if ((nextByte & 0x80) == 0) {
+                return value;
+            }
+        }
+        throw new IOException("Integer is too large");
+    }
+
+    /**
+     * Reads a reference to a string in the dictionary
+     *
+     * @param input is the stream to read from
+     * @param dictionary is the snapshot's string dictionary
+     * @return the referenced string (or null)
+     * @throws IOException when the stream ends early, or the reference is invalid
+     */
+    private String readString(DataInputStream input, String[] dictionary) throws IOException {
+        int ref = this.readVarInt(input);
+        if (ref == 0) {
+            return null;
+        } else if (ref > dictionary.length) {
+            throw new EOFException("String reference is out of range");
+        }
+        return dictionary[ref - 1];
+    }
+
+    /**
+     * Assigns each distinct string a reference while a snapshot is written
+     */
+    private class Dictionary {
+        /** The reference of each string (its index + 1) */
+        private HashMap<String, Integer> refs;
+        /** Each string, in the order they were referenced */
+        private ArrayList<String> strings;
+
+        /**
+         * Creates a new, empty Dictionary
+         */
+        public Dictionary() {
+            this.refs = new HashMap<>();
+            this.strings = new ArrayList<>();
+        }
+
+        /**
+         * Returns the reference for a string, adding it if it's new
+         *
+         * @param str is the string to reference
+         * @return the reference (or 0 for null)
+         */
+        public int getRef(String str) {
+            if (str == null) {
+                return 0;
+            }
+            Integer ref = this.refs.get(str);
+            if (ref == null) {
+                this.strings.add(str);
+                ref = this.strings.size();
+                this.refs.put(str, ref);
+            }
+            return ref;
+        }
+    }
+
+    /**
+     * Records what happened during a snapshot import (see importSnapshot())
+     */
+    public class ImportedSnapshot {
+        /** The username of the imported user, or null for a full snapshot */
+        private String username;
+        /** The number of Users imported */
+        private int numUsersImported;
+        /** The number of Persons imported */
+        private int numPersonsImported;
+        /** The number of Events imported */
+        private int numEventsImported;
+        /** The number of AuthTokens imported */
+        private int numAuthTokensImported;
+        /** How long the import took, in nanoseconds */
+        private long elapsedNanos;
+
+        /**
+         * Creates a new, blank ImportedSnapshot
+         */
+        public ImportedSnapshot() {
+            this.username = null;
+            this.numUsersImported = 0;
+            this.numPersonsImported = 0;
+            this.numEventsImported = 0;
+            this.numAuthTokensImported = 0;
+            this.elapsedNanos = 0;
+        }
+
+        public String getUsername() {
+            return this.username;
+        }
+
+        public int getNumUsersImported() {
+            return this.numUsersImported;
+        }
+
+        public int getNumPersonsImported() {
+            return this.numPersonsImported;
+        }
+
+        public int getNumEventsImported() {
+            return this.numEventsImported;
+        }
+
+        public int getNumAuthTokensImported() {
+            return this.numAuthTokensImported;
+        }
+
+        /**
+         * Returns the throughput of the import
+         *
+         * @return the number of rows imported per second
+         */
+        public double getRowsPerSecond() {
+            int numRows = this.numUsersImported + this.numPersonsImported + this.numEventsImported + this.numAuthTokensImported;
+            double elapsedSeconds = Math.max(this.elapsedNanos, 1) / 1e9;
+            return numRows / elapsedSeconds;
+        }
+    }
+}